@@ -0,0 +1,114 @@
+package hex.glm;
+
+import hex.DataInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import water.DKV;
+import water.Key;
+import water.fvec.Frame;
+import water.fvec.Vec;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static water.TestUtil.stall_till_cloudsize;
+
+/**
+ * Multinomial GLM gradient (all classes of a block of rows at once) against the binomial gradient
+ * over the same dense predictors; the multinomial one does K times the work of the binomial one.
+ */
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultinomialGradientBench {
+
+  @Param({"100", "1000"})
+  private int cols;
+
+  @Param({"10", "50"})
+  private int classes;
+
+  private static final int ROWS = 10000;
+  private Vec[] vecs;
+  private Frame multinomialFr;
+  private Frame binomialFr;
+  private DataInfo multinomialDinfo;
+  private DataInfo binomialDinfo;
+  private double[][] beta;
+  private GLMModel.GLMParameters binomialParms;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(MultinomialGradientBench.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    stall_till_cloudsize(1);
+    Random rnd = new Random(42);
+    vecs = new Vec[cols + 2];
+    String[] names = new String[cols + 1];
+    vecs[cols] = Vec.makeZero(ROWS);
+    vecs[cols + 1] = vecs[cols].makeZero();
+    for (int c = 0; c < cols; ++c) {
+      vecs[c] = vecs[cols].makeZero();
+      names[c] = "x" + c;
+      try (Vec.Writer w = vecs[c].open()) {
+        for (int r = 0; r < ROWS; ++r)
+          w.set(r, rnd.nextGaussian());
+      }
+    }
+    names[cols] = "y";
+    try (Vec.Writer wk = vecs[cols].open(); Vec.Writer wb = vecs[cols + 1].open()) {
+      for (int r = 0; r < ROWS; ++r) {
+        wk.set(r, rnd.nextInt(classes));
+        wb.set(r, rnd.nextBoolean() ? 1 : 0);
+      }
+    }
+    Vec[] predictors = Arrays.copyOf(vecs, cols);
+    Vec[] mvecs = Arrays.copyOf(predictors, cols + 1);
+    mvecs[cols] = vecs[cols];
+    Vec[] bvecs = Arrays.copyOf(predictors, cols + 1);
+    bvecs[cols] = vecs[cols + 1];
+    multinomialFr = new Frame(Key.<Frame>make(), names, mvecs);
+    binomialFr = new Frame(Key.<Frame>make(), names.clone(), bvecs);
+    DKV.put(multinomialFr);
+    DKV.put(binomialFr);
+    multinomialDinfo = new DataInfo(multinomialFr, null, 1, true, DataInfo.TransformType.STANDARDIZE, DataInfo.TransformType.NONE, false, true, false, false, false, false);
+    binomialDinfo = new DataInfo(binomialFr, null, 1, true, DataInfo.TransformType.STANDARDIZE, DataInfo.TransformType.NONE, false, true, false, false, false, false);
+    beta = new double[classes][multinomialDinfo.fullN() + 1];
+    for (double[] b : beta)
+      for (int i = 0; i < b.length; ++i)
+        b[i] = .1 * rnd.nextGaussian();
+    binomialParms = new GLMModel.GLMParameters(GLMModel.GLMParameters.Family.binomial);
+    binomialParms._obj_reg = 1.0 / ROWS;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    DKV.remove(multinomialFr._key);
+    DKV.remove(binomialFr._key);
+    for (Vec v : vecs)
+      v.remove();
+  }
+
+  @Benchmark
+  public double[] multinomial() {
+    return new GLMTask.GLMMultinomialGradientTask(null, multinomialDinfo, 0, beta, 1.0 / ROWS).doAll(multinomialDinfo._adaptedFrame).gradient();
+  }
+
+  @Benchmark
+  public double[] binomial() {
+    return new GLMTask.GLMBinomialGradientTask(null, binomialDinfo, binomialParms, 0, beta[0]).doAll(binomialDinfo._adaptedFrame)._gradient;
+  }
+}
@@ -0,0 +1,130 @@
+package hex.glm;
+
+import hex.CSRMatrix;
+import hex.DataInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import water.DKV;
+import water.Key;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.util.ArrayUtils;
+import water.util.Log;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static water.TestUtil.stall_till_cloudsize;
+
+/**
+ * Very sparse, wide data (text features like): the rows of a chunk as a {@link DataInfo.Row} per
+ * row against one {@link CSRMatrix}, each followed by X*beta, and the GLM gradient over the whole
+ * frame.  Run with {@code -prof gc} for the bytes allocated per operation; the setup logs the bytes
+ * taken by both representations of a chunk.
+ */
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SparseRowsBench {
+
+  @Param({"1000", "10000", "50000"})
+  private int cols;
+
+  @Param({"20"})
+  private int nnzPerRow;
+
+  private static final int ROWS = 10000;
+  private Frame fr;
+  private DataInfo dinfo;
+  private Chunk[] chks;
+  private double[] beta;
+  private GLMModel.GLMParameters parms;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(SparseRowsBench.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    stall_till_cloudsize(1);
+    Random rnd = new Random(42);
+    // the non-zeros of every column
+    int[][] rowIds = new int[cols][4];
+    int[] cnt = new int[cols];
+    for (int r = 0; r < ROWS; ++r)
+      for (int k = 0; k < nnzPerRow; ++k) {
+        int c = rnd.nextInt(cols);
+        if (cnt[c] > 0 && rowIds[c][cnt[c] - 1] == r) continue;
+        if (cnt[c] == rowIds[c].length) rowIds[c] = Arrays.copyOf(rowIds[c], 2 * cnt[c]);
+        rowIds[c][cnt[c]++] = r;
+      }
+    Vec[] vecs = new Vec[cols + 1];
+    String[] names = new String[cols + 1];
+    vecs[cols] = Vec.makeZero(ROWS);
+    names[cols] = "y";
+    for (int c = 0; c < cols; ++c) {
+      vecs[c] = vecs[cols].makeZero();
+      names[c] = "x" + c;
+      try (Vec.Writer w = vecs[c].open()) {
+        for (int i = 0; i < cnt[c]; ++i)
+          w.set(rowIds[c][i], rnd.nextDouble());
+      }
+    }
+    try (Vec.Writer w = vecs[cols].open()) {
+      for (int r = 0; r < ROWS; ++r)
+        w.set(r, rnd.nextBoolean() ? 1 : 0);
+    }
+    fr = new Frame(Key.<Frame>make(), names, vecs);
+    DKV.put(fr);
+    dinfo = new DataInfo(fr, null, 1, true, DataInfo.TransformType.STANDARDIZE, DataInfo.TransformType.NONE, false, true, false, false, false, false);
+    chks = new Chunk[dinfo._adaptedFrame.numCols()];
+    for (int i = 0; i < chks.length; ++i)
+      chks[i] = dinfo._adaptedFrame.vec(i).chunkForChunkIdx(0);
+    beta = new double[dinfo.fullN() + 1];
+    for (int i = 0; i < beta.length; ++i)
+      beta[i] = rnd.nextGaussian();
+    parms = new GLMModel.GLMParameters(GLMModel.GLMParameters.Family.binomial);
+    parms._obj_reg = 1.0 / ROWS;
+    // memory of one chunk: arrays of every Row (headers not counted) against the CSR matrix
+    long rowBytes = 0;
+    for (DataInfo.Row r : dinfo.extractSparseRows(chks))
+      rowBytes += 12L * r.numIds.length + 4L * r.binIds.length + 8L * r.response.length;
+    Log.info("SparseRowsBench cols=" + cols + ": Row[] " + rowBytes + " bytes, CSR " + dinfo.extractCSR(chks).byteSize() + " bytes");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    fr.delete();
+  }
+
+  @Benchmark
+  public double rowObjects() {
+    double s = 0;
+    for (DataInfo.Row r : dinfo.extractSparseRows(chks))
+      s += r.innerProduct(beta);
+    return s;
+  }
+
+  @Benchmark
+  public double csr() {
+    CSRMatrix csr = dinfo.extractCSR(chks);
+    return ArrayUtils.sum(csr.mul(beta, new double[csr._nrows]));
+  }
+
+  @Benchmark
+  public double[] gradient() {
+    return new GLMTask.GLMBinomialGradientTask(null, dinfo, parms, 0, beta).doAll(dinfo._adaptedFrame)._gradient;
+  }
+}
@@ -0,0 +1,70 @@
+package hex.gram;
+
+import hex.DataInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static water.TestUtil.stall_till_cloudsize;
+
+/**
+ * Gram accumulation of dense rows: one rank-1 update per row ({@link Gram#addRow}) against batched
+ * rank-k updates ({@link Gram#addRowBatched}).
+ */
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GramAddRowBench {
+
+  @Param({"500", "1000", "2000", "5000"})
+  private int cols;
+
+  private static final int ROWS = 256;
+  private DataInfo.Row[] rows;
+  private Gram gram;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(GramAddRowBench.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    stall_till_cloudsize(1);
+    Random rnd = new Random(42);
+    rows = new DataInfo.Row[ROWS];
+    for (int i = 0; i < ROWS; ++i) {
+      double[] vals = new double[cols];
+      for (int j = 0; j < cols; ++j)
+        vals[j] = rnd.nextGaussian();
+      rows[i] = new DataInfo.Row(false, vals, null, null, i, 0);
+    }
+    gram = new Gram(cols, 0, cols, 0, true);
+  }
+
+  @Benchmark
+  public Gram rowByRow() {
+    for (DataInfo.Row r : rows)
+      gram.addRow(r, 1);
+    return gram;
+  }
+
+  @Benchmark
+  public Gram batched() {
+    for (DataInfo.Row r : rows)
+      gram.addRowBatched(r, 1);
+    gram.flushRows();
+    return gram;
+  }
+}
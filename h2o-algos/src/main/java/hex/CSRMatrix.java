@@ -0,0 +1,132 @@
+package hex;
+
+import hex.DataInfo.Row;
+import water.MemoryManager;
+
+/**
+ * The rows of one chunk of a {@link DataInfo}, in compressed sparse row (CSR) format: for every row
+ * the expanded column ids of its non-zero values, categoricals (value 1) first then numbers, in
+ * increasing order.  Built once per chunk by {@link DataInfo#extractCSR}, straight from the
+ * column-compressed sparse chunks.
+ *
+ * Same values as {@link DataInfo#extractSparseRows}: zeros remain zeros, numbers are scaled but not
+ * centered (GLM corrects for the missing centering, see GLM.sparseOffset).  Takes three arrays for
+ * the whole chunk instead of a {@link Row} with its own arrays for every row, and comes with the
+ * kernels of GLM: the products X*beta (linear predictors, scoring) and t(X)*d (gradients), and
+ * rows to add to a Gram.
+ */
+public final class CSRMatrix {
+  public final int _nrows;
+  public final long _start;     // first row of the chunk
+  public final int _numStart;   // first numeric column
+  public final int [] _rowPtr;  // the values of row r are at [_rowPtr[r], _rowPtr[r+1])
+  public final int [] _cols;    // expanded column ids
+  public final double [] _vals;
+  public final double [][] _responses;
+  public final double [] _weights;  // null if no weights
+  public final double [] _offsets;  // null if no offset
+  public final boolean [] _predictorsBad;
+  public final boolean [] _responseBad;
+
+  CSRMatrix(long start, int numStart, int [] rowPtr, int [] cols, double [] vals, double [][] responses,
+            double [] weights, double [] offsets, boolean [] predictorsBad, boolean [] responseBad) {
+    _nrows = rowPtr.length - 1;
+    _start = start;
+    _numStart = numStart;
+    _rowPtr = rowPtr;
+    _cols = cols;
+    _vals = vals;
+    _responses = responses;
+    _weights = weights;
+    _offsets = offsets;
+    _predictorsBad = predictorsBad;
+    _responseBad = responseBad;
+  }
+
+  /** Number of non-zero values */
+  public int nnz() { return _rowPtr[_nrows]; }
+
+  public boolean isBad(int r) { return _predictorsBad[r] || _responseBad[r]; }
+  public double weight(int r) { return _weights == null ? 1 : _weights[r]; }
+  public double offset(int r) { return _offsets == null ? 0 : _offsets[r]; }
+  public double response(int r, int i) { return _responses[i][r]; }
+
+  /** Bytes taken by the matrix */
+  public long byteSize() {
+    long res = 4L * _rowPtr.length + 12L * _cols.length + 2L * _nrows;
+    for (double [] d : _responses) res += 8L * d.length;
+    if (_weights != null) res += 8L * _nrows;
+    if (_offsets != null) res += 8L * _nrows;
+    return res;
+  }
+
+  /** x_r * beta, with no intercept */
+  public double innerProduct(int r, double [] beta) {
+    double res = 0;
+    for (int k = _rowPtr[r]; k < _rowPtr[r + 1]; ++k)
+      res += _vals[k] * beta[_cols[k]];
+    return res;
+  }
+
+  /** res += X*beta (no intercept) */
+  public double [] mul(double [] beta, double [] res) {
+    final int [] cols = _cols;
+    final double [] vals = _vals;
+    int k = 0;
+    for (int r = 0; r < _nrows; ++r) {
+      double d = 0;
+      for (final int end = _rowPtr[r + 1]; k < end; ++k)
+        d += vals[k] * beta[cols[k]];
+      res[r] += d;
+    }
+    return res;
+  }
+
+  /** res += t(X)*d, rows with d[r] == 0 are skipped */
+  public double [] tmul(double [] d, double [] res) {
+    final int [] cols = _cols;
+    final double [] vals = _vals;
+    for (int r = 0; r < _nrows; ++r) {
+      final double dr = d[r];
+      if (dr == 0) continue;
+      for (int k = _rowPtr[r], end = _rowPtr[r + 1]; k < end; ++k)
+        res[cols[k]] += vals[k] * dr;
+    }
+    return res;
+  }
+
+  /** A sparse Row to fill by {@link #row} */
+  public Row newRow(DataInfo dinfo) {
+    return dinfo.new Row(true, 0, dinfo._cats, dinfo._responses, 0, _start);
+  }
+
+  /**
+   * Row r, filled into the given sparse row (see {@link #newRow}), which is reused: one Row object
+   * for the whole chunk, e.g. to add the rows to a {@link hex.gram.Gram}.
+   */
+  public Row row(int r, Row row) {
+    row.cid = r;
+    row.rid = _start + r;
+    row.predictors_bad = _predictorsBad[r];
+    row.response_bad = _responseBad[r];
+    row.weight = weight(r);
+    row.offset = offset(r);
+    for (int i = 0; i < _responses.length; ++i)
+      row.response[i] = _responses[i][r];
+    int k = _rowPtr[r];
+    final int end = _rowPtr[r + 1];
+    int nbins = 0;
+    for (; k < end && _cols[k] < _numStart; ++k)
+      row.binIds[nbins++] = _cols[k];
+    row.nBins = nbins;
+    final int n = end - k;
+    if (row.numIds.length < n) {
+      row.numIds = MemoryManager.malloc4(n);
+      row.numVals = MemoryManager.malloc8d(n);
+    }
+    System.arraycopy(_cols, k, row.numIds, 0, n);
+    System.arraycopy(_vals, k, row.numVals, 0, n);
+    row.nNums = n;
+    return row;
+  }
+}
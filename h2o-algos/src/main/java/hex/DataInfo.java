@@ -1090,28 +1090,28 @@ public class DataInfo extends Keyed<DataInfo> {
     return new Row(false, numVals, null, null, 0, start);
   }
 
+  /** Rows of a chunk, one at a time: the returned Row is reused by the next call */
   public final class Rows {
     public final int _nrows;
-    private final Row _denseRow;
-    private final Row [] _sparseRows;
+    private final Row _row;
+    private final CSRMatrix _csr;
     public final boolean _sparse;
     private final Chunk [] _chks;
 
     private Rows(Chunk [] chks, boolean sparse) {
       _nrows = chks[0]._len;
       _sparse = sparse;
-      long start = chks[0].start();
       if(sparse) {
-        _denseRow = null;
         _chks = null;
-        _sparseRows = extractSparseRows(chks);
+        _csr = extractCSR(chks);
+        _row = _csr.newRow(DataInfo.this);
       } else {
-        _denseRow = DataInfo.this.newDenseRow();
+        _row = DataInfo.this.newDenseRow();
         _chks = chks;
-        _sparseRows = null;
+        _csr = null;
       }
     }
-    public Row row(int i) {return _sparse?_sparseRows[i]:extractDenseRow(_chks,i,_denseRow);}
+    public Row row(int i) {return _sparse?_csr.row(i,_row):extractDenseRow(_chks,i,_row);}
   }
 
   public Rows rows(Chunk [] chks) {
@@ -1224,6 +1224,135 @@ public class DataInfo extends Keyed<DataInfo> {
     return rows;
   }
 
+  /**
+   * Extract the rows of given chunks as one compressed sparse row matrix, the values as in
+   * {@link #extractSparseRows} (0 remains 0, no centering).
+   * The non-zeros are collected column by column (walking the sparse chunks), then sorted into rows.
+   * @param chunks - chunk of dataset
+   * @return the rows of the chunk
+   */
+  public final CSRMatrix extractCSR(Chunk [] chunks) {
+    final int nrows = chunks[0]._len;
+    final long start = chunks[0].start();
+    boolean [] bad = new boolean[nrows];
+    boolean [] responseBad = new boolean[nrows];
+    double [] offsets = null, weights = null;
+    if(_offset) {
+      offsets = chunks[offsetChunkId()].getDoubles(MemoryManager.malloc8d(nrows), 0, nrows);
+      for(int r = 0; r < nrows; ++r)
+        if(Double.isNaN(offsets[r])) bad[r] = true;
+    }
+    if(_weights) {
+      weights = chunks[weightChunkId()].getDoubles(MemoryManager.malloc8d(nrows), 0, nrows);
+      for(int r = 0; r < nrows; ++r)
+        if(Double.isNaN(weights[r])) bad[r] = true;
+    }
+    // the non-zeros, column major
+    int nnz = 0;
+    int [] rows = MemoryManager.malloc4(Math.max(16, nrows * Math.min(_cats + _nums, 4)));
+    int [] cols = MemoryManager.malloc4(rows.length);
+    double [] vals = MemoryManager.malloc8d(rows.length);
+    // categoricals
+    for (int i = 0; i < _cats; ++i) {
+      Chunk c = chunks[i];
+      if(nnz + nrows > rows.length) {
+        int sz = Math.max(nnz + nrows, rows.length + (rows.length >> 1));
+        rows = Arrays.copyOf(rows, sz);
+        cols = Arrays.copyOf(cols, sz);
+        vals = Arrays.copyOf(vals, sz);
+      }
+      for (int r = 0; r < nrows; ++r) {
+        boolean isMissing = c.isNA(r);
+        if(_skipMissing && isMissing){
+          bad[r] = true;
+          continue;
+        }
+        int cid = getCategoricalId(i,isMissing? -1:(int)c.at8(r));
+        if(cid >= 0) {
+          rows[nnz] = r;
+          cols[nnz] = cid;
+          vals[nnz++] = 1;
+        }
+      }
+    }
+    // generic numbers + interactions
+    int interactionOffset = 0;
+    for (int cid = 0; cid < _nums; ++cid) {
+      Chunk c = chunks[_cats + cid];
+      if(nnz + nrows > rows.length) {
+        int sz = Math.max(nnz + nrows, rows.length + (rows.length >> 1));
+        rows = Arrays.copyOf(rows, sz);
+        cols = Arrays.copyOf(cols, sz);
+        vals = Arrays.copyOf(vals, sz);
+      }
+      if (c instanceof InteractionWrappedVec.InteractionWrappedChunk) {  // one hot value per row
+        for(int r = 0; r < nrows; ++r) {
+          if(c.isNA(r) && _skipMissing)
+            bad[r] = true;
+          if(bad[r]) continue;
+          int cidVirtualOffset = getInteractionOffset(chunks,_cats+cid,r);
+          if(cidVirtualOffset >= 0) {
+            if(cid < _intLvls.length && _intLvls[cid] != null && Arrays.binarySearch(_intLvls[cid],cidVirtualOffset) < 0) continue;
+            double d = c.atd(r);
+            if(d == 0) continue;
+            if(Double.isNaN(d))
+              d = _numMeans[interactionOffset+cidVirtualOffset];
+            if (_normMul != null)
+              d *= _normMul[interactionOffset+cidVirtualOffset];
+            rows[nnz] = r;
+            cols[nnz] = numStart()+interactionOffset+cidVirtualOffset;
+            vals[nnz++] = d;
+          }
+        }
+        interactionOffset += nextNumericIdx(cid);
+      } else {
+        for (int r = c.nextNZ(-1, _imputeMissing); r < nrows; r = c.nextNZ(r, _imputeMissing)) {
+          double d = c.atd(r);
+          if (d == 0) continue;
+          if (Double.isNaN(d)) {
+            if(_skipMissing) {
+              bad[r] = true;
+              continue;
+            }
+            d = _numMeans[cid];
+          }
+          if (_normMul != null)
+            d *= _normMul[interactionOffset];
+          rows[nnz] = r;
+          cols[nnz] = numStart()+interactionOffset;
+          vals[nnz++] = d;
+        }
+        interactionOffset++;
+      }
+    }
+    // sort into rows (counting sort, stable: the columns stay in increasing order)
+    int [] rowPtr = MemoryManager.malloc4(nrows + 1);
+    for (int k = 0; k < nnz; ++k)
+      rowPtr[rows[k] + 1]++;
+    for (int r = 0; r < nrows; ++r)
+      rowPtr[r + 1] += rowPtr[r];
+    int [] pos = Arrays.copyOf(rowPtr, nrows);
+    int [] csrCols = MemoryManager.malloc4(nnz);
+    double [] csrVals = MemoryManager.malloc8d(nnz);
+    for (int k = 0; k < nnz; ++k) {
+      int p = pos[rows[k]]++;
+      csrCols[p] = cols[k];
+      csrVals[p] = vals[k];
+    }
+    // response(s)
+    double [][] responses = new double[_responses][];
+    for (int i = 0; i < _responses; ++i) {
+      double [] y = responses[i] = chunks[responseChunkId(i)].getDoubles(MemoryManager.malloc8d(nrows), 0, nrows);
+      for (int r = 0; r < nrows; ++r) {
+        if(Double.isNaN(y[r]))
+          responseBad[r] = true;
+        if (_normRespMul != null)
+          y[r] = (y[r] - _normRespSub[i]) * _normRespMul[i];
+      }
+    }
+    return new CSRMatrix(start, numStart(), rowPtr, csrCols, csrVals, responses, weights, offsets, bad, responseBad);
+  }
+
   public DataInfo scoringInfo(String[] names, Frame adaptFrame) {
     return scoringInfo(names, adaptFrame, -1, true);
   }
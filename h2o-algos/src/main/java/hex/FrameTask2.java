@@ -56,9 +56,11 @@ public abstract class FrameTask2<T extends FrameTask2<T>> extends MRTask<T> {
     chunkInit();
     // compute
     if(_sparse) {
-      for(Row r:_dinfo.extractSparseRows(chks)) {
-        if(!r.isBad() && r.weight != 0)
-          processRow(r);
+      CSRMatrix csr = _dinfo.extractCSR(chks);
+      Row row = csr.newRow(_dinfo);
+      for(int r = 0; r < csr._nrows; ++r) {
+        if(csr.isBad(r) || csr.weight(r) == 0) continue;
+        processRow(csr.row(r, row));
       }
     } else {
       Row row = _dinfo.newDenseRow();
@@ -6,6 +6,7 @@ import hex.glm.GLM.GLMGradientInfo;
 import hex.glm.GLM.GLMGradientSolver;
 import hex.glm.GLMModel.GLMParameters;
 import hex.glm.GLMModel.GLMParameters.Family;
+import hex.gram.DistributedGram;
 import hex.gram.Gram;
 import hex.optimization.ADMM;
 import hex.optimization.OptimizationUtils.GradientInfo;
@@ -19,6 +20,7 @@ import water.util.MathUtils;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ComputationState {
   final boolean _intercept;
@@ -584,6 +586,28 @@ public final class ComputationState {
       return grads;
     }
 
+    /**
+     * The gram restricted to a subset of its columns (ids, sorted, are positions in activeCols),
+     * for the columns which left the active set.  No pass over the data.
+     */
+    GramXY selectCols(int[] ids) {
+      double [][] xx = gram.getXX();
+      double [][] xxNew = new double[ids.length][ids.length];
+      for(int i = 0; i < ids.length; ++i) {
+        double [] xrow = xx[ids[i]];
+        for(int j = 0; j < ids.length; ++j)
+          xxNew[i][j] = xrow[ids[j]];
+      }
+      return new GramXY(new Gram(xxNew), ArrayUtils.select(xy, ids), null, beta == null ? null : ArrayUtils.select(beta, ids),
+          ArrayUtils.select(activeCols, ids), null, yy, likelihood);
+    }
+
+    /** The same, with the gram as the lower triangle (intercept last) the Cholesky based solvers need */
+    GramXY lowerTriangular() {
+      if(gram._diag != null) return this; // computed by a GLMIterationTask, already is
+      return new GramXY(Gram.fromSquare(gram._xx, true), xy, grads, beta, activeCols, newCols, yy, likelihood);
+    }
+
     public boolean match(double[] beta, int[] activeCols) {
       return Arrays.equals(this.beta, beta) && Arrays.equals(this.activeCols, activeCols);
     }
@@ -649,24 +673,149 @@ public final class ComputationState {
   GramXY _currGram;
   GLMModel.GLMWeightsFun _glmw;
 
+  // holdout grams of the cross-validation folds, all but _skipFold, standardized as _foldDinfo
+  private GLMTask.GLMFoldGramTask _folds;
+  private int _skipFold;
+  private DataInfo _foldDinfo;
+  private GramXY _foldGram; // their sum, over all the columns
+  static final AtomicInteger foldGramsUsed = new AtomicInteger(); // states which got their grams from the folds, tests only
+
+  /**
+   * Cut the grams out of the sum of the holdout grams of the cross-validation folds (all but fold
+   * skip, -1 for all) instead of passes over the data.  Gaussian family with identity link only,
+   * dinfo expands the rows as this state's DataInfo, possibly with other means and sigmas.
+   */
+  void setFoldGrams(GLMTask.GLMFoldGramTask folds, int skip, DataInfo dinfo) {
+    assert _parms._family == Family.gaussian && _parms._link == GLMParameters.Link.identity;
+    assert dinfo.fullN() == _dinfo.fullN();
+    _folds = folds;
+    _skipFold = skip;
+    _foldDinfo = dinfo;
+    _foldGram = null;
+  }
+
+  private GramXY foldGram() {
+    if(_foldGram != null || _folds == null) return _foldGram;
+    final int N = _dinfo.fullN() + 1;
+    double [][] xx = new double[N][N];
+    double [] xy = MemoryManager.malloc8d(N);
+    double yy = 0;
+    for(int f = 0; f < _folds._nfolds; ++f) {
+      if(f == _skipFold || _folds._grams[f] == null) continue;
+      ArrayUtils.add(xx, _folds._grams[f].getXX());
+      ArrayUtils.add(xy, _folds._xy[f]);
+      yy += _folds._yy[f];
+    }
+    // the folds' rows were standardized with other means and sigmas:
+    // x = r*x' + c for every numeric column, r = mul/mul', c = (sub' - sub)*mul
+    final int ns = _dinfo.numStart();
+    double [] r = MemoryManager.malloc8d(N);
+    double [] c = MemoryManager.malloc8d(N);
+    Arrays.fill(r,1);
+    boolean same = true;
+    for(int i = ns; i < N-1; ++i) {
+      int k = i - ns;
+      double mul = _dinfo._normMul == null ? 1 : _dinfo._normMul[k];
+      double sub = _dinfo._normSub == null ? 0 : _dinfo._normSub[k];
+      double mulOld = _foldDinfo._normMul == null ? 1 : _foldDinfo._normMul[k];
+      double subOld = _foldDinfo._normSub == null ? 0 : _foldDinfo._normSub[k];
+      r[i] = mul/mulOld;
+      c[i] = (subOld - sub)*mul;
+      same = same && r[i] == 1 && c[i] == 0;
+    }
+    if(!same) {
+      // sum(w*x_i*x_j) = r_i*r_j*sum(w*x'_i*x'_j) + r_i*c_j*sum(w*x'_i) + c_i*r_j*sum(w*x'_j) + c_i*c_j*sum(w)
+      double [] s = new double[N];
+      for(int i = 0; i < N; ++i) s[i] = xx[i][N-1];
+      double wsum = s[N-1], wysum = xy[N-1];
+      for(int i = 0; i < N; ++i) {
+        for(int j = 0; j < N; ++j)
+          xx[i][j] = r[i]*r[j]*xx[i][j] + r[i]*c[j]*s[i] + c[i]*r[j]*s[j] + c[i]*c[j]*wsum;
+        xy[i] = r[i]*xy[i] + c[i]*wysum;
+      }
+    }
+    ArrayUtils.mult(xx,_parms._obj_reg);
+    ArrayUtils.mult(xy,_parms._obj_reg);
+    _folds = null;
+    _foldDinfo = null;
+    foldGramsUsed.incrementAndGet();
+    return _foldGram = new GramXY(new Gram(xx),xy,null,null,_dinfo.activeCols(),null,yy,Double.NaN);
+  }
+
+  // gram of the active columns: from the grams of the folds if there are some, otherwise a pass over the data
+  private GramXY newGram(double [] beta, GLMParameters.Solver s) {
+    GramXY full = foldGram();
+    if(full == null)
+      return computeNewGram(activeData(),beta,s);
+    GramXY res = full.selectCols(activeData().activeCols());
+    double [][] xx = res.gram.getXX();
+    int [] zeros = new int[0];
+    for(int i = 0; i < xx.length-1; ++i)
+      if(xx[i][i] == 0) zeros = ArrayUtils.append(zeros,i);
+    if(zeros.length > 0) {
+      removeCols(zeros);
+      if(beta != null) beta = ArrayUtils.removeIds(beta, zeros);
+      res = full.selectCols(activeData().activeCols());
+    }
+    if(s == GLMParameters.Solver.COORDINATE_DESCENT)
+      res.gram.getXX();
+    return new GramXY(res.gram,res.xy,null,beta,res.activeCols,null,res.yy,res.likelihood);
+  }
+
+
+  /**
+   * Whether IRLSM solves with a {@link DistributedGram}: more than DistributedGram.wideCols() active
+   * columns, one response, no L1 penalty, no bounds nor proximal penalty, no p-values.
+   */
+  boolean distributedGram(GLMParameters.Solver s) {
+    return s == GLMParameters.Solver.IRLSM && _nclasses == 1 && activeData().fullN() + 1 > DistributedGram.wideCols()
+        && l1pen() == 0 && !activeBC().hasBounds() && !activeBC().hasProximalPenalty()
+        && !_parms._compute_p_values && !_parms._remove_collinear_columns;
+  }
+
+  /**
+   * The gram of the IRLSM step at beta, tiled across the cloud: t(X)WX with the working weights, and
+   * t(X)Wz and the likelihood; scaled by obj_reg as the GramXY.  Not cached, the caller removes it.
+   */
+  DistributedGram computeDistributedGram(double [] beta) {
+    if(_glmw == null) _glmw = new GLMModel.GLMWeightsFun(_parms);
+    return DistributedGram.compute(_job._key, activeData(), DistributedGram.DEFAULT_TILE,
+        new GLMTask.GLMRowWeights(_glmw, beta, _parms._obj_reg));
+  }
 
   // get cached gram or incrementally update or compute new one
   public GramXY computeGram(double [] beta, GLMParameters.Solver s){
-    double obj_reg = _parms._obj_reg;
     boolean weighted = _parms._family != Family.gaussian || _parms._link != GLMParameters.Link.identity;
     if(_parms._family == Family.multinomial) // no caching
       return computeNewGram(activeDataMultinomial(_activeClass),beta,s);
-    if(s != GLMParameters.Solver.COORDINATE_DESCENT)
-      // only cache for solver==COD
-      //    caching only makes difference when running with lambda search
-      //    and COD and IRLSM need matrix in different shape
-      //    and COD is better for lambda search
-      return computeNewGram(activeData(),beta,s);
+    if(s == GLMParameters.Solver.COORDINATE_DESCENT)
+      return cachedGram(beta,s,weighted);
+    // cache for the other solvers only when the gram does not depend on beta (gaussian with identity link):
+    //    with lambda search, the step to the next lambda then only computes the new columns
+    //    the cache is kept full, in the shape COD works with, and turned into the lower triangle here
+    if(!weighted)
+      return cachedGram(beta,s,false).lowerTriangular();
+    return computeNewGram(activeData(),beta,s);
+  }
+
+  private GramXY cachedGram(double [] beta, GLMParameters.Solver s, boolean weighted){
+    double obj_reg = _parms._obj_reg;
     if(_currGram == null) // no cached value, compute new one and store
-      return _currGram = computeNewGram(activeData(),beta,s);
+      return _currGram = newGram(beta,s);
     DataInfo activeData = activeData();
     assert beta == null || beta.length == activeData.fullN()+1;
     int [] activeCols = activeData.activeCols();
+    // columns which left the active set are cut out of the cached gram
+    int [] dropped = ArrayUtils.sorted_set_diff(_currGram.activeCols,activeCols);
+    if(dropped.length > 0) {
+      if(dropped.length == _currGram.activeCols.length)
+        return _currGram = newGram(beta,s);
+      int [] keep = new int[_currGram.activeCols.length - dropped.length];
+      for(int i = 0, k = 0; i < _currGram.activeCols.length; ++i)
+        if(Arrays.binarySearch(dropped,_currGram.activeCols[i]) < 0)
+          keep[k++] = i;
+      _currGram = _currGram.selectCols(keep);
+    }
     if (Arrays.equals(_currGram.activeCols,activeCols))
       return (!weighted || Arrays.equals(_currGram.beta, beta)) ? _currGram : (_currGram = computeNewGram(activeData, beta, s));
     if(_glmw == null) _glmw = new GLMModel.GLMWeightsFun(_parms);
@@ -13,6 +13,7 @@ import hex.glm.GLMModel.GLMParameters.Solver;
 import hex.glm.GLMModel.GLMWeightsFun;
 import hex.glm.GLMModel.Submodel;
 import hex.glm.GLMTask.*;
+import hex.gram.DistributedGram;
 import hex.gram.Gram;
 import hex.gram.Gram.Cholesky;
 import hex.gram.Gram.NonSPDMatrixException;
@@ -187,6 +188,54 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
     _cv = false;
   }
 
+  // holdout grams of the folds, shared by the cross-validation models (see cv_buildModels)
+  private transient GLMFoldGramTask _foldGrams;
+  private transient DataInfo _foldGramsDinfo;
+  private transient int _foldId = -1;
+
+  /**
+   * With the gaussian family and identity link, the gram does not depend on beta: the folds are
+   * fitted from the holdout grams of all the folds, computed in a single pass over the data.  The
+   * cross-validation model of fold f sums up the grams of all the other folds (rescaled to its own
+   * standardization), the main model the grams of all of them.
+   */
+  @Override
+  public void cv_buildModels(int N, ModelBuilder<GLMModel, GLMParameters, GLMOutput>[] cvModelBuilders) {
+    if(canShareFoldGrams(N)) {
+      Frame fr = new Frame(_dinfo._adaptedFrame);
+      for(int i = 0; i < N; ++i) {
+        GLM g = (GLM) cvModelBuilders[i];
+        Frame holdout = DKV.getGet(g._parms._valid);
+        fr.add("__holdout_" + i, holdout.vec(g._parms._weights_column));
+      }
+      long t0 = System.currentTimeMillis();
+      GLMFoldGramTask folds = new GLMFoldGramTask(_job._key, _dinfo, N).doAll(fr);
+      Log.info(LogMsg("Gram matrices of " + N + " folds computed in " + (System.currentTimeMillis() - t0) + "ms"));
+      for(int i = 0; i < N; ++i) {
+        GLM g = (GLM) cvModelBuilders[i];
+        g._foldGrams = folds;
+        g._foldGramsDinfo = _dinfo;
+        g._foldId = i;
+      }
+      _state.setFoldGrams(folds, -1, _dinfo);
+    }
+    super.cv_buildModels(N, cvModelBuilders);
+    for(ModelBuilder mb:cvModelBuilders)
+      ((GLM)mb)._foldGrams = null;
+  }
+
+  private boolean canShareFoldGrams(int N) {
+    if(_parms._family != Family.gaussian || _parms._link != Link.identity || _state == null)
+      return false;
+    Solver s = _parms._solver == Solver.AUTO ? defaultSolver() : _parms._solver;
+    if(s != Solver.IRLSM && s != Solver.COORDINATE_DESCENT)
+      return false;
+    // N grams per thread while the pass runs
+    long p = _dinfo.fullN() + 1;
+    HeartBeat hb = H2O.SELF._heartbeat;
+    return (long) hb._cpus_allowed * N * (p * p + _dinfo.largestCat()) * 8 < hb.get_free_mem();
+  }
+
   protected void checkMemoryFootPrint(DataInfo activeData) {
     if (_parms._solver == Solver.IRLSM || _parms._solver == Solver.COORDINATE_DESCENT) {
       int p = activeData.fullN();
@@ -379,6 +428,8 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
       if ((_parms._solver.equals(Solver.GRADIENT_DESCENT_LH) || _parms._solver.equals(Solver.GRADIENT_DESCENT_SQERR)) && !_parms._family.equals(Family.ordinal))
         error("_solver", "Solvers GRADIENT_DESCENT_LH and GRADIENT_DESCENT_SQERR are only " +
                 "supported for ordinal regression.  Do not choose them unless you specify your family to be ordinal");
+      if (_parms._solver == Solver.SGD && (_parms._family == Family.multinomial || _parms._family == Family.ordinal))
+        error("_solver", "Solver SGD is not supported for multinomial or ordinal regression.");
       switch (_parms._family) {
         case binomial:
           if (!_response.isBinary() && _nclass != 2)
@@ -447,6 +498,8 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
       if (_valid != null)
         _validDinfo = _dinfo.validDinfo(_valid);
       _state = new ComputationState(_job, _parms, _dinfo, null, nclasses());
+      if(_foldGrams != null && _foldGramsDinfo.fullN() == _dinfo.fullN() && _foldGramsDinfo.numStart() == _dinfo.numStart())
+        _state.setFoldGrams(_foldGrams, _foldId, _foldGramsDinfo);
       // skipping extra rows? (outside of weights == 0)GLMT
       boolean skippingRows = (_parms._missing_values_handling == MissingValuesHandling.Skip && _train.hasNAs());
       if (hasWeightCol() || skippingRows) { // need to re-compute means and sd
@@ -643,6 +696,16 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
       return xy;
     }
 
+    // IRLSM step of the wide problems: the L2 penalty on the diagonal, then the tiled Cholesky and solve
+    private double[] DistributedGram_solve(DistributedGram dgram) {
+      if(_state.l2pen() > 0)
+        dgram.addDiag(_state.l2pen(), _parms._intercept);
+      dgram.cholesky();
+      double [] xy = dgram._xy.clone();
+      dgram.solve(xy); // NonSPDMatrixException if not positive definite
+      return Arrays.copyOf(xy, _state.activeData().fullN() + 1); // without intercept, its coefficient is 0
+    }
+
     private void fitIRLSM_multinomial(Solver s){
       assert _dinfo._responses == 3:"IRLSM for multinomial needs extra information encoded in additional reponses, expected 3 response vecs, got " + _dinfo._responses;
       double [] beta = _state.betaMultinomial();
@@ -760,16 +823,28 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
         while (true) {
           iterCnt++;
           long t1 = System.currentTimeMillis();
-          ComputationState.GramXY gram = _state.computeGram(betaCnd,s);
-          long t2 = System.currentTimeMillis();
-          if (!_state._lsNeeded && (Double.isNaN(gram.likelihood) || _state.objective(gram.beta, gram.likelihood) > _state.objective() + _parms._objective_epsilon)) {
-            _state._lsNeeded = true;
-          } else {
-            if (!firstIter && !_state._lsNeeded && !progress(gram.beta, gram.likelihood)) {
-              System.out.println("DONE after " + (iterCnt-1) + " iterations (1)");
-              return;
+          long t2;
+          // wide problems: the gram tiled across the cloud instead of reduced to one node
+          DistributedGram dgram = _state.distributedGram(s) ? _state.computeDistributedGram(betaCnd) : null;
+          try {
+            ComputationState.GramXY gram = dgram == null ? _state.computeGram(betaCnd, s) : null;
+            double[] gramBeta = dgram == null ? gram.beta : betaCnd;
+            double likelihood = dgram == null ? gram.likelihood : dgram._likelihood;
+            t2 = System.currentTimeMillis();
+            if (!_state._lsNeeded && (Double.isNaN(likelihood) || _state.objective(gramBeta, likelihood) > _state.objective() + _parms._objective_epsilon)) {
+              _state._lsNeeded = true;
+            } else {
+              if (!firstIter && !_state._lsNeeded && !progress(gramBeta, likelihood)) {
+                System.out.println("DONE after " + (iterCnt-1) + " iterations (1)");
+                return;
+              }
+              if (dgram != null)
+                betaCnd = DistributedGram_solve(dgram);
+              else
+                betaCnd = s == Solver.COORDINATE_DESCENT?COD_solve(gram,_state._alpha,_state.lambda()):ADMM_solve(gram.gram,gram.xy);
             }
-            betaCnd = s == Solver.COORDINATE_DESCENT?COD_solve(gram,_state._alpha,_state.lambda()):ADMM_solve(gram.gram,gram.xy);
+          } finally {
+            if (dgram != null) dgram.remove();
           }
           firstIter = false;
           long t3 = System.currentTimeMillis();
@@ -813,6 +888,9 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
           beta[beta.length - 1] = glmw.link(_state._ymu[0]);
       }
       L_BFGS lbfgs = new L_BFGS().setObjEps(_parms._objective_epsilon).setGradEps(_parms._gradient_epsilon).setMaxIter(_parms._max_iterations);
+      // on multiple nodes the barrier of each pass costs more than the gradients of extra line search steps
+      if (H2O.CLOUD.size() > 1 && _parms._family != Family.multinomial && _parms._family != Family.ordinal)
+        lbfgs.setLineSearchPoints(4);
       assert beta.length == _state.ginfo()._gradient.length;
       int P = _dinfo.fullN();
       if (l1pen > 0 || _state.activeBC().hasBounds()) {
@@ -873,6 +951,47 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
       }
     }
 
+    /**
+     * SVRG: every epoch takes mini-batch steps over all rows (local to the nodes, see GLMSGDTask),
+     * then computes the full gradient at the averaged model, which is the snapshot of the next
+     * epoch.  An epoch which does not decrease the objective is taken again with half the step.
+     */
+    private void fitSGD() {
+      double [] beta = _state.beta();
+      GLMGradientSolver gslvr = _state.gslvr();
+      if (beta == null) {
+        beta = MemoryManager.malloc8d(_state.activeData().fullN() + 1);
+        if (_parms._intercept)
+          beta[beta.length - 1] = new GLMWeightsFun(_parms).link(_state._ymu[0]);
+        _state.updateState(beta, gslvr.getGradient(beta));
+      }
+      beta = _state.beta().clone();
+      GLMGradientInfo ginfo = _state.ginfo();
+      double obj = _state.objective(beta, ginfo._likelihood);
+      BetaConstraint bc = _state.activeBC();
+      double stepScale = 1;
+      if(!_parms._lambda_search && _state._iter == 0)
+        updateProgress(false);
+      while (!timeout() && !_job.stop_requested()) {
+        double [] newBeta = new GLMSGDTask(_job._key, _state.activeData(), _parms, beta, ginfo._gradient, _nobs,
+            _state.l1pen(), _state.l2pen(), stepScale, bc._betaLB, bc._betaUB, _parms._seed + _state._iter)
+            .doAll(_state.activeData()._adaptedFrame)._nodeBeta;
+        GLMGradientInfo newGinfo = gslvr.getGradient(newBeta);
+        double newObj = _state.objective(newBeta, newGinfo._likelihood);
+        if (!(newObj <= obj)) {
+          stepScale *= .5;
+          Log.info(LogMsg("SGD, objective went up to " + newObj + ", step scale = " + stepScale));
+          if (stepScale < 1e-3) break;
+          continue;
+        }
+        beta = newBeta;
+        ginfo = newGinfo;
+        obj = newObj;
+        Log.info(LogMsg("SGD, objective = " + obj));
+        if (!progress(beta, ginfo)) break;
+      }
+    }
+
     private void fitCOD() {
       double [] beta = _state.beta();
       int p = _state.activeData().fullN()+ 1;
@@ -1047,6 +1166,9 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
         case COORDINATE_DESCENT_NAIVE:
           fitCOD();
           break;
+        case SGD:
+          fitSGD();
+          break;
         default:
           throw H2O.unimpl();
       }
@@ -1767,7 +1889,7 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
   /**
    * Gradient and line search computation for L_BFGS and also L_BFGS solver wrapper (for ADMM)
    */
-  public static final class GLMGradientSolver implements GradientSolver {
+  public static final class GLMGradientSolver implements MultiPointGradientSolver {
     final GLMParameters _parms;
     final DataInfo _dinfo;
     final BetaConstraint _bc;
@@ -1817,28 +1939,52 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
       } else {
         assert beta.length == _dinfo.fullN() + 1;
         assert _parms._intercept || (beta[beta.length-1] == 0);
-        GLMGradientTask gt;
-        if(_parms._family == Family.binomial && _parms._link == Link.logit)
-          gt = new GLMBinomialGradientTask(_job == null?null:_job._key,_dinfo,_parms,_l2pen, beta).doAll(_dinfo._adaptedFrame);
-        else if(_parms._family == Family.gaussian && _parms._link == Link.identity)
-          gt = new GLMGaussianGradientTask(_job == null?null:_job._key,_dinfo,_parms,_l2pen, beta).doAll(_dinfo._adaptedFrame);
-        else if(_parms._family == Family.poisson && _parms._link == Link.log)
-          gt = new GLMPoissonGradientTask(_job == null?null:_job._key,_dinfo,_parms,_l2pen, beta).doAll(_dinfo._adaptedFrame);
-        else if(_parms._family == Family.quasibinomial)
-          gt = new GLMQuasiBinomialGradientTask(_job == null?null:_job._key,_dinfo,_parms,_l2pen, beta).doAll(_dinfo._adaptedFrame);
-        else
-          gt = new GLMGenericGradientTask(_job == null?null:_job._key, _dinfo, _parms, _l2pen, beta).doAll(_dinfo._adaptedFrame);
-        double [] gradient = gt._gradient;
-        double  likelihood = gt._likelihood;
-        if (!_parms._intercept) // no intercept, null the ginfo
-          gradient[gradient.length - 1] = 0;
-        double obj = likelihood * _parms._obj_reg + .5 * _l2pen * ArrayUtils.l2norm2(beta, true);
-        if (_bc != null && _bc._betaGiven != null && _bc._rho != null)
-          obj = ProximalGradientSolver.proximal_gradient(gradient, obj, beta, _bc._betaGiven, _bc._rho);
-        return new GLMGradientInfo(likelihood, obj, gradient);
+        GLMGradientTask gt = gradientTask(beta).doAll(_dinfo._adaptedFrame);
+        return gradientInfo(beta, gt._gradient, gt._likelihood);
       }
     }
 
+    /**
+     * Gradients at beta + steps[k]*direction, for all k in one pass over the data (one pass per step
+     * for multinomial and ordinal).
+     */
+    @Override
+    public GLMGradientInfo [] getGradients(double [] beta, double [] direction, double [] steps) {
+      GLMGradientInfo [] res = new GLMGradientInfo[steps.length];
+      if (_parms._family == Family.multinomial || _parms._family == Family.ordinal) {
+        for (int k = 0; k < steps.length; ++k)
+          res[k] = getGradient(ArrayUtils.wadd(beta, direction, new double[beta.length], steps[k]));
+        return res;
+      }
+      GLMGradientTask gt = gradientTask(beta).setLine(direction, steps).doAll(_dinfo._adaptedFrame);
+      for (int k = 0; k < steps.length; ++k)
+        res[k] = gradientInfo(ArrayUtils.wadd(beta, direction, new double[beta.length], steps[k]), gt._gradients[k], gt._likelihoods[k]);
+      return res;
+    }
+
+    private GLMGradientTask gradientTask(double [] beta) {
+      Key jobKey = _job == null ? null : _job._key;
+      if(_parms._family == Family.binomial && _parms._link == Link.logit)
+        return new GLMBinomialGradientTask(jobKey, _dinfo, _parms, _l2pen, beta);
+      else if(_parms._family == Family.gaussian && _parms._link == Link.identity)
+        return new GLMGaussianGradientTask(jobKey, _dinfo, _parms, _l2pen, beta);
+      else if(_parms._family == Family.poisson && _parms._link == Link.log)
+        return new GLMPoissonGradientTask(jobKey, _dinfo, _parms, _l2pen, beta);
+      else if(_parms._family == Family.quasibinomial)
+        return new GLMQuasiBinomialGradientTask(jobKey, _dinfo, _parms, _l2pen, beta);
+      else
+        return new GLMGenericGradientTask(jobKey, _dinfo, _parms, _l2pen, beta);
+    }
+
+    private GLMGradientInfo gradientInfo(double [] beta, double [] gradient, double likelihood) {
+      if (!_parms._intercept) // no intercept, null the ginfo
+        gradient[gradient.length - 1] = 0;
+      double obj = likelihood * _parms._obj_reg + .5 * _l2pen * ArrayUtils.l2norm2(beta, true);
+      if (_bc != null && _bc._betaGiven != null && _bc._rho != null)
+        obj = ProximalGradientSolver.proximal_gradient(gradient, obj, beta, _bc._betaGiven, _bc._rho);
+      return new GLMGradientInfo(likelihood, obj, gradient);
+    }
+
     @Override
     public GradientInfo getObjective(double[] beta) {
       double l = new GLMResDevTask(_job._key,_dinfo,_parms,beta).doAll(_dinfo._adaptedFrame)._likelihood;
@@ -1,5 +1,6 @@
 package hex.glm;
 
+import hex.CSRMatrix;
 import hex.DataInfo;
 import hex.ModelMetrics;
 import water.Job;
@@ -167,8 +168,10 @@ public class GLMScore extends MRTask<GLMScore> {
     final int ncols = nc == 1 ? 1 : nc + 1; // Regression has 1 predict col; classification also has class distribution
     // compute
     if (_sparse) {
-      for (DataInfo.Row r : _dinfo.extractSparseRows(chks))
-        processRow(r,res,ps,preds,ncols);
+      CSRMatrix csr = _dinfo.extractCSR(chks);
+      DataInfo.Row r = csr.newRow(_dinfo);
+      for (int rid = 0; rid < csr._nrows; ++rid)
+        processRow(csr.row(rid, r),res,ps,preds,ncols);
     } else {
       DataInfo.Row r = _dinfo.newDenseRow();
       for (int rid = 0; rid < chks[0]._len; ++rid) {
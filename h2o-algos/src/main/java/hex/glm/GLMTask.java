@@ -1,5 +1,6 @@
 package hex.glm;
 
+import hex.CSRMatrix;
 import hex.DataInfo;
 import hex.DataInfo.Row;
 import hex.FrameTask2;
@@ -8,6 +9,7 @@ import hex.glm.GLMModel.GLMParameters.Family;
 import hex.glm.GLMModel.GLMParameters.Link;
 import hex.glm.GLMModel.GLMWeights;
 import hex.glm.GLMModel.GLMWeightsFun;
+import hex.gram.DistributedGram;
 import hex.gram.Gram;
 import water.*;
 import water.H2O.H2OCountedCompleter;
@@ -17,6 +19,7 @@ import water.util.ArrayUtils;
 import water.util.FrameUtils;
 import water.util.MathUtils;
 import water.util.MathUtils.BasicStats;
+import water.util.RandomUtils;
 
 import java.util.Arrays;
 
@@ -530,7 +533,7 @@ public abstract class GLMTask  {
     }
     protected abstract void computeGradientMultipliers(double [] es, double [] ys, double [] ws);
 
-    private final void computeCategoricalEtas(Chunk [] chks, double [] etas, double [] vals, int [] ids) {
+    private final void computeCategoricalEtas(Chunk [] chks, double [] etas, double [] vals, int [] ids, double [] beta) {
       // categoricals
       for(int cid = 0; cid < _dinfo._cats; ++cid){
         Chunk c = chks[cid];
@@ -538,19 +541,19 @@ public abstract class GLMTask  {
           int nvals = c.getSparseDoubles(vals,ids,-1);
           for(int i = 0; i < nvals; ++i){
             int id = _dinfo.getCategoricalId(cid,(int)vals[i]);
-            if(id >=0) etas[ids[i]] += _beta[id];
+            if(id >=0) etas[ids[i]] += beta[id];
           }
         } else {
           c.getIntegers(ids, 0, c._len,-1);
           for(int i = 0; i < ids.length; ++i){
             int id = _dinfo.getCategoricalId(cid,ids[i]);
-            if(id >=0) etas[i] += _beta[id];
+            if(id >=0) etas[i] += beta[id];
           }
         }
       }
     }
 
-    private final void computeCategoricalGrads(Chunk [] chks, double [] etas, double [] vals, int [] ids) {
+    private final void computeCategoricalGrads(Chunk [] chks, double [] etas, double [] vals, int [] ids, double [] gradient) {
       // categoricals
       for(int cid = 0; cid < _dinfo._cats; ++cid){
         Chunk c = chks[cid];
@@ -558,26 +561,26 @@ public abstract class GLMTask  {
           int nvals = c.getSparseDoubles(vals,ids,-1);
           for(int i = 0; i < nvals; ++i){
             int id = _dinfo.getCategoricalId(cid,(int)vals[i]);
-            if(id >=0) _gradient[id] += etas[ids[i]];
+            if(id >=0) gradient[id] += etas[ids[i]];
           }
         } else {
           c.getIntegers(ids, 0, c._len,-1);
           for(int i = 0; i < ids.length; ++i){
             int id = _dinfo.getCategoricalId(cid,ids[i]);
-            if(id >=0) _gradient[id] += etas[i];
+            if(id >=0) gradient[id] += etas[i];
           }
         }
       }
     }
 
-    private final void computeNumericEtas(Chunk [] chks, double [] etas, double [] vals, int [] ids) {
+    private final void computeNumericEtas(Chunk [] chks, double [] etas, double [] vals, int [] ids, double [] beta) {
       int numOff = _dinfo.numStart();
       for(int cid = 0; cid < _dinfo._nums; ++cid){
         double scale = _dinfo._normMul != null?_dinfo._normMul[cid]:1;
         double off = _dinfo._normSub != null?_dinfo._normSub[cid]:0;
         double NA = _dinfo._numMeans[cid];
         Chunk c = chks[cid+_dinfo._cats];
-        double b = scale*_beta[numOff+cid];
+        double b = scale*beta[numOff+cid];
         if(c.isSparseZero()){
           int nvals = c.getSparseDoubles(vals,ids,NA);
           for(int i = 0; i < nvals; ++i)
@@ -594,7 +597,7 @@ public abstract class GLMTask  {
       }
     }
 
-    private final void computeNumericGrads(Chunk [] chks, double [] etas, double [] vals, int [] ids) {
+    private final void computeNumericGrads(Chunk [] chks, double [] etas, double [] vals, int [] ids, double [] gradient) {
       int numOff = _dinfo.numStart();
       for(int cid = 0; cid < _dinfo._nums; ++cid){
         double NA = _dinfo._numMeans[cid];
@@ -605,27 +608,155 @@ public abstract class GLMTask  {
           int nVals = c.getSparseDoubles(vals,ids,NA);
           for(int i = 0; i < nVals; ++i)
             g += vals[i]*scale*etas[ids[i]];
-          _gradient[numOff+cid] = g;
+          gradient[numOff+cid] = g;
         } else if(c.isSparseNA()){
           double off = _dinfo._normSub == null?0:_dinfo._normSub[cid];
           double g = 0;
           int nVals = c.getSparseDoubles(vals,ids,NA);
           for(int i = 0; i < nVals; ++i)
             g += (vals[i]-off)*scale*etas[ids[i]];
-          _gradient[numOff+cid] = g;
+          gradient[numOff+cid] = g;
         } else {
           double off = _dinfo._normSub == null?0:_dinfo._normSub[cid];
           c.getDoubles(vals,0,vals.length,NA);
           double g = 0;
           for(int i = 0; i < vals.length; ++i)
             g += (vals[i]-off)*scale*etas[i];
-          _gradient[numOff+cid] = g;
+          gradient[numOff+cid] = g;
         }
       }
     }
 
+    // most of the predictor chunks are sparse (zeros not stored)
+    private boolean sparseChunks(Chunk [] chks) {
+      if(_dinfo._interactions != null) return false;
+      int cnt = 0;
+      for(int i = 0; i < _dinfo._cats + _dinfo._nums; ++i)
+        if(chks[i].isSparseZero()) ++cnt;
+      return 2*cnt > _dinfo._cats + _dinfo._nums;
+    }
+
+    // centering missing in the sparse numeric chunks (all of them if csr), goes to the intercept
+    private double sparseOffset(Chunk [] chks, double [] beta, boolean csr) {
+      double res = 0;
+      if(_dinfo._normSub != null) {
+        int numStart = _dinfo.numStart();
+        for(int i = 0; i < _dinfo._nums; ++i)
+          if(csr || chks[_dinfo._cats + i].isSparseZero())
+            res -= beta[numStart + i]*_dinfo._normSub[i]*_dinfo._normMul[i];
+      }
+      return res;
+    }
+
+    // gradient of the intercept, and its share of the numeric columns missing the centering
+    private void addIntercept(Chunk [] chks, double [] gradient, double icpt, boolean csr) {
+      gradient[gradient.length-1] = icpt;
+      if(_dinfo._normSub != null) {
+        int numStart = _dinfo.numStart();
+        for(int i = 0; i < _dinfo._nums; ++i)
+          if(csr || chks[_dinfo._cats + i].isSparseZero())
+            gradient[numStart + i] -= _dinfo._normSub[i] * _dinfo._normMul[i] * icpt;
+      }
+    }
+
+    // sparse chunks: extracted once into compressed sparse rows, then etas = X*beta and gradient = t(X)*multipliers
+    private void mapCSR(Chunk [] chks) {
+      CSRMatrix csr = _dinfo.extractCSR(chks);
+      final int n = csr._nrows;
+      Chunk response = chks[chks.length-1];
+      double [] ys = response.getDoubles(MemoryManager.malloc8d(n),0,n);
+      double [] ws = MemoryManager.malloc8d(n);
+      for(int i = 0; i < n; ++i)
+        ws[i] = csr._predictorsBad[i]?0:csr.weight(i);
+      double [] etas = csr._offsets == null?MemoryManager.malloc8d(n):csr._offsets.clone();
+      // no centering in the sparse rows, it goes to the intercept
+      ArrayUtils.add(etas,sparseOffset(chks,_beta,true) + _beta[_beta.length-1]);
+      csr.mul(_beta,etas);
+      computeGradientMultipliers(etas,ys,ws);
+      csr.tmul(etas,_gradient);
+      addIntercept(chks,_gradient,ArrayUtils.sum(etas),true);
+    }
+
+    // line search mode: gradients at _beta + _steps[k]*_direction, all in one pass
+    double [] _direction;
+    double [] _steps;
+    public double [][] _gradients;
+    public double [] _likelihoods;
+
+    /**
+     * Compute the gradients and likelihoods at beta + steps[k]*direction for every k (into _gradients
+     * and _likelihoods) instead of at beta, in one pass: the etas of a point are etas(beta) + steps[k]*etas(direction).
+     */
+    public GLMGradientTask setLine(double [] direction, double [] steps) {
+      _direction = direction;
+      _steps = steps;
+      return this;
+    }
+
+    private void mapLine(Chunk [] chks) {
+      final boolean sparse = sparseChunks(chks);
+      final CSRMatrix csr = sparse?_dinfo.extractCSR(chks):null;
+      Chunk response = chks[chks.length-1];
+      final int n = response._len;
+      double [] ys = response.getDoubles(MemoryManager.malloc8d(n),0,n);
+      double [] ws, etas;
+      double [] etad = MemoryManager.malloc8d(n);
+      double [] vals = null;
+      int [] ids = null;
+      if(sparse) {
+        ws = MemoryManager.malloc8d(n);
+        for(int i = 0; i < n; ++i)
+          ws[i] = csr._predictorsBad[i]?0:csr.weight(i);
+        etas = csr._offsets == null?MemoryManager.malloc8d(n):csr._offsets.clone();
+        ArrayUtils.add(etas,sparseOffset(chks,_beta,true) + _beta[_beta.length-1]);
+        csr.mul(_beta,etas);
+        ArrayUtils.add(etad,sparseOffset(chks,_direction,true) + _direction[_direction.length-1]);
+        csr.mul(_direction,etad);
+      } else {
+        Chunk weights = _dinfo._weights?chks[_dinfo.weightChunkId()]:new C0DChunk(1,n);
+        ws = weights.getDoubles(MemoryManager.malloc8d(n),0,n);
+        etas = MemoryManager.malloc8d(n);
+        if(_dinfo._offset)
+          chks[_dinfo.offsetChunkId()].getDoubles(etas,0,n);
+        vals = MemoryManager.malloc8d(n);
+        ids = MemoryManager.malloc4(n);
+        ArrayUtils.add(etas,sparseOffset(chks,_beta,false) + _beta[_beta.length-1]);
+        computeCategoricalEtas(chks,etas,vals,ids,_beta);
+        computeNumericEtas(chks,etas,vals,ids,_beta);
+        ArrayUtils.add(etad,sparseOffset(chks,_direction,false) + _direction[_direction.length-1]);
+        computeCategoricalEtas(chks,etad,vals,ids,_direction);
+        computeNumericEtas(chks,etad,vals,ids,_direction);
+      }
+      _gradients = new double[_steps.length][];
+      _likelihoods = MemoryManager.malloc8d(_steps.length);
+      double [] es = MemoryManager.malloc8d(n);
+      for(int k = 0; k < _steps.length; ++k) {
+        double [] g = _gradients[k] = MemoryManager.malloc8d(_beta.length);
+        ArrayUtils.wadd(etas,etad,es,_steps[k]);
+        _likelihood = 0;
+        computeGradientMultipliers(es,ys,ws);
+        _likelihoods[k] = _likelihood;
+        if(sparse)
+          csr.tmul(es,g);
+        else {
+          computeCategoricalGrads(chks,es,vals,ids,g);
+          computeNumericGrads(chks,es,vals,ids,g);
+        }
+        addIntercept(chks,g,ArrayUtils.sum(es),sparse);
+      }
+      _likelihood = 0;
+    }
+
     public void map(Chunk [] chks) {
+      if(_steps != null) {
+        mapLine(chks);
+        return;
+      }
       _gradient = MemoryManager.malloc8d(_beta.length);
+      if(sparseChunks(chks)) {
+        mapCSR(chks);
+        return;
+      }
       Chunk response = chks[chks.length-1];
       Chunk weights = _dinfo._weights?chks[_dinfo.weightChunkId()]:new C0DChunk(1,response._len);
       double [] ws = weights.getDoubles(MemoryManager.malloc8d(weights._len),0,weights._len);
@@ -633,40 +764,39 @@ public abstract class GLMTask  {
       double [] etas = MemoryManager.malloc8d(response._len);
       if(_dinfo._offset)
         chks[_dinfo.offsetChunkId()].getDoubles(etas,0,etas.length);
-      double sparseOffset = 0;
-      int numStart = _dinfo.numStart();
-      if(_dinfo._normSub != null)
-        for(int i = 0; i < _dinfo._nums; ++i)
-          if(chks[_dinfo._cats + i].isSparseZero())
-            sparseOffset -= _beta[numStart + i]*_dinfo._normSub[i]*_dinfo._normMul[i];
-      ArrayUtils.add(etas,sparseOffset + _beta[_beta.length-1]);
+      ArrayUtils.add(etas,sparseOffset(chks,_beta,false) + _beta[_beta.length-1]);
       double [] vals = MemoryManager.malloc8d(response._len);
       int [] ids = MemoryManager.malloc4(response._len);
-      computeCategoricalEtas(chks,etas,vals,ids);
-      computeNumericEtas(chks,etas,vals,ids);
+      computeCategoricalEtas(chks,etas,vals,ids,_beta);
+      computeNumericEtas(chks,etas,vals,ids,_beta);
       computeGradientMultipliers(etas,ys,ws);
       // walk the chunks again, add to the gradient
-      computeCategoricalGrads(chks,etas,vals,ids);
-      computeNumericGrads(chks,etas,vals,ids);
+      computeCategoricalGrads(chks,etas,vals,ids,_gradient);
+      computeNumericGrads(chks,etas,vals,ids,_gradient);
       // add intercept
-      _gradient[_gradient.length-1] = ArrayUtils.sum(etas);
-      if(_dinfo._normSub != null) {
-        double icpt = _gradient[_gradient.length-1];
-        for(int i = 0; i < _dinfo._nums; ++i) {
-          if(chks[_dinfo._cats+i].isSparseZero()) {
-            double d = _dinfo._normSub[i] * _dinfo._normMul[i];
-            _gradient[numStart + i] -= d * icpt;
-          }
-        }
-      }
+      addIntercept(chks,_gradient,ArrayUtils.sum(etas),false);
     }
 
     @Override
     public final void reduce(GLMGradientTask gmgt){
+      if(_steps != null) {
+        for(int k = 0; k < _gradients.length; ++k)
+          ArrayUtils.add(_gradients[k],gmgt._gradients[k]);
+        ArrayUtils.add(_likelihoods,gmgt._likelihoods);
+        return;
+      }
       ArrayUtils.add(_gradient,gmgt._gradient);
       _likelihood += gmgt._likelihood;
     }
     @Override public final void postGlobal(){
+      if(_steps != null) {
+        for(int k = 0; k < _gradients.length; ++k) {
+          ArrayUtils.mult(_gradients[k],_reg);
+          for(int j = 0; j < _beta.length - 1; ++j)
+            _gradients[k][j] += _currentLambda * (_beta[j] + _steps[k]*_direction[j]);
+        }
+        return;
+      }
       ArrayUtils.mult(_gradient,_reg);
       for(int j = 0; j < _beta.length - 1; ++j)
         _gradient[j] += _currentLambda * _beta[j];
@@ -783,6 +913,157 @@ public abstract class GLMTask  {
     }
   }
 
+  /**
+   * One epoch of the SGD solver: mini-batch steps over the rows of the local chunks, variance reduced
+   * (SVRG): the gradient of a batch at beta minus its gradient at the snapshot _beta, plus the full
+   * gradient at the snapshot.  L1 by soft thresholding, bounds by clipping, intercept not penalized.
+   *
+   * All chunks of a node update one node local copy of the coefficients, without locking (like the
+   * DeepLearning model), the node models are averaged, weighted by their rows, in reduce.  The result
+   * is _nodeBeta.
+   */
+  static class GLMSGDTask extends MRTask<GLMSGDTask> {
+    static final int BATCH_SIZE = 32;
+    final Key<Job> _jobKey;
+    transient Job _job;
+    final DataInfo _dinfo;
+    final GLMWeightsFun _glmf;
+    final boolean _canonical;  // row gradient is w*(mu - y)
+    final double [] _beta;     // the snapshot
+    final double [] _fullGrad; // full gradient at the snapshot, l2 penalty included
+    final double _scale;       // obj_reg * nobs, from the average of a batch to the whole data
+    final double _l1pen;
+    final double _l2pen;
+    final double _stepScale;
+    final double [] _betaLB;
+    final double [] _betaUB;
+    final long _seed;
+    double [] _nodeBeta;       // per node model, the averaged coefficients after the task
+    long _nobs;
+
+    public GLMSGDTask(Key<Job> jobKey, DataInfo dinfo, GLMParameters parms, double [] beta, double [] fullGrad, long nobs,
+                      double l1pen, double l2pen, double stepScale, double [] betaLB, double [] betaUB, long seed) {
+      _jobKey = jobKey;
+      _dinfo = dinfo;
+      _glmf = new GLMWeightsFun(parms);
+      _canonical = parms._family == Family.quasibinomial
+          || (parms._family == Family.binomial && parms._link == Link.logit)
+          || (parms._family == Family.poisson && parms._link == Link.log)
+          || (parms._family == Family.gaussian && parms._link == Link.identity);
+      _beta = beta;
+      _fullGrad = fullGrad;
+      _scale = parms._obj_reg * nobs;
+      _l1pen = l1pen;
+      _l2pen = l2pen;
+      _stepScale = stepScale;
+      _betaLB = betaLB;
+      _betaUB = betaUB;
+      _seed = seed;
+    }
+
+    private double rowGradient(double y, double mu, double w) {
+      if(_canonical) return w * (mu - y);
+      double var = _glmf.variance(mu);
+      if (var < 1e-6) var = 1e-6;
+      return w * (mu - y) / (var * _glmf.linkDeriv(mu));
+    }
+
+    // curvature of the row loss at mu times |x|^2, intercept included
+    private double rowLipschitz(Row r, double mu) {
+      double var = _glmf.variance(mu);
+      if (var < 1e-6) var = 1e-6;
+      double d = _glmf.linkDeriv(mu);
+      double x2 = r.nBins + 1;
+      int n = r.numIds == null ? r.numVals.length : r.nNums;
+      for (int i = 0; i < n; ++i)
+        x2 += r.numVals[i] * r.numVals[i];
+      return r.weight * x2 / (var * d * d);
+    }
+
+    @Override protected void setupLocal() {
+      if(_jobKey != null) _job = _jobKey.get();
+      _nodeBeta = _beta.clone();
+    }
+
+    @Override public void map(Chunk [] chks) {
+      if(_job != null && _job.stop_requested()) throw new Job.JobCancelledException();
+      DataInfo.Rows rows = _dinfo.rows(chks);
+      final boolean sparse = rows._sparse;
+      final boolean center = sparse && _dinfo._normSub != null;
+      final int numStart = _dinfo.numStart();
+      // row gradients at the snapshot
+      int [] ids = MemoryManager.malloc4(rows._nrows);
+      double [] g0 = MemoryManager.malloc8d(rows._nrows);
+      double off0 = sparse ? GLM.sparseOffset(_beta, _dinfo) : 0;
+      double lmax = 0;
+      int n = 0;
+      for (int i = 0; i < rows._nrows; ++i) {
+        Row r = rows.row(i);
+        if (r.isBad() || r.weight == 0) continue;
+        double mu = _glmf.linkInv(r.innerProduct(_beta) + off0 + r.offset);
+        lmax = Math.max(lmax, rowLipschitz(r, mu));
+        g0[n] = rowGradient(r.response(0), mu, r.weight);
+        ids[n++] = i;
+      }
+      if (n == 0 || lmax == 0) return;
+      int [] perm = new int[n];
+      for (int i = 0; i < n; ++i) perm[i] = i;
+      ArrayUtils.shuffleArray(perm, RandomUtils.getRNG(_seed + chks[0].cidx()));
+      final double step = _stepScale / (_scale * lmax);
+      final int P = _nodeBeta.length - 1;
+      final double [] beta = _nodeBeta;
+      double [] diff = MemoryManager.malloc8d(beta.length);
+      for (int b = 0; b < n; b += BATCH_SIZE) {
+        int e = Math.min(n, b + BATCH_SIZE);
+        double off = sparse ? GLM.sparseOffset(beta, _dinfo) : 0;
+        double sum = 0;
+        for (int k = b; k < e; ++k) {
+          int j = perm[k];
+          Row r = rows.row(ids[j]);
+          double d = rowGradient(r.response(0), _glmf.linkInv(r.innerProduct(beta) + off + r.offset), r.weight) - g0[j];
+          if (d == 0) continue;
+          r.addToArray(d, diff);
+          sum += d;
+        }
+        if (center) // missing centering of the sparse rows
+          for (int i = 0; i < _dinfo._nums; ++i)
+            diff[numStart + i] -= _dinfo._normSub[i] * _dinfo._normMul[i] * sum;
+        double c = _scale / (e - b);
+        for (int j = 0; j < beta.length; ++j) {
+          double g = _fullGrad[j] + c * diff[j];
+          diff[j] = 0;
+          double x;
+          if (j < P) {
+            g += _l2pen * (beta[j] - _beta[j]);
+            x = beta[j] - step * g;
+            if (_l1pen > 0) {
+              double t = step * _l1pen;
+              x = x > t ? x - t : (x < -t ? x + t : 0);
+            }
+          } else
+            x = beta[j] - step * g;
+          if (_betaLB != null && x < _betaLB[j]) x = _betaLB[j];
+          if (_betaUB != null && x > _betaUB[j]) x = _betaUB[j];
+          beta[j] = x;
+        }
+      }
+      _nobs += n;
+    }
+
+    @Override public void reduce(GLMSGDTask t) {
+      if (t._nodeBeta != _nodeBeta && t._nobs > 0) { // another node, average weighted by the rows
+        if (_nobs == 0)
+          _nodeBeta = t._nodeBeta;
+        else {
+          double a = (double) t._nobs / (_nobs + t._nobs);
+          for (int i = 0; i < _nodeBeta.length; ++i)
+            _nodeBeta[i] += a * (t._nodeBeta[i] - _nodeBeta[i]);
+        }
+      }
+      _nobs += t._nobs;
+    }
+  }
+
   // share between multinomial and ordinal regression
   static class GLMMultinomialGradientTask extends MRTask<GLMMultinomialGradientTask> {
     final double [][] _beta;
@@ -830,91 +1111,6 @@ public abstract class GLMTask  {
       _link = glmp._link;
       _glmp = glmp;
     }
-    // common between multinomial and ordinal
-    private final void computeCategoricalEtas(Chunk [] chks, double [][] etas, double [] vals, int [] ids) {
-      // categoricals
-      for(int cid = 0; cid < _dinfo._cats; ++cid){
-        Chunk c = chks[cid];
-        if(c.isSparseZero()) {
-          int nvals = c.getSparseDoubles(vals,ids,-1);
-          for(int i = 0; i < nvals; ++i){
-            int id = _dinfo.getCategoricalId(cid,(int)vals[i]);
-            if(id >=0)ArrayUtils.add(etas[ids[i]],_beta[id]);
-          }
-        } else {
-          c.getIntegers(ids, 0, c._len,-1);
-          for(int i = 0; i < ids.length; ++i){
-            int id = _dinfo.getCategoricalId(cid,ids[i]);
-            if(id >=0) ArrayUtils.add(etas[i],_beta[id]);
-          }
-        }
-      }
-    }
-
-    private final void computeCategoricalGrads(Chunk [] chks, double [][] etas, double [] vals, int [] ids) {
-      // categoricals
-      for(int cid = 0; cid < _dinfo._cats; ++cid){
-        Chunk c = chks[cid];
-        if(c.isSparseZero()) {
-          int nvals = c.getSparseDoubles(vals,ids,-1);
-          for(int i = 0; i < nvals; ++i){
-            int id = _dinfo.getCategoricalId(cid,(int)vals[i]);
-            if(id >=0) ArrayUtils.add(_gradient[id],etas[ids[i]]);
-          }
-        } else {
-          c.getIntegers(ids, 0, c._len,-1);
-          for(int i = 0; i < ids.length; ++i){
-            int id = _dinfo.getCategoricalId(cid,ids[i]);
-            if(id >=0) ArrayUtils.add(_gradient[id],etas[i]);
-          }
-        }
-      }
-    }
-
-    private final void computeNumericEtas(Chunk [] chks, double [][] etas, double [] vals, int [] ids) {
-      int numOff = _dinfo.numStart();
-      for(int cid = 0; cid < _dinfo._nums; ++cid){
-        double [] b = _beta[numOff+cid];
-        double scale = _dinfo._normMul != null?_dinfo._normMul[cid]:1;
-        double NA = _dinfo._numMeans[cid];
-        Chunk c = chks[cid+_dinfo._cats];
-        if(c.isSparseZero() || c.isSparseNA()){
-          int nvals = c.getSparseDoubles(vals,ids,NA);
-          for(int i = 0; i < nvals; ++i) {
-            double d = vals[i]*scale;
-            ArrayUtils.wadd(etas[ids[i]],b,d);
-          }
-        } else {
-          c.getDoubles(vals,0,vals.length,NA);
-          double off = _dinfo._normSub != null?_dinfo._normSub[cid]:0;
-          for(int i = 0; i < vals.length; ++i) {
-            double d = (vals[i] - off) * scale;
-            ArrayUtils.wadd(etas[i],b,d);
-          }
-        }
-      }
-    }
-
-    private final void computeNumericGrads(Chunk [] chks, double [][] etas, double [] vals, int [] ids) {
-      int numOff = _dinfo.numStart();
-      for(int cid = 0; cid < _dinfo._nums; ++cid){
-        double [] g = _gradient[numOff + cid];
-        double NA = _dinfo._numMeans[cid];
-        Chunk c = chks[cid+_dinfo._cats];
-        double scale = _dinfo._normMul == null?1:_dinfo._normMul[cid];
-        if(c.isSparseZero() || c.isSparseNA()){
-          int nVals = c.getSparseDoubles(vals,ids,NA);
-          for (int i = 0; i < nVals; ++i)
-            ArrayUtils.wadd(g,etas[ids[i]],vals[i] * scale);
-        } else {
-          double off = _dinfo._normSub == null?0:_dinfo._normSub[cid];
-          c.getDoubles(vals,0,vals.length,NA);
-          for(int i = 0; i < vals.length; ++i)
-            ArrayUtils.wadd(g,etas[i],(vals[i] - off) * scale);
-        }
-      }
-    }
-
     // This method will compute the multipliers for gradient calculation of the betas in etas and for
     // the intercepts in etas_offsets for each row of data
     final void computeGradientMultipliersLH(double [][] etas, double [][] etasOffset, double [] ys, double [] ws) {
@@ -1015,60 +1211,159 @@ public abstract class GLMTask  {
       }
     }
 
+    // rows per block: the etas of a block (rows x classes) stay in cache while the coefficients stream by
+    static int blockRows(int K) {return Math.max(8, Math.min(256, 4096 / K));}
+
+    /**
+     * Rows in blocks, for each block etas = X*beta for all classes at once (coefficients are [P][K],
+     * one contiguous row of classes per predictor), then the multipliers and gradient += t(X)*etas.
+     * The expanded categorical ids and the sparse columns are extracted once per chunk, the values of
+     * the dense columns once per block, all buffers are reused by the blocks.
+     */
     @Override public void map(Chunk[] chks) {
       if(_job != null && _job.stop_requested()) throw new Job.JobCancelledException();
-      int numStart = _dinfo.numStart();
-      int K = _beta[0].length;// number of classes
-      int P = _beta.length;   // number of predictors (+ intercept)
-      int M = chks[0]._len;   // number of rows in this chunk of data
+      final int numStart = _dinfo.numStart();
+      final int K = _beta[0].length;// number of classes
+      final int P = _beta.length;   // number of predictors (+ intercept)
+      final int M = chks[0]._len;   // number of rows in this chunk of data
+      final int B = Math.min(M, blockRows(K));
+      final int ncats = _dinfo._cats;
+      final int nnums = _dinfo._nums;
       _gradient = new double[P][K];
-      double [][] etas = new double[M][K];  // store multiplier for non-intercept parameters
-      double [][] etasOffset = new double[M][K];  // store multiplier for intercept parameters
-      double[] offsets = new double[K];
-      for(int k = 0; k < K; ++k)
-        offsets[k] = _beta[P-1][k]; // intercept
+      double[] offsets = _beta[P-1].clone(); // intercept
       // sparse offset + intercept
       if(_dinfo._normSub != null) {
-        for(int i = 0; i < _dinfo._nums; ++i)
-          if(chks[_dinfo._cats + i].isSparseZero())
+        for(int i = 0; i < nnums; ++i)
+          if(chks[ncats + i].isSparseZero())
             ArrayUtils.wadd(offsets,_beta[numStart + i], -_dinfo._normSub[i]*_dinfo._normMul[i]);
       }
-      for (int i = 0; i < chks[0]._len; ++i)
-        System.arraycopy(offsets, 0, etas[i], 0, K);
-      Chunk response = chks[_dinfo.responseChunkId(0)];
-      double [] ws = MemoryManager.malloc8d(M);
-      if(_dinfo._weights) ws = chks[_dinfo.weightChunkId()].getDoubles(ws,0,M);
-      else Arrays.fill(ws,1);
-      chks = Arrays.copyOf(chks,chks.length-1-(_dinfo._weights?1:0));
       double [] vals = MemoryManager.malloc8d(M);
       int [] ids = MemoryManager.malloc4(M);
-      computeCategoricalEtas(chks,etas,vals,ids);
-      computeNumericEtas(chks,etas,vals,ids);
-      if (_glmp != null && _link == Link.ologit && (_glmp._solver.equals(GLMParameters.Solver.AUTO) ||
-              _glmp._solver.equals((GLMParameters.Solver.GRADIENT_DESCENT_LH))))  // gradient is stored in etas
-        computeGradientMultipliersLH(etas, etasOffset, response.getDoubles(vals, 0, M), ws);
-      else if (_glmp != null && _link == Link.ologit && _glmp._solver.equals(GLMParameters.Solver.GRADIENT_DESCENT_SQERR))
-        computeGradientMultipliersSQERR(etas, etasOffset, response.getDoubles(vals, 0, M), ws);
-      else
-        computeGradientMultipliers(etas, response.getDoubles(vals, 0, M), ws);
-
-      computeCategoricalGrads(chks, etas, vals, ids);
-      computeNumericGrads(chks, etas, vals, ids);
-
-      double [] g = _gradient[P-1]; // get the intercept gradient.
-      // sum up the gradient over the data rows in this chk[]
-      if (_link == Link.ologit) {
-        for (int i = 0; i < etasOffset.length; ++i)
-          ArrayUtils.add(g, etasOffset[i]);
-      } else {
-        for (int i = 0; i < etas.length; ++i)
-          ArrayUtils.add(g, etas[i]);
+      // expanded categorical ids, row major
+      int [] catIds = MemoryManager.malloc4(M*ncats);
+      for(int cid = 0; cid < ncats; ++cid){
+        Chunk c = chks[cid];
+        if(c.isSparseZero()) {
+          for(int i = 0; i < M; ++i)
+            catIds[i*ncats + cid] = -1;
+          int nvals = c.getSparseDoubles(vals,ids,-1);
+          for(int i = 0; i < nvals; ++i)
+            catIds[ids[i]*ncats + cid] = _dinfo.getCategoricalId(cid,(int)vals[i]);
+        } else {
+          c.getIntegers(ids, 0, M,-1);
+          for(int i = 0; i < M; ++i)
+            catIds[i*ncats + cid] = _dinfo.getCategoricalId(cid,ids[i]);
+        }
+      }
+      // sparse numeric columns (scaled), dense ones are read by blocks
+      int [] dense = new int[nnums];
+      int ndense = 0;
+      int [][] spIds = new int[nnums][];
+      double [][] spVals = new double[nnums][];
+      for(int cid = 0; cid < nnums; ++cid){
+        Chunk c = chks[ncats + cid];
+        if(c.isSparseZero() || c.isSparseNA()){
+          double scale = _dinfo._normMul == null?1:_dinfo._normMul[cid];
+          double off = c.isSparseNA() && _dinfo._normSub != null?_dinfo._normSub[cid]:0;
+          int nvals = c.getSparseDoubles(vals,ids,_dinfo._numMeans[cid]);
+          spIds[cid] = Arrays.copyOf(ids,nvals);
+          double [] v = spVals[cid] = MemoryManager.malloc8d(nvals);
+          for(int i = 0; i < nvals; ++i)
+            v[i] = (vals[i] - off)*scale;
+        } else dense[ndense++] = cid;
+      }
+      int [] spPos = new int[nnums];
+      double [] xb = MemoryManager.malloc8d(ndense*B); // dense values of the block, column major
+      final boolean ordinal = _link == Link.ologit;
+      double [][] etasBlock = new double[B][K];  // store multiplier for non-intercept parameters
+      double [][] etasOffsetBlock = ordinal?new double[B][K]:null;  // store multiplier for intercept parameters
+      double [] ys = MemoryManager.malloc8d(B);
+      double [] ws = MemoryManager.malloc8d(B);
+      Chunk response = chks[_dinfo.responseChunkId(0)];
+      Chunk weights = _dinfo._weights?chks[_dinfo.weightChunkId()]:null;
+      if(weights == null) Arrays.fill(ws,1);
+      double [] gIcpt = _gradient[P-1];
+      for(int r0 = 0; r0 < M; r0 += B) {
+        final int r1 = Math.min(M, r0 + B);
+        final int n = r1 - r0;
+        double [][] etas = n == B?etasBlock:Arrays.copyOf(etasBlock,n);
+        double [][] etasOffset = ordinal?(n == B?etasOffsetBlock:Arrays.copyOf(etasOffsetBlock,n)):null;
+        for(int r = 0; r < n; ++r) {
+          System.arraycopy(offsets, 0, etas[r], 0, K);
+          if(ordinal) Arrays.fill(etasOffset[r],0);
+        }
+        // etas = X*beta
+        for(int r = 0; r < n; ++r) {
+          int off = (r0 + r)*ncats;
+          for(int c = 0; c < ncats; ++c) {
+            int id = catIds[off + c];
+            if(id >= 0) ArrayUtils.add(etas[r],_beta[id]);
+          }
+        }
+        for(int j = 0; j < ndense; ++j) {
+          int cid = dense[j];
+          double scale = _dinfo._normMul != null?_dinfo._normMul[cid]:1;
+          double off = _dinfo._normSub != null?_dinfo._normSub[cid]:0;
+          chks[ncats + cid].getDoubles(vals,r0,r1,_dinfo._numMeans[cid]);
+          double [] b = _beta[numStart + cid];
+          int xo = j*B;
+          for(int r = 0; r < n; ++r) {
+            double x = xb[xo + r] = (vals[r] - off)*scale;
+            if(x != 0) ArrayUtils.wadd(etas[r],b,x);
+          }
+        }
+        for(int cid = 0; cid < nnums; ++cid) {
+          int [] sid = spIds[cid];
+          if(sid == null) continue;
+          double [] b = _beta[numStart + cid];
+          double [] v = spVals[cid];
+          for(int k = spPos[cid]; k < sid.length && sid[k] < r1; ++k)
+            ArrayUtils.wadd(etas[sid[k] - r0],b,v[k]);
+        }
+        // multipliers
+        response.getDoubles(ys,r0,r1);
+        if(weights != null) weights.getDoubles(ws,r0,r1);
+        if (_glmp != null && ordinal && (_glmp._solver.equals(GLMParameters.Solver.AUTO) ||
+                _glmp._solver.equals((GLMParameters.Solver.GRADIENT_DESCENT_LH))))  // gradient is stored in etas
+          computeGradientMultipliersLH(etas, etasOffset, ys, ws);
+        else if (_glmp != null && ordinal && _glmp._solver.equals(GLMParameters.Solver.GRADIENT_DESCENT_SQERR))
+          computeGradientMultipliersSQERR(etas, etasOffset, ys, ws);
+        else
+          computeGradientMultipliers(etas, ys, ws);
+        // gradient += t(X)*etas
+        for(int r = 0; r < n; ++r) {
+          int off = (r0 + r)*ncats;
+          for(int c = 0; c < ncats; ++c) {
+            int id = catIds[off + c];
+            if(id >= 0) ArrayUtils.add(_gradient[id],etas[r]);
+          }
+        }
+        for(int j = 0; j < ndense; ++j) {
+          double [] g = _gradient[numStart + dense[j]];
+          int xo = j*B;
+          for(int r = 0; r < n; ++r) {
+            double x = xb[xo + r];
+            if(x != 0) ArrayUtils.wadd(g,etas[r],x);
+          }
+        }
+        for(int cid = 0; cid < nnums; ++cid) {
+          int [] sid = spIds[cid];
+          if(sid == null) continue;
+          double [] g = _gradient[numStart + cid];
+          double [] v = spVals[cid];
+          int k = spPos[cid];
+          for(; k < sid.length && sid[k] < r1; ++k)
+            ArrayUtils.wadd(g,etas[sid[k] - r0],v[k]);
+          spPos[cid] = k;
+        }
+        // sum up the intercept gradient over the rows of the block
+        for(int r = 0; r < n; ++r)
+          ArrayUtils.add(gIcpt, ordinal?etasOffset[r]:etas[r]);
       }
       if(_dinfo._normSub != null) {
-        double [] icpt = _gradient[P-1];
-        for(int i = 0; i < _dinfo._normSub.length; ++i) {
-          if(chks[_dinfo._cats+i].isSparseZero())
-            ArrayUtils.wadd(_gradient[numStart+i],icpt,-_dinfo._normSub[i]*_dinfo._normMul[i]);
+        for(int i = 0; i < nnums; ++i) {
+          if(chks[ncats+i].isSparseZero())
+            ArrayUtils.wadd(_gradient[numStart+i],gIcpt,-_dinfo._normSub[i]*_dinfo._normMul[i]);
         }
       }
     }
@@ -1379,9 +1674,11 @@ public abstract class GLMTask  {
       }
       if(_dinfo._intercept)
         _xy[_xy.length-1] += wz;
-      _gram.addRow(r, w);
+      _gram.addRowBatched(r, w);
     }
 
+    @Override public void chunkDone(){_gram.flushRows();}
+
     @Override
     public void reduce(GLMIterationTaskMultinomial glmt) {
       ArrayUtils.add(_xy,glmt._xy);
@@ -1524,11 +1821,14 @@ public abstract class GLMTask  {
       }
       if(_dinfo._intercept)
         _xy[_xy.length-1] += wz;
-      _gram.addRow(r,w);
+      _gram.addRowBatched(r,w);
     }
 
     @Override
-    public void chunkDone(){adjustForSparseStandardizedZeros();}
+    public void chunkDone(){
+      _gram.flushRows();
+      adjustForSparseStandardizedZeros();
+    }
 
     @Override
     public void reduce(GLMIterationTask git){
@@ -1574,6 +1874,37 @@ public abstract class GLMTask  {
     }
   }
 
+  /**
+   * IRLSM working weights and response of the rows at beta, as computed by the GLMIterationTask, for
+   * a {@link DistributedGram}.  The weights are scaled by obj_reg.
+   */
+  public static class GLMRowWeights extends DistributedGram.RowWeights {
+    final GLMWeightsFun _glmf;
+    final double [] _beta;
+    final double _objReg;
+
+    public GLMRowWeights(GLMWeightsFun glmf, double [] beta, double objReg) {
+      _glmf = glmf;
+      _beta = beta;
+      _objReg = objReg;
+    }
+
+    @Override
+    public void compute(Row r, double [] wzl) {
+      double y = r.response(0);
+      if(_beta != null) {
+        GLMWeights w = _glmf.computeWeights(y, r.innerProduct(_beta), r.offset, r.weight, new GLMWeights());
+        wzl[0] = _objReg*w.w;
+        wzl[1] = w.z;
+        wzl[2] = w.l;
+      } else {
+        wzl[0] = _objReg*r.weight;
+        wzl[1] = y - r.offset;
+        wzl[2] = 0;
+      }
+    }
+  }
+
  /* public static class GLMCoordinateDescentTask extends FrameTask2<GLMCoordinateDescentTask> {
     final GLMParameters _params;
     final double [] _betaw;
@@ -1960,6 +2291,83 @@ public abstract class GLMTask  {
     public void reduce(ComputeSETsk c){_sumsqe += c._sumsqe; _wsum += c._wsum;}
   }
 
+  /**
+   * Gram matrices, t(x)*y and t(y)*y of the holdout rows of every cross-validation fold, in one pass.
+   * Gaussian family with identity link only, where the gram does not depend on beta.
+   *
+   * The fold of a row is the first of the holdout weight vecs (appended to the frame, one per fold)
+   * which is not 0 for it.  The training data of fold f are the holdout rows of all the other folds,
+   * so its gram is the sum of their holdout grams.
+   */
+  static class GLMFoldGramTask extends FrameTask2<GLMFoldGramTask> {
+    final int _nfolds;
+    Gram [] _grams;
+    double [][] _xy;
+    double [] _yy;
+
+    private transient Chunk [] _holdout;
+
+    public GLMFoldGramTask(Key jobKey, DataInfo dinfo, int nfolds) {
+      super(null,dinfo,jobKey);
+      _nfolds = nfolds;
+    }
+
+    @Override public void chunkInit() {
+      _grams = new Gram[_nfolds];
+      _xy = new double[_nfolds][];
+      _yy = MemoryManager.malloc8d(_nfolds);
+    }
+
+    @Override public void map(Chunk [] chks) {
+      _holdout = Arrays.copyOfRange(chks, chks.length - _nfolds, chks.length);
+      super.map(chks);
+    }
+
+    @Override
+    protected void processRow(Row r) {
+      int f = 0;
+      while(f < _nfolds && _holdout[f].atd(r.cid) == 0) ++f;
+      if(f == _nfolds) return;
+      if(_grams[f] == null) { // folds are allocated as they show up in the chunk
+        _grams[f] = new Gram(_dinfo.fullN(), _dinfo.largestCat(), _dinfo.numNums(), _dinfo._cats, true);
+        _xy[f] = MemoryManager.malloc8d(_dinfo.fullN() + 1); // + 1 is for intercept
+      }
+      double y = r.response(0);
+      _yy[f] += y*y;
+      double w = r.weight;
+      double wz = w*(y - r.offset);
+      double [] xy = _xy[f];
+      final int numStart = _dinfo.numStart();
+      for(int i = 0; i < r.nBins; ++i)
+        xy[r.binIds[i]] += wz;
+      for(int i = 0; i < r.nNums; ++i)
+        xy[i + numStart] += wz*r.numVals[i];
+      xy[xy.length-1] += wz;
+      _grams[f].addRowBatched(r,w);
+    }
+
+    @Override
+    public void chunkDone() {
+      for(Gram g:_grams)
+        if(g != null) g.flushRows();
+    }
+
+    @Override
+    public void reduce(GLMFoldGramTask t) {
+      for(int f = 0; f < _nfolds; ++f) {
+        if(_grams[f] == null) {
+          _grams[f] = t._grams[f];
+          _xy[f] = t._xy[f];
+        } else if(t._grams[f] != null) {
+          _grams[f].add(t._grams[f]);
+          ArrayUtils.add(_xy[f], t._xy[f]);
+        }
+      }
+      ArrayUtils.add(_yy, t._yy);
+      super.reduce(t);
+    }
+  }
+
   static class GLMIncrementalGramTask extends MRTask<GLMIncrementalGramTask> {
     final int[] _newCols;
     final DataInfo _dinfo;
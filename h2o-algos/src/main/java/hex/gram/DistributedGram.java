@@ -0,0 +1,463 @@
+package hex.gram;
+
+import hex.DataInfo;
+import hex.DataInfo.Row;
+import hex.FrameTask2;
+import jsr166y.ForkJoinTask;
+import jsr166y.RecursiveAction;
+import water.*;
+import water.util.ArrayUtils;
+import water.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * Gram matrix split in square tiles, the tiles homed round-robin across the cloud in the DKV.
+ *
+ * For very wide problems (tens of thousands of expanded columns) a {@link Gram} does not fit one JVM
+ * (it is reduced whole to one node, and {@link Gram#cholesky} factors it there).  Here no node holds
+ * more than its share of tiles, plus the few tiles it reads: the gram is computed a batch of tiles
+ * at a time ({@link #compute}), and the Cholesky factorization is the tiled right-looking one, every
+ * step run on the nodes where the tiles live ({@link #cholesky}).  The triangular solves go one tile
+ * row at a time, the products with the off-diagonal tiles computed where the tiles are.
+ *
+ * Tile (I,J), J &lt;= I, holds rows I*tile.. and columns J*tile.. of the lower triangle, row-major;
+ * the upper half of a diagonal tile is not used.  The intercept, if any, is the last column.
+ *
+ * GLM's IRLSM uses it for the problems wider than {@link #wideCols()} (see ComputationState).
+ */
+public final class DistributedGram extends Iced<DistributedGram> {
+  public static final int DEFAULT_TILE = 512;
+
+  /**
+   * System property: number of columns from which GLM's IRLSM solves with a distributed gram, if it
+   * can (no L1 penalty, no bounds on the coefficients); 20000 by default.
+   */
+  public static final String WIDE_COLS_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "glm.distributedGramCols";
+  public static final int DEFAULT_WIDE_COLS = 20000;
+
+  public static int wideCols() { return Integer.getInteger(WIDE_COLS_PROP, DEFAULT_WIDE_COLS); }
+
+  public final int _n;              // Rows (and columns) of the matrix
+  public final int _tile;           // Rows (and columns) of a tile
+  public final int _tiles;          // Tiles per side
+  final Key<Tile>[] _keys;          // Tile (I,J) at I*(I+1)/2 + J
+  public double[] _xy;              // t(X) %*% W %*% z, when computed with RowWeights
+  public double _likelihood;        // Sum of the likelihoods of the rows, when computed with RowWeights
+  private boolean _isSPD = true;
+  private boolean _factored;
+
+  /**
+   * Weight w, working response z and likelihood of a row, for the gram t(X) %*% W %*% X and the
+   * vector t(X) %*% W %*% z.  Without, the gram is weighted by the prior weights and has no vector.
+   */
+  public static abstract class RowWeights extends Iced<RowWeights> {
+    /** Fill wzl with w, z and the likelihood of the row */
+    public abstract void compute(Row r, double[] wzl);
+  }
+
+  /** A tile of the matrix */
+  public static final class Tile extends Iced<Tile> {
+    public final double[] _vals;    // Row-major
+    public Tile(double[] vals) { _vals = vals; }
+  }
+
+  @SuppressWarnings("unchecked")
+  private DistributedGram(int n, int tile) {
+    _n = n;
+    _tile = tile;
+    _tiles = (n + tile - 1) / tile;
+    _keys = new Key[PackedLowerTriangle.offset(_tiles)];
+    H2ONode[] nodes = H2O.CLOUD._memary;
+    for (int k = 0; k < _keys.length; ++k)
+      _keys[k] = Key.make(nodes[k % nodes.length]);
+  }
+
+  final int rows(int I) { return Math.min(_tile, _n - I * _tile); }
+  final Key<Tile> key(int I, int J) { return _keys[PackedLowerTriangle.offset(I) + J]; }
+  final double[] tile(int I, int J) { return DKV.<Tile>getGet(key(I, J))._vals; }
+
+  public boolean isSPD() { return _isSPD; }
+
+  /** Element (i,j) of the matrix (of L once factored); reads the whole tile */
+  public double get(int i, int j) {
+    if (j > i) {
+      if (_factored) return 0;
+      int k = i; i = j; j = k;
+    }
+    int I = i / _tile, J = j / _tile;
+    return tile(I, J)[(i - I * _tile) * rows(J) + j - J * _tile];
+  }
+
+  /** Tile the lower triangle of a matrix (the first i+1 elements of every row i) */
+  public static DistributedGram make(double[][] xx, int tile) {
+    DistributedGram dg = new DistributedGram(xx.length, tile);
+    Futures fs = new Futures();
+    for (int I = 0; I < dg._tiles; ++I)
+      for (int J = 0; J <= I; ++J) {
+        int ri = dg.rows(I), rj = dg.rows(J);
+        double[] vals = MemoryManager.malloc8d(ri * rj);
+        for (int a = 0; a < ri; ++a) {
+          int i = I * tile + a;
+          for (int b = 0; b < rj && J * tile + b <= i; ++b)
+            vals[a * rj + b] = xx[i][J * tile + b];
+        }
+        DKV.put(dg.key(I, J), new Tile(vals), fs);
+      }
+    fs.blockForPending();
+    return dg;
+  }
+
+  /**
+   * Compute the weighted gram t(X) %*% W %*% X of the (expanded) rows of dinfo, with the intercept
+   * column if the DataInfo has one.  Tiles are computed in batches which fit a fraction of the
+   * memory of a node; each batch is one pass over the data.
+   */
+  public static DistributedGram compute(Key<Job> jobKey, DataInfo dinfo, int tile) {
+    return compute(jobKey, dinfo, tile, null);
+  }
+
+  /**
+   * The same, weighted by the row weights, and with t(X) %*% W %*% z and the likelihood (computed
+   * along with the first batch of tiles).
+   */
+  public static DistributedGram compute(Key<Job> jobKey, DataInfo dinfo, int tile, RowWeights rw) {
+    DistributedGram dg = new DistributedGram(dinfo.fullN() + (dinfo._intercept ? 1 : 0), tile);
+    final long passBytes = Math.max(8L * tile * tile, MemoryManager.MEM_MAX / (4 * H2O.NUMCPUS));
+    ArrayList<Integer> Is = new ArrayList<>(), Js = new ArrayList<>();
+    long bytes = 0;
+    int passes = 0;
+    for (int I = 0; I < dg._tiles; ++I)
+      for (int J = 0; J <= I; ++J) {
+        long b = 8L * dg.rows(I) * dg.rows(J);
+        if (bytes + b > passBytes && !Is.isEmpty()) {
+          dg.computeTiles(jobKey, dinfo, Is, Js, rw, passes == 0);
+          Is.clear(); Js.clear();
+          bytes = 0;
+          passes++;
+        }
+        Is.add(I); Js.add(J);
+        bytes += b;
+      }
+    dg.computeTiles(jobKey, dinfo, Is, Js, rw, passes == 0);
+    Log.info("Distributed gram of " + dg._n + " columns in " + dg._keys.length + " tiles, " + (passes + 1) + " passes");
+    return dg;
+  }
+
+  private void computeTiles(Key<Job> jobKey, DataInfo dinfo, ArrayList<Integer> Is, ArrayList<Integer> Js,
+                            RowWeights rw, boolean first) {
+    int[] is = new int[Is.size()], js = new int[Js.size()];
+    for (int k = 0; k < is.length; ++k) {
+      is[k] = Is.get(k);
+      js[k] = Js.get(k);
+    }
+    TileGramTask t = new TileGramTask(jobKey, dinfo, this, is, js, rw, first && rw != null).doAll(dinfo._adaptedFrame);
+    if (t._xy != null) {
+      _xy = t._xy;
+      _likelihood = t._likelihood;
+    }
+    Futures fs = new Futures();
+    for (int k = 0; k < is.length; ++k)
+      DKV.put(key(is[k], js[k]), new Tile(t._vals[k]), fs);
+    fs.blockForPending();
+  }
+
+  // A batch of tiles of the gram, over the whole data
+  private static class TileGramTask extends FrameTask2<TileGramTask> {
+    final DistributedGram _dg;
+    final int[] _is, _js;
+    final RowWeights _rw;
+    final boolean _withXY;
+    double[][] _vals;
+    double[] _xy;
+    double _likelihood;
+    private transient double[] _x;  // The expanded row
+    private transient double[] _wzl;
+
+    TileGramTask(Key<Job> jobKey, DataInfo dinfo, DistributedGram dg, int[] is, int[] js, RowWeights rw, boolean withXY) {
+      super(null, dinfo, jobKey);
+      _dg = dg;
+      _is = is;
+      _js = js;
+      _rw = rw;
+      _withXY = withXY;
+    }
+
+    @Override public void chunkInit() {
+      _vals = new double[_is.length][];
+      for (int k = 0; k < _is.length; ++k)
+        _vals[k] = MemoryManager.malloc8d(_dg.rows(_is[k]) * _dg.rows(_js[k]));
+      _x = MemoryManager.malloc8d(_dg._n);
+      _wzl = MemoryManager.malloc8d(3);
+      if (_withXY) _xy = MemoryManager.malloc8d(_dg._n);
+    }
+
+    @Override protected void processRow(Row r) {
+      if (r.isBad() || r.weight == 0) return;
+      double w = r.weight, wz = 0;
+      if (_rw != null) {
+        _rw.compute(r, _wzl);
+        w = _wzl[0];
+        wz = w * _wzl[1];
+        if (_withXY) _likelihood += _wzl[2];
+      }
+      if (w == 0) return;
+      final double[] x = _x;
+      java.util.Arrays.fill(x, 0);
+      for (int i = 0; i < r.nBins; ++i)
+        x[r.binIds[i]] = 1;
+      final int numStart = _dinfo.numStart();
+      for (int i = 0; i < r.nNums; ++i)
+        x[r.numIds == null ? numStart + i : r.numIds[i]] = r.numVals[i];
+      if (_dinfo._intercept)
+        x[x.length - 1] = 1;
+      if (_withXY) {
+        for (int i = 0; i < r.nBins; ++i)
+          _xy[r.binIds[i]] += wz;
+        for (int i = 0; i < r.nNums; ++i) {
+          int id = r.numIds == null ? numStart + i : r.numIds[i];
+          _xy[id] += wz * r.numVals[i];
+        }
+        if (_dinfo._intercept)
+          _xy[x.length - 1] += wz;
+      }
+      final int t = _dg._tile;
+      for (int k = 0; k < _is.length; ++k) {
+        final double[] vals = _vals[k];
+        final int I = _is[k], J = _js[k];
+        final int ri = _dg.rows(I), rj = _dg.rows(J);
+        final int i0 = I * t, j0 = J * t;
+        for (int a = 0; a < ri; ++a) {
+          final double d = w * x[i0 + a];
+          if (d == 0) continue;
+          final int bmax = I == J ? a + 1 : rj;
+          for (int b = 0, off = a * rj; b < bmax; ++b)
+            vals[off + b] += d * x[j0 + b];
+        }
+      }
+    }
+
+    @Override public void reduce(TileGramTask t) {
+      for (int k = 0; k < _vals.length; ++k)
+        ArrayUtils.add(_vals[k], t._vals[k]);
+      if (_withXY) {
+        ArrayUtils.add(_xy, t._xy);
+        _likelihood += t._likelihood;
+      }
+    }
+  }
+
+  /** Add d to the diagonal, but for the last element (the intercept) if skipLast; before factoring */
+  public void addDiag(double d, boolean skipLast) {
+    if (_factored) throw new IllegalStateException("Already factored");
+    Futures fs = new Futures();
+    for (int I = 0; I < _tiles; ++I) {
+      final int ri = rows(I);
+      double[] vals = tile(I, I).clone();
+      for (int a = 0; a < ri; ++a)
+        if (!skipLast || I * _tile + a < _n - 1)
+          vals[a * ri + a] += d;
+      DKV.put(key(I, I), new Tile(vals), fs);
+    }
+    fs.blockForPending();
+  }
+
+  // --------------------------------------------------------------------------
+  // Cholesky
+
+  /**
+   * Replace the matrix by its Cholesky factor L (A = L*L').  For every tile column K: the diagonal
+   * tile is factored here, then the tiles below it are solved against it, then the trailing tiles
+   * are updated (A_IJ -= L_IK * t(L_JK)); the last two steps run on all the nodes, each node
+   * doing the tiles it is home to.
+   */
+  public DistributedGram cholesky() {
+    if (_factored) throw new IllegalStateException("Already factored");
+    for (int K = 0; K < _tiles; ++K) {
+      double[] lkk = tile(K, K).clone();
+      _isSPD &= potrf(lkk, rows(K));
+      DKV.put(key(K, K), new Tile(lkk));
+      if (K + 1 == _tiles) break;
+      new TileTask(this, K, TileTask.TRSM).doAllNodes();
+      new TileTask(this, K, TileTask.UPDATE).doAllNodes();
+    }
+    _factored = true;
+    return this;
+  }
+
+  // In-place Cholesky of the lower triangle of a square row-major tile; false if not positive definite
+  static boolean potrf(double[] a, int n) {
+    boolean spd = true;
+    for (int i = 0; i < n; ++i) {
+      final int ri = i * n;
+      for (int k = 0; k < i; ++k) {
+        final int rk = k * n;
+        double s = 0;
+        for (int j = 0; j < k; ++j) s += a[rk + j] * a[ri + j];
+        a[ri + k] = (a[ri + k] - s) / a[rk + k];
+      }
+      double d = a[ri + i];
+      for (int j = 0; j < i; ++j) d -= a[ri + j] * a[ri + j];
+      spd &= d > 0;
+      a[ri + i] = Math.sqrt(Math.max(0, d));
+    }
+    return spd;
+  }
+
+  // One step of the tiled factorization, on the tiles homed at each node
+  private static class TileTask extends MRTask<TileTask> {
+    static final int TRSM = 0, UPDATE = 1;
+    final DistributedGram _dg;
+    final int _k, _op;
+    TileTask(DistributedGram dg, int k, int op) {
+      _dg = dg;
+      _k = k;
+      _op = op;
+    }
+
+    @Override protected void setupLocal() {
+      final DistributedGram dg = _dg;
+      final int K = _k;
+      ArrayList<RecursiveAction> ras = new ArrayList<>();
+      for (int I = K + 1; I < dg._tiles; ++I)
+        for (int J = K + 1; J <= (_op == TRSM ? K + 1 : I); ++J) {
+          final int fi = I, fj = _op == TRSM ? K : J;
+          if (!dg.key(fi, fj).home()) continue;
+          ras.add(new RecursiveAction() {
+            @Override protected void compute() {
+              if (_op == TRSM) trsm(dg, fi, K);
+              else update(dg, fi, fj, K);
+            }
+          });
+        }
+      ForkJoinTask.invokeAll(ras);
+    }
+  }
+
+  // L_IK = A_IK * inv(t(L_KK)): every row of the tile solved against L_KK
+  private static void trsm(DistributedGram dg, int I, int K) {
+    final double[] l = dg.tile(K, K);
+    final double[] a = dg.tile(I, K).clone();
+    final int ri = dg.rows(I), rk = dg.rows(K);
+    for (int r = 0; r < ri; ++r) {
+      final int off = r * rk;
+      for (int c = 0; c < rk; ++c) {
+        final int lc = c * rk;
+        double s = a[off + c];
+        for (int m = 0; m < c; ++m) s -= l[lc + m] * a[off + m];
+        a[off + c] = s / l[lc + c];
+      }
+    }
+    DKV.put(dg.key(I, K), new Tile(a));
+  }
+
+  // A_IJ -= L_IK * t(L_JK)
+  private static void update(DistributedGram dg, int I, int J, int K) {
+    final double[] li = dg.tile(I, K), lj = dg.tile(J, K);
+    final double[] a = dg.tile(I, J).clone();
+    final int ri = dg.rows(I), rj = dg.rows(J), rk = dg.rows(K);
+    for (int r = 0; r < ri; ++r) {
+      final int bmax = I == J ? r + 1 : rj;
+      for (int c = 0; c < bmax; ++c) {
+        double s = 0;
+        for (int m = 0, oi = r * rk, oj = c * rk; m < rk; ++m) s += li[oi + m] * lj[oj + m];
+        a[r * rj + c] -= s;
+      }
+    }
+    DKV.put(dg.key(I, J), new Tile(a));
+  }
+
+  // --------------------------------------------------------------------------
+  // Solve
+
+  /** Solve L*t(L)*x = y, once factored; the result replaces y */
+  public void solve(double[] y) {
+    if (!_factored) throw new IllegalStateException("Not factored, call cholesky() first");
+    if (!_isSPD) throw new Gram.NonSPDMatrixException();
+    // L*z = y, a tile row at a time
+    for (int I = 0; I < _tiles; ++I) {
+      final int ri = rows(I), i0 = I * _tile;
+      if (I > 0) {
+        double[] s = new MulTask(this, I, y, false).doAllNodes()._res;
+        for (int a = 0; a < ri; ++a) y[i0 + a] -= s[a];
+      }
+      double[] l = tile(I, I);
+      for (int a = 0; a < ri; ++a) {
+        double d = y[i0 + a];
+        for (int b = 0; b < a; ++b) d -= l[a * ri + b] * y[i0 + b];
+        y[i0 + a] = d / l[a * ri + a];
+      }
+    }
+    // t(L)*x = z, backwards
+    for (int I = _tiles - 1; I >= 0; --I) {
+      final int ri = rows(I), i0 = I * _tile;
+      if (I < _tiles - 1) {
+        double[] s = new MulTask(this, I, y, true).doAllNodes()._res;
+        for (int a = 0; a < ri; ++a) y[i0 + a] -= s[a];
+      }
+      double[] l = tile(I, I);
+      for (int a = ri - 1; a >= 0; --a) {
+        y[i0 + a] /= l[a * ri + a];
+        final double ya = y[i0 + a];
+        for (int b = 0; b < a; ++b) y[i0 + b] -= ya * l[a * ri + b];
+      }
+    }
+  }
+
+  // Sum of L_IJ * x_J over J < I, or of t(L_JI) * x_J over J > I, on the tiles homed at each node
+  private static class MulTask extends MRTask<MulTask> {
+    final DistributedGram _dg;
+    final int _i;
+    final double[] _x;
+    final boolean _transpose;
+    double[] _res;
+    MulTask(DistributedGram dg, int i, double[] x, boolean transpose) {
+      _dg = dg;
+      _i = i;
+      _x = x;
+      _transpose = transpose;
+    }
+
+    @Override protected void setupLocal() {
+      final DistributedGram dg = _dg;
+      final int I = _i, ri = dg.rows(I), t = dg._tile;
+      _res = MemoryManager.malloc8d(ri);
+      if (!_transpose) {
+        for (int J = 0; J < I; ++J) {
+          if (!dg.key(I, J).home()) continue;
+          final double[] l = dg.tile(I, J);
+          final int rj = dg.rows(J);
+          for (int a = 0; a < ri; ++a) {
+            double s = 0;
+            for (int b = 0; b < rj; ++b) s += l[a * rj + b] * _x[J * t + b];
+            _res[a] += s;
+          }
+        }
+      } else {
+        for (int J = I + 1; J < dg._tiles; ++J) {
+          if (!dg.key(J, I).home()) continue;
+          final double[] l = dg.tile(J, I);
+          final int rj = dg.rows(J);
+          for (int b = 0; b < rj; ++b) {
+            final double xb = _x[J * t + b];
+            if (xb == 0) continue;
+            for (int a = 0; a < ri; ++a) _res[a] += l[b * ri + a] * xb;
+          }
+        }
+      }
+    }
+
+    @Override public void reduce(MulTask mt) {
+      if (_res == null) _res = mt._res;
+      else if (mt._res != null) ArrayUtils.add(_res, mt._res);
+    }
+  }
+
+  /** Delete the tiles */
+  public void remove() {
+    Futures fs = new Futures();
+    for (Key<Tile> k : _keys)
+      DKV.remove(k, fs);
+    fs.blockForPending();
+  }
+}
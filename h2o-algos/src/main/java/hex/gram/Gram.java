@@ -3,6 +3,8 @@ package hex.gram;
 
 import hex.DataInfo;
 import hex.FrameTask2;
+import hex.util.LinearAlgebraBackend;
+import hex.util.LinearAlgebraUtils;
 import jsr166y.ForkJoinTask;
 import jsr166y.RecursiveAction;
 import water.*;
@@ -22,6 +24,28 @@ public final class Gram extends Iced<Gram> {
   int _fullN;
   final static int MIN_TSKSZ=10000;
 
+  // Batched rows, see addRowBatched
+  public final static int BATCH_ROWS = 128;  // rows per batch, at most
+  final static int BATCH_TILE = 64;          // columns per tile of the blocked update
+  final static int MIN_BATCH_COLS = 32;      // fewer dense columns are added row by row
+  private transient double [] _batch;        // numbers of the batched rows, row-major
+  private transient double [] _batchW;       // weights of the batched rows
+  private transient int _batchRows;          // capacity of the batch
+  private transient int _batchN;             // rows in the batch
+  final static int NATIVE_STRIP = 256;       // rows of the gram per native product of a batch
+  private transient double [] _batchC;       // products of a batch, one strip of the gram, native only
+  final static int NATIVE_CHOL_MIN = 64;     // smaller dense blocks are factored in java
+  static LinearAlgebraBackend backendOverride; // the kernels to use instead of the native ones, tests only
+  static int maxPackedN = PackedLowerTriangle.MAX_N; // larger dense blocks are factored unpacked, lowered by tests only
+
+  // kernels of the batched rows and of the dense Cholesky: the backend of the JVM when it is native,
+  // null for the java loops
+  static LinearAlgebraBackend nativeBackend() {
+    if(backendOverride != null) return backendOverride;
+    LinearAlgebraBackend la = LinearAlgebraUtils.backend();
+    return la.isNative() ? la : null;
+  }
+
   private static class XXCache {
     public final boolean lowerDiag;
     public final boolean icptFirst;
@@ -60,6 +84,15 @@ public final class Gram extends Iced<Gram> {
     _fullN = xxCacheNew.length;
   }
 
+  /** The gram of a full square matrix (no categorical diagonal), its last column the intercept if hasIntercept */
+  public static Gram fromSquare(double[][] xx, boolean hasIntercept) {
+    final int n = xx.length - (hasIntercept?1:0);
+    Gram res = new Gram(n, 0, n, 0, hasIntercept);
+    for(int i = 0; i < res._xx.length; ++i)
+      System.arraycopy(xx[i], 0, res._xx[i], 0, i + 1);
+    return res;
+  }
+
   public void dropIntercept(){
     if(!_hasIntercept) throw new IllegalArgumentException("Has no intercept");
     double [][] xx = new double[_xx.length-1][];
@@ -71,7 +104,10 @@ public final class Gram extends Iced<Gram> {
   }
 
   public Gram deep_clone(){
+    assert _batchN == 0 : "batched rows not flushed";
     Gram res = clone();
+    res._batch = res._batchW = res._batchC = null;
+    res._batchRows = 0;
     if(_xx != null)
       res._xx = ArrayUtils.deepClone(_xx);
     if(_diag != null)
@@ -79,6 +115,17 @@ public final class Gram extends Iced<Gram> {
     return res;
   }
 
+  /** The full lower triangle (categorical diagonal included), packed; no intercept if dropped */
+  public PackedLowerTriangle packed() {
+    assert _batchN == 0 : "batched rows not flushed";
+    PackedLowerTriangle res = new PackedLowerTriangle(_fullN);
+    for(int i = 0; i < _diagN; ++i)
+      res._vals[PackedLowerTriangle.offset(i) + i] = _diag[i];
+    for(int i = 0; i < _xx.length; ++i)
+      System.arraycopy(_xx[i], 0, res._vals, PackedLowerTriangle.offset(i + _diagN), i + _diagN + 1);
+    return res;
+  }
+
   public final int fullN(){return _fullN;}
   public double _diagAdded;
 
@@ -499,18 +546,41 @@ public final class Gram extends Iced<Gram> {
     }
     ForkJoinTask.invokeAll(fjts);
     // compute the cholesky of dense*dense-outer_product(diagonal*dense)
-    double[][] arr = new double[denseN][];
-    for( int i = 0; i < arr.length; ++i )
-      arr[i] = Arrays.copyOfRange(fchol._xx[i], sparseN, sparseN + denseN);
     int p = Runtime.getRuntime().availableProcessors();
-    InPlaceCholesky d = InPlaceCholesky.decompose_2(arr, 10, p);
-    fchol.setSPD(d.isSPD());
-    arr = d.getL();
-    for( int i = 0; i < arr.length; ++i ) {
+    if(denseN > maxPackedN) { // too large to pack: the rows of the triangle factored in place
+      double[][] arr = new double[denseN][];
+      for( int i = 0; i < denseN; ++i )
+        arr[i] = Arrays.copyOfRange(fchol._xx[i], sparseN, sparseN + i + 1);
+      InPlaceCholesky d = InPlaceCholesky.decompose_2(arr, 10, p);
+      fchol.setSPD(d.isSPD());
+      arr = d.getL();
+      for( int i = 0; i < denseN; ++i ) {
+        // See PUBDEV-5585: we use a manual array copy instead of System.arraycopy because of behavior on Java 10
+        for (int j = 0; j < i + 1; j++)
+          fchol._xx[i][sparseN + j] = arr[i][j];
+      }
+      return chol;
+    }
+    // otherwise packed into one array, factored by the native LAPACK (DPPTRF) when there is one
+    PackedLowerTriangle arr = new PackedLowerTriangle(denseN);
+    for( int i = 0; i < denseN; ++i )
+      System.arraycopy(fchol._xx[i], sparseN, arr._vals, PackedLowerTriangle.offset(i), i + 1);
+    final LinearAlgebraBackend la = nativeBackend();
+    if(denseN >= NATIVE_CHOL_MIN && la != null && la.dpptrf(denseN, arr._vals, 0)) {
+      fchol.setSPD(true);
+    } else {
+      if(denseN >= NATIVE_CHOL_MIN && la != null) // not positive definite: redone in java, which zeroes the bad pivots
+        for( int i = 0; i < denseN; ++i )
+          System.arraycopy(fchol._xx[i], sparseN, arr._vals, PackedLowerTriangle.offset(i), i + 1);
+      arr.cholesky(10, p);
+      fchol.setSPD(arr.isSPD());
+    }
+    for( int i = 0; i < denseN; ++i ) {
       // See PUBDEV-5585: we use a manual array copy instead of System.arraycopy because of behavior on Java 10
       // Used to be: System.arraycopy(arr[i], 0, fchol._xx[i], sparseN, i + 1);
+      final int off = PackedLowerTriangle.offset(i);
       for (int j = 0; j < i + 1; j++)
-        fchol._xx[i][sparseN + j] = arr[i][j];
+        fchol._xx[i][sparseN + j] = arr._vals[off + j];
     }
 
     return chol;
@@ -563,6 +633,7 @@ public final class Gram extends Iced<Gram> {
   }
 
   public void add(Gram grm) {
+    assert _batchN == 0 && grm._batchN == 0 : "batched rows not flushed";
     ArrayUtils.add(_xx,grm._xx);
     ArrayUtils.add(_diag,grm._diag);
   }
@@ -749,13 +820,25 @@ public final class Gram extends Iced<Gram> {
     final int denseColStart = _fullN - _denseN - intercept;
 
     assert _denseN + denseRowStart == _xx.length-intercept;
-    final double [] interceptRow = _hasIntercept?_xx[_denseN + denseRowStart]:null;
     // nums
     for(int i = 0; i < _denseN; ++i) if(row.numVals[i] != 0) {
       final double [] mrow = _xx[i+denseRowStart];
       final double d = w * row.numVals[i];
       for(int j = 0; j <= i; ++j) if(row.numVals[j] != 0)
         mrow[j+denseColStart] += d* row.numVals[j];
+    }
+    addRowCats(row, w);
+  }
+
+  // everything but nums X nums of a dense row: nums X intercept, nums X cats, intercept and cats
+  private void addRowCats(DataInfo.Row row, double w) {
+    final int intercept = _hasIntercept?1:0;
+    final int denseRowStart = _fullN - _denseN - _diagN - intercept;
+    final int denseColStart = _fullN - _denseN - intercept;
+    final double [] interceptRow = _hasIntercept?_xx[_denseN + denseRowStart]:null;
+    for(int i = 0; i < _denseN; ++i) if(row.numVals[i] != 0) {
+      final double [] mrow = _xx[i+denseRowStart];
+      final double d = w * row.numVals[i];
       if(_hasIntercept)
         interceptRow[i+denseColStart] += d; // intercept*x[i]
       // nums * cats
@@ -780,7 +863,101 @@ public final class Gram extends Iced<Gram> {
     if(hasDiag)
       _diag[row.binIds[0]] += w;
   }
+
+  /**
+   * Add a row as {@link #addRow}, but batch the update of the block of dense numbers.  The numbers
+   * of up to {@link #BATCH_ROWS} rows are copied into a dense row-major tile, and the whole batch is
+   * added by a cache-blocked symmetric rank-k update (as BLAS SYRK does) instead of one rank-1
+   * update per row; the sums are accumulated in the same order, so the result is the same.
+   * Categoricals and the intercept are added right away.  Sparse rows and small dense blocks go
+   * straight to {@link #addRow}.
+   * <p/>
+   * {@link #flushRows()} must be called before the gram is used (read, scaled, added or sent).
+   */
+  public final void addRowBatched(DataInfo.Row row, double w) {
+    if(row.numIds != null || _denseN < MIN_BATCH_COLS) {
+      addRow(row, w);
+      return;
+    }
+    if(_batch == null) { // keep the tile around 2MB
+      _batchRows = Math.max(8, Math.min(BATCH_ROWS, (1 << 18) / _denseN));
+      _batch = MemoryManager.malloc8d(_batchRows * _denseN);
+      _batchW = MemoryManager.malloc8d(_batchRows);
+    }
+    addRowCats(row, w);
+    System.arraycopy(row.numVals, 0, _batch, _batchN * _denseN, _denseN);
+    _batchW[_batchN] = w;
+    if(++_batchN == _batchRows)
+      flushRows();
+  }
+
+  /** Add the rows batched by {@link #addRowBatched} */
+  public final void flushRows() {
+    final int n = _batchN;
+    if(n == 0) return;
+    _batchN = 0;
+    final int N = _denseN;
+    final int intercept = _hasIntercept?1:0;
+    final int denseRowStart = _fullN - _denseN - _diagN - intercept;
+    final int denseColStart = _fullN - _denseN - intercept;
+    final double [] x = _batch;
+    final double [] ws = _batchW;
+    final LinearAlgebraBackend la = nativeBackend();
+    if(la != null && flushRowsNative(la, n, denseRowStart, denseColStart))
+      return;
+    // lower triangle in tiles of BATCH_TILE x BATCH_TILE, so that the columns of the batch
+    // used by a tile stay in cache while its rows are updated
+    for(int ib = 0; ib < N; ib += BATCH_TILE) {
+      final int imax = Math.min(ib + BATCH_TILE, N);
+      for(int jb = 0; jb <= ib; jb += BATCH_TILE) {
+        for(int i = ib; i < imax; ++i) {
+          final double [] mrow = _xx[i+denseRowStart];
+          final int jmax = Math.min(jb + BATCH_TILE, i + 1);
+          for(int r = 0, off = 0; r < n; ++r, off += N) {
+            final double d = ws[r] * x[off + i];
+            if(d == 0) continue;
+            for(int j = jb; j < jmax; ++j)
+              mrow[j+denseColStart] += d * x[off + j];
+          }
+        }
+      }
+    }
+  }
+
+  // The batch scaled by the square roots of the weights, added strip by strip of the gram: DGEMM for
+  // the part left of the diagonal block, DSYRK for the diagonal block.  Negative weights are left to
+  // the java loop.
+  private boolean flushRowsNative(LinearAlgebraBackend la, int n, int denseRowStart, int denseColStart) {
+    final int N = _denseN;
+    final double [] x = _batch;
+    for(int r = 0; r < n; ++r)
+      if(!(_batchW[r] >= 0)) return false;
+    for(int r = 0, off = 0; r < n; ++r, off += N) {
+      final double sw = Math.sqrt(_batchW[r]);
+      if(sw != 1)
+        for(int j = 0; j < N; ++j)
+          x[off + j] *= sw;
+    }
+    final int strip = Math.min(NATIVE_STRIP, N);
+    if(_batchC == null)
+      _batchC = MemoryManager.malloc8d(strip * N);
+    final double [] c = _batchC;
+    for(int ib = 0; ib < N; ib += strip) {
+      final int m = Math.min(ib + strip, N) - ib;
+      if(ib > 0)
+        la.dgemm(true, false, m, ib, n, 1, x, ib, N, x, 0, N, 0, c, 0, N);
+      la.dsyrk(true, m, n, 1, x, ib, N, 0, c, ib, N);
+      for(int i = 0; i < m; ++i) {
+        final double [] mrow = _xx[ib + i + denseRowStart];
+        for(int j = 0, off = i * N; j <= ib + i; ++j)
+          mrow[j + denseColStart] += c[off + j];
+      }
+    }
+    return true;
+  }
+
   public void mul(double x){
+    assert _batchN == 0 : "batched rows not flushed";
     if(_diag != null)for(int i = 0; i < _diag.length; ++i)
       _diag[i] *= x;
     for(int i = 0; i < _xx.length; ++i)
@@ -962,12 +1139,13 @@ public final class Gram extends Iced<Gram> {
     }
     double _prev = 0;
     @Override protected void processRow(DataInfo.Row r) {
-      _gram.addRow(r, r.weight);
+      _gram.addRowBatched(r, r.weight);
       ++_nobs;
       double current = (_gram.get(_dinfo.fullN()-1,_dinfo.fullN()-1) - _prev);
       _prev += current;
     }
     @Override public void chunkDone(){
+      _gram.flushRows();
       if(_std) {
         if (_nobs > 0) {  // removing NA rows may produce _nobs=0
           double r = 1.0 / _nobs;
@@ -0,0 +1,166 @@
+package hex.gram;
+
+import jsr166y.ForkJoinTask;
+import jsr166y.RecursiveAction;
+import water.Futures;
+import water.Iced;
+import water.MemoryManager;
+
+/**
+ * Lower triangle of a symmetric n x n matrix, packed row by row into a single array: element (i,j),
+ * j <= i, is at {@code i*(i+1)/2 + j}.
+ *
+ * One contiguous array instead of n row arrays: no per-row objects on the heap, rows which follow
+ * each other in memory (prefetching works across rows), and one array on the wire.  Holds the
+ * in-place Cholesky factorization and the triangular solves, blocked as
+ * {@link Gram.InPlaceCholesky}: the same operations in the same order, so the factors are the same.
+ */
+public final class PackedLowerTriangle extends Iced<PackedLowerTriangle> {
+  public final int _n;
+  public final double[] _vals;
+  private boolean _isSPD = true;
+
+  // Largest n whose triangle fits an array
+  public static final int MAX_N = 65535;
+
+  public PackedLowerTriangle(int n) {
+    if (n > MAX_N) throw new IllegalArgumentException("Matrix too large to pack, " + n + " > " + MAX_N + " rows");
+    _n = n;
+    _vals = MemoryManager.malloc8d(offset(n));
+  }
+
+  /** Pack the lower triangle (the first i+1 elements of every row i) of a lower triangular or square matrix */
+  public PackedLowerTriangle(double[][] xx) {
+    this(xx.length);
+    for (int i = 0; i < _n; ++i)
+      System.arraycopy(xx[i], 0, _vals, offset(i), i + 1);
+  }
+
+  /** Offset of row i */
+  public static int offset(int i) { return (int) (((long) i * (i + 1)) >>> 1); }
+
+  public double get(int i, int j) {
+    if (j > i) { int k = i; i = j; j = k; }
+    return _vals[offset(i) + j];
+  }
+
+  public void set(int i, int j, double d) {
+    if (j > i) { int k = i; i = j; j = k; }
+    _vals[offset(i) + j] = d;
+  }
+
+  public boolean isSPD() { return _isSPD; }
+
+  /** The lower triangle, row i of length i+1 */
+  public double[][] toLowerTriangle() {
+    double[][] res = new double[_n][];
+    for (int i = 0; i < _n; ++i) {
+      res[i] = MemoryManager.malloc8d(i + 1);
+      System.arraycopy(_vals, offset(i), res[i], 0, i + 1);
+    }
+    return res;
+  }
+
+  // Rows [_i0,_i1) of the strip below the diagonal block of columns [_j0,_j1)
+  private static class StripTask extends RecursiveAction {
+    final double[] _a;
+    final int _i0, _i1, _j0, _j1;
+    StripTask(double[] a, int i0, int i1, int j0, int j1) {
+      _a = a;
+      _i0 = i0; _i1 = i1; _j0 = j0; _j1 = j1;
+    }
+    @Override public void compute() {
+      final double[] a = _a;
+      for (int i = _i0; i < _i1; i++) {
+        final int ri = offset(i);
+        for (int k = _j0; k < _j1; k++) {
+          final int rk = offset(k);
+          double s = 0.0;
+          for (int jj = 0; jj < k; jj++) s += a[rk + jj] * a[ri + jj];
+          a[ri + k] = (a[ri + k] - s) / a[rk + k];
+        }
+      }
+    }
+  }
+
+  /**
+   * Replace the matrix by its Cholesky factor L (A = L*L'), in place.  Columns are done in blocks of
+   * step: first the diagonal block, then the strip of rows below it, split into P parallel tasks.
+   * Sets {@link #isSPD()}; a non-positive pivot is replaced by 0.
+   */
+  public PackedLowerTriangle cholesky(int step, int P) {
+    final double[] a = _vals;
+    final int N = _n;
+    boolean isspd = true;
+    P = Math.max(1, P);
+    for (int j = 0; j < N; j += step) {
+      // the diagonal block
+      final int tjR = Math.min(j + step, N);
+      for (int i = j; i < tjR; i++) {
+        final int ri = offset(i);
+        double d = 0.0;
+        for (int k = j; k < i; k++) {
+          final int rk = offset(k);
+          double s = 0.0;
+          for (int jj = 0; jj < k; jj++) s += a[rk + jj] * a[ri + jj];
+          a[ri + k] = s = (a[ri + k] - s) / a[rk + k];
+          d += s * s;
+        }
+        for (int jj = 0; jj < j; jj++) { double s = a[ri + jj]; d += s * s; }
+        d = a[ri + i] - d;
+        isspd = isspd && (d > 0.0);
+        a[ri + i] = Math.sqrt(Math.max(0.0, d));
+      }
+      if (tjR == N) break;
+      // the strip below
+      int i = tjR;
+      Futures fs = new Futures();
+      int rpb = 0;                // rows per block
+      int p = P;                  // concurrency
+      while (tjR * (rpb = (N - tjR) / p) < Gram.MIN_TSKSZ && p > 1) --p;
+      while (p-- > 1) {
+        fs.add(new StripTask(a, i, i + rpb, j, tjR).fork());
+        i += rpb;
+      }
+      new StripTask(a, i, N, j, tjR).compute();
+      fs.blockForPending();
+    }
+    _isSPD = isspd;
+    return this;
+  }
+
+  /** Solve L*L'*x = y for a Cholesky factor L (see {@link #cholesky}); the result replaces y */
+  public void solve(double[] y) {
+    if (!_isSPD) throw new Gram.NonSPDMatrixException();
+    final double[] a = _vals;
+    final int n = _n;
+    // L*z = y
+    for (int k = 0; k < n; ++k) {
+      final int rk = offset(k);
+      double d = 0;
+      for (int i = 0; i < k; i++)
+        d += y[i] * a[rk + i];
+      y[k] = (y[k] - d) / a[rk + k];
+    }
+    // L'*x = z
+    for (int k = n - 1; k >= 0; --k) {
+      final int rk = offset(k);
+      y[k] /= a[rk + k];
+      final double yk = y[k];
+      for (int i = 0; i < k; ++i)
+        y[i] -= yk * a[rk + i];
+    }
+  }
+
+  /** Solve for several right hand sides at once, in parallel */
+  public void solve(final double[][] ys) {
+    RecursiveAction[] ras = new RecursiveAction[ys.length];
+    for (int i = 0; i < ras.length; ++i) {
+      final double[] y = ys[i];
+      ras[i] = new RecursiveAction() {
+        @Override protected void compute() { solve(y); }
+      };
+    }
+    ForkJoinTask.invokeAll(ras);
+  }
+}
@@ -23,8 +23,11 @@ import java.util.Random;
  * To apply L-BFGS to your optimization problem, provide a GradientSolver with following 2 methods:
  *   1) double [] getGradient(double []):
  *      evaluate ginfo at given coefficients, typically an MRTask
- *   2) double [] getObjVals(double[] beta, double[] direction):
- *      evaluate objective value at line-search search points (e.g. objVals[k] = obj(beta + step(k)*direction), step(k) = .75^k)
+ *   2) GradientInfo getObjective(double []):
+ *      evaluate objective value at given coefficients
+ *   and optionally (MultiPointGradientSolver, used when setLineSearchPoints(k) is set)
+ *   3) GradientInfo [] getGradients(double[] beta, double[] direction, double [] steps):
+ *      evaluate ginfo at line-search search points (ginfo[k] = ginfo(beta + steps[k]*direction))
  *      typically a single MRTask
  *   @see hex.glm.GLM.GLMGradientSolver
  *
@@ -36,6 +39,8 @@ import java.util.Random;
  *     dir      := newDir(history, ginfo)  // local
  *
  * 1 L-BFGS iteration thus takes 2 passes over the (distributed) dataset.
+ * With a MultiPointGradientSolver and setLineSearchPoints(k), the line search and the gradient
+ * are one pass with k points, usually one pass (one distributed barrier) per iteration.
  *
 */
 public final class L_BFGS extends Iced {
@@ -44,6 +49,7 @@ public final class L_BFGS extends Iced {
   double _objEps = 1e-10;
   // line search params
   int _historySz = 20;
+  int _lineSearchPoints = 0; // > 1 to evaluate that many steps per pass over the data (MultiPointGradientSolver)
 
   History _hist;
 
@@ -55,6 +61,7 @@ public final class L_BFGS extends Iced {
     _objEps = d; return this;
   }
   public L_BFGS setHistorySz(int sz) {_historySz = sz; return this;}
+  public L_BFGS setLineSearchPoints(int k) {_lineSearchPoints = k; return this;}
 
 
   public int k() {return _hist._k;}
@@ -126,6 +133,10 @@ public final class L_BFGS extends Iced {
     int _k;
 
     private final void update(double [] pk, double [] gNew, double [] gOld){
+      double sy = 0;
+      for (int i = 0; i < gNew.length; ++i)
+        sy += pk[i] * (gNew[i] - gOld[i]);
+      if (!(sy > 0)) return; // no curvature information (step without the Wolfe condition), keep the history
       int id = getId(0);
       double[] y = _y[id];
       double[] s = _s[id];
@@ -181,7 +192,9 @@ public final class L_BFGS extends Iced {
     double rel_improvement = 1;
     final double [] pk = new double[beta.length];
     double minStep = 1e-16;
-    LineSearchSolver lineSearch = new MoreThuente(gslvr,beta,ginfo);
+    LineSearchSolver lineSearch = _lineSearchPoints > 1 && gslvr instanceof MultiPointGradientSolver
+        ? new PipelinedLineSearch((MultiPointGradientSolver)gslvr,beta,ginfo,_lineSearchPoints)
+        : new MoreThuente(gslvr,beta,ginfo);
     while(!ArrayUtils.hasNaNsOrInfs(beta) && (ArrayUtils.linfnorm(ginfo._gradient,false) > _gradEps  && rel_improvement > _objEps) && iter != _maxIter) {
       ++iter;
       _hist.getSearchDirection(ginfo._gradient,pk);
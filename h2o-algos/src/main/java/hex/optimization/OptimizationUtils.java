@@ -47,6 +47,17 @@ public class OptimizationUtils {
     GradientInfo getObjective(double [] beta);
   }
 
+  /**
+   * GradientSolver which evaluates several points on a line in one go, typically in a single MRTask,
+   * so that a line search needs one pass over the data (and one distributed barrier) for all its steps.
+   */
+  public interface MultiPointGradientSolver extends GradientSolver {
+    /**
+     * Evaluate ginfo at beta + steps[k]*direction for every k.
+     */
+    GradientInfo [] getGradients(double [] beta, double [] direction, double [] steps);
+  }
+
 
   public interface LineSearchSolver {
     boolean evaluate(double [] direction);
@@ -130,6 +141,93 @@ public class OptimizationUtils {
 
 
 
+  /**
+   * Line search evaluating a fixed set of decreasing steps (initial step * 2, 1, 1/2, ...) with one
+   * call to {@link MultiPointGradientSolver#getGradients}, instead of one gradient call per step.
+   * Computes gradients which are not used, in exchange for one pass over the data per iteration
+   * on clusters where the barrier of each pass is the expensive part.
+   *
+   * Picks the lowest objective among the steps meeting the (weak) Wolfe conditions, or among the
+   * steps with sufficient decrease if there are none.  If no step decreases the objective enough,
+   * goes on with the next smaller steps, up to _maxfev passes.
+   */
+  public static final class PipelinedLineSearch implements LineSearchSolver {
+    private final MultiPointGradientSolver _gslvr;
+    private final int _npoints;
+    private double [] _beta;
+    private GradientInfo _ginfo;
+    private double _step;
+    double _initialStep = 1;
+    double _ftol = 1e-4; // sufficient decrease
+    double _gtol = .9;   // curvature
+    int _maxfev = 5;
+    private int _nfeval;
+
+    public PipelinedLineSearch(MultiPointGradientSolver gslvr, double [] betaStart, GradientInfo ginfo, int npoints) {
+      if(ginfo._gradient == null)
+        throw new IllegalArgumentException("GradientInfo for pipelined line search solver must include gradient");
+      _gslvr = gslvr;
+      _beta = betaStart;
+      _ginfo = ginfo;
+      _npoints = npoints;
+    }
+
+    @Override
+    public boolean evaluate(double [] direction) {
+      final double dgInit = ArrayUtils.innerProduct(_ginfo._gradient, direction);
+      if(dgInit >= 0) return false;
+      final double objInit = _ginfo._objVal;
+      double [] steps = new double[_npoints];
+      double step = 2*_initialStep;
+      _nfeval = 0;
+      while(_nfeval < _maxfev) {
+        for(int k = 0; k < steps.length; ++k, step *= .5)
+          steps[k] = step;
+        GradientInfo [] ginfos = _gslvr.getGradients(_beta, direction, steps);
+        ++_nfeval;
+        int best = -1;
+        boolean bestWolfe = false;
+        for(int k = 0; k < steps.length; ++k) {
+          GradientInfo g = ginfos[k];
+          if(!g.isValid() || g._objVal > objInit + _ftol*steps[k]*dgInit) continue;
+          boolean wolfe = ArrayUtils.innerProduct(g._gradient, direction) >= _gtol*dgInit;
+          if(best == -1 || (wolfe && !bestWolfe) || (wolfe == bestWolfe && g._objVal < ginfos[best]._objVal)) {
+            best = k;
+            bestWolfe = wolfe;
+          }
+        }
+        if(best != -1) {
+          _step = steps[best];
+          _ginfo = ginfos[best];
+          _beta = ArrayUtils.wadd(_beta, direction, new double[_beta.length], _step);
+          return true;
+        }
+        if(step < 1e-16) break;
+      }
+      return false;
+    }
+
+    @Override
+    public double step() {return _step;}
+
+    @Override
+    public GradientInfo ginfo() {return _ginfo;}
+
+    @Override
+    public LineSearchSolver setInitialStep(double s) {_initialStep = s; return this;}
+
+    @Override
+    public int nfeval() {return _nfeval;}
+
+    @Override
+    public double getObj() {return _ginfo._objVal;}
+
+    @Override
+    public double[] getX() {return _beta;}
+
+    @Override public String toString(){return "PipelinedLineSearch, passes = " + _nfeval + ", step = " + _step + ", obj = " + _ginfo._objVal;}
+  }
+
   public static final class MoreThuente implements LineSearchSolver {
     double _stMin, _stMax;
 
@@ -846,8 +846,8 @@ public class SVD extends ModelBuilder<SVDModel,SVDModel.SVDParameters,SVDModel.S
       }
     }
 
-    resultGram = multArrArr(ivv_sum, gramToArray);    // resultGram = (I-v1*T(v1))*A*T(A)
-    gramToArray = multArrArr(resultGram, ivv_sum);    // overwrite gramToArray with final result resultGram*(I-v1*T(v1))
+    resultGram = LinearAlgebraUtils.matMul(ivv_sum, gramToArray);    // resultGram = (I-v1*T(v1))*A*T(A)
+    gramToArray = LinearAlgebraUtils.matMul(resultGram, ivv_sum);    // overwrite gramToArray with final result resultGram*(I-v1*T(v1))
 
     // copy over results from matrix multiplication output to resultGram
     for (int row_index = 0; row_index < numRows; row_index++) {
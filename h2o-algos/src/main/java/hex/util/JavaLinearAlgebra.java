@@ -0,0 +1,126 @@
+package hex.util;
+
+import water.MemoryManager;
+
+/**
+ * Pure java {@link LinearAlgebraBackend}, always available.  The products are computed in tiles of
+ * {@link #TILE} x {@link #TILE} so that the part of the right-hand matrix used by a tile stays in
+ * cache while the rows of the result are updated; the inner loops run over contiguous rows.
+ */
+public final class JavaLinearAlgebra implements LinearAlgebraBackend {
+  static final int TILE = 64;
+
+  @Override public String name() { return "java"; }
+
+  @Override public boolean isNative() { return false; }
+
+  @Override
+  public void dgemm(boolean transA, boolean transB, int m, int n, int k,
+                    double alpha, double[] a, int aOff, int lda,
+                    double[] b, int bOff, int ldb,
+                    double beta, double[] c, int cOff, int ldc) {
+    scale(m, n, false, beta, c, cOff, ldc);
+    if (alpha == 0 || k == 0) return;
+    if (transB) { // op(B) row-major, the inner loop runs over its rows
+      b = transpose(n, k, b, bOff, ldb);
+      bOff = 0;
+      ldb = n;
+    }
+    for (int pb = 0; pb < k; pb += TILE) {
+      final int pmax = Math.min(pb + TILE, k);
+      for (int jb = 0; jb < n; jb += TILE) {
+        final int jmax = Math.min(jb + TILE, n);
+        for (int i = 0; i < m; ++i) {
+          final int ci = cOff + i * ldc;
+          for (int p = pb; p < pmax; ++p) {
+            double aip = transA ? a[aOff + p * lda + i] : a[aOff + i * lda + p];
+            if (aip == 0) continue;
+            aip *= alpha;
+            final int bp = bOff + p * ldb;
+            for (int j = jb; j < jmax; ++j)
+              c[ci + j] += aip * b[bp + j];
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void dsyrk(boolean trans, int n, int k,
+                    double alpha, double[] a, int aOff, int lda,
+                    double beta, double[] c, int cOff, int ldc) {
+    scale(n, n, true, beta, c, cOff, ldc);
+    if (alpha == 0 || k == 0) return;
+    if (trans) { // A is k x n, sum of the outer products of its rows
+      for (int ib = 0; ib < n; ib += TILE) {
+        final int imax = Math.min(ib + TILE, n);
+        for (int jb = 0; jb <= ib; jb += TILE) {
+          for (int i = ib; i < imax; ++i) {
+            final int ci = cOff + i * ldc;
+            final int jmax = Math.min(jb + TILE, i + 1);
+            for (int p = 0, ap = aOff; p < k; ++p, ap += lda) {
+              final double d = alpha * a[ap + i];
+              if (d == 0) continue;
+              for (int j = jb; j < jmax; ++j)
+                c[ci + j] += d * a[ap + j];
+            }
+          }
+        }
+      }
+    } else { // A is n x k, dot products of its rows
+      for (int i = 0; i < n; ++i) {
+        final int ai = aOff + i * lda;
+        final int ci = cOff + i * ldc;
+        for (int j = 0; j <= i; ++j) {
+          final int aj = aOff + j * lda;
+          double s = 0;
+          for (int p = 0; p < k; ++p)
+            s += a[ai + p] * a[aj + p];
+          c[ci + j] += alpha * s;
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean dpptrf(int n, double[] ap, int apOff) {
+    for (int i = 0; i < n; ++i) {
+      final int ri = apOff + packedRow(i);
+      double d = ap[ri + i];
+      for (int k = 0; k < i; ++k) {
+        final int rk = apOff + packedRow(k);
+        double s = ap[ri + k];
+        for (int jj = 0; jj < k; ++jj)
+          s -= ap[rk + jj] * ap[ri + jj];
+        ap[ri + k] = s = s / ap[rk + k];
+        d -= s * s;
+      }
+      if (!(d > 0)) return false;
+      ap[ri + i] = Math.sqrt(d);
+    }
+    return true;
+  }
+
+  // Offset of row i of a packed lower triangle
+  private static int packedRow(int i) { return (int) (((long) i * (i + 1)) >>> 1); }
+
+  // C = beta*C over the whole m x n matrix or its lower triangle; C = 0 for beta = 0, as BLAS does
+  private static void scale(int m, int n, boolean lower, double beta, double[] c, int cOff, int ldc) {
+    if (beta == 1) return;
+    for (int i = 0; i < m; ++i) {
+      final int ci = cOff + i * ldc;
+      final int jmax = lower ? i + 1 : n;
+      for (int j = 0; j < jmax; ++j)
+        c[ci + j] = beta == 0 ? 0 : beta * c[ci + j];
+    }
+  }
+
+  // the transpose of the rows x cols matrix x, dense
+  private static double[] transpose(int rows, int cols, double[] x, int off, int ld) {
+    final double[] res = MemoryManager.malloc8d(rows * cols);
+    for (int i = 0; i < rows; ++i)
+      for (int j = 0; j < cols; ++j)
+        res[j * rows + i] = x[off + i * ld + j];
+    return res;
+  }
+}
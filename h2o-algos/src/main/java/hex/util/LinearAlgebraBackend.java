@@ -0,0 +1,47 @@
+package hex.util;
+
+/**
+ * Dense BLAS/LAPACK kernels used by the dense steps of the algorithms (gram updates, Cholesky
+ * factorization, products of square matrices).
+ *
+ * All matrices are row-major and given as an array, an offset of the first element and a leading
+ * dimension (the distance between the first elements of two consecutive rows), so that blocks of
+ * larger matrices can be passed without a copy; or packed, see {@link #dpptrf}.  Only the lower triangle of symmetric and triangular
+ * matrices is read or written.
+ *
+ * The implementation in use is picked once per JVM by {@link LinearAlgebraUtils#backend()}.
+ */
+public interface LinearAlgebraBackend {
+
+  /** Name of the implementation, for the logs */
+  String name();
+
+  /** True if the kernels run in native code (optimized BLAS of the platform) */
+  boolean isNative();
+
+  /**
+   * C = alpha*op(A)*op(B) + beta*C, C is m x n, op(A) is m x k, op(B) is k x n; op(X) is X or X' if
+   * the corresponding trans flag is set.
+   */
+  void dgemm(boolean transA, boolean transB, int m, int n, int k,
+             double alpha, double[] a, int aOff, int lda,
+             double[] b, int bOff, int ldb,
+             double beta, double[] c, int cOff, int ldc);
+
+  /**
+   * Lower triangle of C = alpha*op(A)*op(A)' + beta*C, C is n x n, op(A) is n x k; op(A) is A, or A'
+   * if trans is set (then A is k x n and C the gram matrix of its rows).
+   */
+  void dsyrk(boolean trans, int n, int k,
+             double alpha, double[] a, int aOff, int lda,
+             double beta, double[] c, int cOff, int ldc);
+
+  /**
+   * In place Cholesky factorization A = L*L' of the symmetric positive definite n x n matrix A, given
+   * as its lower triangle packed row by row (element (i,j), j <= i, at apOff + i*(i+1)/2 + j); L is
+   * written over it.
+   *
+   * @return false if A is not positive definite, the content of ap is undefined then
+   */
+  boolean dpptrf(int n, double[] ap, int apOff);
+}
@@ -2,6 +2,8 @@ package hex.util;
 
 import Jama.EigenvalueDecomposition;
 import Jama.Matrix;
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.LAPACK;
 import hex.DataInfo;
 import hex.FrameTask;
 import hex.Interaction;
@@ -19,6 +21,61 @@ import static java.util.Arrays.sort;
 import static org.apache.commons.lang.ArrayUtils.reverse;
 
 public class LinearAlgebraUtils {
+  /**
+   * System property selecting the dense linear algebra kernels: "auto" (the default) uses the native
+   * BLAS/LAPACK of the system when netlib-java can load it and the java kernels otherwise, "netlib"
+   * always uses netlib-java (possibly its java fallback), "java" always uses the java kernels.
+   */
+  public static final String LINALG_BACKEND_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "linalg.backend";
+
+  private static class BackendHolder {
+    static final LinearAlgebraBackend BACKEND = selectBackend(System.getProperty(LINALG_BACKEND_PROP, "auto"));
+  }
+
+  /** The dense linear algebra kernels of this JVM, picked on first use */
+  public static LinearAlgebraBackend backend() { return BackendHolder.BACKEND; }
+
+  static LinearAlgebraBackend selectBackend(String name) {
+    LinearAlgebraBackend res = new JavaLinearAlgebra();
+    name = name.toLowerCase();
+    if (!"java".equals(name)) {
+      if (!"auto".equals(name) && !"netlib".equals(name))
+        Log.warn("Unknown " + LINALG_BACKEND_PROP + " '" + name + "', expected auto, netlib or java; using auto");
+      try {
+        BLAS blas = BLAS.getInstance();
+        LAPACK lapack = LAPACK.getInstance();
+        // by name, the native wrappers are only on the classpath with the native libraries
+        boolean system = blas.getClass().getName().equals("com.github.fommil.netlib.NativeSystemBLAS")
+            && lapack.getClass().getName().equals("com.github.fommil.netlib.NativeSystemLAPACK");
+        if ("netlib".equals(name) || system)
+          res = new NetlibLinearAlgebra(blas, lapack);
+      } catch (Throwable t) { // netlib-java missing or broken, stay with java
+        Log.warn("netlib-java not available: " + t);
+      }
+    }
+    Log.info("Dense linear algebra: " + res.name());
+    return res;
+  }
+
+  /*
+   * Matrix product a*b with the kernels of backend()
+   */
+  public static double[][] matMul(double[][] a, double[][] b) {
+    final int m = a.length, k = b.length, n = b[0].length;
+    assert a[0].length == k : "Inner dimensions must match: Got " + a[0].length + " != " + k;
+    double[] c = MemoryManager.malloc8d(m * n);
+    backend().dgemm(false, false, m, n, k, 1, toRowMajor(a), 0, k, toRowMajor(b), 0, n, 0, c, 0, n);
+    return reshape1DArray(c, m, n);
+  }
+
+  private static double[] toRowMajor(double[][] x) {
+    final int n = x[0].length;
+    double[] res = MemoryManager.malloc8d(x.length * n);
+    for (int i = 0; i < x.length; i++)
+      System.arraycopy(x[i], 0, res, i * n, n);
+    return res;
+  }
+
   /*
    * Forward substitution: Solve Lx = b for x with L = lower triangular matrix, b = real vector
    */
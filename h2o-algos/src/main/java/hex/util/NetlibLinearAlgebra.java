@@ -0,0 +1,56 @@
+package hex.util;
+
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.F2jBLAS;
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * {@link LinearAlgebraBackend} on top of netlib-java, which binds through JNI to the BLAS/LAPACK of
+ * the system (OpenBLAS, MKL, ATLAS, ...) when it can load it, and otherwise runs the reference
+ * implementation translated to java (F2J).
+ *
+ * BLAS is column-major: a row-major matrix is its transpose in column-major order, so the products
+ * are computed transposed (C' = op(B)'*op(A)') and the lower triangle of a row-major matrix is the
+ * upper triangle of the column-major one, packed or not.
+ */
+public final class NetlibLinearAlgebra implements LinearAlgebraBackend {
+  private final BLAS _blas;
+  private final LAPACK _lapack;
+
+  public NetlibLinearAlgebra(BLAS blas, LAPACK lapack) {
+    _blas = blas;
+    _lapack = lapack;
+  }
+
+  @Override public String name() { return "netlib (" + _blas.getClass().getSimpleName() + ", " + _lapack.getClass().getSimpleName() + ")"; }
+
+  @Override public boolean isNative() { return !(_blas instanceof F2jBLAS); }
+
+  @Override
+  public void dgemm(boolean transA, boolean transB, int m, int n, int k,
+                    double alpha, double[] a, int aOff, int lda,
+                    double[] b, int bOff, int ldb,
+                    double beta, double[] c, int cOff, int ldc) {
+    if (m == 0 || n == 0) return;
+    _blas.dgemm(transB ? "T" : "N", transA ? "T" : "N", n, m, k,
+        alpha, b, bOff, Math.max(1, ldb), a, aOff, Math.max(1, lda),
+        beta, c, cOff, ldc);
+  }
+
+  @Override
+  public void dsyrk(boolean trans, int n, int k,
+                    double alpha, double[] a, int aOff, int lda,
+                    double beta, double[] c, int cOff, int ldc) {
+    if (n == 0) return;
+    _blas.dsyrk("U", trans ? "N" : "T", n, k, alpha, a, aOff, Math.max(1, lda), beta, c, cOff, ldc);
+  }
+
+  @Override
+  public boolean dpptrf(int n, double[] ap, int apOff) {
+    if (n == 0) return true;
+    intW info = new intW(0);
+    _lapack.dpptrf("U", n, ap, apOff, info); // the packed lower triangle by rows is the packed upper one by columns
+    return info.val == 0;
+  }
+}
@@ -544,8 +544,17 @@ public class DataInfoTest extends TestUtil {
           System.out.println("haha");
         }
         DataInfo.Row[] sparseRows = di.extractSparseRows(cs);
+        CSRMatrix csr = di.extractCSR(cs);
+        DataInfo.Row csrRow = csr.newRow(di);
         DataInfo.Row r = di.newDenseRow();
         for(int i=0;i<cs[0]._len;++i) {
+          csr.row(i, csrRow);
+          if( csrRow.isBad() != sparseRows[i].isBad() )
+            throw new RuntimeException("csr row was "+(csrRow.isBad()?"bad":"not bad") + "; but sparse row was "+(sparseRows[i].isBad()?"bad":"not bad"));
+          if( !csrRow.isBad() )
+            for (int j = 0; j < di.fullN(); ++j)
+              if( csrRow.get(j) != sparseRows[i].get(j) )
+                throw new RuntimeException("CSR row mismatch on row " + i + ", column " + j);
           di.extractDenseRow(cs, i, r);
           for (int j = 0; j < di.fullN(); ++j) {
             double sparseDoubleScaled = sparseRows[i].get(j);  // extracting sparse rows does not do the full scaling!!
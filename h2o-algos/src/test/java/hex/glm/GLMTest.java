@@ -9,6 +9,7 @@ import hex.glm.GLMModel.GLMParameters.Link;
 import hex.glm.GLMModel.GLMParameters.Solver;
 import hex.glm.GLMModel.GLMWeightsFun;
 import hex.glm.GLMTask.*;
+import hex.gram.DistributedGram;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
@@ -331,6 +332,70 @@ public class GLMTest  extends TestUtil {
   }
 
 
+  // Gradient over sparse chunks (compressed sparse rows, no centering) must match the one over the standardized dense rows
+  @Test
+  public void testSparseGradientTask() {
+    final int nrows = 5000, ncols = 50;
+    Frame fr = null;
+    DataInfo dinfo = null;
+    try {
+      Random rnd = new Random(1234);
+      Vec [] vecs = new Vec[ncols+1];
+      String [] names = new String[ncols+1];
+      vecs[0] = Vec.makeZero(nrows);
+      for(int c = 1; c < vecs.length; ++c)
+        vecs[c] = vecs[0].makeZero();
+      for(int c = 0; c < vecs.length; ++c) {
+        names[c] = c == ncols ? "y" : "x" + c;
+        try(Vec.Writer w = vecs[c].open()) {
+          for (int r = 0; r < nrows; ++r)
+            if (c == ncols ? rnd.nextBoolean() : rnd.nextDouble() < .02)
+              w.set(r, c == ncols ? 1 : rnd.nextGaussian());
+        }
+      }
+      fr = new Frame(Key.<Frame>make("sparse_gradient"), names, vecs);
+      DKV.put(fr);
+      assertTrue(fr.vec(0).chunkForChunkIdx(0).isSparseZero());
+      GLMParameters params = new GLMParameters(Family.binomial);
+      params._obj_reg = 1;
+      dinfo = new DataInfo(fr, null, 1, true, DataInfo.TransformType.STANDARDIZE, DataInfo.TransformType.NONE, true, false, false, false, false, false);
+      DKV.put(dinfo._key,dinfo);
+      final double [] beta = MemoryManager.malloc8d(dinfo.fullN()+1);
+      for (int i = 0; i < beta.length; ++i)
+        beta[i] = 1 - 2 * rnd.nextDouble();
+      double [] grad = new GLMBinomialGradientTask(null,dinfo, params, 0, beta).doAll(dinfo._adaptedFrame)._gradient;
+      double [] expected = new DenseBinomialGradient(dinfo, beta).doAll(dinfo._adaptedFrame)._gradient;
+      for (int i = 0; i < beta.length; ++i)
+        assertEquals(expected[i], grad[i], 1e-8 * Math.max(1, Math.abs(expected[i])));
+    } finally {
+      if (fr != null) fr.delete();
+      if (dinfo != null) dinfo.remove();
+    }
+  }
+
+  private static class DenseBinomialGradient extends MRTask<DenseBinomialGradient> {
+    final DataInfo _dinfo;
+    final double [] _beta;
+    double [] _gradient;
+    DenseBinomialGradient(DataInfo dinfo, double [] beta) {_dinfo = dinfo; _beta = beta;}
+    @Override public void map(Chunk [] chks) {
+      _gradient = new double[_beta.length];
+      final int icpt = _beta.length-1;
+      DataInfo.Row r = _dinfo.newDenseRow();
+      for(int i = 0; i < chks[0]._len; ++i) {
+        _dinfo.extractDenseRow(chks, i, r);
+        double eta = _beta[icpt];
+        for(int j = 0; j < icpt; ++j)
+          eta += r.get(j)*_beta[j];
+        double d = 1.0/(1.0 + Math.exp(-eta)) - r.response(0);
+        for(int j = 0; j < icpt; ++j)
+          _gradient[j] += d*r.get(j);
+        _gradient[icpt] += d;
+      }
+    }
+    @Override public void reduce(DenseBinomialGradient g) {ArrayUtils.add(_gradient, g._gradient);}
+  }
+
   @Test
   public void testMultinomialGradient(){
     Key parsed = Key.make("covtype");
@@ -682,6 +747,36 @@ public class GLMTest  extends TestUtil {
     }
   }
 
+  // IRLSM with the gram tiled across the cloud, as for the wide problems, against the gram on one node
+  @Test
+  public void testDistributedGramIRLSM() {
+    Frame fr = parse_test_file(Key.make("prostate_parsed"), "smalldata/logreg/prostate.csv");
+    GLMModel model = null, wide = null;
+    try {
+      GLMParameters params = new GLMParameters();
+      params._family = Family.binomial;
+      params._solver = Solver.IRLSM;
+      params._response_column = "CAPSULE";
+      params._ignored_columns = new String[]{"ID"};
+      params._train = fr._key;
+      params._alpha = new double[]{0};
+      params._lambda = new double[]{1e-3};
+      model = new GLM(params).trainModel().get();
+      System.setProperty(DistributedGram.WIDE_COLS_PROP, "1");
+      try {
+        wide = new GLM(params).trainModel().get();
+      } finally {
+        System.clearProperty(DistributedGram.WIDE_COLS_PROP);
+      }
+      assertArrayEquals(model.beta(), wide.beta(), 1e-6);
+      assertEquals(model._output._training_metrics._MSE, wide._output._training_metrics._MSE, 1e-8);
+    } finally {
+      fr.delete();
+      if (model != null) model.delete();
+      if (wide != null) wide.delete();
+    }
+  }
+
   @Test
   public void testCoordinateDescent_airlines() {
     GLMModel model = null;
@@ -1288,6 +1383,37 @@ public class GLMTest  extends TestUtil {
   }
 
 
+  /**
+   * Gaussian lambda search with IRLSM reuses the gram along the path (only the columns entering the
+   * active set are computed); the model at the last lambda must match the one fitted at that lambda alone.
+   */
+  @Test
+  public void testGaussianLambdaSearchCachedGram() {
+    GLMModel model1 = null, model2 = null;
+    Frame fr = parse_test_file(Key.make("prostate"), "smalldata/logreg/prostate.csv");
+    try {
+      GLMParameters params = new GLMParameters(Family.gaussian);
+      params._response_column = "AGE";
+      params._ignored_columns = new String[]{"ID"};
+      params._train = fr._key;
+      params._alpha = new double[]{1};
+      params._solver = Solver.IRLSM;
+      params._lambda_search = true;
+      params._nlambdas = 10;
+      model1 = new GLM(params).trainModel().get();
+      params._lambda_search = false;
+      params._lambda = new double[]{model1._output.lambda_selected()};
+      model2 = new GLM(params).trainModel().get();
+      double[] beta1 = model1.beta(), beta2 = model2.beta();
+      for (int i = 0; i < beta1.length; ++i)
+        assertEquals(beta2[i], beta1[i], 1e-3 * Math.max(1, Math.abs(beta2[i])));
+    } finally {
+      fr.delete();
+      if (model1 != null) model1.delete();
+      if (model2 != null) model2.delete();
+    }
+  }
+
   @Test
   public void test_COD_Airlines_LambdaSearch() {
     GLMModel model1 = null;
@@ -1745,6 +1871,95 @@ public class GLMTest  extends TestUtil {
     }
   }
 
+  /**
+   * Gaussian cross-validation models are fitted from the fold grams of a single shared pass; each must
+   * match the model fitted on its training rows alone (the other folds, as weights).
+   */
+  @Test public void testXvalGaussianSharedFoldGrams(){
+    GLMModel model = null;
+    Frame fr = parse_test_file("smalldata/glm_test/prostate_cat_replaced.csv");
+    Frame wfr = null;
+    final int nfolds = 3;
+    try{
+      GLMParameters params = new GLMParameters(Family.gaussian);
+      params._response_column = "AGE";
+      params._ignored_columns = new String[]{"ID"};
+      params._train = fr._key;
+      params._lambda = new double[]{0};
+      params._solver = Solver.IRLSM;
+      params._nfolds = nfolds;
+      params._fold_assignment = Model.Parameters.FoldAssignmentScheme.Modulo;
+      int used = ComputationState.foldGramsUsed.get();
+      model = new GLM(params).trainModel().get();
+      // the cross-validation models and the main model all took their grams from the shared pass
+      assertEquals(nfolds + 1, ComputationState.foldGramsUsed.get() - used);
+      for(int f = 0; f < nfolds; ++f) {
+        Vec w = fr.anyVec().makeZero();
+        try(Vec.Writer vw = w.open()) {
+          for(long r = 0; r < w.length(); ++r)
+            vw.set(r, r % nfolds == f ? 0 : 1);
+        }
+        wfr = new Frame(Key.<Frame>make("prostate_fold"), fr.names(), fr.vecs());
+        wfr.add("w", w);
+        DKV.put(wfr);
+        GLMParameters fparams = (GLMParameters) params.clone();
+        fparams._train = wfr._key;
+        fparams._weights_column = "w";
+        fparams._nfolds = 0;
+        fparams._fold_assignment = Model.Parameters.FoldAssignmentScheme.AUTO;
+        GLMModel fmodel = new GLM(fparams).trainModel().get();
+        GLMModel cvmodel = DKV.getGet(model._output._cross_validation_models[f]);
+        double [] beta = fmodel.beta(), cvbeta = cvmodel.beta();
+        fmodel.delete();
+        for(int i = 0; i < beta.length; ++i)
+          assertEquals(beta[i], cvbeta[i], 1e-8 * Math.max(1, Math.abs(beta[i])));
+        wfr.remove("w").remove();
+        DKV.remove(wfr._key);
+        wfr = null;
+      }
+    } finally {
+      if(wfr != null) {
+        wfr.remove("w").remove();
+        DKV.remove(wfr._key);
+      }
+      fr.delete();
+      if(model != null) {
+        for(Key k:model._output._cross_validation_models)
+          Keyed.remove(k);
+        model.delete();
+      }
+    }
+  }
+
+  @Test public void testSGDSolver(){
+    GLMModel irlsm = null, sgd = null;
+    Frame fr = parse_test_file("smalldata/glm_test/prostate_cat_replaced.csv");
+    try{
+      GLMParameters params = new GLMParameters(Family.binomial);
+      params._response_column = "CAPSULE";
+      params._ignored_columns = new String[]{"ID"};
+      params._train = fr._key;
+      params._lambda = new double[]{1e-3};
+      params._alpha = new double[]{.5};
+      params._objective_epsilon = 1e-10;
+      params._beta_epsilon = 1e-6;
+      params._max_iterations = 500;
+      params._seed = 1234;
+      params._solver = Solver.IRLSM;
+      irlsm = new GLM(params).trainModel().get();
+      params._solver = Solver.SGD;
+      sgd = new GLM(params).trainModel().get();
+      double [] beta = irlsm.beta(), sgdBeta = sgd.beta();
+      for(int i = 0; i < beta.length; ++i)
+        assertEquals(beta[i], sgdBeta[i], 1e-2 * Math.max(1, Math.abs(beta[i])));
+      assertEquals(residualDeviance(irlsm), residualDeviance(sgd), 1e-3 * residualDeviance(irlsm));
+    } finally {
+      fr.delete();
+      if(irlsm != null) irlsm.delete();
+      if(sgd != null) sgd.delete();
+    }
+  }
+
   /**
    * Test that lambda search gets (almost) the same result as running the model for each lambda separately.
    */
@@ -0,0 +1,226 @@
+package hex.gram;
+
+import com.github.fommil.netlib.F2jBLAS;
+import com.github.fommil.netlib.F2jLAPACK;
+import hex.DataInfo;
+import hex.util.LinearAlgebraBackend;
+import hex.util.NetlibLinearAlgebra;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.AutoBuffer;
+import water.DKV;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.util.ArrayUtils;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GramTest extends TestUtil {
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  // The native kernels of the JVM are picked once, mostly the java loops in the tests: their code
+  // paths run with netlib-java's java implementation instead
+  private static final LinearAlgebraBackend F2J = new NetlibLinearAlgebra(new F2jBLAS(), new F2jLAPACK());
+
+  // Two categoricals (5 and 3 levels, the first one on the diagonal), dense numbers and the intercept
+  private static Gram gram(int dense, int nrows, boolean batched) {
+    final int diag = 5, cats = 8;
+    Gram g = new Gram(cats + dense, diag, dense, 2, true);
+    Random rnd = new Random(0xC0FFEE + dense);
+    DataInfo.Row r = new DataInfo.Row(false, new double[dense], new int[2], new double[1], 0, 0); // reused, as in FrameTask2
+    for (int i = 0; i < nrows; ++i) {
+      r.binIds[0] = rnd.nextInt(diag);
+      r.binIds[1] = diag + rnd.nextInt(cats - diag);
+      for (int j = 0; j < dense; ++j)
+        r.numVals[j] = rnd.nextInt(4) == 0 ? 0 : rnd.nextGaussian();
+      double w = rnd.nextInt(10) == 0 ? 0 : rnd.nextDouble();
+      if (batched) g.addRowBatched(r, w);
+      else g.addRow(r, w);
+    }
+    g.flushRows();
+    return g;
+  }
+
+  private static void checkBatched(int dense, int nrows, double tol) {
+    Gram byRow = gram(dense, nrows, false);
+    Gram batched = gram(dense, nrows, true);
+    assertArrayEquals(byRow._diag, batched._diag, tol);
+    for (int i = 0; i < byRow._xx.length; ++i)
+      assertArrayEquals(byRow._xx[i], batched._xx[i], tol);
+  }
+
+  @Test public void testBatchedMatchesRowByRow() {
+    Gram.backendOverride = null;
+    checkBatched(10, 100, 1e-12);     // too narrow to batch
+    checkBatched(100, 300, 1e-12);    // several batches, the last one partial
+    checkBatched(130, 128, 1e-12);    // tiles not aligned with the columns
+  }
+
+  @Test public void testBatchedNativeMatchesRowByRow() {
+    Gram.backendOverride = F2J;
+    try { // scaled by the square roots of the weights, not added in the same order
+      checkBatched(100, 300, 1e-10);
+      checkBatched(300, 200, 1e-10);  // more than one strip of the gram
+    } finally {
+      Gram.backendOverride = null;
+    }
+  }
+
+  @Test public void testNativeDenseCholesky() {
+    for (int dense : new int[]{40, 100}) { // a dense block below NATIVE_CHOL_MIN, one above
+      Gram g = gram(dense, 500, false);
+      g.addDiag(1e-3);
+      Gram.backendOverride = null;
+      Gram.Cholesky java = g.deep_clone().cholesky(null);
+      Gram.backendOverride = F2J;
+      Gram.Cholesky lapack;
+      try {
+        lapack = g.deep_clone().cholesky(null);
+      } finally {
+        Gram.backendOverride = null;
+      }
+      assertTrue(java.isSPD());
+      assertTrue(lapack.isSPD());
+      assertArrayEquals(java._diag, lapack._diag, 0);
+      for (int i = 0; i < java._xx.length; ++i)
+        assertArrayEquals(java._xx[i], lapack._xx[i], 1e-10);
+    }
+  }
+
+  @Test public void testUnpackedDenseCholesky() {
+    Gram g = gram(40, 500, false);
+    g.addDiag(1e-3);
+    Gram.Cholesky packed = g.deep_clone().cholesky(null);
+    Gram.maxPackedN = 10;  // the dense block is too large to pack
+    Gram.Cholesky jagged;
+    try {
+      jagged = g.deep_clone().cholesky(null);
+    } finally {
+      Gram.maxPackedN = PackedLowerTriangle.MAX_N;
+    }
+    assertTrue(jagged.isSPD());
+    assertArrayEquals(packed._diag, jagged._diag, 0);
+    for (int i = 0; i < packed._xx.length; ++i) // same operations in the same order
+      assertArrayEquals(packed._xx[i], jagged._xx[i], 0);
+  }
+
+  // Random SPD matrix (A'A plus a ridge), lower triangle
+  private static double[][] spd(int n, Random rnd) {
+    double[][] a = new double[n][n];
+    for (double[] row : a)
+      for (int j = 0; j < n; ++j) row[j] = rnd.nextGaussian();
+    double[][] xx = new double[n][];
+    for (int i = 0; i < n; ++i) {
+      xx[i] = new double[i + 1];
+      for (int j = 0; j <= i; ++j) {
+        for (int k = 0; k < n; ++k) xx[i][j] += a[k][i] * a[k][j];
+        if (i == j) xx[i][j] += 1;
+      }
+    }
+    return xx;
+  }
+
+  @Test public void testPackedCholesky() {
+    Random rnd = new Random(42);
+    final int n = 57;
+    double[][] xx = spd(n, rnd);
+    PackedLowerTriangle packed = new PackedLowerTriangle(xx).cholesky(10, 4);
+    double[][] jagged = new double[n][];
+    for (int i = 0; i < n; ++i) jagged[i] = xx[i].clone();
+    double[][] l = Gram.InPlaceCholesky.decompose_2(jagged, 10, 4).getL();
+    assertTrue(packed.isSPD());
+    double[][] lp = packed.toLowerTriangle();
+    for (int i = 0; i < n; ++i)
+      assertArrayEquals(l[i], lp[i], 0);
+    // solve, check the residual against the original matrix
+    double[] b = new double[n];
+    for (int i = 0; i < n; ++i) b[i] = rnd.nextDouble();
+    double[] x = b.clone();
+    packed.solve(x);
+    for (int i = 0; i < n; ++i) {
+      double s = 0;
+      for (int j = 0; j < n; ++j) s += (j <= i ? xx[i][j] : xx[j][i]) * x[j];
+      assertEquals(b[i], s, 1e-8);
+    }
+  }
+
+  @Test public void testPackedGram() {
+    Gram g = new Gram(8 + 40, 5, 40, 2, true);
+    Random rnd = new Random(7);
+    DataInfo.Row r = new DataInfo.Row(false, new double[40], new int[2], new double[1], 0, 0);
+    for (int i = 0; i < 200; ++i) {
+      r.binIds[0] = rnd.nextInt(5);
+      r.binIds[1] = 5 + rnd.nextInt(3);
+      for (int j = 0; j < 40; ++j) r.numVals[j] = rnd.nextGaussian();
+      g.addRow(r, 1);
+    }
+    PackedLowerTriangle p = g.packed();
+    for (int i = 0; i < g.fullN(); ++i)
+      for (int j = 0; j <= i; ++j)
+        assertEquals(g.get(i, j), p.get(i, j), 0);
+    // same gram back from the wire
+    Gram h = new AutoBuffer().put(g).flipForReading().get();
+    assertEquals(g.fullN(), h.fullN());
+    assertArrayEquals(g._diag, h._diag, 0);
+    for (int i = 0; i < g._xx.length; ++i)
+      assertArrayEquals(g._xx[i], h._xx[i], 0);
+  }
+
+  @Test public void testDistributedCholesky() {
+    Random rnd = new Random(5);
+    final int n = 50;
+    double[][] xx = spd(n, rnd);
+    DistributedGram dg = DistributedGram.make(xx, 16);
+    try {
+      assertEquals(xx[37][20], dg.get(20, 37), 0);
+      double[][] jagged = new double[n][];
+      for (int i = 0; i < n; ++i) jagged[i] = xx[i].clone();
+      double[][] l = Gram.InPlaceCholesky.decompose_2(jagged, 10, 1).getL();
+      dg.cholesky();
+      assertTrue(dg.isSPD());
+      for (int i = 0; i < n; ++i)
+        for (int j = 0; j <= i; ++j)
+          assertEquals(l[i][j], dg.get(i, j), 1e-10);
+      double[] b = new double[n];
+      for (int i = 0; i < n; ++i) b[i] = rnd.nextDouble();
+      double[] x = b.clone();
+      dg.solve(x);
+      for (int i = 0; i < n; ++i) {
+        double s = 0;
+        for (int j = 0; j < n; ++j) s += (j <= i ? xx[i][j] : xx[j][i]) * x[j];
+        assertEquals(b[i], s, 1e-8);
+      }
+    } finally {
+      dg.remove();
+    }
+  }
+
+  @Test public void testDistributedGram() {
+    Random rnd = new Random(11);
+    double[][] rows = new double[300][40];
+    String[] names = new String[40];
+    for (int j = 0; j < names.length; ++j) names[j] = "C" + (j + 1);
+    for (double[] row : rows)
+      for (int j = 0; j < row.length; ++j) row[j] = rnd.nextGaussian();
+    Frame fr = ArrayUtils.frame(names, rows);
+    DKV.put(fr);
+    DataInfo dinfo = new DataInfo(fr, null, 0, true, DataInfo.TransformType.NONE, DataInfo.TransformType.NONE, false, false, false, false, false, false, true);
+    DistributedGram dg = null;
+    try {
+      Gram g = new Gram.GramTask(null, dinfo, false, true).doAll(dinfo._adaptedFrame)._gram;
+      dg = DistributedGram.compute(null, dinfo, 16);
+      assertEquals(g.fullN(), dg._n);
+      for (int i = 0; i < g.fullN(); ++i)
+        for (int j = 0; j <= i; ++j)
+          assertEquals(g.get(i, j), dg.get(i, j), 1e-10);
+    } finally {
+      if (dg != null) dg.remove();
+      dinfo.remove();
+      fr.delete();
+    }
+  }
+}
@@ -95,6 +95,52 @@ public class L_BFGS_Test  extends TestUtil {
     }
   }
 
+  // line search with all steps in one pass: same points as one gradient per step, same optimum
+  @Test
+  public void logisticPipelinedLineSearch() {
+    Key parsedKey = Key.make("prostate");
+    DataInfo dinfo = null;
+    try {
+      GLMParameters glmp = new GLMParameters(Family.binomial, Family.binomial.defaultLink);
+      glmp._alpha = new double[]{0};
+      glmp._lambda = new double[]{1e-5};
+      Frame source = parse_test_file(parsedKey, "smalldata/glm_test/prostate_cat_replaced.csv");
+      source.add("CAPSULE", source.remove("CAPSULE"));
+      source.remove("ID").remove();
+      Frame valid = new Frame(source._names.clone(),source.vecs().clone());
+      dinfo = new DataInfo(source, valid, 1, false, DataInfo.TransformType.STANDARDIZE, DataInfo.TransformType.NONE, true, false, false, /* weights */ false, /* offset */ false, /* fold */ false);
+      DKV.put(dinfo._key,dinfo);
+      glmp._obj_reg = 1/380.0;
+      GLMGradientSolver solver = new GLMGradientSolver(null,glmp, dinfo, 1e-5, null);
+      double [] beta = MemoryManager.malloc8d(dinfo.fullN()+1);
+      beta[beta.length-1] = new GLMWeightsFun(glmp).link(source.vec("CAPSULE").mean());
+      GradientInfo ginfo = solver.getGradient(beta);
+      double [] direction = ArrayUtils.mult(ginfo._gradient.clone(), -1);
+      double [] steps = new double[]{2, 1, .5, .25};
+      GradientInfo [] ginfos = solver.getGradients(beta, direction, steps);
+      for (int k = 0; k < steps.length; ++k) {
+        GradientInfo g = solver.getGradient(ArrayUtils.wadd(beta, direction, new double[beta.length], steps[k]));
+        assertEquals(g._objVal, ginfos[k]._objVal, 1e-10);
+        for (int i = 0; i < beta.length; ++i)
+          assertEquals(g._gradient[i], ginfos[k]._gradient[i], 1e-10);
+      }
+      L_BFGS lbfgs = new L_BFGS().setGradEps(1e-8).setLineSearchPoints(4);
+      L_BFGS.Result r = lbfgs.solve(solver, beta, ginfo, new L_BFGS.ProgressMonitor(){
+        public boolean progress(double [] beta, GradientInfo ginfo){
+          return true;
+        }
+      });
+      assertEquals(378.34, 2 * r.ginfo._objVal * source.numRows(), 1e-1);
+    } finally {
+      if(dinfo != null)
+        DKV.remove(dinfo._key);
+      Value v = DKV.get(parsedKey);
+      if (v != null) {
+        v.<Frame>get().delete();
+      }
+    }
+  }
+
   // Test LSM on arcene - wide dataset with ~10k columns
   // test warm start and max #iteratoions
   @Test
@@ -0,0 +1,147 @@
+package hex.util;
+
+import com.github.fommil.netlib.F2jBLAS;
+import com.github.fommil.netlib.F2jLAPACK;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.TestUtil;
+import water.util.ArrayUtils;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The java kernels against the plain definitions, and netlib-java (its java implementation, so that
+ * the row-major to column-major mapping is checked wherever the test runs) against the java kernels.
+ * Blocks of larger matrices (offsets and leading dimensions) and sizes across the tiles.
+ */
+public class LinearAlgebraBackendTest extends TestUtil {
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  private static final LinearAlgebraBackend JAVA = new JavaLinearAlgebra();
+  private static final LinearAlgebraBackend NETLIB = new NetlibLinearAlgebra(new F2jBLAS(), new F2jLAPACK());
+
+  private static double[] rnd(Random rnd, int n) {
+    double[] res = new double[n];
+    for (int i = 0; i < n; ++i)
+      res[i] = rnd.nextInt(5) == 0 ? 0 : rnd.nextGaussian();
+    return res;
+  }
+
+  // op(X)(i,j) of a row-major matrix with leading dimension ld
+  private static double op(double[] x, int off, int ld, boolean trans, int i, int j) {
+    return trans ? x[off + j * ld + i] : x[off + i * ld + j];
+  }
+
+  @Test
+  public void testDgemm() {
+    Random r = new Random(1234);
+    int[][] dims = new int[][]{{1, 1, 1}, {3, 5, 7}, {70, 65, 130}, {129, 3, 64}};
+    for (int[] d : dims) {
+      final int m = d[0], n = d[1], k = d[2], pad = 3, off = 2;
+      for (boolean ta : new boolean[]{false, true})
+        for (boolean tb : new boolean[]{false, true}) {
+          final int lda = (ta ? m : k) + pad, ldb = (tb ? k : n) + pad, ldc = n + pad;
+          double[] a = rnd(r, off + (ta ? k : m) * lda);
+          double[] b = rnd(r, off + (tb ? n : k) * ldb);
+          double[] c0 = rnd(r, off + m * ldc);
+          double[] c1 = c0.clone(), c2 = c0.clone();
+          JAVA.dgemm(ta, tb, m, n, k, .5, a, off, lda, b, off, ldb, 2, c1, off, ldc);
+          NETLIB.dgemm(ta, tb, m, n, k, .5, a, off, lda, b, off, ldb, 2, c2, off, ldc);
+          for (int i = 0; i < m; ++i)
+            for (int j = 0; j < ldc; ++j) {
+              double expected = c0[off + i * ldc + j];
+              if (j < n) {
+                double s = 0;
+                for (int p = 0; p < k; ++p)
+                  s += op(a, off, lda, ta, i, p) * op(b, off, ldb, tb, p, j);
+                expected = .5 * s + 2 * expected;
+              }
+              assertEquals(expected, c1[off + i * ldc + j], 1e-10);
+              assertEquals(expected, c2[off + i * ldc + j], 1e-10);
+            }
+        }
+    }
+  }
+
+  @Test
+  public void testDsyrk() {
+    Random r = new Random(4321);
+    int[][] dims = new int[][]{{1, 1}, {5, 3}, {130, 70}, {64, 129}};
+    for (int[] d : dims) {
+      final int n = d[0], k = d[1], pad = 2, off = 1;
+      for (boolean trans : new boolean[]{false, true}) {
+        final int lda = (trans ? n : k) + pad, ldc = n + pad;
+        double[] a = rnd(r, off + (trans ? k : n) * lda);
+        double[] c0 = rnd(r, off + n * ldc);
+        double[] c1 = c0.clone(), c2 = c0.clone();
+        JAVA.dsyrk(trans, n, k, 1.5, a, off, lda, 0, c1, off, ldc);
+        NETLIB.dsyrk(trans, n, k, 1.5, a, off, lda, 0, c2, off, ldc);
+        for (int i = 0; i < n; ++i)
+          for (int j = 0; j < ldc; ++j) {
+            double expected = c0[off + i * ldc + j]; // upper triangle and padding untouched
+            if (j <= i) {
+              double s = 0;
+              for (int p = 0; p < k; ++p)
+                s += (trans ? a[off + p * lda + i] : a[off + i * lda + p]) * (trans ? a[off + p * lda + j] : a[off + j * lda + p]);
+              expected = 1.5 * s;
+            }
+            assertEquals(expected, c1[off + i * ldc + j], 1e-10);
+            if (j <= i)
+              assertEquals(expected, c2[off + i * ldc + j], 1e-10);
+          }
+      }
+    }
+  }
+
+  @Test
+  public void testCholesky() {
+    Random r = new Random(42);
+    for (int n : new int[]{1, 4, 100}) {
+      final int k = n + 10;
+      double[] x = rnd(r, k * n);
+      double[] a = new double[n * n];
+      JAVA.dsyrk(true, n, k, 1, x, 0, n, 0, a, 0, n);
+      for (int i = 0; i < n; ++i) {
+        a[i * n + i] += 1e-3;
+        for (int j = i + 1; j < n; ++j)
+          a[i * n + j] = a[j * n + i];
+      }
+      final int off = 3; // packed lower triangle, after some other numbers
+      double[] l1 = new double[off + n * (n + 1) / 2];
+      for (int i = 0; i < n; ++i)
+        System.arraycopy(a, i * n, l1, off + i * (i + 1) / 2, i + 1);
+      double[] l2 = l1.clone();
+      assertTrue(JAVA.dpptrf(n, l1, off));
+      assertTrue(NETLIB.dpptrf(n, l2, off));
+      for (int i = 0; i < n; ++i)
+        for (int j = 0; j <= i; ++j) {
+          final int ri = off + i * (i + 1) / 2, rj = off + j * (j + 1) / 2;
+          assertEquals(l1[ri + j], l2[ri + j], 1e-8);
+          double s = 0; // L*L' = A
+          for (int p = 0; p <= j; ++p)
+            s += l1[ri + p] * l1[rj + p];
+          assertEquals(a[i * n + j], s, 1e-8 * Math.max(1, Math.abs(a[i * n + j])));
+        }
+    }
+    double[] notSPD = new double[]{1, 2, 1};
+    assertFalse(JAVA.dpptrf(2, notSPD.clone(), 0));
+    assertFalse(NETLIB.dpptrf(2, notSPD.clone(), 0));
+  }
+
+  @Test
+  public void testMatMul() {
+    Random r = new Random(7);
+    double[][] a = new double[20][33], b = new double[33][17];
+    for (double[] row : a) for (int j = 0; j < row.length; ++j) row[j] = r.nextGaussian();
+    for (double[] row : b) for (int j = 0; j < row.length; ++j) row[j] = r.nextGaussian();
+    double[][] expected = ArrayUtils.multArrArr(a, b);
+    double[][] res = LinearAlgebraUtils.matMul(a, b);
+    for (int i = 0; i < expected.length; ++i)
+      for (int j = 0; j < expected[i].length; ++j)
+        assertEquals(expected[i][j], res[i][j], 1e-10);
+  }
+}
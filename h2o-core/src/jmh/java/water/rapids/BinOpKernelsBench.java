@@ -0,0 +1,100 @@
+package water.rapids;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import water.fvec.Chunk;
+import water.fvec.NewChunk;
+import water.rapids.ast.prims.operators.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary operators over a chunk: whole-chunk kernels vs. the per element op() and atd() loop,
+ * for the main operators and chunk encodings
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BinOpKernelsBench {
+
+  @Param({"+", "*", "/", "<", "=="})
+  private String op;
+  @Param({"constant", "integer", "scaled", "double", "sparse"})
+  private String encoding;
+  @Param({"100000"})
+  private int rows;
+
+  private AstBinOp binOp;
+  private Chunk left;
+  private Chunk right;
+
+  @Benchmark
+  public Chunk chunkOpScalarKernel() {
+    NewChunk nc = new NewChunk(null, 0);
+    BinOpKernels.apply(binOp, left, 3, nc);
+    return nc.compress();
+  }
+
+  @Benchmark
+  public Chunk chunkOpScalarPerElement() {
+    NewChunk nc = new NewChunk(null, 0);
+    for (int i = 0; i < left._len; i++)
+      nc.addNum(binOp.op(left.atd(i), 3));
+    return nc.compress();
+  }
+
+  @Benchmark
+  public Chunk chunkOpChunkKernel() {
+    NewChunk nc = new NewChunk(null, 0);
+    BinOpKernels.apply(binOp, left, right, nc);
+    return nc.compress();
+  }
+
+  @Benchmark
+  public Chunk chunkOpChunkPerElement() {
+    NewChunk nc = new NewChunk(null, 0);
+    for (int i = 0; i < left._len; i++)
+      nc.addNum(binOp.op(left.atd(i), right.atd(i)));
+    return nc.compress();
+  }
+
+  @Setup
+  public void setup() {
+    switch (op) {
+      case "+": binOp = new AstPlus(); break;
+      case "*": binOp = new AstMul(); break;
+      case "/": binOp = new AstDiv(); break;
+      case "<": binOp = new AstLt(); break;
+      default: binOp = new AstEq();
+    }
+    double[] raw = new double[rows];
+    for (int row = 0; row < rows; ++row) {
+      switch (encoding) {
+        case "constant": raw[row] = 7; break;          // C0LChunk
+        case "integer": raw[row] = row % 100; break;    // C1NChunk
+        case "scaled": raw[row] = 0.5 + row % 1000; break; // C2SChunk
+        case "double": raw[row] = Math.PI * row; break; // C8DChunk
+        default: raw[row] = row % 50 == 0 ? row : 0;    // CXIChunk
+      }
+    }
+    double[] raw2 = new double[rows];
+    for (int row = 0; row < rows; ++row)
+      raw2[row] = row % 10 + 1;
+    left = new NewChunk(raw).compress();
+    right = new NewChunk(raw2).compress();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+            .include(BinOpKernelsBench.class.getSimpleName())
+            .build();
+
+    new Runner(opt).run();
+  }
+}
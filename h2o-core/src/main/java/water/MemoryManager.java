@@ -79,7 +79,7 @@ abstract public class MemoryManager {
     // NO LOGGING UNDER LOCK!
     Log.warn("Pausing to swap to disk; more memory may help");
   }
-  static boolean canAlloc() { return CAN_ALLOC; }
+  public static boolean canAlloc() { return CAN_ALLOC; }
 
   static void set_goals( String msg, boolean oom){
     set_goals(msg, oom, 0);
@@ -11,8 +11,11 @@ import water.api.schemas3.ParseSetupV3;
 import water.exceptions.H2OIllegalArgumentException;
 import water.parser.ParseDataset;
 import water.parser.ParseSetup;
+import water.parser.ParseSetupSampler;
+import water.rapids.Session;
 import water.util.DistributedException;
 import water.util.PojoUtils;
+import water.util.StringUtils;
 
 import static water.parser.DefaultParserProviders.GUESS_INFO;
 
@@ -22,6 +25,18 @@ import static water.parser.DefaultParserProviders.GUESS_INFO;
  */
 public class ParseSetupHandler extends Handler {
 
+  /** The cached setups are owned by the Rapids session of the client, so that they don't outlive it. */
+  private static Session cacheSession(String sessionId) {
+    if (StringUtils.isNullOrEmpty(sessionId))
+      throw new H2OIllegalArgumentException("use_setup_cache requires the session_id of the client.");
+    Session ses = RapidsHandler.SESSIONS.get(sessionId);
+    if (ses == null) {
+      ses = new Session(sessionId);
+      RapidsHandler.SESSIONS.put(sessionId, ses);
+    }
+    return ses;
+  }
+
   public ParseSetupV3 guessSetup(int version, ParseSetupV3 p) {
     if (p.source_frames == null)
       throw new H2OIllegalArgumentException("No file names given for parsing.");
@@ -37,7 +52,11 @@ public class ParseSetupHandler extends Handler {
         if (p.na_strings[i] != null && p.na_strings[i].length == 0) p.na_strings[i] = null;
     ParseSetup ps;
     try{
-      ps = ParseSetup.guessSetup(fkeys, new ParseSetup(p));
+      if (p.sample_files > 0 || p.sample_offsets > 0 || p.use_setup_cache)
+        ps = ParseSetupSampler.guessSetup(fkeys, new ParseSetup(p), p.sample_files, p.sample_offsets, p.sample_seed,
+                p.use_setup_cache ? cacheSession(p.session_id) : null);
+      else
+        ps = ParseSetup.guessSetup(fkeys, new ParseSetup(p));
     } catch(Throwable ex) {
       Throwable ex2 = ex;
       if(ex instanceof DistributedException)
@@ -28,4 +28,13 @@ public class ImportSQLTableV99 extends RequestSchemaV3<Iced,ImportSQLTableV99> {
   @API(help = "optimize")
   public boolean optimize = true;
 
+  @API(help = "Numeric or date/time column used to split the table into ranges imported in parallel (instead of LIMIT/OFFSET pagination)")
+  public String partition_column = "";
+
+  @API(help = "Number of rows fetched from the database in a single round-trip (0 = default)")
+  public int fetch_size = 0;
+
+  @API(help = "Number of times a failed query for a chunk of data is retried")
+  public int max_retries = 0;
+
 }
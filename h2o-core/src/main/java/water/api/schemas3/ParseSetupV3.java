@@ -5,6 +5,7 @@ import water.api.ParseTypeValuesProvider;
 import water.api.schemas3.KeyV3.FrameKeyV3;
 import water.exceptions.H2OIllegalValueException;
 import water.fvec.FileVec;
+import water.parser.ParseRowFilter;
 import water.parser.ParseSetup;
 import water.parser.ParserInfo;
 import water.parser.ParserProvider;
@@ -73,9 +74,34 @@ public class ParseSetupV3 extends RequestSchemaV3<ParseSetup, ParseSetupV3> {
   @API(help="Key-reference to an initialized instance of a Decryption Tool")
   public KeyV3.DecryptionToolKeyV3 decrypt_tool;
 
+  @API(help="Indices of columns to leave out of the parsed frame", direction=API.Direction.INOUT)
+  public int[] skipped_columns;
+
+  @API(help="Predicates used to skip blocks of columnar data (Parquet row groups, ORC stripes), eg. \"3 >= 2.5\"",
+          direction=API.Direction.INOUT)
+  public String[] row_filters;
+
+  @API(help="Number of randomly chosen files examined to guess the setup (the first file is always examined), 0 means all files",
+          direction=API.Direction.INPUT)
+  public int sample_files;
+
+  @API(help="Number of random chunks of each examined (uncompressed CSV) file used to guess column types, in addition to the beginning of the file",
+          direction=API.Direction.INPUT)
+  public int sample_offsets;
+
+  @API(help="Seed used to pick the sampled files and chunks", direction=API.Direction.INPUT)
+  public long sample_seed = 42;
+
+  @API(help="Reuse the setup guessed by a previous request of the same session for the same files (and cache the result), requires session_id",
+          direction=API.Direction.INPUT)
+  public boolean use_setup_cache;
+
+  @API(help="Rapids session owning the cached setup, the cached setups are removed when the session ends", direction=API.Direction.INPUT)
+  public String session_id;
+
   @Override
   public ParseSetup fillImpl(ParseSetup impl) {
-    ParseSetup parseSetup = fillImpl(impl, new String[] {"parse_type"});
+    ParseSetup parseSetup = fillImpl(impl, new String[] {"parse_type", "row_filters"});
     // Transform the field parse_type
     ParserInfo pi = GUESS_INFO;
     if (this.parse_type != null) {
@@ -85,14 +111,16 @@ public class ParseSetupV3 extends RequestSchemaV3<ParseSetup, ParseSetupV3> {
       } else throw new H2OIllegalValueException("Cannot find right parser for specified parser type!", this.parse_type);
     }
     parseSetup.setParseType(pi);
+    parseSetup.setRowFilters(ParseRowFilter.fromStrings(this.row_filters));
 
     return parseSetup;
   }
 
   @Override
   public ParseSetupV3 fillFromImpl(ParseSetup impl) {
-    ParseSetupV3 parseSetupV3 = fillFromImpl(impl, new String[] {"parse_type"});
+    ParseSetupV3 parseSetupV3 = fillFromImpl(impl, new String[] {"parse_type", "row_filters"});
     parseSetupV3.parse_type = impl.getParseType() != null ? impl.getParseType().name() : GUESS_INFO.name();
+    parseSetupV3.row_filters = ParseRowFilter.toStrings(impl.getRowFilters());
     return parseSetupV3;
   }
 }
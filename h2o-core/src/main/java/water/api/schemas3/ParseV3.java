@@ -53,6 +53,12 @@ public class ParseV3 extends RequestSchemaV3<Iced, ParseV3> {
   @API(help="Key-reference to an initialized instance of a Decryption Tool")
   public KeyV3.DecryptionToolKeyV3 decrypt_tool;
 
+  @API(help="Indices of columns to leave out of the parsed frame")
+  public int[] skipped_columns;
+
+  @API(help="Predicates used to skip blocks of columnar data (Parquet row groups, ORC stripes), eg. \"3 >= 2.5\"")
+  public String[] row_filters;
+
   // Output fields
   @API(help="Parse job", direction=API.Direction.OUTPUT)
   public JobV3 job;
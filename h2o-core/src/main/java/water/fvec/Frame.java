@@ -69,6 +69,7 @@ public class Frame extends Lockable<Frame> {
   private Key<Vec>[] _keys;     // Keys for the vectors
   private transient Vec[] _vecs; // The Vectors (transient to avoid network traffic)
   private transient Vec _col0; // First readable vec; fast access to the VectorGroup's Chunk layout
+  private transient SortOrder _sortOrder; // Known row order (e.g. left by a sort), or null; a local hint, not shipped
 
   /**
    * Given a temp Frame and a base Frame from which it was created, delete the
@@ -212,6 +213,7 @@ public class Frame extends Lockable<Frame> {
     _keys = fr._keys .clone();
     _vecs = fr.vecs().clone();
     _lastNameBig = fr._lastNameBig;
+    _sortOrder = fr._sortOrder;
   }
 
   /** Default column name maker */
@@ -314,6 +316,16 @@ public class Frame extends Lockable<Frame> {
     return _names[i];
   }
 
+  /** The row order of this Frame, when known (e.g. the Frame was produced by a sort).
+   *  @return the order, or null if unknown or if the Frame lost some of its key Vecs */
+  public SortOrder sortOrder() {
+    SortOrder so = _sortOrder;
+    return so != null && so.columns(this) != null ? so : null;
+  }
+
+  /** Records the row order of this Frame, see {@link SortOrder}; null clears it. */
+  public void setSortOrder(SortOrder so) { _sortOrder = so; }
+
   /** The array of keys.
    * @return the array of keys for each vec in the frame.
    */
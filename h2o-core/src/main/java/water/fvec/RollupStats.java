@@ -12,7 +12,9 @@ import water.nbhm.NonBlockingHashMap;
 import water.parser.Categorical;
 import water.parser.BufferedString;
 import water.util.ArrayUtils;
+import water.util.HyperLogLog;
 import water.util.Log;
+import water.util.QuantileSketch;
 
 import java.util.Arrays;
 
@@ -56,6 +58,11 @@ final class RollupStats extends Iced {
   volatile long[] _bins;
   // Approximate data value closest to the Xth percentile
   double[] _pctiles;
+  // Mergeable sketches of the non-NA values, computed on demand in a 3rd pass
+  // (by getSketches, only for the Vecs they are asked for); null until then,
+  // and when all the values are NA or the same
+  HyperLogLog _distinct;
+  QuantileSketch _sketch;
 
   public boolean hasHisto(){return _bins != null;}
 
@@ -351,6 +358,20 @@ final class RollupStats extends Iced {
   // Allow a bunch of rollups to run in parallel.  If Futures is passed in, run
   // the rollup in the background and do not return.
   static RollupStats get(Vec vec) { return get(vec,false);}
+
+  // Rollups with the distinct-count and quantile sketches, which are computed
+  // on first request and then cached with the rollups (so the next write to
+  // the Vec drops them, as it drops the rollups)
+  static RollupStats getSketches(Vec vec) {
+    RollupStats rs = get(vec);
+    if( rs._distinct != null || rs._naCnt == vec.length() || rs._mins[0] == rs._maxs[0] ) return rs;
+    Sketch sk = new Sketch().doAll(vec);
+    rs = (RollupStats)rs.clone();
+    rs._distinct = sk._distinct;
+    rs._sketch = sk._sketch;
+    new SetSketches(rs).invoke(vec.rollupStatsKey());
+    return rs;
+  }
   // Fetch if present, but do not compute
   static RollupStats getOrNull(Vec vec, final Key rskey ) {
     Value val = DKV.get(rskey);
@@ -388,6 +409,47 @@ final class RollupStats extends Iced {
   }
 
 
+  // Compute the sketches, on demand only
+  private static class Sketch extends MRTask<Sketch> {
+    HyperLogLog _distinct;
+    QuantileSketch _sketch;
+    @Override public void map( Chunk c ) {
+      _distinct = new HyperLogLog();
+      _sketch = new QuantileSketch();
+      for( int i=c.nextNZ(-1); i< c._len; i=c.nextNZ(i) ) {
+        double d = c.atd(i);
+        if( !Double.isNaN(d) ) {
+          _distinct.add(d);
+          _sketch.add(d);
+        }
+      }
+      // Sparse?  We skipped all the zeros; do them now
+      if( c.isSparseZero() && c.sparseLenZero() < c._len ) {
+        _distinct.add(0.0);
+        _sketch.add(0.0, c._len - c.sparseLenZero());
+      }
+    }
+    @Override public void reduce( Sketch s ) {
+      if( _distinct == null ) { _distinct = s._distinct; _sketch = s._sketch; }
+      else if( s._distinct != null ) { _distinct.merge(s._distinct); _sketch.merge(s._sketch); }
+    }
+    @Override public boolean logVerbose() { return false; }
+  }
+
+  // Cache the sketches with the rollups, unless the Vec was written meanwhile
+  private static class SetSketches extends TAtomic<RollupStats> {
+    final long _checksum;
+    final HyperLogLog _distinct;
+    final QuantileSketch _sketch;
+    SetSketches( RollupStats rs ) { _checksum = rs._checksum; _distinct = rs._distinct; _sketch = rs._sketch; }
+    @Override protected RollupStats atomic( RollupStats rs ) {
+      if( rs == null || !rs.isReady() || rs._checksum != _checksum || rs._distinct != null ) return null;
+      rs._distinct = _distinct;
+      rs._sketch = _sketch;
+      return rs;
+    }
+  }
+
   // Task to compute rollups on its homenode if needed.
   // Only computes the rollups, does not fetch them, caller should fetch them via DKV store (to preserve caching).
   // Only comutes the rollups if needed (i.e. are null or do not have histo and histo is required)
@@ -0,0 +1,227 @@
+package water.fvec;
+
+import water.Iced;
+import water.Key;
+import water.MRTask;
+
+/**
+ * The row order of a {@link Frame}, as left by a sort: the rows are sorted by the key Vecs, the most
+ * significant first, each ascending or descending, with NAs first (as {@code water.rapids.Merge.sort}
+ * does).  The first and last keys of every chunk are computed on first use (by a merge or a
+ * group-by), so the chunks holding a range of keys can be found without reading any more data.
+ * <p/>
+ * The order is tied to the key Vecs rather than to column positions, so it survives any operation
+ * which keeps these Vecs (column slices, renames, re-ordering, copies of the Frame header), and it
+ * lapses as soon as the Frame does not hold all the key Vecs anymore.  The content checksums of the
+ * key Vecs (from their rollups) are recorded too, so the order also lapses when a key Vec is written
+ * in place, whichever Frame header the write went through: every write drops the rollups, and they
+ * are not recomputed to check the order.
+ * <p/>
+ * The order is a transient hint of the Frame: it is known on the node which recorded it (where the
+ * Rapids session runs), and is not shipped with the Frame.
+ */
+public final class SortOrder extends Iced<SortOrder> {
+  private final Key<Vec>[] _keys;    // The key Vecs, most significant first
+  private final long[] _checksums;   // Per key Vec: the checksum of its content when it was sorted
+  private final int[] _ascending;    // Per key Vec: 1 for ascending, -1 for descending
+  private final int _nChunks;        // Number of chunks of the sorted Frame
+  private double[][] _first;         // Per chunk: the keys of its first row, null if the chunk is empty; lazy
+  private double[][] _last;          // Per chunk: the keys of its last row, null if the chunk is empty; lazy
+
+  private SortOrder(Key<Vec>[] keys, long[] checksums, int[] ascending, int nChunks, double[][] first, double[][] last) {
+    _keys = keys;
+    _checksums = checksums;
+    _ascending = ascending;
+    _nChunks = nChunks;
+    _first = first;
+    _last = last;
+  }
+
+  // Checksum of the current content of the Vec.  Not Vec.checksum(), which is computed once per Vec
+  // object; the rollups are rebuilt after every write.
+  private static long contentChecksum(Vec vec) {
+    return RollupStats.get(vec)._checksum;
+  }
+
+  // Does the Vec still have the content it was sorted with?  Only looks at the rollups already
+  // computed: every write drops them, so no rollups means the Vec was written since.
+  private static boolean unchanged(Vec vec, long checksum) {
+    RollupStats rs = RollupStats.getOrNull(vec, vec.rollupStatsKey());
+    return rs != null && rs._checksum == checksum;
+  }
+
+  /**
+   * Records on the Frame that its rows are sorted by the given columns; the caller vouches for the
+   * order.
+   * @param cols the sorted columns, most significant first
+   * @param ascending per column 1 for ascending, -1 for descending; null for all ascending
+   * @return the Frame
+   */
+  @SuppressWarnings("unchecked")
+  public static Frame markSorted(Frame fr, int[] cols, int[] ascending) {
+    Vec[] vecs = fr.vecs(cols);
+    Key<Vec>[] keys = new Key[cols.length];
+    long[] checksums = new long[cols.length];
+    int[] asc = new int[cols.length];
+    for (int i = 0; i < cols.length; i++) {
+      keys[i] = vecs[i]._key;
+      checksums[i] = contentChecksum(vecs[i]);
+      asc[i] = direction(vecs[i], ascending == null ? 1 : ascending[i]);
+    }
+    fr.setSortOrder(new SortOrder(keys, checksums, asc, fr.anyVec().nChunks(), null, null));
+    return fr;
+  }
+
+  // Categoricals are sorted by level index, always ascending
+  private static int direction(Vec vec, int ascending) {
+    return vec.isCategorical() || ascending >= 0 ? 1 : -1;
+  }
+
+  /** Number of key columns */
+  public int numKeys() { return _keys.length; }
+
+  /** Number of chunks of the sorted Frame */
+  public int numChunks() { return _nChunks; }
+
+  /**
+   * Reads the first and last row of every chunk of the key Vecs, unless known already.  To be called
+   * before the order is shipped with a task which looks at the chunk keys.
+   * @return this order
+   */
+  public synchronized SortOrder chunkKeys() {
+    if (_first == null) {
+      Vec[] vecs = new Vec[_keys.length];
+      for (int i = 0; i < vecs.length; i++) vecs[i] = _keys[i].get();
+      ChunkKeys ck = new ChunkKeys(_nChunks).doAll(vecs);
+      _last = ck._last;
+      _first = ck._first;
+    }
+    return this;
+  }
+
+  /** Keys of the first row of chunk cidx, null if the chunk is empty */
+  public double[] firstKeys(int cidx) { return (_first == null ? chunkKeys()._first : _first)[cidx]; }
+
+  /** Keys of the last row of chunk cidx, null if the chunk is empty */
+  public double[] lastKeys(int cidx) { return (_last == null ? chunkKeys()._last : _last)[cidx]; }
+
+  /**
+   * Positions of the key columns in a Frame.
+   * @return null if the Frame does not hold all the key Vecs, or has a different chunk layout, or
+   * some key Vec was modified since it was sorted
+   */
+  public int[] columns(Frame fr) {
+    Vec v = fr.anyVec();
+    if (v == null || v.nChunks() != _nChunks) return null;
+    int[] cols = new int[_keys.length];
+    for (int i = 0; i < cols.length; i++)
+      if ((cols[i] = fr.find(_keys[i])) < 0) return null;
+    for (int i = 0; i < cols.length; i++)
+      if (!unchanged(fr.vec(cols[i]), _checksums[i])) return null;
+    return cols;
+  }
+
+  /** Is any of the given columns of the Frame a key column of this order */
+  public boolean isKey(Frame fr, int[] cols) {
+    for (int col : cols)
+      for (Key<Vec> k : _keys)
+        if (k.equals(fr.vec(col)._key)) return true;
+    return false;
+  }
+
+  /**
+   * Are the rows of the Frame sorted by the given columns?  That is, are the columns (in this
+   * order and these directions) the most significant keys of this order.
+   * @param ascending per column 1 for ascending, -1 for descending; null for all ascending
+   */
+  public boolean sortedBy(Frame fr, int[] cols, int[] ascending) {
+    int[] keyCols = columns(fr);
+    if (keyCols == null || cols.length > keyCols.length) return false;
+    for (int i = 0; i < cols.length; i++)
+      if (keyCols[i] != cols[i] || _ascending[i] != direction(fr.vec(cols[i]), ascending == null ? 1 : ascending[i]))
+        return false;
+    return true;
+  }
+
+  /**
+   * Are the rows with equal values in the given columns contiguous?  True if the columns, in any
+   * order and direction, are the most significant keys of this order.
+   */
+  public boolean groups(Frame fr, int[] cols) {
+    int[] keyCols = columns(fr);
+    if (keyCols == null || cols.length > keyCols.length) return false;
+    outer:
+    for (int i = 0; i < cols.length; i++) {
+      for (int col : cols)
+        if (keyCols[i] == col) continue outer;
+      return false;
+    }
+    return true;
+  }
+
+  /** Compares the first nkeys keys of two rows in this order */
+  public int compare(double[] a, double[] b, int nkeys) {
+    for (int k = 0; k < nkeys; k++) {
+      int c = compareValues(a[k], b[k]);
+      if (c != 0) return Double.isNaN(a[k]) || Double.isNaN(b[k]) ? c : c * _ascending[k];
+    }
+    return 0;
+  }
+
+  /** Compares two key values in ascending order: NAs first, and equal to each other */
+  public static int compareValues(double x, double y) {
+    boolean xna = Double.isNaN(x), yna = Double.isNaN(y);
+    if (xna || yna) return xna == yna ? 0 : xna ? -1 : 1;
+    return x < y ? -1 : x > y ? 1 : 0;
+  }
+
+  /** The same order, for a Frame where the Vecs olds were replaced by (copies) news */
+  public SortOrder replaceVecs(Vec[] olds, Vec[] news) {
+    Key<Vec>[] keys = _keys.clone();
+    long[] checksums = _checksums.clone();
+    for (int i = 0; i < olds.length; i++)
+      for (int k = 0; k < keys.length; k++)
+        if (keys[k].equals(olds[i]._key) && !olds[i]._key.equals(news[i]._key)) {
+          keys[k] = news[i]._key;
+          checksums[k] = contentChecksum(news[i]);
+        }
+    return new SortOrder(keys, checksums, _ascending, _nChunks, _first, _last);
+  }
+
+  // The keys of the first and the last row of every chunk
+  private static class ChunkKeys extends MRTask<ChunkKeys> {
+    private final int _nChunks;
+    double[][] _first, _last;
+
+    ChunkKeys(int nChunks) { _nChunks = nChunks; }
+
+    @Override
+    protected void setupLocal() {
+      _first = new double[_nChunks][];
+      _last = new double[_nChunks][];
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      int len = cs[0]._len;
+      if (len == 0) return;
+      double[] first = new double[cs.length], last = new double[cs.length];
+      for (int k = 0; k < cs.length; k++) {
+        first[k] = cs[k].atd(0);
+        last[k] = cs[k].atd(len - 1);
+      }
+      _first[cs[0].cidx()] = first;
+      _last[cs[0].cidx()] = last;
+    }
+
+    @Override
+    public void reduce(ChunkKeys t) {
+      if (_first != t._first)
+        for (int i = 0; i < _nChunks; i++)
+          if (t._first[i] != null) {
+            _first[i] = t._first[i];
+            _last[i] = t._last[i];
+          }
+    }
+  }
+}
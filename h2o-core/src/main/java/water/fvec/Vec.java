@@ -886,6 +886,30 @@ public class Vec extends Keyed<Vec> {
    *  @return A set of percentiles */
   public double[] pctiles() { return RollupStats.get(this, true)._pctiles;   }
 
+  /** Approximate count of distinct non-NA values (a HyperLogLog sketch,
+   *  within a few percent), computed by a pass of its own on the first
+   *  request and cached with the rollups thereafter.
+   *  @return the approximate count of distinct values, or NaN for String and UUID columns */
+  public double approxDistinct() {
+    if( isString() || isUUID() ) return Double.NaN;
+    RollupStats rs = RollupStats.getSketches(this);
+    if( rs._distinct != null ) return rs._distinct.estimate();
+    return rs._naCnt == length() ? 0 : 1; // All NAs, or a constant
+  }
+
+  /** Approximate quantile of the non-NA values (a single-pass quantile
+   *  sketch, within a fraction of a percent in rank), computed by a pass of
+   *  its own on the first request and cached with the rollups thereafter.
+   *  @param p the probability, between 0 and 1
+   *  @return the approximate quantile, or NaN for String, UUID and all NA columns */
+  public double approxQuantile(double p) {
+    if( p < 0 || p > 1 ) throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+    if( isString() || isUUID() ) return Double.NaN;
+    RollupStats rs = RollupStats.getSketches(this);
+    if( rs._sketch != null ) return rs._sketch.quantile(p);
+    return rs._naCnt == length() ? Double.NaN : rs._mins[0]; // All NAs, or a constant
+  }
+
 
   /** Compute the roll-up stats as-needed */
   private RollupStats rollupStats() { return RollupStats.get(this); }
@@ -909,6 +933,12 @@ public class Vec extends Keyed<Vec> {
    *  @return Checksum of the Vec's content  */
   @Override protected long checksum_impl() { return rollupStats()._checksum;}
 
+  /** Checksum of the current content of the Vec.  Unlike {@link #checksum()},
+   *  which is computed once per Vec object, it follows the writes to the Vec
+   *  (the rollups are rebuilt after every write).
+   *  @return Checksum of the Vec's current content */
+  public long contentChecksum() { return rollupStats()._checksum; }
+
   public boolean isVolatile() {return _volatile;}
 
 
@@ -5,6 +5,7 @@ import water.fvec.*;
 import water.parser.BufferedString;
 import water.parser.ParseDataset;
 import water.util.Log;
+import water.util.PrettyPrint;
 
 import java.math.BigDecimal;
 import java.sql.*;
@@ -30,6 +31,9 @@ public class SQLManager {
 
   private static final String TMP_TABLE_ENABLED = H2O.OptArgs.SYSTEM_PROP_PREFIX + "sql.tmp_table.enabled";
 
+  //Default number of rows fetched in a single round-trip when importing ranges of a partition column
+  private static final int DEFAULT_RANGE_FETCH_SIZE = 10000;
+
   /**
    * @param connection_url (Input) 
    * @param table (Input)
@@ -42,6 +46,26 @@ public class SQLManager {
   public static Job<Frame> importSqlTable(final String connection_url, String table, final String select_query,
                                           final String username, final String password, final String columns,
                                           boolean optimize) {
+    return importSqlTable(connection_url, table, select_query, username, password, columns, optimize, "", 0, 0);
+  }
+
+  /**
+   * @param connection_url (Input)
+   * @param table (Input)
+   * @param select_query (Input)
+   * @param username (Input)
+   * @param password (Input)
+   * @param columns (Input)
+   * @param optimize (Input)
+   * @param partition_column (Input) numeric or date/time column used to split the table into ranges of values,
+   *                         each range is retrieved by a single query; empty string to use LIMIT/OFFSET pagination
+   * @param fetch_size (Input) number of rows fetched in a single round-trip, 0 to use a default
+   * @param max_retries (Input) number of times a failed query for a chunk of data is retried
+   */
+  public static Job<Frame> importSqlTable(final String connection_url, String table, final String select_query,
+                                          final String username, final String password, final String columns,
+                                          boolean optimize, final String partition_column,
+                                          final int fetch_size, final int max_retries) {
     Connection conn = null;
     Statement stmt = null;
     ResultSet rs = null;
@@ -52,6 +76,7 @@ public class SQLManager {
     long numRow = 0;
     final String[] columnNames;
     final byte[] columnH2OTypes;
+    RangePartitioning ranges = null;
     try {
       conn = DriverManager.getConnection(connection_url, username, password);
       stmt = conn.createStatement();
@@ -138,6 +163,10 @@ public class SQLManager {
             columnH2OTypes[i] = Vec.T_BAD;
         }
       }
+      rs.close();
+
+      if (partition_column != null && !partition_column.isEmpty())
+        ranges = RangePartitioning.fetchMinMax(stmt, table, partition_column);
 
     } catch (SQLException ex) {
       throw new RuntimeException("SQLException: " + ex.getMessage() + "\nFailed to connect and read from SQL database with connection_url: " + connection_url);
@@ -179,7 +208,16 @@ public class SQLManager {
     final double rows_per_chunk = chunk_size; //why not numRow * chunk_size / totSize; it's supposed to be rows per chunk, not the byte size
     final int num_chunks = Vec.nChunksFor(numRow, (int) Math.ceil(Math.log1p(rows_per_chunk)), false);
 
-    if (optimize) {
+    if (ranges != null) {
+      // one single-row chunk per range of the partition column; the output chunks get the actual row counts
+      final int num_ranges = optimize
+              ? Math.min(num_chunks, ConnectionPoolProvider.estimateConcurrentConnections(H2O.getCloudSize(), H2O.ARGS.nthreads))
+              : num_chunks;
+      ranges = ranges.split(num_ranges);
+      vec = Vec.makeConN(ranges._n, ranges._n);
+      Log.info("Importing table " + table + " in " + ranges._n + " ranges of column " + ranges._column +
+              " (min = " + ranges._min + ", max = " + ranges._max + ")");
+    } else if (optimize) {
       final int num_retrieval_chunks = ConnectionPoolProvider.estimateConcurrentConnections(H2O.getCloudSize(), H2O.ARGS.nthreads);
       vec = num_retrieval_chunks >= num_chunks
               ? Vec.makeConN(numRow, num_chunks)
@@ -193,16 +231,24 @@ public class SQLManager {
     final Job<Frame> j = new Job(destination_key, Frame.class.getName(), "Import SQL Table");
 
     final String finalTable = table;
+    final RangePartitioning finalRanges = ranges;
     H2O.H2OCountedCompleter work = new H2O.H2OCountedCompleter() {
       @Override
       public void compute2() {
+        final long start = System.currentTimeMillis();
         final ConnectionPoolProvider provider = new ConnectionPoolProvider(connection_url, username, password, vec.nChunks());
-        final Frame fr = new SqlTableToH2OFrame(finalTable, databaseType, columns, columnNames, numCol, j, provider)
-                .doAll(columnH2OTypes, vec)
-                .outputFrame(destination_key, columnNames, null);
+        final SqlTableToH2OFrame task = new SqlTableToH2OFrame(finalTable, databaseType, columns, columnNames, numCol,
+                j, provider, finalRanges, fetch_size, max_retries)
+                .doAll(columnH2OTypes, vec);
+        final Frame fr = task.outputFrame(destination_key, columnNames, null);
         vec.remove();
 
         DKV.put(fr);
+        final long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+        final String msg = "Retrieved " + task._rows + " rows in " + PrettyPrint.msecs(elapsed, true) +
+                " (" + (long) (task._rows * 1000.0 / elapsed) + " rows/sec)";
+        Log.info(msg);
+        j.update(0, msg);
         ParseDataset.logParseResults(fr);
         if (finalTable.equals(SQLManager.TEMP_TABLE_NAME))
           dropTempTable(connection_url, username, password);
@@ -278,6 +324,141 @@ public class SQLManager {
     return sqlText;
   }
 
+  /**
+   * Builds SQL SELECT to retrieve rows of a table with value of the partition column in a given range.
+   * Unlike pagination with LIMIT/OFFSET the database doesn't need to scan all preceding rows
+   * (and if the column is indexed it doesn't need to scan the table at all).
+   *
+   * @param table
+   * @param columns
+   * @param ranges partitioning of the table
+   * @param partition index of the range to retrieve
+   * @return String SQL SELECT statement
+   */
+  static String buildSelectRangeSql(String table, String columns, RangePartitioning ranges, int partition) {
+    String sqlText = "SELECT " + columns + " FROM " + table;
+    String predicate = ranges.predicate(partition);
+    if (predicate != null)
+      sqlText += " WHERE " + predicate;
+    return sqlText;
+  }
+
+  /**
+   * Split of a table into ranges of values of a numeric or date/time column.
+   * Ranges are of equal width, rows with NULL in the partition column belong to the first range.
+   */
+  static class RangePartitioning extends Iced<RangePartitioning> {
+    static final byte INTEGER = 0;
+    static final byte REAL = 1;
+    static final byte TIME = 2;
+
+    String _column;
+    byte _kind;
+    double _min; // time is represented by milliseconds since epoch
+    double _max;
+    int _n = 1;
+    String[] _bounds; // SQL literals of the lower bounds of the ranges, made on the driver
+
+    RangePartitioning(String column, byte kind, double min, double max) {
+      _column = column;
+      _kind = kind;
+      _min = min;
+      _max = max;
+    }
+
+    public RangePartitioning() {} // Externalizable classes need no-args constructor
+
+    /**
+     * Retrieves minimum and maximum of the partition column.
+     *
+     * @return partitioning of the table, null if the table is empty
+     * @throws IllegalArgumentException if the column is not numeric or date/time
+     */
+    static RangePartitioning fetchMinMax(Statement stmt, String table, String column) throws SQLException {
+      ResultSet rs = stmt.executeQuery("SELECT MIN(" + column + "), MAX(" + column + ") FROM " + table);
+      try {
+        rs.next();
+        final byte kind;
+        switch (rs.getMetaData().getColumnType(1)) {
+          case Types.INTEGER:
+          case Types.TINYINT:
+          case Types.SMALLINT:
+          case Types.BIGINT:
+            kind = INTEGER;
+            break;
+          case Types.NUMERIC:
+          case Types.REAL:
+          case Types.DOUBLE:
+          case Types.FLOAT:
+          case Types.DECIMAL:
+            kind = REAL;
+            break;
+          case Types.DATE:
+          case Types.TIMESTAMP:
+            kind = TIME;
+            break;
+          default:
+            throw new IllegalArgumentException("The partition column must be numeric or date/time, column " + column +
+                    " is of type " + rs.getMetaData().getColumnTypeName(1));
+        }
+        final double min, max;
+        if (kind == TIME) {
+          Timestamp tsMin = rs.getTimestamp(1), tsMax = rs.getTimestamp(2);
+          if (tsMin == null) return null;
+          min = tsMin.getTime();
+          max = tsMax.getTime();
+        } else {
+          min = rs.getDouble(1);
+          if (rs.wasNull()) return null;
+          max = rs.getDouble(2);
+        }
+        return new RangePartitioning(column, kind, min, max);
+      } finally {
+        rs.close();
+      }
+    }
+
+    /**
+     * @param n requested number of ranges
+     * @return partitioning with n ranges (less if the column doesn't have enough distinct values)
+     */
+    RangePartitioning split(int n) {
+      RangePartitioning p = new RangePartitioning(_column, _kind, _min, _max);
+      p._n = Math.max(1, _kind == REAL ? n : (int) Math.min(n, (long) (_max - _min) + 1));
+      p._bounds = new String[p._n];
+      for (int i = 1; i < p._n; i++)
+        p._bounds[i] = p.bound(i);
+      return p;
+    }
+
+    // Timestamps are formatted in the time zone of the driver, the one the JDBC driver read min and max
+    // in, once for all the nodes: the nodes may run in other time zones
+    private String bound(int partition) {
+      double b = _min + (_max - _min) * partition / _n;
+      switch (_kind) {
+        case INTEGER:
+          return Long.toString((long) Math.ceil(b));
+        case TIME:
+          return "{ts '" + new Timestamp((long) Math.ceil(b)) + "'}";
+        default:
+          return Double.toString(b);
+      }
+    }
+
+    /**
+     * @return SQL condition selecting rows of a given range, null if there is only a single range
+     */
+    String predicate(int partition) {
+      if (_n == 1)
+        return null;
+      if (partition == 0)
+        return "(" + _column + " < " + _bounds[1] + " OR " + _column + " IS NULL)";
+      if (partition == _n - 1)
+        return _column + " >= " + _bounds[partition];
+      return _column + " >= " + _bounds[partition] + " AND " + _column + " < " + _bounds[partition + 1];
+    }
+  }
+
 
   static class ConnectionPoolProvider extends Iced<ConnectionPoolProvider> {
 
@@ -329,7 +510,7 @@ public class SQLManager {
 
       try {
         for (int i = 0; i < maxConnectionsPerNode; i++) {
-          Connection conn = DriverManager.getConnection(_url, _user, _password);
+          Connection conn = createConnection();
           connectionPool.add(conn);
         }
       } catch (SQLException ex) {
@@ -340,6 +521,10 @@ public class SQLManager {
 
     }
 
+    Connection createConnection() throws SQLException {
+      return DriverManager.getConnection(_url, _user, _password);
+    }
+
     private static int getMaxConnectionsTotal() {
       int maxConnections = MAX_CONNECTIONS;
       final String userDefinedMaxConnections = System.getProperty(MAX_USR_CONNECTIONS_KEY);
@@ -432,12 +617,31 @@ public class SQLManager {
     final Job _job;
     final ConnectionPoolProvider _poolProvider;
     final String[] _columnNames;
+    final RangePartitioning _ranges;
+    final int _fetchSize;
+    final int _maxRetries;
+
+    // number of retrieved rows
+    long _rows;
 
     transient ArrayBlockingQueue<Connection> sqlConn;
 
     public SqlTableToH2OFrame(final String table, final String databaseType,
                               final String columns, final String[] columnNames, final int numCol,
                               final Job job, final ConnectionPoolProvider poolProvider) {
+      this(table, databaseType, columns, columnNames, numCol, job, poolProvider, null, 0, 0);
+    }
+
+    /**
+     * @param ranges partitioning of the table by ranges of a column, each chunk of the input vec represents one range;
+     *               null to retrieve rows of chunks by their offset
+     * @param fetchSize number of rows fetched in a single round-trip, 0 to use a default
+     * @param maxRetries number of times a failed query is retried
+     */
+    public SqlTableToH2OFrame(final String table, final String databaseType,
+                              final String columns, final String[] columnNames, final int numCol,
+                              final Job job, final ConnectionPoolProvider poolProvider,
+                              final RangePartitioning ranges, final int fetchSize, final int maxRetries) {
       _table = table;
       _databaseType = databaseType;
       _columns = columns;
@@ -445,6 +649,9 @@ public class SQLManager {
       _numCol = numCol;
       _job = job;
       _poolProvider = poolProvider;
+      _ranges = ranges;
+      _fetchSize = fetchSize;
+      _maxRetries = maxRetries;
     }
 
     @Override
@@ -455,17 +662,68 @@ public class SQLManager {
     @Override
     public void map(Chunk[] cs, NewChunk[] ncs) {
       if (isCancelled() || _job != null && _job.stop_requested()) return;
-      //fetch data from sql table with limit and offset
-      Connection conn = null;
-      Statement stmt = null;
-      ResultSet rs = null;
       Chunk c0 = cs[0];
-      String sqlText = buildSelectChunkSql(_databaseType, _table, c0.start(), c0._len , _columns, _columnNames);
+      final String sqlText;
+      final int fetchSize;
+      if (_ranges == null) {
+        //fetch data from sql table with limit and offset
+        sqlText = buildSelectChunkSql(_databaseType, _table, c0.start(), c0._len , _columns, _columnNames);
+        fetchSize = _fetchSize > 0 ? _fetchSize : c0._len;
+      } else {
+        //fetch data from sql table for a range of the partition column, each input chunk has a single row
+        sqlText = buildSelectRangeSql(_table, _columns, _ranges, (int) c0.start());
+        fetchSize = _fetchSize > 0 ? _fetchSize : DEFAULT_RANGE_FETCH_SIZE;
+      }
+      Connection conn;
       try {
         conn = sqlConn.take();
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+        throw new RuntimeException("Interrupted exception when trying to take connection from pool");
+      }
+      try {
+        for (int attempt = 0; ; attempt++) {
+          try {
+            _rows += fetchRows(conn, sqlText, fetchSize, ncs);
+            break;
+          } catch (SQLException ex) {
+            if (attempt >= _maxRetries)
+              throw new RuntimeException("SQLException: " + ex.getMessage() + "\nFailed to read SQL data");
+            Log.warn("Failed to read SQL data (attempt " + (attempt + 1) + " of " + (_maxRetries + 1) + "), retrying: " + sqlText, ex);
+            // a failed attempt must not leave partial data behind, start over with empty chunks
+            // (the array is the one MRTask closes after map)
+            for (int i = 0; i < ncs.length; i++)
+              ncs[i] = new NewChunk(ncs[i].vec(), ncs[i].cidx());
+            conn = reconnect(conn);
+          }
+        }
+      } finally {
+        //return connection to pool
+        sqlConn.add(conn);
+      }
+      if (_job != null) _job.update(1);
+    }
+
+    private Connection reconnect(Connection conn) {
+      try {
+        conn.close();
+      } catch (SQLException sqlEx) {
+      } // ignore
+      try {
+        return _poolProvider.createConnection();
+      } catch (SQLException ex) {
+        throw new RuntimeException("SQLException: " + ex.getMessage() + "\nFailed to reconnect to SQL database");
+      }
+    }
+
+    private int fetchRows(Connection conn, String sqlText, int fetchSize, NewChunk[] ncs) throws SQLException {
+      Statement stmt = null;
+      ResultSet rs = null;
+      int rows = 0;
+      try {
         stmt = conn.createStatement();
         //set fetch size for best performance
-        stmt.setFetchSize(c0._len);
+        stmt.setFetchSize(fetchSize);
         rs = stmt.executeQuery(sqlText);
         while (rs.next()) {
           for (int i = 0; i < _numCol; i++) {
@@ -514,12 +772,8 @@ public class SQLManager {
               }
             }
           }
+          rows++;
         }
-      } catch (SQLException ex) {
-        throw new RuntimeException("SQLException: " + ex.getMessage() + "\nFailed to read SQL data");
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-        throw new RuntimeException("Interrupted exception when trying to take connection from pool");
       } finally {
 
         //close result set
@@ -540,11 +794,13 @@ public class SQLManager {
           stmt = null;
         }
 
-        //return connection to pool
-        sqlConn.add(conn);
-
       }
-      if (_job != null) _job.update(1);
+      return rows;
+    }
+
+    @Override
+    public void reduce(SqlTableToH2OFrame other) {
+      _rows += other._rows;
     }
 
     @Override
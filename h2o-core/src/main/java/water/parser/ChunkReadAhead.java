@@ -0,0 +1,201 @@
+package water.parser;
+
+import water.H2O;
+import water.Key;
+import water.MemoryManager;
+import water.fvec.*;
+import water.nbhm.NonBlockingSetInt;
+import water.util.Log;
+import water.util.PrettyPrint;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local read-ahead of raw chunks for the distributed parse, plus per-stage timing.
+ *
+ * Chunks of files on remote storage (S3, HDFS, HTTP) are faulted in through the persist layer
+ * the first time they are touched. Without read-ahead each parse worker alternates between
+ * waiting on the network and tokenizing. Here, whenever a chunk starts being parsed, loads of
+ * the following chunks homed on this node are issued in the background so that up to
+ * {@code depth} raw chunks are in flight or waiting to be parsed. The number of buffered chunks
+ * is bounded by a fraction of the heap and no new loads are issued when the memory manager
+ * blocks allocations.
+ *
+ * Loads run at the priority of the parse that issues them, so that they never take threads away
+ * from work of a higher priority, and are dropped once the parse is cancelled.
+ *
+ * The bytes parsed on this node are reported to the job at most once per {@link #REPORT_NANOS}
+ * instead of once per chunk, one DKV update of the job each.
+ */
+final class ChunkReadAhead {
+
+  static final String READ_AHEAD_DEPTH_KEY = H2O.OptArgs.SYSTEM_PROP_PREFIX + "parse.read_ahead";
+
+  // Buffered chunks are allowed to occupy at most 1/16 of the heap
+  private static final int HEAP_FRACTION = 16;
+
+  static final long REPORT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final Vec _vec;
+  private final int _depth;
+  private final int _window;
+  private final byte _priority;
+  private volatile boolean _cancelled;
+  private final NonBlockingSetInt _requested = new NonBlockingSetInt(); // chunks being parsed or loaded
+  private final NonBlockingSetInt _prefetched = new NonBlockingSetInt(); // loaded (or loading) ahead of the parse
+  private final AtomicInteger _ahead = new AtomicInteger();
+
+  // Stage statistics (cumulative over all threads of this node)
+  private final AtomicLong _readNanos = new AtomicLong();
+  private final AtomicLong _parseNanos = new AtomicLong();
+  private final AtomicInteger _chunks = new AtomicInteger();
+  private final AtomicInteger _hits = new AtomicInteger();
+
+  // Bytes parsed and not reported to the job yet
+  private final AtomicLong _unreported = new AtomicLong();
+  private final AtomicLong _lastReport = new AtomicLong(System.nanoTime());
+
+  /**
+   * @param vec raw data being parsed
+   * @param priority priority of the parse, loads are issued at the same priority
+   */
+  ChunkReadAhead(ByteVec vec, byte priority) {
+    this(vec, isRemote(vec) ? depth(vec) : 0, priority);
+  }
+
+  ChunkReadAhead(Vec vec, int depth, byte priority) {
+    _vec = vec;
+    _depth = depth;
+    _window = _depth * Math.max(H2O.getCloudSize(), 1) * 2;
+    _priority = priority;
+  }
+
+  /**
+   * @return true if chunks of the vec are loaded from remote storage when first touched
+   */
+  static boolean isRemote(Vec vec) {
+    return vec instanceof S3FileVec || vec instanceof HDFSFileVec || vec instanceof HTTPFileVec;
+  }
+
+  private static int depth(ByteVec vec) {
+    int depth = Integer.getInteger(READ_AHEAD_DEPTH_KEY, H2O.ARGS.nthreads);
+    long chunkSize = vec instanceof FileVec ? ((FileVec) vec)._chunkSize : FileVec.DFLT_CHUNK_SIZE;
+    long maxBuffered = MemoryManager.MEM_MAX / HEAP_FRACTION / Math.max(chunkSize, 1);
+    return (int) Math.max(0, Math.min(depth, maxBuffered));
+  }
+
+  int depth() { return _depth; }
+
+  /** Number of chunks loaded (or being loaded) ahead and not parsed yet */
+  int ahead() { return _ahead.get(); }
+
+  /**
+   * Stops issuing loads, loads which didn't start yet are dropped.
+   */
+  void cancel() { _cancelled = true; }
+
+  /**
+   * Called when the parse of a chunk starts. Issues loads of the following chunks homed on this node.
+   * @param cidx index of the chunk being parsed
+   * @return true if the chunk was loaded ahead
+   */
+  boolean startParse(int cidx) {
+    _requested.add(cidx);
+    boolean hit = false;
+    if (_prefetched.remove(cidx)) {
+      _ahead.decrementAndGet();
+      _hits.incrementAndGet();
+      hit = true;
+    }
+    readAhead(cidx);
+    return hit;
+  }
+
+  void finishParse(long parseNanos) {
+    _parseNanos.addAndGet(parseNanos);
+    _chunks.incrementAndGet();
+  }
+
+  /**
+   * Adds the bytes of a parsed chunk.
+   * @return bytes to report to the job now, 0 if the last report was less than REPORT_NANOS ago
+   */
+  long progress(long bytes) {
+    _unreported.addAndGet(bytes);
+    final long now = System.nanoTime(), last = _lastReport.get();
+    if (now - last < REPORT_NANOS || !_lastReport.compareAndSet(last, now))
+      return 0;
+    return _unreported.getAndSet(0);
+  }
+
+  /** @return bytes parsed and not reported yet, at the end of the parse on this node */
+  long unreported() { return _unreported.getAndSet(0); }
+
+  private void readAhead(int cidx) {
+    if (_depth == 0 || _cancelled) return;
+    final int nChunks = _vec.nChunks();
+    final int end = (int) Math.min(nChunks, (long) cidx + 1 + _window);
+    for (int c = cidx + 1; c < end && _ahead.get() < _depth; c++) {
+      Key k = _vec.chunkKey(c);
+      if (!k.home() || _requested.contains(c))
+        continue;
+      if (!MemoryManager.canAlloc())
+        return; // memory is low, let the cleaner catch up
+      if (!_requested.add(c))
+        continue; // lost a race with another thread
+      _ahead.incrementAndGet();
+      _prefetched.add(c);
+      H2O.submitTask(new ReadChunkTask(c));
+    }
+  }
+
+  private class ReadChunkTask extends H2O.H2OCountedCompleter<ReadChunkTask> {
+    private final int _cidx;
+
+    ReadChunkTask(int cidx) {
+      super(_priority);
+      _cidx = cidx;
+    }
+
+    @Override
+    public void compute2() {
+      if (_cancelled) {
+        if (_prefetched.remove(_cidx)) _ahead.decrementAndGet();
+        tryComplete();
+        return;
+      }
+      long start = System.nanoTime();
+      try {
+        _vec.chunkIdx(_cidx).memOrLoad();
+      } catch (Throwable t) {
+        // the parse will load the chunk again and report the failure
+        Log.debug("Read-ahead of chunk " + _cidx + " of " + _vec._key + " failed: " + t);
+        if (_prefetched.remove(_cidx)) _ahead.decrementAndGet();
+      } finally {
+        _readNanos.addAndGet(System.nanoTime() - start);
+      }
+      tryComplete();
+    }
+  }
+
+  long readNanos() { return _readNanos.get(); }
+  long parseNanos() { return _parseNanos.get(); }
+  int chunks() { return _chunks.get(); }
+  int hits() { return _hits.get(); }
+
+  static String stageMessage(long readNanos, long parseNanos, int chunks, int hits, boolean readAhead) {
+    String msg = "Parsed " + chunks + " chunks: tokenizing " +
+            PrettyPrint.msecs(TimeUnit.NANOSECONDS.toMillis(parseNanos), true);
+    if (readAhead)
+      msg += ", remote reads " + PrettyPrint.msecs(TimeUnit.NANOSECONDS.toMillis(readNanos), true) +
+              " (" + hits + " chunks read ahead)";
+    return msg;
+  }
+
+  String stageMessage() {
+    return stageMessage(readNanos(), parseNanos(), chunks(), hits(), _depth > 0);
+  }
+
+}
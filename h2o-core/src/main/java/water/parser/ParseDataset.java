@@ -103,6 +103,25 @@ public final class ParseDataset {
     },nchunks);
   }
 
+  /**
+   * Sorted, distinct indices of the skipped columns.
+   * @throws IllegalArgumentException if an index is out of range or all columns are skipped
+   */
+  static int[] checkSkippedColumns(int[] skipped, int ncols) {
+    int[] res = skipped.clone();
+    Arrays.sort(res);
+    int n = 0;
+    for (int col : res) {
+      if (col < 0 || col >= ncols)
+        throw new IllegalArgumentException("Skipped column index " + col + " is out of range, the data has " + ncols + " columns");
+      if (n == 0 || res[n - 1] != col)
+        res[n++] = col;
+    }
+    if (n == ncols)
+      throw new IllegalArgumentException("All " + ncols + " columns are skipped");
+    return Arrays.copyOf(res, n);
+  }
+
   /**
    * The entry-point for data set parsing.
    *
@@ -118,6 +137,9 @@ public final class ParseDataset {
     //        and another as an internal parser setup to drive parsing.
     final ParseSetup setup = parseSetup.getFinalSetup(keys, parseSetup);
 
+    if (setup._skipped_columns != null)
+      setup._skipped_columns = checkSkippedColumns(setup._skipped_columns, setup._number_columns);
+
     HashSet<String> conflictingNames = setup.checkDupColumnNames();
     for( String x : conflictingNames )
     if ( x != null && !x.equals(""))
@@ -323,6 +345,15 @@ public final class ParseDataset {
     // Check for job cancellation
     if ( job.stop_requested() ) return pds;
 
+    // Drop the skipped columns, parsers only filled them with NAs (or didn't touch them at all)
+    if (setup._skipped_columns != null && setup._skipped_columns.length > 0) {
+      Futures fs = new Futures();
+      for (Vec v : fr.remove(setup._skipped_columns.clone()))
+        v.remove(fs);
+      fs.blockForPending();
+      fr.update(job);
+    }
+
     ParseWriter.ParseErr [] errs = ArrayUtils.append(setup.errs(),mfpt._errors);
     if(errs.length > 0) {
       // compute global line numbers for warnings/errs
@@ -845,7 +876,12 @@ public final class ParseDataset {
       private transient final Key _srckey; // Source/text file to delete on done
       private transient NonBlockingSetInt _visited;
       private transient long [] _espc;
+      private transient ChunkReadAhead _readAhead;
       final int _nchunks;
+      // Per-stage timing, cumulative over all parse threads of the cluster
+      private long _readNanos, _parseNanos;
+      private int _chunksParsed, _readAheadHits;
+      private boolean _readAheadEnabled;
 
       DistributedParse(VectorGroup vg, ParseSetup setup, int vecIdstart, int startChunkIdx, MultiFileParseTask mfpt, Key srckey, int nchunks) {
         super(null);
@@ -864,9 +900,17 @@ public final class ParseDataset {
         _visited = new NonBlockingSetInt();
         _espc = MemoryManager.malloc8(_nchunks);
         _setup = ParserService.INSTANCE.getByInfo(_setup._parse_type).setupLocal(_fr.anyVec(),_setup);
+        _readAhead = new ChunkReadAhead((ByteVec) _fr.anyVec(), priority());
+        if( _readAhead.depth() > 0 )
+          Log.debug("Parse of " + _srckey + " reads up to " + _readAhead.depth() + " chunks ahead on this node.");
       }
       @Override public void map( Chunk in ) {
-        if( _jobKey.get().stop_requested() ) throw new Job.JobCancelledException();
+        if( _jobKey.get().stop_requested() ) {
+          _readAhead.cancel();
+          throw new Job.JobCancelledException();
+        }
+        final long start = System.nanoTime();
+        _readAhead.startParse(in.cidx());
         AppendableVec [] avs = new AppendableVec[_setup._number_columns];
         for(int i = 0; i < avs.length; ++i)
           if (_setup._column_types == null) // SVMLight
@@ -901,7 +945,9 @@ public final class ParseDataset {
         }
         p.parseChunk(in.cidx(), din, dout);
         (_dout = dout).close(_fs);
-        Job.update(in._len, _jobKey); // Record bytes parsed
+        _readAhead.finishParse(System.nanoTime() - start);
+        long parsed = _readAhead.progress(in._len); // Record bytes parsed, batched
+        if( parsed > 0 ) Job.update(parsed, _readAhead.stageMessage(), _jobKey);
         // remove parsed data right away
         freeMem(in);
       }
@@ -928,11 +974,32 @@ public final class ParseDataset {
       }
       @Override public void reduce(DistributedParse dp) {
         _dout.reduce(dp._dout);
+        _readNanos += dp._readNanos;
+        _parseNanos += dp._parseNanos;
+        _chunksParsed += dp._chunksParsed;
+        _readAheadHits += dp._readAheadHits;
+        _readAheadEnabled |= dp._readAheadEnabled;
+      }
 
+      @Override protected void closeLocal() {
+        // collect the node-local stage timing, it is summed over the nodes in reduce
+        if( _readAhead == null ) return;
+        _readNanos += _readAhead.readNanos();
+        _parseNanos += _readAhead.parseNanos();
+        _chunksParsed += _readAhead.chunks();
+        _readAheadHits += _readAhead.hits();
+        _readAheadEnabled |= _readAhead.depth() > 0;
+        long parsed = _readAhead.unreported();
+        if( parsed > 0 ) Job.update(parsed, _jobKey);
+        _readAhead.cancel();
+        _readAhead = null;
       }
 
       @Override public void postGlobal() {
         super.postGlobal();
+        String stages = ChunkReadAhead.stageMessage(_readNanos, _parseNanos, _chunksParsed, _readAheadHits, _readAheadEnabled);
+        Log.info("Parse of " + _srckey + ": " + stages);
+        Job.update(0, stages, _jobKey);
         _outerMFPT._dout[_outerMFPT._lo] = _dout;
         if(_dout.hasErrors()) {
           ParseWriter.ParseErr [] errs = _dout.removeErrors();
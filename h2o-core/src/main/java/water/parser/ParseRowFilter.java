@@ -0,0 +1,107 @@
+package water.parser;
+
+import water.Iced;
+import water.exceptions.H2OIllegalArgumentException;
+
+/**
+ * A simple comparison of a numeric column with a constant (eg. "3 >= 2.5").
+ *
+ * Row filters are pushed down to columnar parsers (Parquet, ORC) and evaluated against
+ * the min/max statistics stored in the file. Whole blocks of data (row groups, stripes) whose
+ * values cannot satisfy all of the filters are not read at all. The filtering happens at block
+ * granularity only - individual rows of the blocks that are kept are not filtered and need to be
+ * filtered after the parse (eg. in Rapids) if exact semantics are required.
+ */
+public class ParseRowFilter extends Iced<ParseRowFilter> {
+
+  public enum Op {
+    LT("<"), LE("<="), GT(">"), GE(">="), EQ("=="), NE("!=");
+
+    private final String _symbol;
+
+    Op(String symbol) {
+      _symbol = symbol;
+    }
+
+    static Op fromSymbol(String symbol) {
+      for (Op op : values())
+        if (op._symbol.equals(symbol)) return op;
+      return null;
+    }
+  }
+
+  private final int _col;
+  private final Op _op;
+  private final double _value;
+
+  public ParseRowFilter(int col, Op op, double value) {
+    _col = col;
+    _op = op;
+    _value = value;
+  }
+
+  public int column() { return _col; }
+  public Op op() { return _op; }
+  public double value() { return _value; }
+
+  /**
+   * Checks if any value in the range [min, max] can satisfy the predicate.
+   * @param min minimum value of the column in a block of data
+   * @param max maximum value of the column in a block of data
+   * @return false if the block can be safely skipped, true otherwise
+   */
+  public boolean mayMatch(double min, double max) {
+    if (Double.isNaN(min) || Double.isNaN(max))
+      return true; // no usable statistics
+    switch (_op) {
+      case LT: return min < _value;
+      case LE: return min <= _value;
+      case GT: return max > _value;
+      case GE: return max >= _value;
+      case EQ: return min <= _value && _value <= max;
+      case NE: return !(min == _value && max == _value);
+      default: throw new IllegalStateException("Unknown operator " + _op);
+    }
+  }
+
+  /**
+   * Parses a filter in the form "column_index operator value", eg. "3 >= 2.5".
+   * @param spec string representation of the filter
+   * @return instance of ParseRowFilter
+   */
+  public static ParseRowFilter fromString(String spec) {
+    String[] tokens = spec.trim().split("\\s+");
+    if (tokens.length != 3)
+      throw new H2OIllegalArgumentException("row_filters", "ParseRowFilter.fromString", spec);
+    Op op = Op.fromSymbol(tokens[1]);
+    if (op == null)
+      throw new H2OIllegalArgumentException("Unsupported operator '" + tokens[1] + "' in row filter '" + spec + "'.");
+    try {
+      return new ParseRowFilter(Integer.parseInt(tokens[0]), op, Double.parseDouble(tokens[2]));
+    } catch (NumberFormatException e) {
+      throw new H2OIllegalArgumentException("Invalid row filter '" + spec + "', expected 'column_index operator number'.");
+    }
+  }
+
+  public static ParseRowFilter[] fromStrings(String[] specs) {
+    if (specs == null) return null;
+    ParseRowFilter[] filters = new ParseRowFilter[specs.length];
+    for (int i = 0; i < specs.length; i++)
+      filters[i] = fromString(specs[i]);
+    return filters;
+  }
+
+  public static String[] toStrings(ParseRowFilter[] filters) {
+    if (filters == null) return null;
+    String[] specs = new String[filters.length];
+    for (int i = 0; i < filters.length; i++)
+      specs[i] = filters[i].toString();
+    return specs;
+  }
+
+  @Override
+  public String toString() {
+    return _col + " " + _op._symbol + " " + _value;
+  }
+
+}
@@ -11,6 +11,7 @@ import water.util.Log;
 import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Random;
 
 import static water.parser.DefaultParserProviders.*;
 
@@ -38,6 +39,8 @@ public class ParseSetup extends Iced {
   String[][] _domains;        // Domains for each column (null if numeric)
   String[][] _na_strings;       // Strings for NA in a given column
   String[][] _data;           // First few rows of parsed/tokenized data
+  int[] _skipped_columns;     // Columns to leave out of the result (columnar parsers don't read them at all)
+  ParseRowFilter[] _row_filters; // Predicates used by columnar parsers to skip whole blocks of data
 
   String [] _fileNames = new String[]{"unknown"};
   public boolean disableParallelParse;
@@ -60,6 +63,8 @@ public class ParseSetup extends Iced {
          ps._separator, ps._single_quotes, ps._check_header, ps._number_columns,
          ps._column_names, ps._column_types, ps._domains, ps._na_strings, ps._data,
          new ParseWriter.ParseErr[0], ps._chunk_size, ps._decrypt_tool);
+    _skipped_columns = ps._skipped_columns;
+    _row_filters = ps._row_filters;
   }
 
 
@@ -114,6 +119,8 @@ public class ParseSetup extends Iced {
          new ParseWriter.ParseErr[0],
          ps.chunk_size,
          ps.decrypt_tool != null ? ps.decrypt_tool.key() : null);
+    _skipped_columns = ps.skipped_columns;
+    _row_filters = ParseRowFilter.fromStrings(ps.row_filters);
   }
 
   /**
@@ -161,6 +168,18 @@ public class ParseSetup extends Iced {
     return types;
   }
   public byte[] getColumnTypes() { return _column_types; }
+  public String[][] getDomains() { return _domains; }
+  public int[] getSkippedColumns() { return _skipped_columns; }
+  public ParseRowFilter[] getRowFilters() { return _row_filters; }
+
+  /**
+   * Tells whether a given column should be materialized by the parser.
+   * @param colIdx index of the column in the input file
+   * @return false if the user asked to skip the column, true otherwise
+   */
+  public boolean isColumnIncluded(int colIdx) {
+    return _skipped_columns == null || ArrayUtils.find(_skipped_columns, colIdx) < 0;
+  }
 
   public static byte[] strToColumnTypes(String[] strs) {
     if (strs == null) return null;
@@ -213,6 +232,8 @@ public class ParseSetup extends Iced {
       ParseSetup ps = pp.createParserSetup(inputKeys, demandedSetup);
       if (demandedSetup._decrypt_tool != null)
         ps._decrypt_tool = demandedSetup._decrypt_tool;
+      ps._skipped_columns = demandedSetup._skipped_columns;
+      ps._row_filters = demandedSetup._row_filters;
       return ps;
     }
 
@@ -286,10 +307,32 @@ public class ParseSetup extends Iced {
    * @return ParseSetup settings from looking at all files
    */
   public static ParseSetup guessSetup( Key[] fkeys, ParseSetup userSetup ) {
+    return guessSetup(fkeys, fkeys, userSetup, 0, 0);
+  }
+
+  /**
+   * Discover the parse setup needed to correctly parse all files by looking
+   * only at a sample of the files (and optionally at random offsets within them).
+   *
+   * @param fkeys Keys to input vectors to be parsed
+   * @param sampledKeys Keys of the files examined to guess the setup (subset of fkeys)
+   * @param userSetup Setup guidance from user
+   * @param sampleOffsets number of random chunks examined in each file in addition to its beginning
+   * @param seed seed used to pick the chunks
+   * @return ParseSetup settings from looking at the sampled files
+   */
+  static ParseSetup guessSetup(Key[] fkeys, Key[] sampledKeys, ParseSetup userSetup, int sampleOffsets, long seed) {
 
     //Guess setup of each file and collect results
-    GuessSetupTsk t = new GuessSetupTsk(userSetup);
-    t.doAll(fkeys).getResult();
+    GuessSetupTsk t = new GuessSetupTsk(userSetup, sampleOffsets, seed);
+    t.doAll(sampledKeys).getResult();
+
+    // the chunk size needs to reflect all the files, not just the sampled ones
+    if (sampledKeys.length < fkeys.length) {
+      t._totalParseSize = 0;
+      for (Key k : fkeys)
+        t._totalParseSize += ParseDataset.getByteVec(k).length();
+    }
 
     //Calc chunk-size
     // FIXME: should be a parser specific - or at least parser should be able to override defaults
@@ -311,6 +354,8 @@ public class ParseSetup extends Iced {
   public static class GuessSetupTsk extends MRTask<GuessSetupTsk> {
     // Input
     final ParseSetup _userSetup;
+    final int _sampleOffsets; // number of random chunks examined in addition to the beginning of a file
+    final long _seed;
     boolean _empty = true;
 
     // Output
@@ -324,7 +369,20 @@ public class ParseSetup extends Iced {
      * @param userSetup ParseSetup to guide examination of files
      */
     public GuessSetupTsk(ParseSetup userSetup) {
+      this(userSetup, 0, 0);
+    }
+
+    /**
+     *
+     * @param userSetup ParseSetup to guide examination of files
+     * @param sampleOffsets number of random chunks of each (uncompressed CSV) file whose
+     *                      column type evidence is merged with the evidence from the start of the file
+     * @param seed seed used to pick the chunks
+     */
+    public GuessSetupTsk(ParseSetup userSetup, int sampleOffsets, long seed) {
       _userSetup = userSetup;
+      _sampleOffsets = sampleOffsets;
+      _seed = seed;
     }
 
     /**
@@ -403,6 +461,8 @@ public class ParseSetup extends Iced {
             e._cidx = 0;
             e._file = _file;
           }
+          if (_sampleOffsets > 0 && decryptToolKey == null)
+            sampleOffsets(bv, key);
         } catch (ParseDataset.H2OParseException pse) {
           throw pse.resetMsg(pse.getMessage()+" for "+key);
         }
@@ -452,6 +512,46 @@ public class ParseSetup extends Iced {
       _gblSetup.setFileName(FileUtils.keyToFileName(key));
     }
 
+    /**
+     * Guesses column types from randomly chosen chunks of the file and merges the type
+     * evidence into the setup guessed from the beginning of the file. The first (partial)
+     * line of each chunk is skipped. Only uncompressed CSV files are sampled this way.
+     */
+    private void sampleOffsets(ByteVec bv, Key key) {
+      final int nChunks = bv.nChunks();
+      if (!_gblSetup._parse_type.equals(CSV_INFO) || nChunks < 2 || _gblSetup._column_previews == null)
+        return;
+      if (ZipUtil.guessCompressionMethod(bv.getFirstBytes()) != ZipUtil.Compression.NONE)
+        return;
+      ParseSetup chunkSetup = new ParseSetup(_userSetup)
+              .setParseType(_gblSetup._parse_type)
+              .setSeparator(_gblSetup._separator)
+              .setCheckHeader(NO_HEADER)
+              .setColumnNames(null);
+      // pick distinct chunks (other than the first one) at random
+      int[] cidxs = ArrayUtils.seq(1, nChunks);
+      Random rnd = new Random(_seed ^ key.toString().hashCode());
+      final int n = Math.min(_sampleOffsets, cidxs.length);
+      for (int i = 0; i < n; i++) {
+        int j = i + rnd.nextInt(cidxs.length - i);
+        int cidx = cidxs[j]; cidxs[j] = cidxs[i]; cidxs[i] = cidx;
+        byte[] bits = bv.chunkForChunkIdx(cidx).getBytes();
+        int start = 0;
+        while (start < bits.length && bits[start] != '\n') start++;
+        int end = Math.min(bits.length, FileVec.DFLT_CHUNK_SIZE);
+        while (end > start && bits[end - 1] != '\n') end--;
+        if (end - start <= 1)
+          continue; // no complete line in the chunk
+        ParseSetup sampled = guessSetup(bv, Arrays.copyOfRange(bits, start + 1, end), chunkSetup);
+        if (sampled._column_previews == null || sampled._number_columns != _gblSetup._number_columns) {
+          _gblSetup._errs = ArrayUtils.append(_gblSetup._errs, new ParseWriter.ParseErr(_file,
+                  "Sampled chunk " + cidx + " has " + sampled._number_columns + " columns, expected " + _gblSetup._number_columns + "."));
+          continue;
+        }
+        _gblSetup._column_previews = PreviewParseWriter.unifyColumnPreviews(_gblSetup._column_previews, sampled._column_previews);
+      }
+    }
+
     /**
      * Merges ParseSetup results, conflicts, and errors from several files
      */
@@ -596,7 +696,10 @@ public class ParseSetup extends Iced {
    * @return initial ParseSetup object to be passed to the ParserProvider
    */
   private ParseSetup toInitialSetup() {
-    return new ParseSetup(_parse_type, _separator, _single_quotes, _check_header, GUESS_COL_CNT, _column_names, _column_types, null, null, null);
+    ParseSetup ps = new ParseSetup(_parse_type, _separator, _single_quotes, _check_header, GUESS_COL_CNT, _column_names, _column_types, null, null, null);
+    ps._skipped_columns = _skipped_columns;
+    ps._row_filters = _row_filters;
+    return ps;
   }
 
   /**
@@ -776,4 +879,14 @@ public class ParseSetup extends Iced {
     return this;
   }
 
+  public ParseSetup setSkippedColumns(int[] skipped_columns) {
+    this._skipped_columns = skipped_columns;
+    return this;
+  }
+
+  public ParseSetup setRowFilters(ParseRowFilter[] row_filters) {
+    this._row_filters = row_filters;
+    return this;
+  }
+
 } // ParseSetup state class
@@ -0,0 +1,124 @@
+package water.parser;
+
+import water.DKV;
+import water.Key;
+import water.fvec.ByteVec;
+import water.rapids.Session;
+import water.util.Log;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Sampling-based guessing of a parse setup for imports of many files.
+ *
+ * Instead of examining the beginning of every file, the setup is guessed from a random
+ * sample of the files (the first file is always included, so that the header is detected
+ * from it) and, for uncompressed CSV files, also from random chunks inside each sampled file.
+ * The type evidence of all the samples is merged before the column types are decided.
+ *
+ * The resulting setup can be cached under a fingerprint of the set of files (names and sizes)
+ * and of the user-provided guidance, so that subsequent imports of the same directory don't need
+ * to examine the files again.  The cached setups are owned by the Rapids session of the
+ * request and are removed when the session ends.
+ */
+public final class ParseSetupSampler {
+
+  private static final String CACHE_KEY_PREFIX = "parse_setup_cache_";
+
+  private ParseSetupSampler() {}
+
+  /**
+   * @param fkeys Keys to input vectors to be parsed
+   * @param userSetup Setup guidance from user
+   * @param sampleFiles number of files to examine, 0 means all files
+   * @param sampleOffsets number of random chunks examined in each sampled file in addition to its beginning
+   * @param seed seed of the random sampling
+   * @param cacheSession if not null, reuse a setup guessed before in this session for the same files and guidance
+   *                     (and cache the new one in the session)
+   * @return ParseSetup settings from looking at the sampled files
+   */
+  public static ParseSetup guessSetup(Key[] fkeys, ParseSetup userSetup, int sampleFiles, int sampleOffsets,
+                                      long seed, Session cacheSession) {
+    Key<?> cacheKey = null;
+    if (cacheSession != null) {
+      cacheKey = cacheKey(cacheSession, fingerprint(fkeys, userSetup, sampleFiles, sampleOffsets, seed));
+      ParseSetup cached = DKV.getGet(cacheKey);
+      if (cached != null) {
+        Log.info("Reusing cached parse setup for " + fkeys.length + " files (" + cacheKey + ").");
+        return new ParseSetup(cached);
+      }
+    }
+    Key[] sampledKeys = sampleFiles(fkeys, sampleFiles, seed);
+    Log.info("Guessing parse setup from " + sampledKeys.length + " of " + fkeys.length + " files" +
+            (sampleOffsets > 0 ? " and " + sampleOffsets + " random chunks per file." : "."));
+    ParseSetup ps = ParseSetup.guessSetup(fkeys, sampledKeys, userSetup, sampleOffsets, seed);
+    if (cacheKey != null)
+      DKV.put(cacheSession.trackKey(cacheKey), new ParseSetup(ps));
+    return ps;
+  }
+
+  static Key<ParseSetup> cacheKey(Session session, String fingerprint) {
+    return Key.makeUserHidden(CACHE_KEY_PREFIX + session.id() + "_" + fingerprint);
+  }
+
+  /**
+   * Picks a random subset of the files, the first file is always included.
+   * The keys are returned in their original order.
+   */
+  static Key[] sampleFiles(Key[] fkeys, int sampleFiles, long seed) {
+    if (sampleFiles <= 0 || sampleFiles >= fkeys.length)
+      return fkeys;
+    int[] idxs = new int[fkeys.length - 1];
+    for (int i = 0; i < idxs.length; i++) idxs[i] = i + 1;
+    Random rnd = new Random(seed);
+    for (int i = 0; i < sampleFiles - 1; i++) {
+      int j = i + rnd.nextInt(idxs.length - i);
+      int tmp = idxs[j]; idxs[j] = idxs[i]; idxs[i] = tmp;
+    }
+    int[] picked = Arrays.copyOf(idxs, sampleFiles - 1);
+    Arrays.sort(picked);
+    Key[] sampled = new Key[sampleFiles];
+    sampled[0] = fkeys[0];
+    for (int i = 0; i < picked.length; i++)
+      sampled[i + 1] = fkeys[picked[i]];
+    return sampled;
+  }
+
+  /**
+   * Fingerprint of a set of files (their names and sizes) and of the parameters of the guess.
+   * Adding, removing or rewriting (with a different size) any of the files changes the fingerprint.
+   */
+  static String fingerprint(Key[] fkeys, ParseSetup userSetup, int sampleFiles, int sampleOffsets, long seed) {
+    String[] files = new String[fkeys.length];
+    for (int i = 0; i < fkeys.length; i++) {
+      ByteVec vec = ParseDataset.getByteVec(fkeys[i]);
+      files[i] = fkeys[i] + ":" + vec.length();
+    }
+    Arrays.sort(files);
+    long h = 17;
+    for (String f : files)
+      h = h * 31 + hash64(f);
+    h = h * 31 + hash64(userSetup._parse_type != null ? userSetup._parse_type.name() : "");
+    h = h * 31 + userSetup._separator;
+    h = h * 31 + (userSetup._single_quotes ? 1 : 0);
+    h = h * 31 + userSetup._check_header;
+    h = h * 31 + hash64(Arrays.toString(userSetup._column_names));
+    h = h * 31 + hash64(Arrays.toString(userSetup._column_types));
+    h = h * 31 + hash64(Arrays.deepToString(userSetup._na_strings));
+    h = h * 31 + hash64(String.valueOf(userSetup._decrypt_tool));
+    h = h * 31 + sampleFiles;
+    h = h * 31 + sampleOffsets;
+    h = h * 31 + seed;
+    return Long.toHexString(h);
+  }
+
+  // 64-bit variant of String.hashCode, to make collisions of fingerprints unlikely
+  private static long hash64(String s) {
+    long h = 1125899906842597L;
+    for (int i = 0; i < s.length(); i++)
+      h = 31 * h + s.charAt(i);
+    return h;
+  }
+
+}
@@ -71,6 +71,11 @@ public class Env extends Iced {
     PRIMS.put(name, ast);
   }
 
+  // The built-in primitive of the given name, or null
+  static AstPrimitive prim(String id) {
+    return PRIMS.get(id);
+  }
+
   static {
     // Constants
     CONSTS.put("FALSE", AstConst.FALSE);
@@ -151,6 +156,8 @@ public class Env extends Iced {
     init(new AstAll());
     init(new AstAny());
     init(new AstAnyNa());
+    init(new AstApproxDistinct());
+    init(new AstApproxQuantile());
     init(new AstCumMax());
     init(new AstCumMin());
     init(new AstCumProd());
@@ -191,6 +198,10 @@ public class Env extends Iced {
     // Time Series
     init(new AstDiffLag1());
     init(new AstIsax());
+    init(new AstRolling());
+    init(new AstLag());
+    init(new AstLead());
+    init(new AstCumulative());
 
     // Advanced Math
     init(new AstCorrelation());
@@ -412,7 +423,9 @@ public class Env extends Iced {
   // frame - so we can hack it without changing the global frame view.
   ValFrame addGlobals(Frame fr) {
     _ses.addGlobals(fr);
-    return new ValFrame(new Frame(fr._names.clone(), fr.vecs().clone()));
+    Frame copy = new Frame(fr._names.clone(), fr.vecs().clone());
+    copy.setSortOrder(fr.sortOrder());
+    return new ValFrame(copy);
   }
 
   /*
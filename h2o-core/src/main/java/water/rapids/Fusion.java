@@ -0,0 +1,334 @@
+package water.rapids;
+
+import water.H2O;
+import water.Iced;
+import water.Key;
+import water.MRTask;
+import water.MemoryManager;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.NewChunk;
+import water.fvec.Vec;
+import water.rapids.ast.AstExec;
+import water.rapids.ast.AstPrimitive;
+import water.rapids.ast.AstRoot;
+import water.rapids.ast.params.AstId;
+import water.rapids.ast.prims.math.AstUniOp;
+import water.rapids.ast.prims.operators.AstBinOp;
+import water.rapids.ast.prims.operators.AstIfElse;
+import water.rapids.ast.prims.operators.AstLAnd;
+import water.rapids.ast.prims.operators.AstLOr;
+import water.rapids.vals.ValFrame;
+import water.rapids.vals.ValNum;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Fused evaluation of element-wise Rapids expressions.
+ * <p/>
+ * Evaluated one primitive at a time, an expression such as {@code (ifelse (> (log x) 2) (* x y) 0)}
+ * makes a pass over the data and materializes a temporary Frame for every operator.  With fusion on
+ * (the {@link #ENABLED_KEY} system property), a tree of element-wise operators ({@link AstBinOp},
+ * {@link AstUniOp} and {@link AstIfElse}) is instead built lazily into an expression DAG whose leaves
+ * are the evaluated operand Frames and scalars; only when the whole tree is known is it materialized,
+ * by a single MRTask which evaluates the expression a chunk and a column at a time.
+ * <p/>
+ * Fusion only applies where it computes exactly what the operators would one at a time: numeric
+ * columns, Frames with the same rows, ifelse over a Frame test.  Any sub-expression which cannot be
+ * fused is evaluated as usual (over its already evaluated operands), and becomes a leaf.
+ */
+public final class Fusion {
+
+  // Turns fused evaluation of element-wise expressions on
+  public static final String ENABLED_KEY = H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.fuse";
+
+  private Fusion() {}
+
+  /**
+   * Evaluates the expression rooted at exec (an application of fun) fused into a single pass.
+   * @return the result, or null if fusion is off or the expression has less than two fusible operators
+   */
+  public static Val exec(Env env, Env.StackHelp stk, AstExec exec, AstPrimitive fun) {
+    if (!Boolean.getBoolean(ENABLED_KEY) || !isFusible(fun, exec._asts) || countOps(env, exec) < 2)
+      return null;
+    return compile(env, stk, exec).value(env, stk);
+  }
+
+  private static boolean isFusible(AstPrimitive fun, AstRoot[] asts) {
+    if (fun instanceof AstLAnd || fun instanceof AstLOr) return false; // Short-circuits
+    return (fun instanceof AstBinOp || fun instanceof AstUniOp || fun instanceof AstIfElse) && fun.nargs() == asts.length;
+  }
+
+  // The fusible element-wise function applied by the expression, or null
+  private static AstPrimitive fusible(Env env, AstRoot ast) {
+    if (!(ast instanceof AstExec)) return null;
+    AstRoot[] asts = ((AstExec) ast)._asts;
+    if (!(asts[0] instanceof AstId || asts[0] instanceof AstPrimitive)) return null;
+    for (AstRoot arg : asts)
+      if (arg instanceof Evaluated) return null; // Applied as usual, after fusion failed
+    Val fun = asts[0].exec(env);
+    return fun.isFun() && isFusible(fun.getFun(), asts) ? fun.getFun() : null;
+  }
+
+  private static int countOps(Env env, AstRoot ast) {
+    if (fusible(env, ast) == null) return 0;
+    AstRoot[] asts = ((AstExec) ast)._asts;
+    int n = 1;
+    for (int i = 1; i < asts.length; i++)
+      n += countOps(env, asts[i]);
+    return n;
+  }
+
+  // Build the expression DAG, evaluating the leaves
+  private static Node compile(Env env, Env.StackHelp stk, AstRoot ast) {
+    AstPrimitive fun = fusible(env, ast);
+    if (fun == null) return leaf(stk.track(ast.exec(env)));
+    AstRoot[] asts = ((AstExec) ast)._asts;
+    Node[] args = new Node[asts.length - 1];
+    if (fun instanceof AstIfElse) {
+      // A scalar test only evaluates one side: no fusion
+      args[0] = compile(env, stk, asts[1]);
+      if (args[0]._width == 0) return leaf(applyTo(env, stk, asts, args[0].value(env, stk)));
+      args[1] = compile(env, stk, asts[2]);
+      args[2] = compile(env, stk, asts[3]);
+    } else
+      for (int i = 0; i < args.length; i++)
+        args[i] = compile(env, stk, asts[i + 1]);
+    Node node = fun instanceof AstIfElse ? IfElse.make(args[0], args[1], args[2])
+              : fun instanceof AstBinOp ? BinOp.make((AstBinOp) fun, args[0], args[1])
+              : UniOp.make((AstUniOp) fun, args[0]);
+    if (node != null) return node;
+    // Not fusible: apply the function as usual to the evaluated arguments
+    Val[] vals = new Val[args.length];
+    for (int i = 0; i < args.length; i++)
+      vals[i] = args[i].value(env, stk);
+    return leaf(applyTo(env, stk, asts, vals));
+  }
+
+  // Apply the function of the expression to the given (already evaluated) leading arguments
+  private static Val applyTo(Env env, Env.StackHelp stk, AstRoot[] asts, Val... vals) {
+    AstRoot[] args = asts.clone();
+    for (int i = 0; i < vals.length; i++)
+      args[i + 1] = new Evaluated(vals[i]);
+    return stk.track(new AstExec(args).exec(env));
+  }
+
+  private static Node leaf(Val val) {
+    if (val.isNum()) return new Const(val.getNum());
+    if (val.isFrame()) {
+      Frame fr = val.getFrame();
+      boolean numeric = fr.numCols() > 0;
+      for (Vec v : fr.vecs()) numeric &= v.isNumeric();
+      if (numeric) return new FrameLeaf(fr);
+    }
+    return new Opaque(val);
+  }
+
+  // Can Frame valued nodes a and b be evaluated in the same pass?
+  private static boolean aligned(Node a, Node b) {
+    return a._anyVec.length() == b._anyVec.length() && a._anyVec.isCompatibleWith(b._anyVec);
+  }
+
+  private static String[] defaultNames(int n) {
+    String[] names = new String[n];
+    for (int i = 0; i < n; i++) names[i] = Frame.defaultColName(i);
+    return names;
+  }
+
+  /**
+   * A node of the expression DAG: a scalar (width 0) or a number of columns.
+   */
+  abstract static class Node extends Iced<Node> {
+    int _width;                  // Number of columns, 0 for a scalar
+    transient String[] _names;   // Names of the columns
+    transient Vec _anyVec;       // Layout of the columns
+
+    // Column of this node used for column c of its parent (a single column is widened)
+    final int col(int c) { return _width == 1 ? 0 : c; }
+
+    // Evaluate column col over the rows of a chunk of the inputs
+    abstract void eval(Chunk[] cs, int col, int len, double[] out);
+
+    // Collect the input Vecs of the leaves below
+    void inputs(ArrayList<Vec> vecs, HashMap<Key, Integer> idx) {}
+
+    // The value of this node, materialized if needed
+    Val value(Env env, Env.StackHelp stk) {
+      ArrayList<Vec> vecs = new ArrayList<>();
+      inputs(vecs, new HashMap<Key, Integer>());
+      Frame in = new Frame(defaultNames(vecs.size()), vecs.toArray(new Vec[vecs.size()]));
+      Frame res = new FusedTask(this).doAll(_width, Vec.T_NUM, in).outputFrame(_names, null);
+      return stk.track(env.returning(new ValFrame(res)));
+    }
+  }
+
+  private static class Const extends Node {
+    final double _d;
+    Const(double d) { _d = d; }
+    @Override void eval(Chunk[] cs, int col, int len, double[] out) {
+      for (int i = 0; i < len; i++) out[i] = _d;
+    }
+    @Override Val value(Env env, Env.StackHelp stk) { return new ValNum(_d); }
+  }
+
+  // An evaluated value which cannot be fused
+  private static class Opaque extends Node {
+    final transient Val _val;
+    Opaque(Val val) { _val = val; _width = -1; }
+    @Override void eval(Chunk[] cs, int col, int len, double[] out) { throw H2O.fail(); }
+    @Override Val value(Env env, Env.StackHelp stk) { return _val; }
+  }
+
+  // An evaluated Frame of numeric columns
+  private static class FrameLeaf extends Node {
+    final transient Frame _fr;
+    int[] _cols;                 // Input column of every column of the Frame
+    FrameLeaf(Frame fr) {
+      _fr = fr;
+      _width = fr.numCols();
+      _names = fr.names();
+      _anyVec = fr.anyVec();
+    }
+    @Override void inputs(ArrayList<Vec> vecs, HashMap<Key, Integer> idx) {
+      _cols = new int[_width];
+      for (int c = 0; c < _width; c++) {
+        Vec v = _fr.vec(c);
+        Integer i = idx.get(v._key);
+        if (i == null) {
+          idx.put(v._key, i = vecs.size());
+          vecs.add(v);
+        }
+        _cols[c] = i;
+      }
+    }
+    @Override void eval(Chunk[] cs, int col, int len, double[] out) {
+      cs[_cols[col]].getDoubles(out, 0, len);
+    }
+    @Override Val value(Env env, Env.StackHelp stk) { return new ValFrame(_fr); }
+  }
+
+  private static class BinOp extends Node {
+    final AstBinOp _op;
+    final Node _l, _r;
+    private BinOp(AstBinOp op, Node l, Node r) { _op = op; _l = l; _r = r; }
+
+    // Same widening rules and names as AstBinOp; null if not fusible
+    static Node make(AstBinOp op, Node l, Node r) {
+      if (l._width < 0 || r._width < 0) return null;
+      if (l._width == 0 && r._width == 0) return new Const(op.op(((Const) l)._d, ((Const) r)._d));
+      BinOp n = new BinOp(op, l, r);
+      if (l._width == 0 || r._width == 0) {
+        Node fr = l._width == 0 ? r : l;
+        n._width = fr._width;
+        n._names = fr._names;
+        n._anyVec = fr._anyVec;
+        return n;
+      }
+      if (!aligned(l, r)) return null;
+      if (l._width == r._width || r._width == 1) n._names = l._names;
+      else if (l._width == 1) n._names = r._names;
+      else return null;
+      n._width = n._names.length;
+      n._anyVec = l._anyVec;
+      return n;
+    }
+
+    @Override void inputs(ArrayList<Vec> vecs, HashMap<Key, Integer> idx) {
+      _l.inputs(vecs, idx);
+      _r.inputs(vecs, idx);
+    }
+
+    @Override void eval(Chunk[] cs, int col, int len, double[] out) {
+      double[] tmp = MemoryManager.malloc8d(len);
+      _l.eval(cs, _l.col(col), len, out);
+      _r.eval(cs, _r.col(col), len, tmp);
+      for (int i = 0; i < len; i++) out[i] = _op.op(out[i], tmp[i]);
+    }
+  }
+
+  private static class UniOp extends Node {
+    final AstUniOp _op;
+    final Node _x;
+    private UniOp(AstUniOp op, Node x) { _op = op; _x = x; }
+
+    static Node make(AstUniOp op, Node x) {
+      if (x._width < 0) return null;
+      if (x._width == 0) return new Const(op.op(((Const) x)._d));
+      UniOp n = new UniOp(op, x);
+      n._width = x._width;
+      n._anyVec = x._anyVec;
+      n._names = new String[x._width];
+      for (int i = 0; i < n._names.length; i++)
+        n._names[i] = op.str() + "(" + x._names[i] + ")";
+      return n;
+    }
+
+    @Override void inputs(ArrayList<Vec> vecs, HashMap<Key, Integer> idx) { _x.inputs(vecs, idx); }
+
+    @Override void eval(Chunk[] cs, int col, int len, double[] out) {
+      _x.eval(cs, _x.col(col), len, out);
+      for (int i = 0; i < len; i++) out[i] = _op.op(out[i]);
+    }
+  }
+
+  private static class IfElse extends Node {
+    final Node _tst, _yes, _no;
+    private IfElse(Node tst, Node yes, Node no) { _tst = tst; _yes = yes; _no = no; }
+
+    // A Frame test, and scalar or same width sides (as AstIfElse does not widen them)
+    static Node make(Node tst, Node yes, Node no) {
+      if (tst._width <= 0) return null;
+      for (Node side : new Node[]{yes, no})
+        if (side._width < 0 || (side._width > 0 && (side._width != tst._width || !aligned(tst, side))))
+          return null;
+      IfElse n = new IfElse(tst, yes, no);
+      n._width = tst._width;
+      n._anyVec = tst._anyVec;
+      n._names = defaultNames(n._width);
+      return n;
+    }
+
+    @Override void inputs(ArrayList<Vec> vecs, HashMap<Key, Integer> idx) {
+      _tst.inputs(vecs, idx);
+      _yes.inputs(vecs, idx);
+      _no.inputs(vecs, idx);
+    }
+
+    @Override void eval(Chunk[] cs, int col, int len, double[] out) {
+      double[] yes = MemoryManager.malloc8d(len), no = MemoryManager.malloc8d(len);
+      _tst.eval(cs, col, len, out);
+      _yes.eval(cs, col, len, yes);
+      _no.eval(cs, col, len, no);
+      for (int i = 0; i < len; i++)
+        out[i] = Double.isNaN(out[i]) ? Double.NaN : out[i] == 0 ? no[i] : yes[i];
+    }
+  }
+
+  // Evaluates the whole expression, one output column at a time
+  private static class FusedTask extends MRTask<FusedTask> {
+    final Node _root;
+    FusedTask(Node root) { _root = root; }
+
+    @Override
+    public void map(Chunk[] cs, NewChunk[] ncs) {
+      int len = cs[0]._len;
+      double[] out = MemoryManager.malloc8d(len);
+      for (int c = 0; c < ncs.length; c++) {
+        _root.eval(cs, c, len, out);
+        for (int i = 0; i < len; i++)
+          ncs[c].addNum(out[i]);
+      }
+    }
+  }
+
+  // An already evaluated argument
+  private static class Evaluated extends AstRoot<Evaluated> {
+    final transient Val _val;
+    Evaluated(Val val) { _val = val; }
+    @Override public Val exec(Env env) { return env.returning(_val); }
+    @Override public String str() { return String.valueOf(_val); }
+    @Override public String example() { return null; }
+    @Override public String description() { return null; }
+  }
+}
@@ -3,6 +3,7 @@ package water.rapids;
 import water.*;
 import water.fvec.Chunk;
 import water.fvec.Frame;
+import water.fvec.SortOrder;
 import water.fvec.Vec;
 
 import java.math.BigInteger;
@@ -289,6 +290,10 @@ public class Merge {
     ff.doAll(fr);
     System.out.println("took: " + (System.nanoTime() - t0) / 1e9);
 
+    // A plain sort: record the order, so the following sorts, merges and group-bys can use it.
+    // (Joined results are not globally sorted: the non-matching ranges come first.)
+    if (!hasRite) SortOrder.markSorted(fr, leftCols, ascendingL);
+
     //Merge.cleanUp();
     return fr;
   }
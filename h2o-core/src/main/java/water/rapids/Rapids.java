@@ -61,7 +61,7 @@ public class Rapids {
     Session session = new Session();
     try {
       H2O.incrementActiveRapidsCounter();
-      AstRoot ast = Rapids.parse(rapids);
+      AstRoot ast = RapidsCache.wrap(Rapids.parse(rapids));
       Val val = session.exec(ast, null);
       // Any returned Frame has it's REFCNT raised by +1, and the end(val) call
       // will account for that, copying Vecs as needed so that the returned
@@ -87,7 +87,7 @@ public class Rapids {
     try {
       H2O.incrementActiveRapidsCounter();
 
-      AstRoot ast = Rapids.parse(rapids);
+      AstRoot ast = RapidsCache.wrap(Rapids.parse(rapids));
       // Synchronize the session, to stop back-to-back overlapping Rapids calls
       // on the same session, which Flow sometimes does
       synchronized (session) {
@@ -0,0 +1,347 @@
+package water.rapids;
+
+import water.DKV;
+import water.Futures;
+import water.H2O;
+import water.Key;
+import water.MemoryManager;
+import water.Value;
+import water.fvec.Frame;
+import water.fvec.SortOrder;
+import water.fvec.Vec;
+import water.parser.ParseTime;
+import water.rapids.ast.AstExec;
+import water.rapids.ast.AstFrame;
+import water.rapids.ast.AstFunction;
+import water.rapids.ast.AstPrimitive;
+import water.rapids.ast.AstRoot;
+import water.rapids.ast.params.AstId;
+import water.rapids.ast.prims.advmath.*;
+import water.rapids.ast.prims.assign.AstTmpAssign;
+import water.rapids.ast.prims.math.AstUniOp;
+import water.rapids.ast.prims.matrix.AstMMult;
+import water.rapids.ast.prims.mungers.*;
+import water.rapids.ast.prims.operators.AstBinOp;
+import water.rapids.ast.prims.reducers.AstSum;
+import water.rapids.ast.prims.repeaters.AstSeq;
+import water.rapids.ast.prims.search.AstMatch;
+import water.rapids.ast.prims.string.AstToLower;
+import water.rapids.ast.prims.time.*;
+import water.rapids.ast.prims.timeseries.AstLag;
+import water.rapids.vals.ValFrame;
+import water.rapids.vals.ValNum;
+import water.rapids.vals.ValNums;
+import water.rapids.vals.ValStr;
+import water.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache of the results of Rapids expressions.
+ * <p/>
+ * Interactive clients often run the same expression (a group-by, a table, quantiles) over and over
+ * against unchanged Frames.  With the cache on (the {@link #ENABLED_KEY} system property), the
+ * result of every {@link Rapids} call is kept, keyed by the normalized expression (its printed AST),
+ * by the identity and version of every Frame it names: the keys, names and domains of its Vecs,
+ * and their content checksums (from the rollups, which are rebuilt after every write), and by the
+ * value of every name bound in the lexical scope (the functions, with their bodies).  Modifying a
+ * Frame changes its version, so the results computed from the old data are never returned again;
+ * they are dropped when their Vecs are deleted, or by LRU eviction.
+ * <p/>
+ * Only expressions made of primitives known to be pure are cached: no assignments, no in-place
+ * munging, no randomness, no session or cluster state, no Frames which are not in the DKV and no
+ * Models.  The time primitives depend on the time zone of the cluster, which is part of their key.  Frame
+ * results are kept as private copies, and handed out as fresh copies, so that the cached results
+ * are independent of the sessions.  The cache holds at most {@link #MAX_BYTES_KEY} bytes of Frames
+ * (by default 1/32 of the heap), and is not filled when memory is low.
+ */
+public final class RapidsCache {
+
+  // Turns the caching of the results of Rapids expressions on
+  public static final String ENABLED_KEY = H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.cache";
+  // Bytes of cached Frames, at most
+  public static final String MAX_BYTES_KEY = H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.cache.max_bytes";
+
+  // Packages of pure primitives: element-wise math and operators, reducers, matrices, sequences,
+  // searches, strings and time series; their results depend on their arguments only
+  private static final Package[] PURE_PACKAGES = {
+      AstUniOp.class.getPackage(), AstBinOp.class.getPackage(), AstSum.class.getPackage(),
+      AstMMult.class.getPackage(), AstSeq.class.getPackage(), AstMatch.class.getPackage(),
+      AstToLower.class.getPackage(), AstLag.class.getPackage(),
+  };
+
+  // Pure primitives of the other packages.  Not: random splits and folds, imputation, scaling,
+  // renaming and re-leveling in place, assignments, properties and the time zone
+  private static final Class[] PURE = {
+      AstCorrelation.class, AstDistance.class, AstHist.class, AstKurtosis.class, AstMode.class,
+      AstQtile.class, AstSkewness.class, AstTable.class, AstUnique.class, AstVariance.class,
+      AstAnyFactor.class, AstApply.class, AstAsCharacter.class, AstAsFactor.class, AstAsNumeric.class,
+      AstCBind.class, AstColPySlice.class, AstColSlice.class, AstColumnsByType.class, AstCut.class,
+      AstDdply.class, AstFilterNaCols.class, AstFlatten.class, AstGetrow.class, AstGroup.class,
+      AstGroupedPermute.class, AstIsCharacter.class, AstIsFactor.class, AstIsNa.class, AstIsNumeric.class,
+      AstLevels.class, AstMerge.class, AstNaOmit.class, AstNcol.class, AstNLevels.class, AstNrow.class,
+      AstPivot.class, AstRankWithinGroupBy.class, AstRBind.class, AstRowSlice.class, AstSort.class,
+  };
+
+  // Pure for a given time zone of the cluster
+  private static final Class[] ZONED = {
+      AstAsDate.class, AstDay.class, AstDayOfWeek.class, AstHour.class, AstMillis.class, AstMinute.class,
+      AstMktime.class, AstMoment.class, AstMonth.class, AstSecond.class, AstWeek.class, AstYear.class,
+  };
+
+  // Entries from least to most recently used
+  private static final LinkedHashMap<String, Entry> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+  private static long _bytes;          // Bytes of the cached Frames
+
+  private RapidsCache() {}
+
+  // A cached result
+  private static class Entry {
+    final Val _val;                    // A private Frame, or a scalar value
+    final Key[] _inputs;               // Vecs the result was computed from
+    final long _bytes;
+    Entry(Val val, Key[] inputs, long bytes) {
+      _val = val;
+      _inputs = inputs;
+      _bytes = bytes;
+    }
+  }
+
+  /**
+   * The expression, evaluated through the cache if the cache is on.  The value of a temp assignment
+   * {@code (tmp= id expr)} is cached, not the assignment.
+   */
+  static AstRoot wrap(AstRoot ast) {
+    if (!Boolean.getBoolean(ENABLED_KEY)) return ast;
+    if (ast instanceof AstExec) {
+      AstRoot[] asts = ((AstExec) ast)._asts;
+      if (asts.length == 3 && (asts[0] instanceof AstTmpAssign || asts[0].str().equals("tmp="))) {
+        asts = asts.clone();
+        asts[2] = new Cached(asts[2]);
+        return new AstExec(asts);
+      }
+    }
+    return new Cached(ast);
+  }
+
+  /** Drop all the cached results */
+  public static synchronized void clear() {
+    Futures fs = new Futures();
+    for (Entry e : CACHE.values()) delete(e, fs);
+    CACHE.clear();
+    _bytes = 0;
+    fs.blockForPending();
+  }
+
+  /** Number of cached results */
+  public static synchronized int size() {
+    return CACHE.size();
+  }
+
+  private static long maxBytes() {
+    return Long.getLong(MAX_BYTES_KEY, MemoryManager.MEM_MAX >> 5);
+  }
+
+  // --------------------------------------------------------------------------
+  // Keys
+
+  /**
+   * The cache key of the expression: the printed expression, then the version of every Frame named
+   * in it.
+   * @param inputs filled in with the Vecs of the Frames named in the expression
+   * @return the key, or null if the expression cannot be cached
+   */
+  static String key(Env env, AstRoot ast, ArrayList<Key> inputs) {
+    StringBuilder sb = new StringBuilder(ast.str());
+    return versions(env, ast, sb, inputs) ? sb.toString() : null;
+  }
+
+  private static boolean versions(Env env, AstRoot ast, StringBuilder sb, ArrayList<Key> inputs) {
+    if (ast instanceof AstPrimitive) {
+      if (ast instanceof AstFunction)
+        return ((AstFunction) ast).body() == null || versions(env, ((AstFunction) ast).body(), sb, inputs);
+      return cacheable((AstPrimitive) ast, sb);
+    }
+    if (ast instanceof AstExec) {
+      for (AstRoot arg : ((AstExec) ast)._asts)
+        if (!versions(env, arg, sb, inputs)) return false;
+      return true;
+    }
+    if (!(ast instanceof AstId)) return !(ast instanceof AstFrame); // Not in the DKV
+    String id = ast.str();
+    Val bound = env._scope == null ? null : env._scope.lookup(id);
+    if (bound != null) return bound(env, id, bound, sb, inputs);
+    Value v = DKV.get(Key.make(env.expand(id)));
+    if (v == null) {                   // A built-in, or an argument of a function of the expression
+      AstPrimitive prim = Env.prim(id);
+      return prim == null || cacheable(prim, sb);
+    }
+    if (!v.isFrame()) return false;    // Models and others have no versions
+    version(v.<Frame>get(), sb, inputs);
+    return true;
+  }
+
+  // A name bound in the lexical scope of the expression: its value is part of the key
+  private static boolean bound(Env env, String id, Val val, StringBuilder sb, ArrayList<Key> inputs) {
+    if (val.isFun()) {
+      AstPrimitive fun = val.getFun();
+      String def = " " + id + "=" + fun.str();
+      boolean seen = sb.indexOf(def) >= 0; // Named in its own body
+      sb.append(def);
+      return seen || versions(env, fun, sb, inputs);
+    }
+    sb.append(' ').append(id).append('=');
+    if (val.isNum()) sb.append(val.getNum());
+    else if (val.isNums()) sb.append(Arrays.toString(val.getNums()));
+    else if (val.isStr()) sb.append('"').append(val.getStr()).append('"');
+    else if (val.isFrame()) version(val.getFrame(), sb, inputs);
+    else return false;
+    return true;
+  }
+
+  private static void version(Frame fr, StringBuilder sb, ArrayList<Key> inputs) {
+    sb.append(' ').append(fr._key).append(Arrays.toString(fr.names()));
+    for (Vec vec : fr.vecs()) {
+      sb.append(' ').append(vec._key).append(':').append(vec.contentChecksum()).append(':').append(Arrays.hashCode(vec.domain()));
+      inputs.add(vec._key);
+    }
+  }
+
+  // Is the primitive pure; the time zone is added to the key of the primitives depending on it
+  private static boolean cacheable(AstPrimitive prim, StringBuilder sb) {
+    for (Package p : PURE_PACKAGES)
+      if (prim.getClass().getPackage() == p) return true;
+    for (Class c : PURE)
+      if (c == prim.getClass()) return true;
+    for (Class c : ZONED)
+      if (c == prim.getClass()) {
+        sb.append(" tz=").append(ParseTime.getTimezone().getID());
+        return true;
+      }
+    return false;
+  }
+
+  // --------------------------------------------------------------------------
+  // Lookup and store
+
+  // A fresh copy of the cached result, or null.  The copy is made outside of the lock: it is only
+  // handed out if the entry is still cached once copied, else its Vecs may have been deleted meanwhile.
+  private static Val lookup(String key) {
+    Entry e;
+    synchronized (RapidsCache.class) {
+      e = CACHE.get(key);
+      if (e == null) return null;
+      if (e._val.isFrame())
+        for (Vec vec : e._val.getFrame().vecs())
+          if (DKV.get(vec._key) == null) { // Deleted from under the cache
+            CACHE.remove(key);
+            _bytes -= e._bytes;
+            return null;
+          }
+    }
+    Val val;
+    try {
+      val = copy(e._val);
+    } catch (RuntimeException ex) {    // Evicted and deleted while being copied
+      return null;
+    }
+    synchronized (RapidsCache.class) {
+      if (CACHE.get(key) == e) return val;
+    }
+    Futures fs = new Futures();
+    delete(val, fs);
+    fs.blockForPending();
+    return null;
+  }
+
+  private static void store(String key, Val val, ArrayList<Key> inputs) {
+    if (!(val.isFrame() || val.isNum() || val.isNums() || val.isStr())) return;
+    if (!MemoryManager.canAlloc()) {   // Memory is low: give the cache back
+      clear();
+      return;
+    }
+    long bytes = val.isFrame() ? val.getFrame().byteSize() : 0;
+    if (bytes > maxBytes() / 4) return;  // Too large to be worth a copy
+    Entry e = new Entry(copy(val), inputs.toArray(new Key[inputs.size()]), bytes);
+    Futures fs = new Futures();
+    synchronized (RapidsCache.class) {
+      Entry old = CACHE.put(key, e);
+      if (old != null) {
+        _bytes -= old._bytes;
+        delete(old, fs);
+      }
+      _bytes += bytes;
+      // Drop the results computed from deleted Frames, then the least recently used ones
+      for (Iterator<Entry> it = CACHE.values().iterator(); it.hasNext(); ) {
+        Entry x = it.next();
+        if (x != e && (_bytes > maxBytes() || !inputsAlive(x))) {
+          _bytes -= x._bytes;
+          delete(x, fs);
+          it.remove();
+        }
+      }
+    }
+    fs.blockForPending();
+  }
+
+  private static boolean inputsAlive(Entry e) {
+    for (Key k : e._inputs)
+      if (DKV.get(k) == null) return false;
+    return true;
+  }
+
+  private static void delete(Entry e, Futures fs) {
+    delete(e._val, fs);
+  }
+
+  private static void delete(Val val, Futures fs) {
+    if (val.isFrame())
+      for (Vec vec : val.getFrame().vecs()) vec.remove(fs);
+  }
+
+  // A copy of the value, independent of the original
+  private static Val copy(Val val) {
+    if (val.isNum()) return new ValNum(val.getNum());
+    if (val.isNums()) return new ValNums(val.getNums().clone());
+    if (val.isStr()) return new ValStr(val.getStr());
+    Frame fr = val.getFrame();
+    Vec[] vecs = new Vec[fr.numCols()];
+    for (int i = 0; i < vecs.length; i++) vecs[i] = fr.vec(i).makeCopy();
+    Frame res = new Frame(fr.names().clone(), vecs);
+    SortOrder so = fr.sortOrder();
+    if (so != null) res.setSortOrder(so.replaceVecs(fr.vecs(), vecs));
+    return new ValFrame(res);
+  }
+
+  // --------------------------------------------------------------------------
+  // Evaluates an expression through the cache
+  private static class Cached extends AstRoot<Cached> {
+    final AstRoot _ast;
+    Cached(AstRoot ast) { _ast = ast; }
+
+    @Override
+    public Val exec(Env env) {
+      ArrayList<Key> inputs = new ArrayList<>();
+      String key;
+      try {
+        key = key(env, _ast, inputs);
+      } catch (RuntimeException e) { // e.g. no rollups for a Vec being written
+        Log.debug("Rapids cache: cannot key " + _ast + ": " + e);
+        key = null;
+      }
+      if (key == null) return _ast.exec(env);
+      Val hit = lookup(key);
+      if (hit != null) return env.returning(hit);
+      Val val = _ast.exec(env);
+      store(key, val, inputs);
+      return val;
+    }
+
+    @Override public String str() { return _ast.str(); }
+    @Override public String example() { return null; }
+    @Override public String description() { return null; }
+  }
+}
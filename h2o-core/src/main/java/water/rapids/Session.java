@@ -5,6 +5,7 @@ import water.Futures;
 import water.Key;
 import water.MRTask;
 import water.fvec.Frame;
+import water.fvec.SortOrder;
 import water.fvec.Vec;
 import water.nbhm.*;
 import water.rapids.ast.AstFunction;
@@ -54,6 +55,10 @@ public class Session {
   // set.
   private NonBlockingHashSet<Key<Vec>> GLOBALS = new NonBlockingHashSet<>();
 
+  // Other keys owned by this Session (e.g. cached results of requests made in
+  // the session).  They are removed from the DKV when the session ends.
+  private NonBlockingHashSet<Key> KEYS = new NonBlockingHashSet<>();
+
 
   /**
    * Constructor
@@ -73,6 +78,12 @@ public class Session {
     return id;
   }
 
+  /** Make the key owned by this session, it will be removed from the DKV when the session ends. */
+  public <K extends Key> K trackKey(K key) {
+    KEYS.add(key);
+    return key;
+  }
+
   /**
    * Execute an AstRoot in the current Session with much assertion-checking
    * @param ast Rapids expression to execute
@@ -103,8 +114,11 @@ public class Session {
       fs = downRefCnt(fr, fs);   // Remove internal Vecs one by one
       DKV.remove(fr._key, fs);   // Shallow remove, internal Vecs removed 1-by-1
     }
+    for (Key k : KEYS)
+      DKV.remove(k, fs);
     fs.blockForPending();
     FRAMES.clear();             // No more temp frames
+    KEYS.clear();
     // Copy (as needed) so the returning Frame is completely independent of the
     // (disappearing) session.
     if (returning != null && returning.isFrame()) {
@@ -141,8 +155,11 @@ public class Session {
         }
         DKV.remove(fr._key, fs);   // Shallow remove, internal Vecs removed 1-by-1
       }
+      for (Key k : KEYS)
+        DKV.remove(k, fs);
       fs.blockForPending();
       FRAMES.clear();
+      KEYS.clear();
       REFCNTS.clear();
     } catch (Exception ex2) {
       Log.warn("Exception " + ex2 + " suppressed while cleaning up Rapids Session after already throwing " + ex);
@@ -280,6 +297,8 @@ public class Session {
         svecs[i] = svecs[i].makeCopy();
     // Make and install new global Frame
     Frame fr2 = new Frame(id, src._names.clone(), svecs);
+    SortOrder so = src.sortOrder();
+    if (so != null) fr2.setSortOrder(so.replaceVecs(src.vecs(), svecs));
     DKV.put(fr2, fs);
     addGlobals(fr2);
     fs.blockForPending();
@@ -300,7 +319,11 @@ public class Session {
       if (refcnt > 1)          // If refcnt is 1, we allow the update to take in-place
         fr.replace(col, (did_copy = vec.makeCopy()));
     }
-    if (did_copy != null && fr._key != null) DKV.put(fr); // Then update frame in the DKV
+    // Rows are no longer known to be sorted once a key column is updated
+    SortOrder so = fr.sortOrder();
+    boolean unsorted = so != null && so.isKey(fr, cols);
+    if (unsorted) fr.setSortOrder(null);
+    if ((did_copy != null || unsorted) && fr._key != null) DKV.put(fr); // Then update frame in the DKV
     return vecs;
   }
 
@@ -1,6 +1,7 @@
 package water.rapids.ast;
 
 import water.rapids.Env;
+import water.rapids.Fusion;
 import water.rapids.Val;
 import water.rapids.vals.ValFun;
 import water.util.SB;
@@ -60,6 +61,8 @@ public class AstExec extends AstRoot {
       throw new IllegalArgumentException(
           "Incorrect number of arguments; '" + ast + "' expects " + (nargs - 1) + " but was passed " + (_asts.length - 1));
     try (Env.StackHelp stk = env.stk()) {
+      Val fused = Fusion.exec(env, stk, this, ast);
+      if (fused != null) return env.returning(fused);
       return env.returning(ast.apply(env, stk, _asts));
     }
   }
@@ -90,6 +90,9 @@ public class AstFunction extends AstPrimitive {
   @Override
   public String[] args() { return _ids; }
 
+  /** The function body */
+  public AstRoot body() { return _body; }
+
   // Do a ID lookup, returning the matching argument if found
   public Val lookup(String id) {
     for (int i = 1; i < _ids.length; i++)
@@ -56,6 +56,7 @@ public class AstTmpAssign extends AstPrimitive {
         throw new IllegalArgumentException("Temp ID " + id + " already exists");
     }
     Frame dst = new Frame(id, srcFrame._names, srcFrame.vecs());
+    dst.setSortOrder(srcFrame.sortOrder());
     return new ValFrame(env._ses.track_tmp(dst)); // Track new session-wide ID
   }
 }
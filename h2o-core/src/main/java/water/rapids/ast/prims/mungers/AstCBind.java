@@ -56,6 +56,7 @@ public class AstCBind extends AstPrimitive {
       switch (vals[i].type()) {
         case Val.FRM:
           fr.add(vals[i].getFrame().names(), fr.makeCompatible(vals[i].getFrame()));
+          if (fr.sortOrder() == null) fr.setSortOrder(vals[i].getFrame().sortOrder()); // Same rows, same order
           break;
         case Val.FUN:
           throw H2O.unimpl();
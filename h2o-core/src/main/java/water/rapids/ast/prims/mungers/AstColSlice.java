@@ -46,6 +46,7 @@ public class AstColSlice extends AstPrimitive {
     Frame dst = new Frame();
     Vec[] vecs = src.vecs();
     for (int col : cols) dst.add(src._names[col], vecs[col]);
+    dst.setSortOrder(src.sortOrder()); // Lapses unless all the sorted columns are kept
     return new ValFrame(dst);
   }
 
@@ -18,6 +18,9 @@ import java.util.Arrays;
  * <p/>
  * Returns a set of grouping columns, with the single answer column, with one
  * row per unique group.
+ * <p/>
+ * Functions made of column selections, element-wise operators and reducers are evaluated by a
+ * streaming pass over the sorted groups ({@link GroupApply}); others on a Frame built per group.
  */
 public class AstDdply extends AstPrimitive {
   @Override
@@ -46,6 +49,10 @@ public class AstDdply extends AstPrimitive {
     AstRoot fun = asts[3].exec(env).getFun();
     AstFunction scope = env._scope;  // Current execution scope; needed to lookup variables
 
+    // Functions of reducers and element-wise operators stream over the sorted groups
+    Frame streamed = GroupApply.apply(env, fr, gbCols, (AstPrimitive) fun);
+    if (streamed != null) return new ValFrame(streamed);
+
     // Pass 1: Find all the groups (and count rows-per-group)
     IcedHashMap<AstGroup.G, String> gss = AstGroup.doGroups(fr, gbCols, AstGroup.aggNRows());
     final AstGroup.G[] grps = gss.keySet().toArray(new AstGroup.G[gss.size()]);
@@ -12,6 +12,7 @@ import water.rapids.ast.params.AstNumList;
 import water.rapids.vals.ValFrame;
 import water.rapids.vals.ValFun;
 import water.util.ArrayUtils;
+import water.util.HyperLogLog;
 import water.util.IcedHashMap;
 import water.util.Log;
 
@@ -302,9 +303,35 @@ public class AstGroup extends AstPrimitive {
     }
     int naggs = countCols;
 
+    // the names of the output columns
+    String[] fcnames = new String[aggs.length];
+    for (int i = 0; i < aggs.length; i++) {
+      if (aggs[i]._fcn.toString() != "nrow") {
+        fcnames[i] = aggs[i]._fcn.toString() + "_" + fr.name(aggs[i]._col);
+      } else {
+        fcnames[i] = aggs[i]._fcn.toString();
+      }
+    }
+
     // do the group by work now
-    IcedHashMap<G, String> gss = doGroups(fr, gbCols, aggs, _totMedianCols);
-    final G[] grps = gss.keySet().toArray(new G[gss.size()]);
+    IcedHashMap<G, String> gss = null;
+    final G[] grps;
+    if (_totMedianCols < 0 && GroupHashTable.supports(fr, gbCols, aggs)) {
+      String shuffle = System.getProperty(SHUFFLE_KEY);
+      if (isGrouped(fr, gbCols)) grps = doSortedGroups(fr, gbCols, aggs); // Already sorted, no need to hash
+      else {
+        // Decide up front whether the groups fit a hash table, so that a hash table of too many
+        // groups is never reduced to a single node
+        boolean tooMany = !Boolean.parseBoolean(shuffle) && estimateGroups(fr, gbCols) > maxHashGroups();
+        if (Boolean.parseBoolean(shuffle) || (shuffle == null && tooMany && H2O.CLOUD.size() > 1))
+          return new ValFrame(GroupShuffle.groupBy(fr, gbCols, aggs, fcnames)); // Too many groups for a single node
+        G[] hashed = tooMany ? null : doHashGroups(fr, gbCols, aggs);
+        grps = hashed != null ? hashed : doSortedGroups(fr, gbCols, aggs); // Underestimated, or a single node
+      }
+    } else {
+      gss = doGroups(fr, gbCols, aggs, _totMedianCols);
+      grps = gss.keySet().toArray(new G[gss.size()]);
+    }
 
     // apply an ORDER by here...
     if (gbCols.length > 0)
@@ -347,15 +374,6 @@ public class AstGroup extends AstPrimitive {
       buildMedians.calcMedian(groupChunks);
     }
     // Build the output!
-    String[] fcnames = new String[aggs.length];
-    for (int i = 0; i < aggs.length; i++) {
-      if (aggs[i]._fcn.toString() != "nrow") {
-        fcnames[i] = aggs[i]._fcn.toString() + "_" + fr.name(aggs[i]._col);
-      } else {
-        fcnames[i] = aggs[i]._fcn.toString();
-      }
-    }
-
     MRTask mrfill = new MRTask() {
       @Override
       public void map(Chunk[] c, NewChunk[] ncs) {
@@ -376,6 +394,7 @@ public class AstGroup extends AstPrimitive {
     };
 
     Frame f = buildOutput(gbCols, naggs, fr, fcnames, grps.length, mrfill);
+    if (gbCols.length > 0) SortOrder.markSorted(f, ArrayUtils.seq(0, gbCols.length), null); // Ordered by the groups
     return new ValFrame(f);
   }
 
@@ -401,6 +420,12 @@ public class AstGroup extends AstPrimitive {
   }
 
   public static IcedHashMap<G, String> doGroups(Frame fr, int[] gbCols, AGG[] aggs, int medianCount) {
+    if (medianCount < 0 && GroupHashTable.supports(fr, gbCols, aggs)) {
+      IcedHashMap<G, String> gss = new IcedHashMap<>();
+      for (G g : doPrimitiveGroups(fr, gbCols, aggs))
+        gss.put(g, "");
+      return gss;
+    }
     // do the group by work now
     long start = System.currentTimeMillis();
     GBTask p1 = new GBTask(gbCols, aggs, medianCount).doAll(fr);
@@ -408,6 +433,141 @@ public class AstGroup extends AstPrimitive {
     return p1._gss;
   }
 
+  // Group-by maximum number of groups for the hash table based path, beyond which the
+  // groups are found by sorting the frame instead
+  public static final String MAX_HASH_GROUPS_KEY = H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.groupby.max_hash_groups";
+
+  // Whether GroupBy shuffles the groups to the nodes owning them (GroupShuffle), instead of
+  // collecting all groups on a single node: "true" always, "false" never.  By default the
+  // groups are shuffled when there are too many of them for a hash table, on a multi-node cloud.
+  public static final String SHUFFLE_KEY = H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.groupby.shuffle";
+
+  // Find the groups using primitive hash tables (GBHashTask).  Falls back to sorting the
+  // frame (SortedGBTask) if there are (or are estimated to be) more groups than is reasonable
+  // to keep in a hashtable.
+  // Only for aggregates supported by GroupHashTable.  Groups are returned in no particular order.
+  static G[] doPrimitiveGroups(Frame fr, int[] gbCols, AGG[] aggs) {
+    if (isGrouped(fr, gbCols)) return doSortedGroups(fr, gbCols, aggs);
+    G[] grps = estimateGroups(fr, gbCols) > maxHashGroups() ? null : doHashGroups(fr, gbCols, aggs);
+    return grps != null ? grps : doSortedGroups(fr, gbCols, aggs);
+  }
+
+  private static int maxHashGroups() {
+    return Math.max(1, Integer.getInteger(MAX_HASH_GROUPS_KEY, 1 << 22));
+  }
+
+  // Approximate number of groups.  Bounded by the product of the number of distinct values of
+  // the group-by columns (NA counts as a value), taken from the rollups; if the bound is large a
+  // HyperLogLog sketch of the group keys is computed in a single pass, which reduces 4KB per node.
+  public static double estimateGroups(Frame fr, int[] gbCols) {
+    final int maxGroups = maxHashGroups();
+    double bound = 1;
+    for (int col : gbCols) {
+      Vec v = fr.vec(col);
+      if (v.isBad()) continue; // a single group, NA
+      double distinct = v.isCategorical() ? v.cardinality()
+              : v.isInt() ? v.max() - v.min() + 1
+              : Double.POSITIVE_INFINITY;
+      if (distinct > maxGroups) { // a sketch is computed along with the histogram of the vec
+        double approx = v.approxDistinct();
+        distinct = Double.isNaN(approx) ? v.length() : Math.min(distinct, approx);
+      }
+      bound *= distinct + (v.naCnt() > 0 ? 1 : 0);
+    }
+    if (gbCols.length <= 1 || bound <= maxGroups) return bound;
+    long start = System.currentTimeMillis();
+    double est = new GroupSketchTask(gbCols).doAll(fr)._hll.estimate();
+    Log.info("Group By estimated " + (long) est + " groups in " + (System.currentTimeMillis() - start) / 1000. + " (s)");
+    return est;
+  }
+
+  // HyperLogLog sketch of the group keys (NA is a value of its own)
+  private static class GroupSketchTask extends MRTask<GroupSketchTask> {
+    private final int[] _gbCols;
+    HyperLogLog _hll;
+
+    GroupSketchTask(int[] gbCols) { _gbCols = gbCols; }
+
+    @Override
+    public void map(Chunk[] cs) {
+      _hll = new HyperLogLog();
+      for (int row = 0; row < cs[0]._len; row++) {
+        long h = 0;
+        for (int col : _gbCols) {
+          double d = cs[col].atd(row);
+          h = HyperLogLog.hash(h ^ Double.doubleToLongBits(d == 0 ? 0.0 : d));
+        }
+        _hll.addHash(HyperLogLog.hash(h));
+      }
+    }
+
+    @Override
+    public void reduce(GroupSketchTask t) { _hll.merge(t._hll); }
+  }
+
+  // Find the groups using primitive hash tables, null if there are too many groups
+  private static G[] doHashGroups(Frame fr, int[] gbCols, AGG[] aggs) {
+    long start = System.currentTimeMillis();
+    int maxGroups = maxHashGroups();
+    GBHashTask p1 = new GBHashTask(gbCols, aggs, maxGroups).doAll(fr);
+    if (p1._overflow) {
+      Log.info("Group By found more than " + maxGroups + " groups in " + (System.currentTimeMillis() - start) / 1000. + " (s)");
+      return null;
+    }
+    Log.info("Group By Task done in " + (System.currentTimeMillis() - start) / 1000. + " (s)");
+    return p1._table == null ? new G[0] : p1._table.toGroups(aggs);
+  }
+
+  // Are the rows of every group contiguous already, e.g. the frame was sorted by the group-by columns
+  private static boolean isGrouped(Frame fr, int[] gbCols) {
+    SortOrder so = fr.sortOrder();
+    return gbCols.length > 0 && so != null && so.groups(fr, gbCols);
+  }
+
+  // Sort the group-by and aggregated columns, then every group is a run of rows.  Runs are
+  // aggregated per chunk, and runs split across chunk boundaries are merged at the end.
+  // The sort is skipped when the frame is sorted by the group-by columns already.
+  private static G[] doSortedGroups(Frame fr, int[] gbCols, AGG[] aggs) {
+    long start = System.currentTimeMillis();
+    boolean grouped = isGrouped(fr, gbCols);
+    Vec[] vecs = new Vec[gbCols.length];
+    for (int i = 0; i < gbCols.length; i++)
+      vecs[i] = fr.vec(gbCols[i]);
+    AGG[] sortedAggs = new AGG[aggs.length];
+    for (int a = 0; a < aggs.length; a++) {
+      int col = ArrayUtils.find(vecs, fr.vec(aggs[a]._col));
+      if (col < 0) {
+        col = vecs.length;
+        vecs = ArrayUtils.append(vecs, fr.vec(aggs[a]._col));
+      }
+      sortedAggs[a] = new AGG(aggs[a]._fcn, col, aggs[a]._na, aggs[a]._maxx);
+    }
+    String[] names = new String[vecs.length];
+    for (int i = 0; i < names.length; i++)
+      names[i] = "C" + (i + 1);
+    int[] keyCols = ArrayUtils.seq(0, gbCols.length);
+    Frame keyed = new Frame(names, vecs);
+    Frame sorted = grouped ? keyed : Merge.sort(keyed, keyCols);
+    try {
+      SortedGBTask p1 = new SortedGBTask(keyCols, sortedAggs).doAll(sorted);
+      java.util.ArrayList<G> grps = new java.util.ArrayList<>();
+      for (GroupHashTable t : p1._chunkGroups) {
+        if (t == null) continue;
+        for (G g : t.toGroups(sortedAggs)) {
+          G last = grps.isEmpty() ? null : grps.get(grps.size() - 1);
+          if (last != null && last.equals(g)) { // Group split across chunks
+            for (int a = 0; a < sortedAggs.length; a++)
+              sortedAggs[a].atomic_op(last._dss, last._ns, a, g._dss[a], g._ns[a]);
+          } else grps.add(g);
+        }
+      }
+      Log.info("Sort-based Group By done in " + (System.currentTimeMillis() - start) / 1000. + " (s)");
+      return grps.toArray(new G[grps.size()]);
+    } finally {
+      if (sorted != keyed) sorted.delete();
+    }
+  }
+
   // Utility for AstDdply; return a single aggregate for counting rows-per-group
   public static AGG[] aggNRows() {
     return new AGG[]{new AGG(FCN.nrow, 0, NAHandling.IGNORE, 0)};
@@ -415,6 +575,14 @@ public class AstGroup extends AstPrimitive {
 
   // Build output frame from the multi-column results
   public static Frame buildOutput(int[] gbCols, int noutCols, Frame fr, String[] fcnames, int ngrps, MRTask mrfill) {
+    Vec v = Vec.makeZero(ngrps); // dummy layout vec
+    Frame f = buildOutput(gbCols, noutCols, fr, fcnames, v, mrfill);
+    v.remove();
+    return f;
+  }
+
+  // Build output frame from the multi-column results, with one output chunk per chunk of the layout vec
+  static Frame buildOutput(int[] gbCols, int noutCols, Frame fr, String[] fcnames, Vec layout, MRTask mrfill) {
     // Build the output!
     // the names of columns
     final int nCols = gbCols.length + noutCols;
@@ -426,12 +594,9 @@ public class AstGroup extends AstPrimitive {
     }
     for (int i = 0; i < fcnames.length; i++)
       names[i + gbCols.length] = fcnames[i];
-    Vec v = Vec.makeZero(ngrps); // dummy layout vec
 
     // Convert the output arrays into a Frame, also doing the post-pass work
-    Frame f = mrfill.doAll(nCols, Vec.T_NUM, new Frame(v)).outputFrame(names, domains);
-    v.remove();
-    return f;
+    return mrfill.doAll(nCols, Vec.T_NUM, new Frame(layout)).outputFrame(names, domains);
   }
 
   // Description of a single aggregate, including the reduction function, the
@@ -531,6 +696,82 @@ public class AstGroup extends AstPrimitive {
     }
   }
 
+  // Primitive variant of GBTask for the aggregates supported by GroupHashTable: every chunk
+  // is aggregated into its own table, and tables are merged in the reduce.  Gives up (and
+  // drops the tables) as soon as there are more than _maxGroups groups.
+  static class GBHashTask extends MRTask<GBHashTask> {
+    private final int[] _gbCols; // Columns used to define group
+    private final AGG[] _aggs;   // Aggregate descriptions
+    private final int _maxGroups;
+    GroupHashTable _table;
+    boolean _overflow;
+
+    GBHashTask(int[] gbCols, AGG[] aggs, int maxGroups) {
+      _gbCols = gbCols;
+      _aggs = aggs;
+      _maxGroups = maxGroups;
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      GroupHashTable t = new GroupHashTable(_gbCols.length, _aggs);
+      t.accumulate(cs, _gbCols, _aggs);
+      if (t.size() > _maxGroups) _overflow = true;
+      else _table = t;
+    }
+
+    @Override
+    public void reduce(GBHashTask t) {
+      if (_overflow || t._overflow) {
+        _overflow = true;
+        _table = null;
+        return;
+      }
+      if (_table == null) { _table = t._table; return; }
+      if (t._table == null) return;
+      // Merge the smaller table into the larger one
+      GroupHashTable l = _table, r = t._table;
+      if (l.size() < r.size()) { l = t._table; r = _table; }
+      l.merge(r, _aggs);
+      if (l.size() > _maxGroups) {
+        _overflow = true;
+        _table = null;
+      } else _table = l;
+    }
+  }
+
+  // Aggregates runs of equal keys of a frame sorted by the group-by columns, one table
+  // of groups per chunk.
+  static class SortedGBTask extends MRTask<SortedGBTask> {
+    private final int[] _gbCols; // Columns used to define group
+    private final AGG[] _aggs;   // Aggregate descriptions
+    GroupHashTable[] _chunkGroups;
+
+    SortedGBTask(int[] gbCols, AGG[] aggs) {
+      _gbCols = gbCols;
+      _aggs = aggs;
+    }
+
+    @Override
+    protected void setupLocal() {
+      _chunkGroups = new GroupHashTable[_fr.anyVec().nChunks()];
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      GroupHashTable t = new GroupHashTable(_gbCols.length, _aggs);
+      t.accumulateSorted(cs, _gbCols, _aggs);
+      _chunkGroups[cs[0].cidx()] = t;
+    }
+
+    @Override
+    public void reduce(SortedGBTask t) {
+      if (_chunkGroups != t._chunkGroups)
+        for (int i = 0; i < _chunkGroups.length; i++)
+          if (t._chunkGroups[i] != null) _chunkGroups[i] = t._chunkGroups[i];
+    }
+  }
+
   // Groups!  Contains a Group Key - an array of doubles (often just 1 entry
   // long) that defines the Group.  Also contains an array of doubles for the
   // aggregate results, one per aggregate.
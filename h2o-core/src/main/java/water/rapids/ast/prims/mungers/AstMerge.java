@@ -38,8 +38,16 @@ import java.util.Arrays;
  * there is no matching row in the rightFrame, and vice-versa for
  * allRightFlag.  Missing data will appear as NAs.  Both flags can be true.
  * </p>
- * We support merge method hash, radix and auto.  If a user chooses auto, the
- * algorithm will default to method radix which is the better algorithm.  It
+ * We support merge method hash, radix, broadcast and auto.  If a user chooses auto,
+ * and both frames are known to be sorted by the join columns already (as left by a
+ * sort or a group-by), their sorted chunks are merged directly without any sorting.
+ * Otherwise the broadcast method is used when the rightFrame is small (at most
+ * sys.ai.h2o.rapids.merge.broadcast_max_rows rows, 0 disables it, and fewer rows than the
+ * leftFrame) and not all its rows need to be kept, and the algorithm defaults to method
+ * radix.  The broadcast method replicates an index of the rightFrame to every node and
+ * streams the leftFrame through it; it supports duplicated rows in the rightFrame and
+ * String columns, and keeps the rows in the order of the leftFrame (the other methods sort
+ * the result by the join columns).  An explicit method overrides the choice.  The radix method
  * gives accurate merge results even if there are duplicated rows in the rightFrame.
  * In addition, the radix method will allow the presences of string columns in
  * the frames.  The Hash method will not give correct merge results if there
@@ -129,6 +137,25 @@ public class AstMerge extends AstPrimitive {
       }
     }.doAllNodes();
 
+    // Both frames sorted by the join columns already (e.g. by an earlier sort or group-by): merge their chunks in order
+    if (method.equals("auto") && !allRite && SortedMergeJoin.supports(l, r, ncols))
+      return new ValFrame(SortedMergeJoin.join(l, r, ncols, allLeft));
+
+    // Small right frame: replicate its index to every node and stream the left frame through it.
+    // The rows keep the order of the left frame rather than the sorted order of the other methods
+    if (method.equals("broadcast") ||
+        (method.equals("auto") && !allRite && BroadcastJoin.isSmall(l, r) && BroadcastJoin.supports(r, ncols))) {
+      if (allRite)
+        throw new IllegalArgumentException("all.y=TRUE is not supported with the broadcast method; use auto or radix.");
+      if (!BroadcastJoin.supports(r, ncols))
+        throw new IllegalArgumentException("Cannot merge UUID columns with the broadcast method; use auto or radix.");
+      int[][] id_maps = new int[ncols][];
+      for (int i = 0; i < ncols; i++)
+        if (l.vec(i).isCategorical())
+          id_maps[i] = CategoricalWrappedVec.computeMap(l.vec(i).domain(), r.vec(i).domain());
+      return new ValFrame(BroadcastJoin.join(l, r, ncols, allLeft, id_maps));
+    }
+
     if (method.equals("radix") || method.equals("auto")) {  // default to radix as default merge metho
       // Build categorical mappings, to rapidly convert categoricals from the left to the right
       // With the sortingMerge approach there is no variance here: always map left to right
@@ -1,6 +1,7 @@
 package water.rapids.ast.prims.mungers;
 
 import water.fvec.Frame;
+import water.fvec.SortOrder;
 import water.rapids.Env;
 import water.rapids.Merge;
 import water.rapids.ast.AstParameter;
@@ -12,7 +13,8 @@ import water.rapids.vals.ValFrame;
 
 
 /** Sort the whole frame by the given columns.  String columns are allowed in the frame.  However, we do
- * not support sorting on string columns.
+ * not support sorting on string columns.  A frame already sorted by these columns (see {@link SortOrder})
+ * is returned as is.
  */
 public class AstSort extends AstPrimitive {
   @Override public String[] args() { return new String[]{"ary","cols"}; }
@@ -29,6 +31,9 @@ public class AstSort extends AstPrimitive {
       sortAsc = new int[]{(int) ((AstNum) asts[3]).getNum()};  // R client can send 1 element for some reason
     
     assert sortAsc.length==cols.length;
+    SortOrder so = fr.sortOrder();
+    if (so != null && so.sortedBy(fr, cols, sortAsc))
+      return new ValFrame(new Frame(fr)); // Already sorted this way: share the Vecs
     return new ValFrame(Merge.sort(fr,cols, sortAsc));
   }
 }
@@ -0,0 +1,339 @@
+package water.rapids.ast.prims.mungers;
+
+import water.H2O;
+import water.Iced;
+import water.MRTask;
+import water.MemoryManager;
+import water.fvec.*;
+import water.parser.BufferedString;
+import water.util.ArrayUtils;
+
+import java.util.Arrays;
+
+/**
+ * Broadcast hash join of a large left frame with a small right frame.
+ * <p/>
+ * The join keys of the right frame are indexed once into a compact {@link JoinIndex}: encoded keys
+ * in primitive arrays, string keys in a single byte array per column, and a bucketed (CSR) hash
+ * multimap from the key hash to all the right rows with that key, so duplicated keys on the right
+ * are supported.  The index travels to every node with the join task, and the chunks of the left
+ * frame are streamed through it; the payload (non-key) columns of the right frame are copied from
+ * its chunks, which are fetched once per node and then cached.
+ * <p/>
+ * As with the radix merge, NA keys join to NA keys.  Rows of the result follow the order of the
+ * left frame (matches of a left row follow the order of the right frame), so unlike the radix
+ * merge the result is not sorted by the join columns.
+ */
+final class BroadcastJoin {
+
+  // Largest right frame (in rows) for which "auto" picks the broadcast join, 0 disables it
+  static final String MAX_ROWS_KEY = H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.merge.broadcast_max_rows";
+  static final long DEFAULT_MAX_ROWS = 1 << 20;
+
+  private static final long NA_KEY = Double.doubleToLongBits(Double.NaN);
+
+  private BroadcastJoin() {}
+
+  /**
+   * @return true if the right frame is small enough (and smaller than the left one) to be broadcast in an "auto" merge
+   */
+  static boolean isSmall(Frame left, Frame rite) {
+    return rite.numRows() <= Long.getLong(MAX_ROWS_KEY, DEFAULT_MAX_ROWS) && rite.numRows() < left.numRows();
+  }
+
+  /**
+   * @return true if the join columns (the first ncols of the frame) can be indexed
+   */
+  static boolean supports(Frame fr, int ncols) {
+    for (int i = 0; i < ncols; i++)
+      if (fr.vec(i).isUUID()) return false;
+    return true;
+  }
+
+  /**
+   * Joins on the first ncols columns of both frames.
+   * @param allLeft keep the left rows without a match in the right frame (left outer join)
+   * @param id_maps mappings of the left categorical levels to the right ones, per join column (or null)
+   */
+  static Frame join(Frame left, Frame rite, int ncols, boolean allLeft, int[][] id_maps) {
+    JoinIndex index = JoinIndex.build(rite, ncols);
+    String[] names = ArrayUtils.append(left.names(), Arrays.copyOfRange(rite.names(), ncols, rite.numCols()));
+    String[][] domains = ArrayUtils.append(left.domains(), Arrays.copyOfRange(rite.domains(), ncols, rite.numCols()));
+    byte[] types = ArrayUtils.append(left.types(), Arrays.copyOfRange(rite.types(), ncols, rite.numCols()));
+    return new BroadcastJoinTask(index, rite, ncols, allLeft, id_maps).doAll(types, left).outputFrame(names, domains);
+  }
+
+  private static long mix(long h, long v) {
+    h = (h ^ v) * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 29);
+  }
+
+  private static long strHash(byte[] buf, int off, int len) {
+    long h = 1125899906842597L;
+    for (int i = 0; i < len; i++)
+      h = 31 * h + buf[off + i];
+    return h;
+  }
+
+  // Numeric keys: all NaNs are equal (NA joins to NA), and so are 0.0 and -0.0
+  private static long numKey(double d) {
+    return Double.isNaN(d) ? NA_KEY : d == 0 ? 0 : Double.doubleToRawLongBits(d);
+  }
+
+  /**
+   * Hash multimap from the join keys to the rows of the (small) right frame.
+   */
+  static class JoinIndex extends Iced<JoinIndex> {
+    final int _ncols;
+    int _n;             // Number of rows indexed
+    long[][] _nums;     // Per join column: encoded numeric keys, null for string columns
+    byte[][] _strs;     // Per string join column: bytes of all keys
+    int[][] _strOffs;   // Per string join column: offset of every key in _strs
+    int[][] _strLens;   // Per string join column: length of every key, -1 for NA
+    long[] _rows;       // Absolute row in the right frame of every key
+    int[] _slotStart;   // Entries in slot s are _order[_slotStart[s] .. _slotStart[s+1]-1]
+    int[] _order;       // Entries bucketed by slot, in row order within a slot
+    long[] _hashes;     // Hash of every entry
+
+    private JoinIndex(int ncols) { _ncols = ncols; }
+
+    static JoinIndex build(Frame rite, int ncols) {
+      Frame keys = new Frame(Arrays.copyOf(rite.vecs(), ncols));
+      CollectKeys ck = new CollectKeys(ncols).doAll(keys);
+      JoinIndex idx = new JoinIndex(ncols);
+      // Concatenate the per-chunk blocks in row order
+      int n = 0;
+      for (JoinIndex b : ck._blocks) n += b._n;
+      idx._n = n;
+      idx._nums = new long[ncols][];
+      idx._strs = new byte[ncols][];
+      idx._strOffs = new int[ncols][];
+      idx._strLens = new int[ncols][];
+      for (int k = 0; k < ncols; k++) {
+        if (rite.vec(k).isString()) {
+          int nbytes = 0;
+          for (JoinIndex b : ck._blocks) nbytes += b._strs[k].length;
+          idx._strs[k] = MemoryManager.malloc1(nbytes);
+          idx._strOffs[k] = MemoryManager.malloc4(n);
+          idx._strLens[k] = MemoryManager.malloc4(n);
+        } else idx._nums[k] = MemoryManager.malloc8(n);
+      }
+      idx._rows = MemoryManager.malloc8(n);
+      idx._hashes = MemoryManager.malloc8(n);
+      int off = 0;
+      int[] boffs = new int[ncols];
+      for (JoinIndex b : ck._blocks) {
+        for (int k = 0; k < ncols; k++) {
+          if (idx._nums[k] != null) System.arraycopy(b._nums[k], 0, idx._nums[k], off, b._n);
+          else {
+            System.arraycopy(b._strs[k], 0, idx._strs[k], boffs[k], b._strs[k].length);
+            for (int i = 0; i < b._n; i++) idx._strOffs[k][off + i] = boffs[k] + b._strOffs[k][i];
+            System.arraycopy(b._strLens[k], 0, idx._strLens[k], off, b._n);
+            boffs[k] += b._strs[k].length;
+          }
+        }
+        System.arraycopy(b._rows, 0, idx._rows, off, b._n);
+        System.arraycopy(b._hashes, 0, idx._hashes, off, b._n);
+        off += b._n;
+      }
+      // Bucket the entries by slot, keeping the row order within every slot
+      int nslots = Integer.highestOneBit(Math.max(n, 1)) << 1;
+      idx._slotStart = new int[nslots + 1];
+      for (int i = 0; i < n; i++) idx._slotStart[slot(idx._hashes[i], nslots) + 1]++;
+      for (int s = 0; s < nslots; s++) idx._slotStart[s + 1] += idx._slotStart[s];
+      int[] pos = Arrays.copyOf(idx._slotStart, nslots);
+      idx._order = MemoryManager.malloc4(n);
+      for (int i = 0; i < n; i++) idx._order[pos[slot(idx._hashes[i], nslots)]++] = i;
+      return idx;
+    }
+
+    private static int slot(long hash, int nslots) { return (int) (hash >>> 32) & (nslots - 1); }
+
+    int nslots() { return _slotStart.length - 1; }
+
+    // Key of the entry equal to the key of the probe?
+    boolean matches(int e, long[] nums, BufferedString[] strs) {
+      for (int k = 0; k < _ncols; k++) {
+        if (_nums[k] != null) {
+          if (_nums[k][e] != nums[k]) return false;
+        } else {
+          BufferedString s = strs[k];
+          int len = _strLens[k][e];
+          if (s == null) { if (len != -1) return false; continue; }
+          if (len != s.length()) return false;
+          byte[] buf = s.getBuffer();
+          int soff = s.getOffset(), eoff = _strOffs[k][e];
+          for (int i = 0; i < len; i++)
+            if (_strs[k][eoff + i] != buf[soff + i]) return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  // Extract the join keys of every chunk of the right frame, one block per chunk
+  private static class CollectKeys extends MRTask<CollectKeys> {
+    private final int _ncols;
+    JoinIndex[] _blocks;
+
+    CollectKeys(int ncols) { _ncols = ncols; }
+
+    @Override
+    protected void setupLocal() { _blocks = new JoinIndex[_fr.anyVec().nChunks()]; }
+
+    @Override
+    public void map(Chunk[] cs) {
+      int len = cs[0]._len;
+      JoinIndex b = new JoinIndex(_ncols);
+      b._n = len;
+      b._nums = new long[_ncols][];
+      b._strs = new byte[_ncols][];
+      b._strOffs = new int[_ncols][];
+      b._strLens = new int[_ncols][];
+      b._rows = MemoryManager.malloc8(len);
+      b._hashes = MemoryManager.malloc8(len);
+      BufferedString tmp = new BufferedString();
+      for (int k = 0; k < _ncols; k++) {
+        if (cs[k].vec().isString()) {
+          b._strOffs[k] = MemoryManager.malloc4(len);
+          b._strLens[k] = MemoryManager.malloc4(len);
+          int nbytes = 0;
+          for (int r = 0; r < len; r++) {
+            BufferedString s = cs[k].atStr(tmp, r);
+            if (s != null) nbytes += s.length();
+          }
+          b._strs[k] = MemoryManager.malloc1(nbytes);
+          int off = 0;
+          for (int r = 0; r < len; r++) {
+            BufferedString s = cs[k].atStr(tmp, r);
+            b._strOffs[k][r] = off;
+            if (s == null) { b._strLens[k][r] = -1; continue; }
+            System.arraycopy(s.getBuffer(), s.getOffset(), b._strs[k], off, s.length());
+            b._strLens[k][r] = s.length();
+            off += s.length();
+          }
+        } else {
+          b._nums[k] = MemoryManager.malloc8(len);
+          for (int r = 0; r < len; r++) b._nums[k][r] = numKey(cs[k].atd(r));
+        }
+      }
+      long start = cs[0].start();
+      for (int r = 0; r < len; r++) {
+        long h = 0;
+        for (int k = 0; k < _ncols; k++)
+          h = mix(h, b._nums[k] != null ? b._nums[k][r] :
+                  b._strLens[k][r] < 0 ? NA_KEY : strHash(b._strs[k], b._strOffs[k][r], b._strLens[k][r]));
+        b._hashes[r] = h;
+        b._rows[r] = start + r;
+      }
+      _blocks[cs[0].cidx()] = b;
+    }
+
+    @Override
+    public void reduce(CollectKeys t) {
+      if (_blocks != t._blocks)
+        for (int i = 0; i < _blocks.length; i++)
+          if (t._blocks[i] != null) _blocks[i] = t._blocks[i];
+    }
+  }
+
+  // Stream the chunks of the left frame through the index
+  private static class BroadcastJoinTask extends MRTask<BroadcastJoinTask> {
+    private final JoinIndex _index;
+    private final Frame _rite;
+    private final int _ncols;
+    private final boolean _allLeft;
+    private final int[][] _id_maps;
+    private transient Chunk[][] _riteChunks; // Per node cache of the payload chunks of the right frame
+
+    BroadcastJoinTask(JoinIndex index, Frame rite, int ncols, boolean allLeft, int[][] id_maps) {
+      _index = index;
+      _rite = rite;
+      _ncols = ncols;
+      _allLeft = allLeft;
+      _id_maps = id_maps;
+    }
+
+    @Override
+    protected void setupLocal() {
+      _riteChunks = new Chunk[_rite.numCols() - _ncols][_rite.anyVec().nChunks()];
+    }
+
+    @Override
+    public void map(Chunk[] chks, NewChunk[] nchks) {
+      final JoinIndex index = _index;
+      final int len = chks[0]._len;
+      final int nslots = index.nslots();
+      long[] nums = new long[_ncols];
+      BufferedString[] strs = new BufferedString[_ncols];
+      BufferedString[] tmps = new BufferedString[_ncols];
+      boolean[] isStr = new boolean[_ncols];
+      for (int k = 0; k < _ncols; k++) {
+        tmps[k] = new BufferedString();
+        isStr[k] = chks[k].vec().isString();
+      }
+      // Pairs of matching (left row, right row); right row -1 for a left row without a match
+      int[] lrows = new int[len];
+      long[] rrows = new long[len];
+      int npairs = 0;
+      for (int r = 0; r < len; r++) {
+        long h = 0;
+        for (int k = 0; k < _ncols; k++) {
+          if (isStr[k]) {
+            strs[k] = chks[k].atStr(tmps[k], r);
+            h = mix(h, strs[k] == null ? NA_KEY : strHash(strs[k].getBuffer(), strs[k].getOffset(), strs[k].length()));
+          } else {
+            double d = chks[k].atd(r);
+            if (_id_maps[k] != null && !Double.isNaN(d)) d = _id_maps[k][(int) d]; // Left level to right level
+            nums[k] = numKey(d);
+            h = mix(h, nums[k]);
+          }
+        }
+        int matched = 0;
+        int s = JoinIndex.slot(h, nslots);
+        for (int i = index._slotStart[s]; i < index._slotStart[s + 1]; i++) {
+          int e = index._order[i];
+          if (index._hashes[e] != h || !index.matches(e, nums, strs)) continue;
+          if (npairs == lrows.length) {
+            lrows = Arrays.copyOf(lrows, npairs << 1);
+            rrows = Arrays.copyOf(rrows, npairs << 1);
+          }
+          lrows[npairs] = r;
+          rrows[npairs++] = index._rows[e];
+          matched++;
+        }
+        if (matched == 0 && _allLeft) {
+          if (npairs == lrows.length) {
+            lrows = Arrays.copyOf(lrows, npairs << 1);
+            rrows = Arrays.copyOf(rrows, npairs << 1);
+          }
+          lrows[npairs] = r;
+          rrows[npairs++] = -1;
+        }
+      }
+      // Left columns: in bulk, unless some left rows are repeated
+      boolean repeated = false;
+      for (int i = 1; i < npairs && !repeated; i++) repeated = lrows[i] == lrows[i - 1];
+      int[] rows = Arrays.copyOf(lrows, npairs);
+      for (int c = 0; c < chks.length; c++) {
+        if (!repeated) chks[c].extractRows(nchks[c], rows);
+        else for (int row : rows) chks[c].extractRows(nchks[c], row);
+      }
+      // Right columns: from the cached chunks of the right frame
+      Vec rvec = _rite.anyVec();
+      for (int c = chks.length; c < nchks.length; c++) {
+        int rc = c - chks.length;
+        Chunk[] cache = _riteChunks[rc];
+        Vec v = _rite.vec(_ncols + rc);
+        for (int i = 0; i < npairs; i++) {
+          long absRow = rrows[i];
+          if (absRow < 0) { nchks[c].addNA(); continue; }
+          int cidx = rvec.elem2ChunkIdx(absRow);
+          Chunk rchk = cache[cidx];
+          if (rchk == null) cache[cidx] = rchk = v.chunkForChunkIdx(cidx); // Benign race
+          rchk.extractRows(nchks[c], (int) (absRow - rchk.start()));
+        }
+      }
+    }
+  }
+}
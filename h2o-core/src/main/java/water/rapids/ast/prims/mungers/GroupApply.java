@@ -0,0 +1,507 @@
+package water.rapids.ast.prims.mungers;
+
+import water.Iced;
+import water.MRTask;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.NewChunk;
+import water.fvec.SortOrder;
+import water.fvec.Vec;
+import water.rapids.Env;
+import water.rapids.Merge;
+import water.rapids.Val;
+import water.rapids.ast.AstExec;
+import water.rapids.ast.AstFunction;
+import water.rapids.ast.AstParameter;
+import water.rapids.ast.AstPrimitive;
+import water.rapids.ast.AstRoot;
+import water.rapids.ast.params.AstConst;
+import water.rapids.ast.params.AstId;
+import water.rapids.ast.params.AstNum;
+import water.rapids.ast.prims.math.AstUniOp;
+import water.rapids.ast.prims.operators.AstBinOp;
+import water.rapids.ast.prims.operators.AstLAnd;
+import water.rapids.ast.prims.operators.AstLOr;
+import water.rapids.ast.prims.reducers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Streaming group-apply for {@link AstDdply}.
+ * <p/>
+ * The general ddply builds a Frame per group and runs the function on it, which costs several
+ * passes and a distributed task per group.  When the function is made of column selections
+ * ({@code cols}), element-wise operators ({@link AstBinOp}, {@link AstUniOp}) and reducers (sum,
+ * sumNA, min, max, mean, sd, naCnt, nrow, flatten) over numeric columns, it is instead compiled to
+ * an expression over the rows of a group.  The group-by columns and the columns read by the function
+ * are sorted by the group-by columns once (not at all if the Frame is already sorted by them, see
+ * {@link SortOrder}), then a single MRTask evaluates
+ * the expression on every run of rows of a group.  A chunk evaluates the groups starting in it,
+ * reading the rows of its last group from the next chunks when the group spans them.
+ * <p/>
+ * The results are the same as those of the general ddply: one row per group, in the order of the
+ * groups (NAs first).
+ */
+final class GroupApply {
+
+  private GroupApply() {}
+
+  /**
+   * Apply the function to the groups of the Frame.
+   * @return the grouping columns then the result columns, or null if the function is not supported
+   */
+  static Frame apply(Env env, Frame fr, int[] gbCols, AstPrimitive fun) {
+    if (fr.numRows() == 0 || gbCols.length == 0) return null;
+    Node expr = compile(env, fr, fun);
+    if (expr == null || expr._kind == Kind.ROWS) return null; // Not one row per group
+    ArrayList<Integer> used = new ArrayList<>();
+    if (!expr.inputs(fr, used)) return null;
+
+    SortOrder so = fr.sortOrder();
+    // Only the group-by columns and the columns read by the function are sorted
+    int[] pos = new int[fr.numCols()]; // Column of the sorted Frame for a column of fr
+    Frame sorted;
+    if (so != null && so.sortedBy(fr, gbCols, null)) {
+      for (int i = 0; i < pos.length; i++) pos[i] = i;
+      sorted = fr;
+    } else {
+      Arrays.fill(pos, -1);
+      Frame sub = new Frame();
+      for (int col : gbCols) {
+        pos[col] = sub.numCols();
+        sub.add(fr.name(col), fr.vec(col));
+      }
+      for (int col : used)
+        if (pos[col] < 0) {
+          pos[col] = sub.numCols();
+          sub.add(fr.name(col), fr.vec(col));
+        }
+      int[] subKeys = new int[gbCols.length];
+      for (int k = 0; k < subKeys.length; k++) subKeys[k] = k;
+      sorted = Merge.sort(sub, subKeys);
+    }
+    try {
+      so = sorted.sortOrder();
+      int[] keyCols = so == null ? null : so.columns(sorted);
+      if (keyCols == null) return null;
+      Frame in = new Frame();
+      for (int k = 0; k < gbCols.length; k++) in.add(sorted.name(keyCols[k]), sorted.vec(keyCols[k]));
+      for (int col : used) in.add(sorted.name(pos[col]), sorted.vec(pos[col]));
+
+      String[] names = new String[gbCols.length + expr._width];
+      String[][] domains = new String[names.length][];
+      for (int k = 0; k < gbCols.length; k++) {
+        names[k] = fr.name(gbCols[k]);
+        domains[k] = fr.vec(gbCols[k]).domain();
+      }
+      for (int i = 0; i < expr._width; i++)
+        names[gbCols.length + i] = "ddply_C" + (i + 1);
+      return new GroupTask(so.chunkKeys(), gbCols.length, expr).doAll(names.length, Vec.T_NUM, in).outputFrame(names, domains);
+    } finally {
+      if (sorted != fr) sorted.delete();
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  // Compiling the function
+
+  private static Node compile(Env env, Frame fr, AstPrimitive fun) {
+    if (fun instanceof AstFunction) {
+      AstFunction f = (AstFunction) fun;
+      if (f.args().length != 2) return null; // Extra arguments
+      return compile(env, fr, f.args()[1], f.body());
+    }
+    // A bare primitive, applied to the group
+    if (fun.nargs() != 2) return null;
+    return apply(env, fr, fun, new Node[]{new Cols(fr, null)}, null);
+  }
+
+  private static Node compile(Env env, Frame fr, String param, AstRoot ast) {
+    if (ast instanceof AstId && ast.str().equals(param)) return new Cols(fr, null);
+    if (ast instanceof AstNum || ast instanceof AstConst) return new Const(ast.exec(env).getNum());
+    if (!(ast instanceof AstExec)) return null;
+    AstRoot[] asts = ((AstExec) ast)._asts;
+    AstPrimitive fun;
+    if (asts[0] instanceof AstPrimitive && !(asts[0] instanceof AstFunction)) fun = (AstPrimitive) asts[0];
+    else if (asts[0] instanceof AstId && !asts[0].str().equals(param)) {
+      Val v = asts[0].exec(env);
+      if (!v.isFun() || v.getFun() instanceof AstFunction) return null;
+      fun = v.getFun();
+    } else return null;
+    if (fun.nargs() != -1 && fun.nargs() != asts.length) return null;
+
+    // Column selection: the selector is a constant, not an expression
+    if (fun instanceof AstColSlice || fun instanceof AstColPySlice) {
+      Node src = compile(env, fr, param, asts[1]);
+      if (!(src instanceof Cols) || !(asts[2] instanceof AstParameter) || asts[2] instanceof AstId) return null;
+      Cols c = (Cols) src;
+      String[] names = fr.names(c._cols);
+      int[] sel = fun instanceof AstColSlice ? AstColSlice.col_select(names, (AstParameter) asts[2])
+                                             : ((AstParameter) asts[2]).columns(names);
+      int[] cols = new int[sel.length];
+      for (int i = 0; i < sel.length; i++) {
+        if (sel[i] < 0 || sel[i] >= names.length) return null;
+        cols[i] = c._cols[sel[i]];
+      }
+      return cols.length == 0 ? null : new Cols(fr, cols);
+    }
+    Node[] args = new Node[asts.length - 1];
+    for (int i = 0; i < args.length; i++)
+      if ((args[i] = compile(env, fr, param, asts[i + 1])) == null) return null;
+    return apply(env, fr, fun, args, asts);
+  }
+
+  // The node applying fun to the compiled arguments, or null if not supported
+  private static Node apply(Env env, Frame fr, AstPrimitive fun, Node[] args, AstRoot[] asts) {
+    if (fun instanceof AstBinOp) {
+      if (fun instanceof AstLAnd || fun instanceof AstLOr || args.length != 2) return null;
+      return BinOp.make((AstBinOp) fun, args[0], args[1]);
+    }
+    if (fun instanceof AstUniOp)
+      return args.length == 1 && args[0]._kind != Kind.NUMS ? new UniOp((AstUniOp) fun, args[0]) : null;
+    if (fun instanceof AstNrow)
+      return args.length == 1 && args[0].isFrame() ? new Reduce(Red.NROW, args[0], false) : null;
+    if (fun instanceof AstFlatten) {
+      // A 1-row, 1-column Frame becomes a number; row Frames of a group may be 1-row, or not
+      if (args.length != 1 || args[0]._kind != Kind.ROW) return null;
+      return args[0]._width == 1 ? new Flat(args[0]) : args[0];
+    }
+    Red red = fun instanceof AstSum ? Red.SUM : fun instanceof AstSumNa ? Red.SUMNA
+            : fun instanceof AstMin ? Red.MIN : fun instanceof AstMax ? Red.MAX
+            : fun instanceof AstNaCnt ? Red.NACNT : fun instanceof AstMean ? Red.MEAN
+            : fun instanceof AstSdev ? Red.SD : null;
+    if (red == null || args.length < 1 || !args[0].isFrame()) return null;
+    boolean narm = false;
+    if (red == Red.MEAN || red == Red.SD) {
+      // (mean x na_rm [axis]) and (sd x na_rm), with constant flags; no row-wise means
+      if (args.length < 2 || args[1]._kind != Kind.NUM || !(args[1] instanceof Const)) return null;
+      if (args.length > 2 && !(args.length == 3 && args[2] instanceof Const && ((Const) args[2])._d != 1)) return null;
+      narm = ((Const) args[1])._d == 1;
+    } else if (args.length != 1) return null;
+    return new Reduce(red, args[0], narm);
+  }
+
+  // --------------------------------------------------------------------------
+  // The expression over the rows of a group
+
+  enum Kind {
+    ROWS, // A Frame with the rows of the group
+    ROW,  // A 1-row Frame
+    NUM,  // A number
+    NUMS  // A list of numbers
+  }
+
+  enum Red {SUM, SUMNA, MIN, MAX, MEAN, SD, NACNT, NROW}
+
+  /**
+   * A node of the expression: per column, the values of the rows of the group (ROWS) or a single
+   * value (the other kinds).
+   */
+  abstract static class Node extends Iced<Node> {
+    Kind _kind;
+    int _width;                  // Number of columns
+
+    boolean isFrame() { return _kind == Kind.ROWS || _kind == Kind.ROW; }
+
+    // Value of this node used for column c of its parent (a single column is widened)
+    final double[] col(double[][] vals, int c) { return vals[_width == 1 ? 0 : c]; }
+
+    /**
+     * Collect the input columns of the leaves below.
+     * @return false if some input column is not numeric
+     */
+    boolean inputs(Frame fr, ArrayList<Integer> used) { return true; }
+
+    /**
+     * Evaluate over the rows of a group.
+     * @param data per input column, the values of the rows of the group
+     * @param n the number of rows of the group
+     */
+    abstract double[][] eval(double[][] data, int n);
+  }
+
+  private static class Const extends Node {
+    final double _d;
+    Const(double d) { _d = d; _kind = Kind.NUM; _width = 1; }
+    @Override double[][] eval(double[][] data, int n) { return new double[][]{{_d}}; }
+  }
+
+  // Columns of the group; null for all of them
+  private static class Cols extends Node {
+    final int[] _cols;
+    int[] _pos;                  // Input column of every column
+    Cols(Frame fr, int[] cols) {
+      if (cols == null) {
+        cols = new int[fr.numCols()];
+        for (int i = 0; i < cols.length; i++) cols[i] = i;
+      }
+      _cols = cols;
+      _kind = Kind.ROWS;
+      _width = cols.length;
+    }
+    @Override boolean inputs(Frame fr, ArrayList<Integer> used) {
+      _pos = new int[_width];
+      for (int c = 0; c < _width; c++) {
+        if (!fr.vec(_cols[c]).isNumeric()) return false;
+        int i = used.indexOf(_cols[c]);
+        if (i < 0) {
+          i = used.size();
+          used.add(_cols[c]);
+        }
+        _pos[c] = i;
+      }
+      return true;
+    }
+    @Override double[][] eval(double[][] data, int n) {
+      double[][] res = new double[_width][];
+      for (int c = 0; c < _width; c++) res[c] = data[_pos[c]];
+      return res;
+    }
+  }
+
+  private static class BinOp extends Node {
+    final AstBinOp _op;
+    final Node _l, _r;
+    private BinOp(AstBinOp op, Node l, Node r, Kind kind, int width) {
+      _op = op;
+      _l = l;
+      _r = r;
+      _kind = kind;
+      _width = width;
+    }
+    // Numbers with Frames, or Frames with the same rows and widths (or a single column)
+    static BinOp make(AstBinOp op, Node l, Node r) {
+      if (l._kind == Kind.NUMS || r._kind == Kind.NUMS) return null;
+      if (l._kind == Kind.NUM) return new BinOp(op, l, r, r._kind, r._width);
+      if (r._kind == Kind.NUM) return new BinOp(op, l, r, l._kind, l._width);
+      if (l._kind != r._kind || (l._width != r._width && l._width != 1 && r._width != 1)) return null;
+      return new BinOp(op, l, r, l._kind, Math.max(l._width, r._width));
+    }
+    @Override boolean inputs(Frame fr, ArrayList<Integer> used) {
+      return _l.inputs(fr, used) && _r.inputs(fr, used);
+    }
+    @Override double[][] eval(double[][] data, int n) {
+      double[][] l = _l.eval(data, n), r = _r.eval(data, n);
+      int len = _kind == Kind.ROWS ? n : 1;
+      double[][] res = new double[_width][len];
+      for (int c = 0; c < _width; c++) {
+        double[] lc = _l.col(l, c), rc = _r.col(r, c), out = res[c];
+        if (_l._kind == Kind.NUM) {
+          double d = lc[0];
+          for (int i = 0; i < len; i++) out[i] = _op.op(d, rc[i]);
+        } else if (_r._kind == Kind.NUM) {
+          double d = rc[0];
+          for (int i = 0; i < len; i++) out[i] = _op.op(lc[i], d);
+        } else
+          for (int i = 0; i < len; i++) out[i] = _op.op(lc[i], rc[i]);
+      }
+      return res;
+    }
+  }
+
+  private static class UniOp extends Node {
+    final AstUniOp _op;
+    final Node _arg;
+    UniOp(AstUniOp op, Node arg) {
+      _op = op;
+      _arg = arg;
+      _kind = arg._kind;
+      _width = arg._width;
+    }
+    @Override boolean inputs(Frame fr, ArrayList<Integer> used) { return _arg.inputs(fr, used); }
+    @Override double[][] eval(double[][] data, int n) {
+      double[][] a = _arg.eval(data, n), res = new double[_width][];
+      for (int c = 0; c < _width; c++) {
+        res[c] = new double[a[c].length];
+        for (int i = 0; i < res[c].length; i++) res[c][i] = _op.op(a[c][i]);
+      }
+      return res;
+    }
+  }
+
+  // The number of a 1-row, 1-column Frame
+  private static class Flat extends Node {
+    final Node _arg;
+    Flat(Node arg) { _arg = arg; _kind = Kind.NUM; _width = 1; }
+    @Override boolean inputs(Frame fr, ArrayList<Integer> used) { return _arg.inputs(fr, used); }
+    @Override double[][] eval(double[][] data, int n) { return _arg.eval(data, n); }
+  }
+
+  // Reducers, with the semantics of the rollups they use on a Frame
+  private static class Reduce extends Node {
+    final Red _red;
+    final Node _arg;
+    final boolean _narm;
+    Reduce(Red red, Node arg, boolean narm) {
+      _red = red;
+      _arg = arg;
+      _narm = narm;
+      switch (red) {
+        case MEAN: _kind = Kind.ROW; _width = arg._width; break;
+        case SD: case NACNT: _kind = Kind.NUMS; _width = arg._width; break;
+        default: _kind = Kind.NUM; _width = 1;
+      }
+    }
+    // The number of rows does not need any column
+    @Override boolean inputs(Frame fr, ArrayList<Integer> used) {
+      return _red == Red.NROW || _arg.inputs(fr, used);
+    }
+    @Override double[][] eval(double[][] data, int n) {
+      if (_red == Red.NROW) return new double[][]{{_arg._kind == Kind.ROWS ? n : 1}};
+      double[][] a = _arg.eval(data, n);
+      if (_kind != Kind.NUM) {
+        double[][] res = new double[_width][1];
+        for (int c = 0; c < _width; c++) res[c][0] = reduce(_arg.col(a, c));
+        return res;
+      }
+      double d = _red == Red.SUM || _red == Red.SUMNA ? 0 : Double.NaN;
+      for (int c = 0; c < _arg._width; c++) {
+        double x = reduce(a[c]);
+        if (Double.isNaN(x)) return new double[][]{{Double.NaN}};
+        switch (_red) {
+          case MIN: d = c == 0 ? x : Math.min(d, x); break;
+          case MAX: d = c == 0 ? x : Math.max(d, x); break;
+          default: d += x;
+        }
+      }
+      return new double[][]{{d}};
+    }
+    // Reduce a column
+    private double reduce(double[] x) {
+      double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+      int cnt = 0;
+      for (double d : x) {
+        if (Double.isNaN(d)) continue;
+        sum += d;
+        min = Math.min(min, d);
+        max = Math.max(max, d);
+        cnt++;
+      }
+      int nas = x.length - cnt;
+      switch (_red) {
+        case SUMNA: return cnt == 0 ? Double.NaN : sum; // As the rollups: the mean of no value is NaN
+        case NACNT: return nas;
+        case SUM: return nas > 0 ? Double.NaN : sum;
+        case MIN: return nas > 0 ? Double.NaN : min;
+        case MAX: return nas > 0 ? Double.NaN : max;
+        case MEAN: return (nas > 0 && !_narm) || cnt == 0 ? Double.NaN : sum / cnt;
+        default: // SD
+          if ((nas > 0 && !_narm) || cnt == 0) return Double.NaN;
+          if (cnt == 1) return 0;
+          double mean = sum / cnt, ss = 0;
+          for (double d : x)
+            if (!Double.isNaN(d)) ss += (d - mean) * (d - mean);
+          return Math.sqrt(ss / (cnt - 1));
+      }
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  // Evaluates the expression on the groups starting in every chunk of the sorted Frame: the key
+  // columns, then the input columns.
+  private static class GroupTask extends MRTask<GroupTask> {
+    private final SortOrder _so;
+    private final int _nkeys;
+    private final Node _expr;
+
+    GroupTask(SortOrder so, int nkeys, Node expr) {
+      _so = so;
+      _nkeys = nkeys;
+      _expr = expr;
+    }
+
+    @Override
+    public void map(Chunk[] cs, NewChunk[] ncs) {
+      int len = cs[0]._len, cidx = cs[0].cidx();
+      if (len == 0) return;
+      double[][] cols = new double[cs.length][];
+      for (int c = 0; c < cs.length; c++)
+        cols[c] = cs[c].getDoubles(new double[len], 0, len);
+      // Skip the rows of a group started in the chunks before
+      double[] prev = null;
+      for (int j = cidx - 1; j >= 0 && prev == null; j--) prev = _so.lastKeys(j);
+      int start = 0;
+      if (prev != null)
+        while (start < len && sameKeys(cols, start, prev)) start++;
+      double[] keys = new double[_nkeys];
+      while (start < len) {
+        int end = start + 1;
+        while (end < len && sameKeys(cols, end, cols, start)) end++;
+        for (int k = 0; k < _nkeys; k++) keys[k] = cols[k][start];
+        double[][] data = new double[cs.length - _nkeys][];
+        for (int c = 0; c < data.length; c++) data[c] = Arrays.copyOfRange(cols[_nkeys + c], start, end);
+        if (end == len) data = withNextChunks(data, cidx, keys);
+        double[][] res = _expr.eval(data, data.length == 0 ? rows(cidx, start, keys) : data[0].length);
+        int j = 0;
+        for (; j < _nkeys; j++) ncs[j].addNum(keys[j]);
+        for (int c = 0; c < _expr._width; c++) ncs[j++].addNum(_expr.col(res, c)[0]);
+        start = end;
+      }
+    }
+
+    // The rows of the group from the following chunks, while they hold rows of the group
+    private double[][] withNextChunks(double[][] data, int cidx, double[] keys) {
+      Vec[] vecs = _fr.vecs();
+      for (int j = cidx + 1; j < vecs[0].nChunks(); j++) {
+        double[] first = _so.firstKeys(j);
+        if (first == null) continue;   // Empty chunk
+        if (!sameKeys(first, keys)) break;
+        Chunk[] cs = new Chunk[_nkeys];
+        for (int k = 0; k < _nkeys; k++) cs[k] = vecs[k].chunkForChunkIdx(j);
+        int len = cs[0]._len, n = 0;
+        while (n < len && sameKeys(cs, n, keys)) n++;
+        for (int c = 0; c < data.length; c++) {
+          Chunk chk = vecs[_nkeys + c].chunkForChunkIdx(j);
+          int old = data[c].length;
+          data[c] = Arrays.copyOf(data[c], old + n);
+          double[] tmp = chk.getDoubles(new double[n], 0, n);
+          System.arraycopy(tmp, 0, data[c], old, n);
+        }
+        if (n < len) break;
+      }
+      return data;
+    }
+
+    // Number of rows of a group starting at row start of chunk cidx, for expressions without columns
+    private int rows(int cidx, int start, double[] keys) {
+      Vec[] vecs = _fr.vecs();
+      int n = 0;
+      for (int j = cidx; j < vecs[0].nChunks(); j++) {
+        double[] first = _so.firstKeys(j);
+        if (first == null) continue;
+        if (j > cidx && !sameKeys(first, keys)) break;
+        Chunk[] cs = new Chunk[_nkeys];
+        for (int k = 0; k < _nkeys; k++) cs[k] = vecs[k].chunkForChunkIdx(j);
+        int len = cs[0]._len, i = j == cidx ? start : 0;
+        while (i < len && sameKeys(cs, i, keys)) { i++; n++; }
+        if (i < len) break;
+      }
+      return n;
+    }
+
+    private boolean sameKeys(double[][] cols, int row, double[] keys) {
+      for (int k = 0; k < _nkeys; k++)
+        if (SortOrder.compareValues(cols[k][row], keys[k]) != 0) return false;
+      return true;
+    }
+
+    private boolean sameKeys(double[][] cols, int a, double[][] cols2, int b) {
+      for (int k = 0; k < _nkeys; k++)
+        if (SortOrder.compareValues(cols[k][a], cols2[k][b]) != 0) return false;
+      return true;
+    }
+
+    private boolean sameKeys(Chunk[] cs, int row, double[] keys) {
+      for (int k = 0; k < _nkeys; k++)
+        if (SortOrder.compareValues(cs[k].atd(row), keys[k]) != 0) return false;
+      return true;
+    }
+
+    private boolean sameKeys(double[] a, double[] b) {
+      for (int k = 0; k < _nkeys; k++)
+        if (SortOrder.compareValues(a[k], b[k]) != 0) return false;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,347 @@
+package water.rapids.ast.prims.mungers;
+
+import water.Iced;
+import water.MemoryManager;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.NewChunk;
+
+/**
+ * Primitive group table used by the GroupBy.
+ * <p/>
+ * Group keys are packed into a single long[] ({@code nkeys} longs per group, the bits of the key
+ * doubles) and the aggregate states are kept in parallel primitive arrays indexed by the group id,
+ * so no objects are allocated per group or per row.  Rows of a chunk are processed column by
+ * column: the keys are hashed and resolved to group ids first, then every aggregate column is
+ * reduced in its own tight loop.
+ * <p/>
+ * The table is open-addressing with linear probing, and the slot of a group is given by the high
+ * bits of its hash.  Merging a table into another one is done partition by partition: the groups
+ * of the smaller table are bucketed by their hash prefix, and each bucket then only touches a
+ * contiguous range of slots of the larger table.
+ * <p/>
+ * Only the fixed-width reductions are supported (see {@link #supports}); median and mode are left
+ * to the {@link AstGroup.G} based path.
+ */
+final class GroupHashTable extends Iced<GroupHashTable> {
+  static final int PARTITION_BITS = 8;
+  private static final int MIN_CAPACITY = 16;
+
+  private final int _nkeys;     // Number of group-by columns
+  private final int _naggs;     // Number of aggregates
+  private final int[] _aggOff;  // Offset of each aggregate state within the states of a group
+  private final int _width;     // Width of the aggregate states of one group
+  private final double[] _init; // Initial aggregate states of a group
+
+  private int _size;            // Number of groups
+  private int _shift;           // slot = hash >>> _shift
+  private int[] _slots;         // Group id + 1, 0 is an empty slot; lazily allocated
+  private int[] _hashes;        // Hash of each group
+  private long[] _keys;         // Key bits, _nkeys per group
+  private double[] _vals;       // Aggregate states, _width per group
+  private long[] _ns;           // Row counts, _naggs per group
+
+  GroupHashTable(int nkeys, AstGroup.AGG[] aggs) {
+    _nkeys = nkeys;
+    _naggs = aggs.length;
+    _aggOff = new int[_naggs];
+    int width = 0;
+    for (int a = 0; a < _naggs; a++) {
+      _aggOff[a] = width;
+      width += aggs[a].initVal().length;
+    }
+    _width = width;
+    _init = new double[width];
+    for (int a = 0; a < _naggs; a++) {
+      double[] init = aggs[a].initVal();
+      System.arraycopy(init, 0, _init, _aggOff[a], init.length);
+    }
+    _hashes = MemoryManager.malloc4(MIN_CAPACITY);
+    _keys = MemoryManager.malloc8(MIN_CAPACITY * nkeys);
+    _vals = MemoryManager.malloc8d(MIN_CAPACITY * width);
+    _ns = MemoryManager.malloc8(MIN_CAPACITY * _naggs);
+  }
+
+  // Empty table with the same layout
+  private GroupHashTable(GroupHashTable t) {
+    _nkeys = t._nkeys;
+    _naggs = t._naggs;
+    _aggOff = t._aggOff;
+    _width = t._width;
+    _init = t._init;
+    _hashes = MemoryManager.malloc4(MIN_CAPACITY);
+    _keys = MemoryManager.malloc8(MIN_CAPACITY * _nkeys);
+    _vals = MemoryManager.malloc8d(MIN_CAPACITY * _width);
+    _ns = MemoryManager.malloc8(MIN_CAPACITY * _naggs);
+  }
+
+  /**
+   * @return true if all the aggregates have fixed-width states and none of the involved columns
+   * is a string column
+   */
+  static boolean supports(Frame fr, int[] gbCols, AstGroup.AGG[] aggs) {
+    for (AstGroup.AGG agg : aggs) {
+      switch (agg._fcn) {
+        case nrow: case mean: case sum: case sumSquares: case var: case sdev: case min: case max:
+          break;
+        default:
+          return false;
+      }
+      if (fr.vec(agg._col).isString()) return false;
+    }
+    for (int col : gbCols)
+      if (fr.vec(col).isString()) return false;
+    return true;
+  }
+
+  int size() { return _size; }
+
+  /**
+   * Accumulates all rows of the chunks into the table.
+   */
+  void accumulate(Chunk[] cs, int[] gbCols, AstGroup.AGG[] aggs) {
+    int len = cs[0]._len;
+    double[] buf = MemoryManager.malloc8d(len);
+    long[] kbits = loadKeys(cs, gbCols, buf);
+    int[] gids = MemoryManager.malloc4(len);
+    for (int r = 0, off = 0; r < len; r++, off += _nkeys)
+      gids[r] = findOrInsert(kbits, off, hash(kbits, off, _nkeys));
+    aggregate(cs, aggs, gids, buf);
+  }
+
+  /**
+   * Accumulates all rows of the chunks into the table, the rows must be sorted by the group-by columns.
+   * Equal keys are detected by comparing each row with the previous one, the slots are not used.
+   */
+  void accumulateSorted(Chunk[] cs, int[] gbCols, AstGroup.AGG[] aggs) {
+    int len = cs[0]._len;
+    double[] buf = MemoryManager.malloc8d(len);
+    long[] kbits = loadKeys(cs, gbCols, buf);
+    int[] gids = MemoryManager.malloc4(len);
+    for (int r = 0, off = 0; r < len; r++, off += _nkeys)
+      gids[r] = _size > 0 && keyEquals(_size - 1, kbits, off) ? _size - 1 : append(kbits, off, 0);
+    aggregate(cs, aggs, gids, buf);
+  }
+
+  // Keys of all rows, row-major
+  private long[] loadKeys(Chunk[] cs, int[] gbCols, double[] buf) {
+    int len = buf.length;
+    long[] kbits = MemoryManager.malloc8(len * _nkeys);
+    for (int k = 0; k < _nkeys; k++) {
+      cs[gbCols[k]].getDoubles(buf, 0, len);
+      for (int r = 0, off = k; r < len; r++, off += _nkeys)
+        kbits[off] = Double.doubleToLongBits(buf[r]); // Same equality as AstGroup.G: all NaNs are equal
+    }
+    return kbits;
+  }
+
+  // Reduce every aggregate column in its own loop
+  private void aggregate(Chunk[] cs, AstGroup.AGG[] aggs, int[] gids, double[] buf) {
+    int len = buf.length;
+    for (int a = 0; a < _naggs; a++) {
+      AstGroup.AGG agg = aggs[a];
+      cs[agg._col].getDoubles(buf, 0, len);
+      boolean all = agg._na == AstGroup.NAHandling.ALL;
+      boolean ignore = agg._na == AstGroup.NAHandling.IGNORE;
+      // Normal number or IGNORE: bump count; RM: do not bump count
+      for (int r = 0; r < len; r++)
+        if (ignore || !Double.isNaN(buf[r])) _ns[gids[r] * _naggs + a]++;
+      // Normal number or ALL: reduce
+      int off = _aggOff[a];
+      switch (agg._fcn) {
+        case nrow:
+          for (int r = 0; r < len; r++)
+            if (all || !Double.isNaN(buf[r])) _vals[gids[r] * _width + off]++;
+          break;
+        case mean:
+        case sum:
+          for (int r = 0; r < len; r++)
+            if (all || !Double.isNaN(buf[r])) _vals[gids[r] * _width + off] += buf[r];
+          break;
+        case sumSquares:
+          for (int r = 0; r < len; r++)
+            if (all || !Double.isNaN(buf[r])) _vals[gids[r] * _width + off] += buf[r] * buf[r];
+          break;
+        case var:
+        case sdev:
+          for (int r = 0; r < len; r++)
+            if (all || !Double.isNaN(buf[r])) {
+              int i = gids[r] * _width + off;
+              _vals[i] += buf[r] * buf[r];  // 0 -> sum_squares; 1 -> sum
+              _vals[i + 1] += buf[r];
+            }
+          break;
+        case min:
+          for (int r = 0; r < len; r++)
+            if (all || !Double.isNaN(buf[r])) {
+              int i = gids[r] * _width + off;
+              _vals[i] = Math.min(_vals[i], buf[r]);
+            }
+          break;
+        case max:
+          for (int r = 0; r < len; r++)
+            if (all || !Double.isNaN(buf[r])) {
+              int i = gids[r] * _width + off;
+              _vals[i] = Math.max(_vals[i], buf[r]);
+            }
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported aggregate " + agg._fcn);
+      }
+    }
+  }
+
+  /**
+   * Merges the groups of the other table into this one, partition by partition.
+   */
+  void merge(GroupHashTable that, AstGroup.AGG[] aggs) {
+    if (that._size == 0) return;
+    ensureSlots(_size + that._size);
+    // Bucket the groups of 'that' by the hash prefix
+    int nparts = 1 << PARTITION_BITS;
+    int[] starts = new int[nparts + 1];
+    for (int g = 0; g < that._size; g++)
+      starts[(that._hashes[g] >>> (32 - PARTITION_BITS)) + 1]++;
+    for (int p = 0; p < nparts; p++)
+      starts[p + 1] += starts[p];
+    int[] order = MemoryManager.malloc4(that._size);
+    for (int g = 0; g < that._size; g++)
+      order[starts[that._hashes[g] >>> (32 - PARTITION_BITS)]++] = g;
+    // Each bucket maps onto a contiguous range of slots
+    for (int g : order) {
+      int lg = findOrInsert(that._keys, g * _nkeys, that._hashes[g]);
+      combine(lg, that, g, aggs);
+    }
+  }
+
+  /**
+   * Splits the groups by the {@link #PARTITION_BITS} high bits of their hash, so that equal groups
+   * of different tables end up in the same partition.
+   * @return the partitions, null for partitions without any group
+   */
+  GroupHashTable[] split() {
+    GroupHashTable[] parts = new GroupHashTable[1 << PARTITION_BITS];
+    for (int g = 0; g < _size; g++) {
+      int p = _hashes[g] >>> (32 - PARTITION_BITS);
+      if (parts[p] == null) parts[p] = new GroupHashTable(this);
+      GroupHashTable part = parts[p];
+      int pg = part.append(_keys, g * _nkeys, _hashes[g]);
+      System.arraycopy(_vals, g * _width, part._vals, pg * _width, _width);
+      System.arraycopy(_ns, g * _naggs, part._ns, pg * _naggs, _naggs);
+    }
+    return parts;
+  }
+
+  /**
+   * Appends one row per group to the chunks: the group key, followed by the final aggregate values.
+   */
+  void emit(NewChunk[] ncs, AstGroup.AGG[] aggs) {
+    double[][] dss = new double[_naggs][];
+    for (int a = 0; a < _naggs; a++)
+      dss[a] = new double[(a + 1 < _naggs ? _aggOff[a + 1] : _width) - _aggOff[a]];
+    for (int g = 0; g < _size; g++) {
+      for (int k = 0; k < _nkeys; k++)
+        ncs[k].addNum(Double.longBitsToDouble(_keys[g * _nkeys + k]));
+      for (int a = 0; a < _naggs; a++) {
+        System.arraycopy(_vals, g * _width + _aggOff[a], dss[a], 0, dss[a].length);
+        ncs[_nkeys + a].addNum(aggs[a]._fcn.postPass(dss[a], _ns[g * _naggs + a]));
+      }
+    }
+  }
+
+  // Same as AGG.atomic_op, on the primitive states
+  private void combine(int lg, GroupHashTable that, int rg, AstGroup.AGG[] aggs) {
+    for (int a = 0; a < _naggs; a++) {
+      int li = lg * _width + _aggOff[a], ri = rg * _width + _aggOff[a];
+      int w = (a + 1 < _naggs ? _aggOff[a + 1] : _width) - _aggOff[a];
+      switch (aggs[a]._fcn) {
+        case min: _vals[li] = Math.min(_vals[li], that._vals[ri]); break;
+        case max: _vals[li] = Math.max(_vals[li], that._vals[ri]); break;
+        default:
+          for (int j = 0; j < w; j++) _vals[li + j] += that._vals[ri + j];
+      }
+      _ns[lg * _naggs + a] += that._ns[rg * _naggs + a];
+    }
+  }
+
+  /**
+   * @return the groups of this table as {@link AstGroup.G} objects
+   */
+  AstGroup.G[] toGroups(AstGroup.AGG[] aggs) {
+    AstGroup.G[] grps = new AstGroup.G[_size];
+    for (int g = 0; g < _size; g++) {
+      AstGroup.G grp = new AstGroup.G(_nkeys, aggs);
+      for (int k = 0; k < _nkeys; k++)
+        grp._gs[k] = Double.longBitsToDouble(_keys[g * _nkeys + k]);
+      for (int a = 0; a < _naggs; a++) {
+        System.arraycopy(_vals, g * _width + _aggOff[a], grp._dss[a], 0, grp._dss[a].length);
+        grp._ns[a] = _ns[g * _naggs + a];
+      }
+      grp._hash = grp.hash();
+      grps[g] = grp;
+    }
+    return grps;
+  }
+
+  private int findOrInsert(long[] kbits, int off, int hash) {
+    if (_slots == null) ensureSlots(MIN_CAPACITY);
+    int mask = _slots.length - 1;
+    for (int s = hash >>> _shift; ; s = (s + 1) & mask) {
+      int g = _slots[s] - 1;
+      if (g < 0) {
+        g = append(kbits, off, hash);
+        _slots[s] = g + 1;
+        ensureSlots(_size);
+        return g;
+      }
+      if (_hashes[g] == hash && keyEquals(g, kbits, off)) return g;
+    }
+  }
+
+  private boolean keyEquals(int g, long[] kbits, int off) {
+    int goff = g * _nkeys;
+    for (int k = 0; k < _nkeys; k++)
+      if (_keys[goff + k] != kbits[off + k]) return false;
+    return true;
+  }
+
+  private int append(long[] kbits, int off, int hash) {
+    if (_size == _hashes.length) {
+      int cap = _size << 1;
+      _hashes = MemoryManager.arrayCopyOf(_hashes, cap);
+      _keys = MemoryManager.arrayCopyOf(_keys, cap * _nkeys);
+      _vals = MemoryManager.arrayCopyOf(_vals, cap * _width);
+      _ns = MemoryManager.arrayCopyOf(_ns, cap * _naggs);
+    }
+    int g = _size++;
+    _hashes[g] = hash;
+    System.arraycopy(kbits, off, _keys, g * _nkeys, _nkeys);
+    System.arraycopy(_init, 0, _vals, g * _width, _width);
+    return g;
+  }
+
+  // Keep the load factor at most 1/2
+  private void ensureSlots(int ngroups) {
+    int cap = _slots == null ? MIN_CAPACITY : _slots.length;
+    while (cap < 2 * ngroups) cap <<= 1;
+    if (_slots != null && cap == _slots.length) return;
+    _slots = MemoryManager.malloc4(cap);
+    _shift = 32 - Integer.numberOfTrailingZeros(cap);
+    int mask = cap - 1;
+    for (int g = 0; g < _size; g++) {
+      int s = _hashes[g] >>> _shift;
+      while (_slots[s] != 0) s = (s + 1) & mask;
+      _slots[s] = g + 1;
+    }
+  }
+
+  // The slot is taken from the high bits, so mix all key bits into them
+  static int hash(long[] kbits, int off, int nkeys) {
+    long h = 0;
+    for (int k = 0; k < nkeys; k++) {
+      h = (h ^ kbits[off + k]) * 0x9E3779B97F4A7C15L;
+      h ^= h >>> 29;
+    }
+    return (int) ((h * 0xBF58476D1CE4E5B9L) >>> 32);
+  }
+}
@@ -0,0 +1,154 @@
+package water.rapids.ast.prims.mungers;
+
+import water.*;
+import water.fvec.*;
+import water.rapids.Merge;
+import water.util.ArrayUtils;
+import water.util.Log;
+
+import java.util.Hashtable;
+
+/**
+ * Shuffle-based GroupBy, for group-bys with more groups than can be collected on a single node.
+ * <p/>
+ * Instead of reducing all the groups up the MRTask tree into one table, the groups are found in
+ * three steps, so that both memory and network traffic scale with the size of the cloud:
+ * <ol>
+ * <li>every node aggregates its chunks into a node-local {@link GroupHashTable}, which is kept
+ *     on the node;</li>
+ * <li>every node splits its table into 256 partitions by the most significant bits of the group
+ *     hashes (as {@code SplitByMSBLocal} splits the keys of a radix sort) and pushes each partition
+ *     to the node owning it;</li>
+ * <li>the owner of a partition merges the pieces sent by all nodes and emits the groups as one
+ *     chunk of the result, so the result frame is built distributed.</li>
+ * </ol>
+ * Partition {@code p} is owned by the home node of chunk {@code p} of a layout vec, so the
+ * emitting step runs where the partition already is.  The result is finally sorted by the
+ * group-by columns, as in the other GroupBy paths.
+ */
+final class GroupShuffle {
+
+  // Node-local tables handed over from LocalGroups to SendPartitions; same workaround as
+  // SplitByMSBLocal.MOVESHASH for the DKV puts which cannot be done in closeLocal()
+  private static final Hashtable<Key, GroupHashTable> NODE_TABLES = new Hashtable<>();
+
+  private GroupShuffle() {}
+
+  static Frame groupBy(Frame fr, int[] gbCols, AstGroup.AGG[] aggs, String[] fcnames) {
+    long start = System.currentTimeMillis();
+    int nparts = 1 << GroupHashTable.PARTITION_BITS;
+    Vec layout = Vec.makeConN(nparts, nparts); // One single-row chunk per partition
+    Key link = Key.make();
+    try {
+      new LocalGroups(link, gbCols, aggs).doAll(fr);
+      new SendPartitions(link, layout).doAllNodes();
+      Frame groups = AstGroup.buildOutput(gbCols, aggs.length, fr, fcnames, layout, new EmitPartitions(link, aggs));
+      Log.info("Shuffled Group By found " + groups.numRows() + " groups in " + (System.currentTimeMillis() - start) / 1000. + " (s)");
+      if (gbCols.length == 0) return groups;
+      Frame sorted = Merge.sort(groups, ArrayUtils.seq(0, gbCols.length));
+      groups.remove();
+      return sorted;
+    } finally {
+      layout.remove();
+    }
+  }
+
+  // Key of the piece of partition 'part' sent by node 'node', homed on the owner of the partition
+  private static Key partitionKey(Key link, Vec layout, int part, int node) {
+    return Key.make("__group_shuffle_" + link + "_part" + part + "_node" + node,
+            (byte) 1, Key.HIDDEN_USER_KEY, false, layout.chunkKey(part).home_node());
+  }
+
+  // Step 1: aggregate the chunks of every node into a single table kept on the node
+  private static class LocalGroups extends MRTask<LocalGroups> {
+    private final Key _link;
+    private final int[] _gbCols;
+    private final AstGroup.AGG[] _aggs;
+    private transient GroupHashTable _table; // transient: only reduced within the node, never shipped
+
+    LocalGroups(Key link, int[] gbCols, AstGroup.AGG[] aggs) {
+      _link = link;
+      _gbCols = gbCols;
+      _aggs = aggs;
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      _table = new GroupHashTable(_gbCols.length, _aggs);
+      _table.accumulate(cs, _gbCols, _aggs);
+    }
+
+    @Override
+    public void reduce(LocalGroups t) {
+      if (_table == null) _table = t._table;
+      else if (t._table != null) {
+        if (_table.size() < t._table.size()) {
+          t._table.merge(_table, _aggs);
+          _table = t._table;
+        } else _table.merge(t._table, _aggs);
+      }
+    }
+
+    @Override
+    protected void closeLocal() {
+      if (_table != null) NODE_TABLES.put(_link, _table);
+      _table = null;
+    }
+  }
+
+  // Step 2: split the table of every node into partitions and push them to their owners
+  private static class SendPartitions extends MRTask<SendPartitions> {
+    private final Key _link;
+    private final Vec _layout;
+
+    SendPartitions(Key link, Vec layout) {
+      _link = link;
+      _layout = layout;
+    }
+
+    @Override
+    public void setupLocal() {
+      GroupHashTable table = NODE_TABLES.remove(_link);
+      if (table == null) return; // No chunks on this node
+      GroupHashTable[] parts = table.split();
+      // Need dontCache==true, so data does not remain both locally and on remote.
+      // Use private Futures so all pieces are in place before the next step starts.
+      Futures fs = new Futures();
+      for (int p = 0; p < parts.length; p++)
+        if (parts[p] != null)
+          DKV.put(partitionKey(_link, _layout, p, H2O.SELF.index()), parts[p], fs, true);
+      fs.blockForPending();
+    }
+  }
+
+  // Step 3: merge the pieces of every partition on its owner, one partition per chunk of the layout
+  private static class EmitPartitions extends MRTask<EmitPartitions> {
+    private final Key _link;
+    private final AstGroup.AGG[] _aggs;
+
+    EmitPartitions(Key link, AstGroup.AGG[] aggs) {
+      _link = link;
+      _aggs = aggs;
+    }
+
+    @Override
+    public void map(Chunk[] cs, NewChunk[] ncs) {
+      int part = cs[0].cidx();
+      GroupHashTable groups = null;
+      Futures fs = new Futures();
+      for (int node = 0; node < H2O.CLOUD.size(); node++) {
+        Key k = partitionKey(_link, cs[0].vec(), part, node);
+        GroupHashTable t = DKV.getGet(k);
+        if (t == null) continue; // Nothing in this partition on that node
+        DKV.remove(k, fs);
+        if (groups == null) groups = t;
+        else if (groups.size() < t.size()) {
+          t.merge(groups, _aggs);
+          groups = t;
+        } else groups.merge(t, _aggs);
+      }
+      if (groups != null) groups.emit(ncs, _aggs);
+      fs.blockForPending();
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package water.rapids.ast.prims.mungers;
+
+import water.MRTask;
+import water.MemoryManager;
+import water.fvec.*;
+import water.util.ArrayUtils;
+
+import java.util.Arrays;
+
+/**
+ * Merge join of two frames which are both sorted by the join columns already (see {@link SortOrder}),
+ * e.g. because they were produced by a sort or a group-by on these columns.
+ * <p/>
+ * Nothing is sorted or indexed: every chunk of the left frame finds the chunks of the right frame
+ * which may hold its keys from the first and last keys recorded per chunk in the sort order of the
+ * right frame, fetches them (once per node), and walks both sorted runs of rows side by side.
+ * <p/>
+ * As with the radix merge, NA keys join to NA keys and the result is sorted by the join columns,
+ * which is recorded on it.
+ */
+final class SortedMergeJoin {
+
+  private SortedMergeJoin() {}
+
+  /**
+   * @return true if both frames are sorted ascending by their first ncols columns, and the keys
+   * compare the same on both sides (numbers, or categoricals with identical domains)
+   */
+  static boolean supports(Frame left, Frame rite, int ncols) {
+    int[] keys = ArrayUtils.seq(0, ncols);
+    SortOrder lo = left.sortOrder(), ro = rite.sortOrder();
+    if (lo == null || ro == null || !lo.sortedBy(left, keys, null) || !ro.sortedBy(rite, keys, null))
+      return false;
+    for (int i = 0; i < ncols; i++) {
+      Vec lv = left.vec(i), rv = rite.vec(i);
+      if (lv.isCategorical() ? !Arrays.equals(lv.domain(), rv.domain()) : !(lv.isNumeric() || lv.isTime()))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Joins on the first ncols columns of both frames, which must be {@link #supports supported}.
+   * @param allLeft keep the left rows without a match in the right frame (left outer join)
+   */
+  static Frame join(Frame left, Frame rite, int ncols, boolean allLeft) {
+    String[] names = ArrayUtils.append(left.names(), Arrays.copyOfRange(rite.names(), ncols, rite.numCols()));
+    String[][] domains = ArrayUtils.append(left.domains(), Arrays.copyOfRange(rite.domains(), ncols, rite.numCols()));
+    byte[] types = ArrayUtils.append(left.types(), Arrays.copyOfRange(rite.types(), ncols, rite.numCols()));
+    Frame res = new MergeJoinTask(rite, rite.sortOrder().chunkKeys(), ncols, allLeft).doAll(types, left).outputFrame(names, domains);
+    return SortOrder.markSorted(res, ArrayUtils.seq(0, ncols), null);
+  }
+
+  private static class MergeJoinTask extends MRTask<MergeJoinTask> {
+    private final Frame _rite;
+    private final SortOrder _riteOrder;
+    private final int _ncols;
+    private final boolean _allLeft;
+    private transient Chunk[][] _riteChunks; // Per node cache of the chunks of the right frame
+
+    MergeJoinTask(Frame rite, SortOrder riteOrder, int ncols, boolean allLeft) {
+      _rite = rite;
+      _riteOrder = riteOrder;
+      _ncols = ncols;
+      _allLeft = allLeft;
+    }
+
+    @Override
+    protected void setupLocal() {
+      _riteChunks = new Chunk[_rite.anyVec().nChunks()][];
+    }
+
+    private Chunk[] riteChunks(int cidx) {
+      Chunk[] cs = _riteChunks[cidx];
+      if (cs == null) { // Benign race
+        cs = new Chunk[_rite.numCols()];
+        for (int c = 0; c < cs.length; c++)
+          cs[c] = _rite.vec(c).chunkForChunkIdx(cidx);
+        _riteChunks[cidx] = cs;
+      }
+      return cs;
+    }
+
+    private static int compare(double[][] keys, int row, double[] key) {
+      for (int k = 0; k < key.length; k++) {
+        int c = SortOrder.compareValues(keys[k][row], key[k]);
+        if (c != 0) return c;
+      }
+      return 0;
+    }
+
+    @Override
+    public void map(Chunk[] chks, NewChunk[] nchks) {
+      final int len = chks[0]._len;
+      if (len == 0) return;
+      double[] first = new double[_ncols], last = new double[_ncols];
+      for (int k = 0; k < _ncols; k++) {
+        first[k] = chks[k].atd(0);
+        last[k] = chks[k].atd(len - 1);
+      }
+      // Right chunks which may hold keys in [first,last], a contiguous range as the right frame is sorted
+      int nrc = _riteOrder.numChunks();
+      int c0 = 0;
+      while (c0 < nrc && (_riteOrder.lastKeys(c0) == null || _riteOrder.compare(_riteOrder.lastKeys(c0), first, _ncols) < 0))
+        c0++;
+      int c1 = c0;
+      while (c1 < nrc && (_riteOrder.firstKeys(c1) == null || _riteOrder.compare(_riteOrder.firstKeys(c1), last, _ncols) <= 0))
+        c1++;
+      // Gather the keys of these right chunks; starts[i] is the first row of the i-th non-empty one
+      Chunk[][] rchks = new Chunk[c1 - c0][];
+      int[] starts = new int[c1 - c0 + 1];
+      int nr = 0, nb = 0;
+      for (int c = c0; c < c1; c++) {
+        if (_riteOrder.firstKeys(c) == null) continue;
+        rchks[nb] = riteChunks(c);
+        starts[nb++] = nr;
+        nr += rchks[nb - 1][0]._len;
+      }
+      starts[nb] = nr;
+      double[][] rkeys = new double[_ncols][];
+      double[] buf = null;
+      for (int k = 0; k < _ncols; k++) {
+        rkeys[k] = MemoryManager.malloc8d(nr);
+        for (int b = 0; b < nb; b++) {
+          int n = starts[b + 1] - starts[b];
+          if (buf == null || buf.length < n) buf = MemoryManager.malloc8d(n);
+          rchks[b][k].getDoubles(buf, 0, n);
+          System.arraycopy(buf, 0, rkeys[k], starts[b], n);
+        }
+      }
+      // Walk both sorted runs: pairs of matching (left row, right row); right row -1 for no match
+      int[] lrows = new int[len];
+      int[] rrows = new int[len];
+      int npairs = 0;
+      double[] key = new double[_ncols];
+      int j = 0;
+      for (int r = 0; r < len; r++) {
+        for (int k = 0; k < _ncols; k++) key[k] = chks[k].atd(r);
+        while (j < nr && compare(rkeys, j, key) < 0) j++;
+        int m = j;
+        for (; m < nr && compare(rkeys, m, key) == 0; m++) {
+          if (npairs == lrows.length) {
+            lrows = Arrays.copyOf(lrows, npairs << 1);
+            rrows = Arrays.copyOf(rrows, npairs << 1);
+          }
+          lrows[npairs] = r;
+          rrows[npairs++] = m;
+        }
+        if (m == j && _allLeft) {
+          if (npairs == lrows.length) {
+            lrows = Arrays.copyOf(lrows, npairs << 1);
+            rrows = Arrays.copyOf(rrows, npairs << 1);
+          }
+          lrows[npairs] = r;
+          rrows[npairs++] = -1;
+        }
+      }
+      // Left columns: in bulk, unless some left rows are repeated
+      boolean repeated = false;
+      for (int i = 1; i < npairs && !repeated; i++) repeated = lrows[i] == lrows[i - 1];
+      int[] rows = Arrays.copyOf(lrows, npairs);
+      for (int c = 0; c < chks.length; c++) {
+        if (!repeated) chks[c].extractRows(nchks[c], rows);
+        else for (int row : rows) chks[c].extractRows(nchks[c], row);
+      }
+      // Right columns: from the gathered chunks of the right frame
+      for (int c = chks.length; c < nchks.length; c++) {
+        int rc = _ncols + c - chks.length;
+        int b = 0;
+        for (int i = 0; i < npairs; i++) {
+          int m = rrows[i];
+          if (m < 0) { nchks[c].addNA(); continue; }
+          if (m < starts[b] || m >= starts[b + 1]) { // Matched rows are mostly increasing
+            b = Arrays.binarySearch(starts, 0, nb + 1, m);
+            if (b < 0) b = -b - 2;
+          }
+          rchks[b][rc].extractRows(nchks[c], m - starts[b]);
+        }
+      }
+    }
+  }
+}
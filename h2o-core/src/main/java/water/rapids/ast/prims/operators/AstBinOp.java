@@ -175,8 +175,7 @@ abstract public class AstBinOp extends AstPrimitive {
         for (int c = 0; c < chks.length; c++) {
           Chunk chk = chks[c];
           NewChunk cres = cress[c];
-          for (int i = 0; i < chk._len; i++)
-            cres.addNum(op(d, chk.atd(i)));
+          BinOpKernels.apply(AstBinOp.this, d, chk, cres);
         }
       }
     }.doAll(fr.numCols(), Vec.T_NUM, fr).outputFrame(fr._names, null);
@@ -193,8 +192,7 @@ abstract public class AstBinOp extends AstPrimitive {
         for (int c = 0; c < chks.length; c++) {
           Chunk chk = chks[c];
           NewChunk cres = cress[c];
-          for (int i = 0; i < chk._len; i++)
-            cres.addNum(op(chk.atd(i), d));
+          BinOpKernels.apply(AstBinOp.this, chk, d, cres);
         }
       }
     }.doAll(fr.numCols(), Vec.T_NUM, fr).outputFrame(fr._names, null);
@@ -372,8 +370,7 @@ abstract public class AstBinOp extends AstPrimitive {
               }
             }
           } else {
-            for (int i = 0; i < clf._len; i++)
-              cres.addNum(op(clf.atd(i), crt.atd(i)));
+            BinOpKernels.apply(AstBinOp.this, clf, crt, cres);
           }
         }
       }
@@ -443,8 +440,7 @@ abstract public class AstBinOp extends AstPrimitive {
         for (int c = 0; c < cress.length; c++) {
           Chunk crt = chks[c];
           NewChunk cres = cress[c];
-          for (int i = 0; i < clf._len; i++)
-            cres.addNum(op(clf.atd(i), crt.atd(i)));
+          BinOpKernels.apply(AstBinOp.this, clf, crt, cres);
         }
       }
     }.doAll(fr.numCols(), Vec.T_NUM, rt).outputFrame(fr._names, null);
@@ -463,8 +459,7 @@ abstract public class AstBinOp extends AstPrimitive {
         for (int c = 0; c < cress.length; c++) {
           Chunk clf = chks[c];
           NewChunk cres = cress[c];
-          for (int i = 0; i < clf._len; i++)
-            cres.addNum(op(clf.atd(i), crt.atd(i)));
+          BinOpKernels.apply(AstBinOp.this, clf, crt, cres);
         }
       }
     }.doAll(fr.numCols(), Vec.T_NUM, lf).outputFrame(fr._names, null);
@@ -0,0 +1,200 @@
+package water.rapids.ast.prims.operators;
+
+import water.MemoryManager;
+import water.fvec.C0DChunk;
+import water.fvec.C0LChunk;
+import water.fvec.C16Chunk;
+import water.fvec.CStrChunk;
+import water.fvec.Chunk;
+import water.fvec.NewChunk;
+import water.util.MathUtils;
+
+/**
+ * Whole-chunk kernels for the binary operators.
+ * <p/>
+ * Instead of a virtual {@link AstBinOp#op(double, double)} call and a virtual {@link Chunk#atd(int)}
+ * per element, a chunk is decoded at once by the bulk {@link Chunk#getDoubles} of its encoding (the
+ * integer chunks apply their scale and bias in that loop), and the common operators (arithmetic and
+ * comparisons) run as tight loops over primitive arrays.  Other operators still loop over
+ * {@code op}, but over decoded arrays too.  The outputs are handed to the {@link NewChunk} as a whole:
+ * <ul>
+ *   <li>a constant chunk combined with a scalar or another constant chunk gives a constant output,
+ *   computed once;</li>
+ *   <li>a zero-sparse chunk combined with a scalar which maps 0 to 0 (e.g. {@code x*2}) gives a
+ *   sparse output, computed over the non-zeros only;</li>
+ *   <li>anything else is computed into a dense array of doubles.</li>
+ * </ul>
+ * String and UUID chunks are not numbers: they go through {@code op} and {@code atd} as before.
+ */
+public final class BinOpKernels {
+
+  private static final int GENERIC = 0, PLUS = 1, SUB = 2, MUL = 3, DIV = 4,
+      LT = 5, LE = 6, GT = 7, GE = 8, EQ = 9, NE = 10;
+
+  private BinOpKernels() {}
+
+  // Operators with a kernel; exact classes, a subclass may redefine op()
+  private static int opcode(AstBinOp op) {
+    Class<?> c = op.getClass();
+    return c == AstPlus.class ? PLUS
+        : c == AstSub.class ? SUB
+        : c == AstMul.class ? MUL
+        : c == AstDiv.class ? DIV
+        : c == AstLt.class ? LT
+        : c == AstLe.class ? LE
+        : c == AstGt.class ? GT
+        : c == AstGe.class ? GE
+        : c == AstEq.class ? EQ
+        : c == AstNe.class ? NE
+        : GENERIC;
+  }
+
+  private static boolean isConstant(Chunk c) {
+    return c instanceof C0DChunk || c instanceof C0LChunk;
+  }
+
+  private static boolean isNumber(Chunk c) {
+    return !(c instanceof CStrChunk || c instanceof C16Chunk);
+  }
+
+  /** nc = c op d, element-wise */
+  public static void apply(AstBinOp op, Chunk c, double d, NewChunk nc) {
+    int len = c._len;
+    if (!isNumber(c)) {
+      for (int i = 0; i < len; i++) nc.addNum(op.op(c.atd(i), d));
+      return;
+    }
+    if (isConstant(c)) {
+      addConstant(nc, op.op(c.atd(0), d), len);
+      return;
+    }
+    if (c.isSparseZero() && !c.isSparseNA() && op.op(0, d) == 0) {
+      int[] ids = MemoryManager.malloc4(c.sparseLenZero());
+      double[] vals = MemoryManager.malloc8d(ids.length);
+      int n = c.getSparseDoubles(vals, ids);
+      run(opcode(op), op, vals, d, vals, n);
+      addSparse(nc, vals, ids, n, len);
+      return;
+    }
+    double[] vals = c.getDoubles(MemoryManager.malloc8d(len), 0, len);
+    run(opcode(op), op, vals, d, vals, len);
+    nc.setDoubles(vals);
+  }
+
+  /** nc = d op c, element-wise */
+  public static void apply(AstBinOp op, double d, Chunk c, NewChunk nc) {
+    int len = c._len;
+    if (!isNumber(c)) {
+      for (int i = 0; i < len; i++) nc.addNum(op.op(d, c.atd(i)));
+      return;
+    }
+    if (isConstant(c)) {
+      addConstant(nc, op.op(d, c.atd(0)), len);
+      return;
+    }
+    if (c.isSparseZero() && !c.isSparseNA() && op.op(d, 0) == 0) {
+      int[] ids = MemoryManager.malloc4(c.sparseLenZero());
+      double[] vals = MemoryManager.malloc8d(ids.length);
+      int n = c.getSparseDoubles(vals, ids);
+      run(opcode(op), op, d, vals, vals, n);
+      addSparse(nc, vals, ids, n, len);
+      return;
+    }
+    double[] vals = c.getDoubles(MemoryManager.malloc8d(len), 0, len);
+    run(opcode(op), op, d, vals, vals, len);
+    nc.setDoubles(vals);
+  }
+
+  /** nc = l op r, element-wise */
+  public static void apply(AstBinOp op, Chunk l, Chunk r, NewChunk nc) {
+    int len = l._len;
+    if (!isNumber(l) || !isNumber(r)) {
+      for (int i = 0; i < len; i++) nc.addNum(op.op(l.atd(i), r.atd(i)));
+      return;
+    }
+    if (isConstant(r)) {
+      apply(op, l, r.atd(0), nc);
+      return;
+    }
+    if (isConstant(l)) {
+      apply(op, l.atd(0), r, nc);
+      return;
+    }
+    double[] lvals = l.getDoubles(MemoryManager.malloc8d(len), 0, len);
+    double[] rvals = r.getDoubles(MemoryManager.malloc8d(len), 0, len);
+    run(opcode(op), op, lvals, rvals, lvals, len);
+    nc.setDoubles(lvals);
+  }
+
+  private static void addConstant(NewChunk nc, double d, int len) {
+    if (d == 0) nc.addZeros(len);
+    else if (Double.isNaN(d)) nc.addNAs(len);
+    else {
+      double[] vals = MemoryManager.malloc8d(len);
+      for (int i = 0; i < len; i++) vals[i] = d;
+      nc.setDoubles(vals);
+    }
+  }
+
+  // The n values at the sorted rows ids, zeros elsewhere
+  private static void addSparse(NewChunk nc, double[] vals, int[] ids, int n, int len) {
+    int row = 0;
+    for (int i = 0; i < n; i++) {
+      nc.addZeros(ids[i] - row);
+      nc.addNum(vals[i]);
+      row = ids[i] + 1;
+    }
+    nc.addZeros(len - row);
+  }
+
+  // out = l op r; out may be l
+  private static void run(int opcode, AstBinOp op, double[] l, double r, double[] out, int n) {
+    switch (opcode) {
+      case PLUS: for (int i = 0; i < n; i++) out[i] = l[i] + r; break;
+      case SUB:  for (int i = 0; i < n; i++) out[i] = l[i] - r; break;
+      case MUL:  for (int i = 0; i < n; i++) out[i] = l[i] * r; break;
+      case DIV:  for (int i = 0; i < n; i++) out[i] = l[i] / r; break;
+      case LT:   for (int i = 0; i < n; i++) out[i] = l[i] < r ? 1 : 0; break;
+      case LE:   for (int i = 0; i < n; i++) out[i] = l[i] <= r ? 1 : 0; break;
+      case GT:   for (int i = 0; i < n; i++) out[i] = l[i] > r ? 1 : 0; break;
+      case GE:   for (int i = 0; i < n; i++) out[i] = l[i] >= r ? 1 : 0; break;
+      case EQ:   for (int i = 0; i < n; i++) out[i] = MathUtils.equalsWithinOneSmallUlp(l[i], r) ? 1 : 0; break;
+      case NE:   for (int i = 0; i < n; i++) out[i] = MathUtils.equalsWithinOneSmallUlp(l[i], r) ? 0 : 1; break;
+      default:   for (int i = 0; i < n; i++) out[i] = op.op(l[i], r);
+    }
+  }
+
+  // out = l op r; out may be r
+  private static void run(int opcode, AstBinOp op, double l, double[] r, double[] out, int n) {
+    switch (opcode) {
+      case PLUS: for (int i = 0; i < n; i++) out[i] = l + r[i]; break;
+      case SUB:  for (int i = 0; i < n; i++) out[i] = l - r[i]; break;
+      case MUL:  for (int i = 0; i < n; i++) out[i] = l * r[i]; break;
+      case DIV:  for (int i = 0; i < n; i++) out[i] = l / r[i]; break;
+      case LT:   for (int i = 0; i < n; i++) out[i] = l < r[i] ? 1 : 0; break;
+      case LE:   for (int i = 0; i < n; i++) out[i] = l <= r[i] ? 1 : 0; break;
+      case GT:   for (int i = 0; i < n; i++) out[i] = l > r[i] ? 1 : 0; break;
+      case GE:   for (int i = 0; i < n; i++) out[i] = l >= r[i] ? 1 : 0; break;
+      case EQ:   for (int i = 0; i < n; i++) out[i] = MathUtils.equalsWithinOneSmallUlp(l, r[i]) ? 1 : 0; break;
+      case NE:   for (int i = 0; i < n; i++) out[i] = MathUtils.equalsWithinOneSmallUlp(l, r[i]) ? 0 : 1; break;
+      default:   for (int i = 0; i < n; i++) out[i] = op.op(l, r[i]);
+    }
+  }
+
+  // out = l op r; out may be l or r
+  private static void run(int opcode, AstBinOp op, double[] l, double[] r, double[] out, int n) {
+    switch (opcode) {
+      case PLUS: for (int i = 0; i < n; i++) out[i] = l[i] + r[i]; break;
+      case SUB:  for (int i = 0; i < n; i++) out[i] = l[i] - r[i]; break;
+      case MUL:  for (int i = 0; i < n; i++) out[i] = l[i] * r[i]; break;
+      case DIV:  for (int i = 0; i < n; i++) out[i] = l[i] / r[i]; break;
+      case LT:   for (int i = 0; i < n; i++) out[i] = l[i] < r[i] ? 1 : 0; break;
+      case LE:   for (int i = 0; i < n; i++) out[i] = l[i] <= r[i] ? 1 : 0; break;
+      case GT:   for (int i = 0; i < n; i++) out[i] = l[i] > r[i] ? 1 : 0; break;
+      case GE:   for (int i = 0; i < n; i++) out[i] = l[i] >= r[i] ? 1 : 0; break;
+      case EQ:   for (int i = 0; i < n; i++) out[i] = MathUtils.equalsWithinOneSmallUlp(l[i], r[i]) ? 1 : 0; break;
+      case NE:   for (int i = 0; i < n; i++) out[i] = MathUtils.equalsWithinOneSmallUlp(l[i], r[i]) ? 0 : 1; break;
+      default:   for (int i = 0; i < n; i++) out[i] = op.op(l[i], r[i]);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package water.rapids.ast.prims.reducers;
+
+import water.MRTask;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.parser.BufferedString;
+import water.rapids.Env;
+import water.rapids.ast.AstPrimitive;
+import water.rapids.ast.AstRoot;
+import water.rapids.vals.ValNums;
+import water.util.HyperLogLog;
+
+/**
+ * Approximate count of the distinct non-NA values of every column, in a single pass: a HyperLogLog
+ * sketch, within a few percent.  Numeric, categorical and time columns use the sketch kept with
+ * their rollups ({@link Vec#approxDistinct()}); String and UUID columns are sketched on the fly.
+ */
+public class AstApproxDistinct extends AstPrimitive {
+  @Override
+  public String[] args() {
+    return new String[]{"ary"};
+  }
+
+  @Override
+  public String str() {
+    return "approx_distinct";
+  }
+
+  @Override
+  public int nargs() {
+    return 1 + 1;
+  }  // (approx_distinct fr)
+
+  @Override
+  public ValNums apply(Env env, Env.StackHelp stk, AstRoot asts[]) {
+    Frame fr = stk.track(asts[1].exec(env)).getFrame();
+    double ds[] = new double[fr.numCols()];
+    for (int i = 0; i < fr.numCols(); ++i) {
+      Vec v = fr.vec(i);
+      ds[i] = v.isString() || v.isUUID() ? new SketchTask().doAll(v).estimate() : v.approxDistinct();
+    }
+    return new ValNums(ds);
+  }
+
+  private static class SketchTask extends MRTask<SketchTask> {
+    HyperLogLog _hll;
+
+    @Override
+    public void map(Chunk c) {
+      _hll = new HyperLogLog();
+      BufferedString tmp = new BufferedString();
+      boolean uuid = c.vec().isUUID();
+      for (int i = 0; i < c._len; i++) {
+        if (c.isNA(i)) continue;
+        if (uuid) _hll.add(c.at16l(i), c.at16h(i));
+        else _hll.add(c.atStr(tmp, i));
+      }
+    }
+
+    @Override
+    public void reduce(SketchTask t) {
+      _hll.merge(t._hll);
+    }
+
+    double estimate() {
+      return _hll == null ? 0 : _hll.estimate();
+    }
+  }
+}
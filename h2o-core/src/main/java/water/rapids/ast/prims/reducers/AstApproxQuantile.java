@@ -0,0 +1,56 @@
+package water.rapids.ast.prims.reducers;
+
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.rapids.Env;
+import water.rapids.ast.AstPrimitive;
+import water.rapids.ast.AstRoot;
+import water.rapids.ast.params.AstNumList;
+import water.rapids.vals.ValFrame;
+
+/**
+ * Approximate quantiles of every column, in a single pass: a mergeable quantile sketch, within a
+ * fraction of a percent in rank, kept with the rollups of the column ({@link Vec#approxQuantile}).
+ * Unlike the exact quantile, no refinement passes are made.
+ * <p/>
+ * Returns the probabilities in column "Probs", then one column of quantiles per column (NA for
+ * non-numeric columns), as the exact quantile does.
+ */
+public class AstApproxQuantile extends AstPrimitive {
+  @Override
+  public String[] args() {
+    return new String[]{"ary", "probs"};
+  }
+
+  @Override
+  public String str() {
+    return "approx_quantile";
+  }
+
+  @Override
+  public int nargs() {
+    return 1 + 2;
+  }  // (approx_quantile fr [probs])
+
+  @Override
+  public ValFrame apply(Env env, Env.StackHelp stk, AstRoot asts[]) {
+    Frame fr = stk.track(asts[1].exec(env)).getFrame();
+    double[] probs = ((AstNumList) asts[2]).expand();
+    for (double d : probs)
+      if (d < 0 || d > 1) throw new IllegalArgumentException("Probability must be between 0 and 1: " + d);
+
+    Vec[] vecs = new Vec[1 + fr.numCols()];
+    String[] names = new String[vecs.length];
+    vecs[0] = Vec.makeCon(null, probs);
+    names[0] = "Probs";
+    for (int i = 0; i < fr.numCols(); i++) {
+      Vec v = fr.vec(i);
+      double[] qs = new double[probs.length];
+      for (int p = 0; p < probs.length; p++)
+        qs[p] = v.isNumeric() || v.isTime() ? v.approxQuantile(probs[p]) : Double.NaN;
+      vecs[i + 1] = Vec.makeCon(null, qs);
+      names[i + 1] = fr.name(i) + "Quantiles";
+    }
+    return new ValFrame(new Frame(names, vecs));
+  }
+}
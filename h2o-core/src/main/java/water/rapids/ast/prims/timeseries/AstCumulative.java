@@ -0,0 +1,217 @@
+package water.rapids.ast.prims.timeseries;
+
+import water.MRTask;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.NewChunk;
+import water.fvec.SortOrder;
+import water.fvec.Vec;
+import water.rapids.Env;
+import water.rapids.ast.AstParameter;
+import water.rapids.ast.AstPrimitive;
+import water.rapids.ast.AstRoot;
+import water.rapids.vals.ValFrame;
+
+import java.util.ArrayList;
+
+/**
+ * Cumulative aggregates within groups: every row gets the aggregate of the values of the rows from
+ * the start of its run of equal values of the group by columns up to the row itself (so within groups,
+ * for a frame sorted by groups).  Returns one column per value column (the columns not used as group
+ * by columns), with the same names.  NAs are skipped by the aggregates, and stay NA.
+ * <p/>
+ * Instead of a halo of rows, every chunk needs the aggregate of the rows of its first group held by
+ * the chunks before it: a first pass computes the aggregates of the last group of every chunk, which
+ * are carried over the chunks, then a second pass computes the cumulative aggregates.
+ * <p/>
+ * (cumulative ary fun by), e.g. {@code (cumulative fr "sum" [0])}
+ */
+public class AstCumulative extends AstPrimitive {
+
+  enum Agg {sum, prod, min, max, mean, count}
+
+  // Aggregate state of a column: sum, count, product, min and max of the non-NA values
+  private static final int SUM = 0, CNT = 1, PROD = 2, MIN = 3, MAX = 4;
+
+  @Override
+  public String[] args() {
+    return new String[]{"ary", "fun", "by"};
+  }
+
+  @Override
+  public int nargs() {
+    return 1 + 3;
+  } // (cumulative ary fun by)
+
+  @Override
+  public String str() {
+    return "cumulative";
+  }
+
+  @Override
+  public ValFrame apply(Env env, Env.StackHelp stk, AstRoot asts[]) {
+    Frame fr = stk.track(asts[1].exec(env)).getFrame();
+    String fun = asts[2].exec(env).getStr();
+    Agg agg;
+    try {
+      agg = Agg.valueOf(fun);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown cumulative aggregate '" + fun + "', expected one of sum, prod, min, max, mean, count");
+    }
+    int[] by = ((AstParameter) asts[3]).columns(fr.names());
+    ArrayList<Integer> values = new ArrayList<>();
+    Frame in = WindowHalo.layout(fr, by, -1, values);
+    String[] names = new String[values.size()];
+    for (int i = 0; i < names.length; i++) {
+      Vec v = fr.vec(values.get(i));
+      if (!v.isNumeric() && !v.isTime())
+        throw new IllegalArgumentException("Cumulative aggregates apply to numeric columns, found " + v.get_type_str() + " column " + fr.name(values.get(i)));
+      names[i] = fr.name(values.get(i));
+    }
+    LastGroupTask groups = new LastGroupTask(in.anyVec().nChunks(), by.length).doAll(in);
+    double[][][] carry = groups.carry();
+    Frame res = new CumulativeTask(carry, by.length, agg).doAll(names.length, Vec.T_NUM, in).outputFrame(names, null);
+    return new ValFrame(res);
+  }
+
+  private static double[] empty() {
+    return new double[]{0, 0, 1, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+  }
+
+  private static void add(double[] state, double d) {
+    if (Double.isNaN(d)) return;
+    state[SUM] += d;
+    state[CNT]++;
+    state[PROD] *= d;
+    state[MIN] = Math.min(state[MIN], d);
+    state[MAX] = Math.max(state[MAX], d);
+  }
+
+  private static double[] combine(double[] a, double[] b) {
+    return new double[]{a[SUM] + b[SUM], a[CNT] + b[CNT], a[PROD] * b[PROD], Math.min(a[MIN], b[MIN]), Math.max(a[MAX], b[MAX])};
+  }
+
+  // The aggregates of the last group of every chunk
+  private static class LastGroupTask extends MRTask<LastGroupTask> {
+    private final int _nChunks;
+    private final int _nkeys;
+    double[][] _firstKeys, _lastKeys; // Per chunk: keys of its first and last row; null for no rows
+    double[][][] _states;             // Per chunk: per value column, the state of its last group
+    boolean[] _oneGroup;              // Per chunk: does it hold a single group?
+
+    LastGroupTask(int nChunks, int nkeys) {
+      _nChunks = nChunks;
+      _nkeys = nkeys;
+    }
+
+    @Override
+    protected void setupLocal() {
+      _firstKeys = new double[_nChunks][];
+      _lastKeys = new double[_nChunks][];
+      _states = new double[_nChunks][][];
+      _oneGroup = new boolean[_nChunks];
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      int len = cs[0]._len, cidx = cs[0].cidx();
+      if (len == 0) return;
+      double[][] cols = new double[cs.length][];
+      for (int c = 0; c < cs.length; c++) cols[c] = WindowHalo.doubles(cs[c]);
+      int start = len - 1;
+      while (start > 0 && WindowHalo.sameKeys(cols, _nkeys, start - 1, len - 1)) start--;
+      double[][] states = new double[cs.length - _nkeys][];
+      for (int v = 0; v < states.length; v++) {
+        states[v] = empty();
+        for (int i = start; i < len; i++) add(states[v], cols[_nkeys + v][i]);
+      }
+      double[] first = new double[_nkeys], last = new double[_nkeys];
+      for (int k = 0; k < _nkeys; k++) {
+        first[k] = cols[k][0];
+        last[k] = cols[k][len - 1];
+      }
+      _firstKeys[cidx] = first;
+      _lastKeys[cidx] = last;
+      _states[cidx] = states;
+      _oneGroup[cidx] = start == 0;
+    }
+
+    @Override
+    public void reduce(LastGroupTask t) {
+      if (_states != t._states)
+        for (int i = 0; i < _nChunks; i++)
+          if (t._states[i] != null) {
+            _firstKeys[i] = t._firstKeys[i];
+            _lastKeys[i] = t._lastKeys[i];
+            _states[i] = t._states[i];
+            _oneGroup[i] = t._oneGroup[i];
+          }
+    }
+
+    /** Per chunk: per value column, the state of its first group over the chunks before it; null for none */
+    double[][][] carry() {
+      double[][][] carry = new double[_nChunks][][];
+      double[][] cur = null;           // State of the group ending the chunks so far
+      double[] curKeys = null;
+      for (int i = 0; i < _nChunks; i++) {
+        if (_states[i] == null) continue; // Empty chunk
+        boolean continued = curKeys != null && sameKeys(curKeys, _firstKeys[i]);
+        carry[i] = continued ? cur : null;
+        if (continued && _oneGroup[i]) {
+          double[][] next = new double[cur.length][];
+          for (int v = 0; v < next.length; v++) next[v] = combine(cur[v], _states[i][v]);
+          cur = next;
+        } else
+          cur = _states[i];
+        curKeys = _lastKeys[i];
+      }
+      return carry;
+    }
+
+    private static boolean sameKeys(double[] a, double[] b) {
+      for (int k = 0; k < a.length; k++)
+        if (SortOrder.compareValues(a[k], b[k]) != 0) return false;
+      return true;
+    }
+  }
+
+  private static class CumulativeTask extends MRTask<CumulativeTask> {
+    private final double[][][] _carry;
+    private final int _nkeys;
+    private final Agg _agg;
+
+    CumulativeTask(double[][][] carry, int nkeys, Agg agg) {
+      _carry = carry;
+      _nkeys = nkeys;
+      _agg = agg;
+    }
+
+    @Override
+    public void map(Chunk[] cs, NewChunk[] ncs) {
+      int len = cs[0]._len;
+      double[][] cols = new double[cs.length][];
+      for (int c = 0; c < cs.length; c++) cols[c] = WindowHalo.doubles(cs[c]);
+      double[][] carry = _carry[cs[0].cidx()];
+      for (int v = 0; v < ncs.length; v++) {
+        double[] x = cols[_nkeys + v];
+        double[] state = carry == null ? empty() : carry[v].clone();
+        for (int i = 0; i < len; i++) {
+          if (i > 0 && !WindowHalo.sameKeys(cols, _nkeys, i - 1, i)) state = empty();
+          add(state, x[i]);
+          ncs[v].addNum(Double.isNaN(x[i]) ? Double.NaN : value(state));
+        }
+      }
+    }
+
+    private double value(double[] state) {
+      switch (_agg) {
+        case sum: return state[SUM];
+        case prod: return state[PROD];
+        case min: return state[MIN];
+        case max: return state[MAX];
+        case mean: return state[SUM] / state[CNT];
+        default: return state[CNT];
+      }
+    }
+  }
+}
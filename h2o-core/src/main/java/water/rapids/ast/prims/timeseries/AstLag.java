@@ -0,0 +1,107 @@
+package water.rapids.ast.prims.timeseries;
+
+import water.MRTask;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.NewChunk;
+import water.rapids.Env;
+import water.rapids.ast.AstParameter;
+import water.rapids.ast.AstPrimitive;
+import water.rapids.ast.AstRoot;
+import water.rapids.vals.ValFrame;
+
+import java.util.ArrayList;
+
+/**
+ * Lag by k rows: every row gets the values of the row k rows before it, or NA if that row is not in
+ * the same run of equal values of the group by columns (so within groups, for a frame sorted by
+ * groups).  Returns the value columns (the columns not used as group by columns), lagged, with the
+ * same names and types.
+ * <p/>
+ * The rows lagged in from the previous chunks come from a halo exchange ({@link WindowHalo}).
+ * <p/>
+ * (lag ary k by), e.g. {@code (lag fr 3 [0])}
+ *
+ * @see AstLead
+ */
+public class AstLag extends AstPrimitive {
+  @Override
+  public String[] args() {
+    return new String[]{"ary", "k", "by"};
+  }
+
+  @Override
+  public int nargs() {
+    return 1 + 3;
+  } // (lag ary k by)
+
+  @Override
+  public String str() {
+    return "lag";
+  }
+
+  // Does this look ahead, at the rows after?
+  boolean ahead() {
+    return false;
+  }
+
+  @Override
+  public ValFrame apply(Env env, Env.StackHelp stk, AstRoot asts[]) {
+    Frame fr = stk.track(asts[1].exec(env)).getFrame();
+    double k = asts[2].exec(env).getNum();
+    if (k < 0 || k != (int) k)
+      throw new IllegalArgumentException("Expected a non-negative number of rows for " + str() + ", found " + k);
+    int[] by = ((AstParameter) asts[3]).columns(fr.names());
+    ArrayList<Integer> values = new ArrayList<>();
+    Frame in = WindowHalo.layout(fr, by, -1, values);
+    int[] cols = new int[values.size()];
+    for (int i = 0; i < cols.length; i++) cols[i] = values.get(i);
+    Frame vals = new Frame(fr.names(cols), fr.vecs(cols));
+    WindowHalo halo = ahead() ? WindowHalo.heads(in, by.length, (int) k) : WindowHalo.tails(in, by.length, (int) k);
+    Frame res = new ShiftTask(halo, by.length, (int) k, ahead())
+        .doAll(vals.types(), in).outputFrame(vals.names(), vals.domains());
+    return new ValFrame(res);
+  }
+
+  private static class ShiftTask extends MRTask<ShiftTask> {
+    private final WindowHalo _halo;
+    private final int _nkeys;
+    private final int _k;
+    private final boolean _ahead;
+
+    ShiftTask(WindowHalo halo, int nkeys, int k, boolean ahead) {
+      _halo = halo;
+      _nkeys = nkeys;
+      _k = k;
+      _ahead = ahead;
+    }
+
+    @Override
+    public void map(Chunk[] cs, NewChunk[] ncs) {
+      int len = cs[0]._len;
+      double[][] cols = _ahead ? _halo.withAfter(cs) : _halo.withBefore(cs);
+      int n = cols[0].length;
+      int first = _ahead ? 0 : n - len; // First row of the chunk
+      // Source row of every row of the chunk, -1 if out of its group
+      int[] src = new int[len];
+      if (_ahead) {
+        int end = n - 1;                // Last row of the group of row i
+        for (int i = n - 1; i >= 0; i--) {
+          if (i < n - 1 && !WindowHalo.sameKeys(cols, _nkeys, i, i + 1)) end = i;
+          if (i < len) src[i] = i + _k <= end ? i + _k : -1;
+        }
+      } else {
+        int start = 0;                  // First row of the group of row i
+        for (int i = 0; i < n; i++) {
+          if (i > 0 && !WindowHalo.sameKeys(cols, _nkeys, i - 1, i)) start = i;
+          if (i >= first) src[i - first] = i - _k >= start ? i - _k : -1;
+        }
+      }
+      for (int v = 0; v < ncs.length; v++) {
+        double[] x = cols[_nkeys + v];
+        for (int i = 0; i < len; i++)
+          ncs[v].addNum(src[i] < 0 ? Double.NaN : x[src[i]]);
+      }
+    }
+  }
+}
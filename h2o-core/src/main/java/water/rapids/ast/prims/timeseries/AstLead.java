@@ -0,0 +1,21 @@
+package water.rapids.ast.prims.timeseries;
+
+/**
+ * Lead by k rows: every row gets the values of the row k rows after it, or NA if that row is not in
+ * the same run of equal values of the group by columns.
+ * <p/>
+ * (lead ary k by), e.g. {@code (lead fr 1 [0])}
+ *
+ * @see AstLag
+ */
+public class AstLead extends AstLag {
+  @Override
+  public String str() {
+    return "lead";
+  }
+
+  @Override
+  boolean ahead() {
+    return true;
+  }
+}
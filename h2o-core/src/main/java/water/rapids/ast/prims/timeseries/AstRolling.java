@@ -0,0 +1,159 @@
+package water.rapids.ast.prims.timeseries;
+
+import water.MRTask;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.NewChunk;
+import water.fvec.Vec;
+import water.rapids.Env;
+import water.rapids.ast.AstParameter;
+import water.rapids.ast.AstPrimitive;
+import water.rapids.ast.AstRoot;
+import water.rapids.vals.ValFrame;
+
+import java.util.ArrayList;
+
+/**
+ * Rolling aggregates: every row gets the aggregate of the values in its window, made of the row and
+ * of the rows just before it.  The window is either a number of rows, or a span of a time column: the
+ * rows with a time greater than the time of the row minus the span.  Windows do not cross the runs of
+ * equal values of the group by columns, so a frame sorted by groups (and time) gets windows within
+ * groups.
+ * <p/>
+ * Returns one column per value column (the columns not used as group by or time column), with the
+ * same names.  NAs are skipped by the aggregates; a window without any value gives NA (0 for count),
+ * and so does a row without a time.
+ * <p/>
+ * Windows spanning chunks get the rows they need from the neighboring chunks by a halo exchange
+ * ({@link WindowHalo}), so that all the windows are computed in a single pass over the frame.
+ * <p/>
+ * (rolling ary fun window by time_col), e.g. {@code (rolling fr "mean" 7 [0] 1)} for the mean of the
+ * values of the last 7 days (column 1) of the group (column 0).
+ */
+public class AstRolling extends AstPrimitive {
+
+  enum Agg {sum, mean, min, max, sd, count}
+
+  @Override
+  public String[] args() {
+    return new String[]{"ary", "fun", "window", "by", "time_col"};
+  }
+
+  @Override
+  public int nargs() {
+    return 1 + 5;
+  } // (rolling ary fun window by time_col)
+
+  @Override
+  public String str() {
+    return "rolling";
+  }
+
+  @Override
+  public ValFrame apply(Env env, Env.StackHelp stk, AstRoot asts[]) {
+    Frame fr = stk.track(asts[1].exec(env)).getFrame();
+    String fun = asts[2].exec(env).getStr();
+    Agg agg;
+    try {
+      agg = Agg.valueOf(fun);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown rolling aggregate '" + fun + "', expected one of sum, mean, min, max, sd, count");
+    }
+    double window = asts[3].exec(env).getNum();
+    int[] by = ((AstParameter) asts[4]).columns(fr.names());
+    int timeCol = (int) asts[5].exec(env).getNum();
+    if (timeCol < 0 && (window < 1 || window != (int) window))
+      throw new IllegalArgumentException("Window must be a positive number of rows, found " + window);
+    if (timeCol >= 0 && !(window > 0))
+      throw new IllegalArgumentException("Window must be a positive time span, found " + window);
+
+    ArrayList<Integer> values = new ArrayList<>();
+    Frame in = WindowHalo.layout(fr, by, timeCol, values);
+    String[] names = new String[values.size()];
+    for (int i = 0; i < names.length; i++) {
+      Vec v = fr.vec(values.get(i));
+      if (!v.isNumeric() && !v.isTime())
+        throw new IllegalArgumentException("Rolling aggregates apply to numeric columns, found " + v.get_type_str() + " column " + fr.name(values.get(i)));
+      names[i] = fr.name(values.get(i));
+    }
+    WindowHalo halo = timeCol < 0 ? WindowHalo.tails(in, by.length, (int) window - 1)
+                                  : WindowHalo.tails(in, by.length, by.length, window);
+    Frame res = new RollingTask(halo, by.length, timeCol >= 0, window, agg)
+        .doAll(names.length, Vec.T_NUM, in).outputFrame(names, null);
+    return new ValFrame(res);
+  }
+
+  private static class RollingTask extends MRTask<RollingTask> {
+    private final WindowHalo _halo;
+    private final int _nkeys;
+    private final boolean _timed;
+    private final double _window;
+    private final Agg _agg;
+
+    RollingTask(WindowHalo halo, int nkeys, boolean timed, double window, Agg agg) {
+      _halo = halo;
+      _nkeys = nkeys;
+      _timed = timed;
+      _window = window;
+      _agg = agg;
+    }
+
+    @Override
+    public void map(Chunk[] cs, NewChunk[] ncs) {
+      double[][] cols = _halo.withBefore(cs);
+      int n = cols[0].length;
+      int first = n - cs[0]._len;  // First row of the chunk, after the halo
+      double[] t = _timed ? cols[_nkeys] : null;
+      int v0 = _timed ? _nkeys + 1 : _nkeys;
+      boolean minmax = _agg == Agg.min || _agg == Agg.max;
+      int[] dq = minmax ? new int[n] : null; // Candidate rows for the min (max), increasing (decreasing) values
+      for (int v = 0; v < ncs.length; v++) {
+        double[] x = cols[v0 + v];
+        double sum = 0, sumsq = 0;
+        int cnt = 0, lo = 0, head = 0, tail = 0;
+        for (int i = 0; i < n; i++) {
+          if (i > 0 && !WindowHalo.sameKeys(cols, _nkeys, i - 1, i)) { // New group
+            lo = i;
+            sum = sumsq = 0;
+            cnt = head = tail = 0;
+          }
+          double d = x[i];
+          if (!Double.isNaN(d)) {
+            sum += d;
+            sumsq += d * d;
+            cnt++;
+            if (minmax) {
+              while (tail > head && (_agg == Agg.min ? x[dq[tail - 1]] >= d : x[dq[tail - 1]] <= d)) tail--;
+              dq[tail++] = i;
+            }
+          }
+          // Rows out of the window of row i
+          while (lo < i && (_timed ? !(t[lo] > t[i] - _window) : i - lo >= _window)) {
+            double e = x[lo];
+            if (!Double.isNaN(e) && --cnt == 0) sum = sumsq = 0; // No drift from empty windows
+            else if (!Double.isNaN(e)) {
+              sum -= e;
+              sumsq -= e * e;
+            }
+            if (tail > head && dq[head] == lo) head++;
+            lo++;
+          }
+          if (i < first) continue;
+          if (_timed && Double.isNaN(t[i])) ncs[v].addNA();
+          else ncs[v].addNum(aggregate(sum, sumsq, cnt, cnt == 0 || !minmax ? Double.NaN : x[dq[head]]));
+        }
+      }
+    }
+
+    private double aggregate(double sum, double sumsq, int cnt, double minmax) {
+      if (_agg == Agg.count) return cnt;
+      if (cnt == 0) return Double.NaN;
+      switch (_agg) {
+        case sum: return sum;
+        case mean: return sum / cnt;
+        case sd: return cnt < 2 ? Double.NaN : Math.sqrt(Math.max(0, (sumsq - sum * sum / cnt) / (cnt - 1)));
+        default: return minmax;
+      }
+    }
+  }
+}
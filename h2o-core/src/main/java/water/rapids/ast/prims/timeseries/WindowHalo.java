@@ -0,0 +1,214 @@
+package water.rapids.ast.prims.timeseries;
+
+import water.Iced;
+import water.MRTask;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.SortOrder;
+import water.fvec.Vec;
+import water.util.ArrayUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Halo exchange for the window functions: the rows which the windows of a chunk need from the
+ * neighboring chunks.
+ * <p/>
+ * Windows never cross a run of equal group keys (the leading key columns), so every chunk publishes
+ * only the boundary rows of its last run (its "tail", for windows looking back) or of its first run
+ * (its "head", for windows looking ahead): at most the given number of rows or, for a window over a
+ * time span, the rows less than a span away from the last row.  A chunk gets its halo by
+ * concatenating the tails of the chunks before it (the heads of the chunks after it), going on to the
+ * next chunk only while a whole chunk was published.  One small pass over the data collects all the
+ * boundaries, after which the windows are computed in a single pass over the chunks.
+ */
+final class WindowHalo extends Iced<WindowHalo> {
+  private final int _rows;       // Rows of the halo, for windows counted in rows
+  private final int _timeCol;    // Time column, for windows over a time span; -1 for rows
+  private final double[][][] _halo; // Per chunk: per column, the boundary rows; null for no rows
+  private final boolean[] _whole;   // Per chunk: was the whole chunk published?
+
+  private WindowHalo(int rows, int timeCol, Collect t) {
+    _rows = rows;
+    _timeCol = timeCol;
+    _halo = t._halo;
+    _whole = t._whole;
+  }
+
+  /** Tails of the chunks for windows of the given number of rows before every row */
+  static WindowHalo tails(Frame fr, int nkeys, int rows) {
+    return new WindowHalo(rows, -1, new Collect(fr.anyVec().nChunks(), nkeys, rows, -1, 0, false).doAll(fr));
+  }
+
+  /** Tails of the chunks for windows over the given span of the time column, before every row */
+  static WindowHalo tails(Frame fr, int nkeys, int timeCol, double span) {
+    return new WindowHalo(0, timeCol, new Collect(fr.anyVec().nChunks(), nkeys, 0, timeCol, span, false).doAll(fr));
+  }
+
+  /** Heads of the chunks for windows of the given number of rows after every row */
+  static WindowHalo heads(Frame fr, int nkeys, int rows) {
+    return new WindowHalo(rows, -1, new Collect(fr.anyVec().nChunks(), nkeys, rows, -1, 0, true).doAll(fr));
+  }
+
+  /** Do rows a and b have the same group keys (NAs are equal)? */
+  static boolean sameKeys(double[][] cols, int nkeys, int a, int b) {
+    for (int k = 0; k < nkeys; k++)
+      if (SortOrder.compareValues(cols[k][a], cols[k][b]) != 0) return false;
+    return true;
+  }
+
+  /**
+   * The columns of a window function: the group key columns, then the time column (if any), then
+   * the value columns, i.e. all the others.
+   * @param timeCol the time column, -1 for none
+   * @param values filled in with the value columns of fr
+   */
+  static Frame layout(Frame fr, int[] by, int timeCol, ArrayList<Integer> values) {
+    Frame res = new Frame();
+    for (int col : by) res.add(checkColumn(fr, col, "group by"), fr.vec(col));
+    if (timeCol >= 0) {
+      res.add(checkColumn(fr, timeCol, "time"), fr.vec(timeCol));
+      if (!fr.vec(timeCol).isNumeric() && !fr.vec(timeCol).isTime())
+        throw new IllegalArgumentException("Time column must be numeric or time, found " + fr.vec(timeCol).get_type_str());
+    }
+    for (int col = 0; col < fr.numCols(); col++) {
+      if (col == timeCol || ArrayUtils.contains(by, col)) continue;
+      values.add(col);
+      res.add(fr.name(col), fr.vec(col));
+    }
+    if (values.isEmpty())
+      throw new IllegalArgumentException("No value columns left");
+    for (Vec v : res.vecs())
+      if (v.isString() || v.isUUID())
+        throw new IllegalArgumentException("Window functions do not apply to string or UUID columns");
+    return res;
+  }
+
+  private static String checkColumn(Frame fr, int col, String what) {
+    if (col < 0 || col >= fr.numCols())
+      throw new IllegalArgumentException("Invalid " + what + " column " + col + ", the frame has " + fr.numCols() + " columns");
+    return fr.name(col);
+  }
+
+  static double[] doubles(Chunk c) {
+    return c.getDoubles(new double[c._len], 0, c._len);
+  }
+
+  private int haloLen(int cidx) {
+    return _halo[cidx] == null ? 0 : _halo[cidx][0].length;
+  }
+
+  /**
+   * The rows of the chunk, preceded by its halo (the tails of the chunks before it).
+   * @return per column, the halo rows then the rows of the chunk
+   */
+  double[][] withBefore(Chunk[] cs) {
+    int cidx = cs[0].cidx(), len = cs[0]._len;
+    int first = cidx, n = 0;
+    while (first > 0 && (_timeCol >= 0 || n < _rows)) {
+      n += haloLen(--first);
+      if (_halo[first] != null && !_whole[first]) break;
+    }
+    int skip = _timeCol < 0 ? Math.max(n - _rows, 0) : 0; // Rows beyond the longest window
+    double[][] res = new double[cs.length][n - skip + len];
+    for (int c = 0; c < cs.length; c++) {
+      int pos = -skip;
+      for (int j = first; j < cidx; j++) {
+        if (_halo[j] == null) continue;
+        double[] rows = _halo[j][c];
+        int from = Math.min(Math.max(-pos, 0), rows.length);
+        System.arraycopy(rows, from, res[c], pos + from, rows.length - from);
+        pos += rows.length;
+      }
+      System.arraycopy(doubles(cs[c]), 0, res[c], n - skip, len);
+    }
+    return res;
+  }
+
+  /**
+   * The rows of the chunk, followed by its halo (the heads of the chunks after it).
+   * @return per column, the rows of the chunk then the halo rows
+   */
+  double[][] withAfter(Chunk[] cs) {
+    int cidx = cs[0].cidx(), len = cs[0]._len;
+    int last = cidx, n = 0;
+    while (last < _halo.length - 1 && n < _rows) {
+      n += haloLen(++last);
+      if (_halo[last] != null && !_whole[last]) break;
+    }
+    n = Math.min(n, _rows);
+    double[][] res = new double[cs.length][len + n];
+    for (int c = 0; c < cs.length; c++) {
+      System.arraycopy(doubles(cs[c]), 0, res[c], 0, len);
+      int pos = len;
+      for (int j = cidx + 1; j <= last && pos < len + n; j++) {
+        if (_halo[j] == null) continue;
+        int cnt = Math.min(_halo[j][c].length, len + n - pos);
+        System.arraycopy(_halo[j][c], 0, res[c], pos, cnt);
+        pos += cnt;
+      }
+    }
+    return res;
+  }
+
+  // Collects the boundary rows of every chunk
+  private static class Collect extends MRTask<Collect> {
+    private final int _nChunks;
+    private final int _nkeys;
+    private final int _rows;
+    private final int _timeCol;
+    private final double _span;
+    private final boolean _ahead;
+    double[][][] _halo;
+    boolean[] _whole;
+
+    Collect(int nChunks, int nkeys, int rows, int timeCol, double span, boolean ahead) {
+      _nChunks = nChunks;
+      _nkeys = nkeys;
+      _rows = rows;
+      _timeCol = timeCol;
+      _span = span;
+      _ahead = ahead;
+    }
+
+    @Override
+    protected void setupLocal() {
+      _halo = new double[_nChunks][][];
+      _whole = new boolean[_nChunks];
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      int len = cs[0]._len;
+      double[][] cols = new double[cs.length][];
+      for (int c = 0; c < cs.length; c++)
+        cols[c] = doubles(cs[c]);
+      int from, to;
+      if (_ahead) {
+        from = to = 0;
+        while (to < len && to < _rows && sameKeys(cols, _nkeys, to, 0)) to++;
+      } else {
+        from = to = len;
+        while (from > 0 && sameKeys(cols, _nkeys, from - 1, len - 1)
+            && (_timeCol < 0 ? len - from < _rows : cols[_timeCol][from - 1] > cols[_timeCol][len - 1] - _span))
+          from--;
+      }
+      double[][] halo = new double[cs.length][];
+      for (int c = 0; c < cs.length; c++)
+        halo[c] = Arrays.copyOfRange(cols[c], from, to);
+      _halo[cs[0].cidx()] = halo;
+      _whole[cs[0].cidx()] = to - from == len;
+    }
+
+    @Override
+    public void reduce(Collect t) {
+      if (_halo != t._halo)
+        for (int i = 0; i < _nChunks; i++)
+          if (t._halo[i] != null) {
+            _halo[i] = t._halo[i];
+            _whole[i] = t._whole[i];
+          }
+    }
+  }
+}
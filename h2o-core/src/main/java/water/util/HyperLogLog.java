@@ -0,0 +1,87 @@
+package water.util;
+
+import water.Iced;
+import water.parser.BufferedString;
+
+/** HyperLogLog - an approximate count of distinct values, in one pass and
+ *  fixed (small) memory.
+ *
+ *  <p>Values are hashed to 64 bits; the leading {@code p} bits pick one of
+ *  {@code 2^p} registers, which keeps the longest run of leading zeros seen
+ *  in the remaining bits.  Registers merge by taking the max, so partial
+ *  sketches reduce naturally in an MRTask.  The relative standard error is
+ *  about {@code 1.04/sqrt(2^p)}: 1.6% for the default precision of 12 (4KB
+ *  of registers).  Small cardinalities are counted by linear counting, and
+ *  are close to exact.
+ */
+public final class HyperLogLog extends Iced<HyperLogLog> {
+  public static final int DEFAULT_PRECISION = 12;
+
+  private final int _p;         // Number of bits selecting the register
+  private final byte[] _regs;   // Per register, the max rank seen
+
+  public HyperLogLog() { this(DEFAULT_PRECISION); }
+  public HyperLogLog(int p) {
+    if( p < 4 || p > 18 ) throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18, found " + p);
+    _p = p;
+    _regs = new byte[1 << p];
+  }
+
+  /** Add a number; NAs are skipped, and -0.0 is 0.0 */
+  public void add( double d ) {
+    if( Double.isNaN(d) ) return;
+    addHash(hash(Double.doubleToLongBits(d == 0 ? 0.0 : d)));
+  }
+
+  /** Add a string */
+  public void add( BufferedString s ) {
+    long h = 0xcbf29ce484222325L; // FNV-1a, then mixed
+    byte[] buf = s.getBuffer();
+    for( int i = s.getOffset(); i < s.getOffset() + s.length(); i++ )
+      h = (h ^ (buf[i] & 0xFF)) * 0x100000001b3L;
+    addHash(hash(h));
+  }
+
+  /** Add a UUID */
+  public void add( long lo, long hi ) { addHash(hash(lo ^ hash(hi))); }
+
+  /** Add a value by its (well mixed) 64-bit hash */
+  public void addHash( long h ) {
+    int idx = (int)(h >>> (64 - _p));
+    int rank = Math.min(Long.numberOfLeadingZeros(h << _p), 64 - _p) + 1;
+    if( rank > _regs[idx] ) _regs[idx] = (byte)rank;
+  }
+
+  /** Merge another sketch of the same precision into this one */
+  public HyperLogLog merge( HyperLogLog hll ) {
+    if( hll._p != _p ) throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of precisions " + _p + " and " + hll._p);
+    for( int i = 0; i < _regs.length; i++ )
+      if( hll._regs[i] > _regs[i] ) _regs[i] = hll._regs[i];
+    return this;
+  }
+
+  /** The estimated number of distinct values added */
+  public double estimate() {
+    int m = _regs.length, zeros = 0;
+    double sum = 0;
+    for( byte r : _regs ) {
+      sum += Math.scalb(1.0, -r);
+      if( r == 0 ) zeros++;
+    }
+    double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+    double e = alpha * m * m / sum;
+    // Small range: linear counting over the empty registers (no large range correction with 64-bit hashes)
+    if( e <= 2.5 * m && zeros > 0 ) e = m * Math.log((double)m / zeros);
+    return e;
+  }
+
+  /** Mix the bits of x (the MurmurHash3 finalizer) */
+  public static long hash( long x ) {
+    x ^= x >>> 33;
+    x *= 0xff51afd7ed558ccdL;
+    x ^= x >>> 33;
+    x *= 0xc4ceb9fe1a85ec53L;
+    x ^= x >>> 33;
+    return x;
+  }
+}
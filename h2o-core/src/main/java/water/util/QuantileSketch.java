@@ -0,0 +1,123 @@
+package water.util;
+
+import water.Iced;
+
+import java.util.Arrays;
+
+/** QuantileSketch - approximate quantiles of a stream of numbers, in one pass
+ *  and small memory (a KLL-style compactor hierarchy).
+ *
+ *  <p>Values are kept in levels of at most {@code k} items, an item of level
+ *  {@code h} standing for {@code 2^h} values.  A full level is compacted:
+ *  sorted, and every other item is promoted to the next level, so each
+ *  compaction halves the items while keeping the ranks close.  Sketches
+ *  merge level by level, so partial sketches reduce naturally in an MRTask.
+ *  The rank error is about {@code log2(n/k)/k}; well under 1% for the
+ *  default {@code k} of 256.  Compactions alternate the half they keep, so
+ *  the sketch is deterministic.
+ */
+public final class QuantileSketch extends Iced<QuantileSketch> {
+  public static final int DEFAULT_K = 256;
+
+  private final int _k;          // Capacity of a level
+  private double[][] _levels;    // Per level, the items; level h items weigh 2^h
+  private int[] _sizes;          // Per level, the number of items
+  private long _n;               // Number of values added
+  private double _min = Double.POSITIVE_INFINITY, _max = Double.NEGATIVE_INFINITY;
+  private boolean _odd;          // Half kept by the next compaction
+
+  public QuantileSketch() { this(DEFAULT_K); }
+  public QuantileSketch(int k) {
+    if( k < 8 ) throw new IllegalArgumentException("QuantileSketch needs k of at least 8, found " + k);
+    _k = k;
+    _levels = new double[][]{new double[k]};
+    _sizes = new int[1];
+  }
+
+  /** Number of values added (NAs excluded) */
+  public long count() { return _n; }
+
+  /** Add a number; NAs are skipped */
+  public void add( double d ) { add(d, 1); }
+
+  /** Add cnt copies of a number; NAs are skipped */
+  public void add( double d, long cnt ) {
+    if( Double.isNaN(d) || cnt <= 0 ) return;
+    _n += cnt;
+    _min = Math.min(_min, d);
+    _max = Math.max(_max, d);
+    // One item per bit of the count, at the level of its weight
+    for( int h = 0; cnt != 0; h++, cnt >>>= 1 )
+      if( (cnt & 1) != 0 ) {
+        append(h, d);
+        if( _sizes[h] >= _k ) compact(h);
+      }
+  }
+
+  /** Merge another sketch into this one */
+  public QuantileSketch merge( QuantileSketch qs ) {
+    if( qs._n == 0 ) return this;
+    _n += qs._n;
+    _min = Math.min(_min, qs._min);
+    _max = Math.max(_max, qs._max);
+    for( int h = 0; h < qs._sizes.length; h++ )
+      for( int i = 0; i < qs._sizes[h]; i++ )
+        append(h, qs._levels[h][i]);
+    for( int h = 0; h < _sizes.length; h++ )
+      if( _sizes[h] >= _k ) compact(h);
+    return this;
+  }
+
+  /** Approximate quantile p (between 0 and 1); NaN if no values were added */
+  public double quantile( double p ) {
+    if( p < 0 || p > 1 ) throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+    if( _n == 0 ) return Double.NaN;
+    if( p == 0 ) return _min;
+    if( p == 1 ) return _max;
+    int cnt = 0;
+    for( int s : _sizes ) cnt += s;
+    double[] vals = new double[cnt];
+    long[] weights = new long[cnt];
+    Integer[] ord = new Integer[cnt];
+    for( int h = 0, j = 0; h < _sizes.length; h++ )
+      for( int i = 0; i < _sizes[h]; i++, j++ ) {
+        vals[j] = _levels[h][i];
+        weights[j] = 1L << h;
+        ord[j] = j;
+      }
+    final double[] v = vals;
+    Arrays.sort(ord, new java.util.Comparator<Integer>() {
+      @Override public int compare( Integer a, Integer b ) { return Double.compare(v[a], v[b]); }
+    });
+    double rank = p * _n;
+    long sum = 0;
+    for( int j : ord )
+      if( (sum += weights[j]) >= rank ) return vals[j];
+    return _max;
+  }
+
+  private void append( int h, double d ) {
+    if( h >= _levels.length ) {
+      _levels = Arrays.copyOf(_levels, h + 1);
+      _sizes = Arrays.copyOf(_sizes, h + 1);
+      for( int i = 0; i <= h; i++ )
+        if( _levels[i] == null ) _levels[i] = new double[_k];
+    }
+    if( _sizes[h] == _levels[h].length ) _levels[h] = Arrays.copyOf(_levels[h], 2 * _sizes[h]);
+    _levels[h][_sizes[h]++] = d;
+  }
+
+  // Promote every other item of level h to level h+1; an odd item out stays
+  private void compact( int h ) {
+    int n = _sizes[h];
+    double[] items = _levels[h];
+    Arrays.sort(items, 0, n);
+    int pairs = n & ~1;
+    for( int i = _odd ? 1 : 0; i < pairs; i += 2 )
+      append(h + 1, items[i]);
+    _odd = !_odd;
+    if( (n & 1) != 0 ) items[0] = items[n - 1];
+    _sizes[h] = n & 1;
+    if( _sizes[h + 1] >= _k ) compact(h + 1);
+  }
+}
@@ -232,6 +232,25 @@ public class FVecTest extends TestUtil {
     }
   }
 
+  // The sketches are only computed for the Vecs they are asked for, then kept with the rollups
+  @Test public void testSketchesOnDemand() {
+    Vec v = null;
+    try {
+      v = Vec.makeVec(new double[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, Vec.newKey());
+      assertEquals(10, v.bins().length);
+      RollupStats rs = DKV.getGet(v.rollupStatsKey());
+      Assert.assertNull("the histogram pass should not build the sketches", rs._distinct);
+      assertEquals(10, v.approxDistinct(), 0.5);
+      rs = DKV.getGet(v.rollupStatsKey());
+      Assert.assertNotNull("the sketches should be cached with the rollups", rs._distinct);
+      assertEquals(10, rs._bins.length);
+      v.set(5, 50);
+      assertEquals(50, v.approxQuantile(1), 0);
+    } finally {
+      if( v != null ) v.remove();
+    }
+  }
+
   // The rollups only compute approximate quantiles, not exact.
   @Test public void test50pct() {
     Vec vec = null;
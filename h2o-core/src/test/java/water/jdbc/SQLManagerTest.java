@@ -10,6 +10,7 @@ import water.H2O;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.TimeZone;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class SQLManagerTest {
@@ -127,4 +128,47 @@ public class SQLManagerTest {
     Assert.assertEquals("SELECT * FROM mytable LIMIT 1310 OFFSET 0",
             SQLManager.buildSelectChunkSql("", "mytable", 0, 1310, "*", null));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testBuildSelectRangeSql() {
+    SQLManager.RangePartitioning ranges = new SQLManager.RangePartitioning("id", SQLManager.RangePartitioning.INTEGER, 0, 99);
+
+    // single range
+    Assert.assertEquals("SELECT * FROM mytable",
+            SQLManager.buildSelectRangeSql("mytable", "*", ranges.split(1), 0));
+
+    // first range includes NULLs, last range is open
+    SQLManager.RangePartitioning split = ranges.split(4);
+    Assert.assertEquals("SELECT * FROM mytable WHERE (id < 25 OR id IS NULL)",
+            SQLManager.buildSelectRangeSql("mytable", "*", split, 0));
+    Assert.assertEquals("SELECT * FROM mytable WHERE id >= 25 AND id < 50",
+            SQLManager.buildSelectRangeSql("mytable", "*", split, 1));
+    Assert.assertEquals("SELECT * FROM mytable WHERE id >= 75",
+            SQLManager.buildSelectRangeSql("mytable", "*", split, 3));
+  }
+
+  @Test
+  public void testTimeBoundsMadeOnce() {
+    TimeZone tz = TimeZone.getDefault();
+    try {
+      TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+      SQLManager.RangePartitioning split = new SQLManager.RangePartitioning("ts", SQLManager.RangePartitioning.TIME,
+              0, 4 * 3600 * 1000L).split(4);
+      String predicate = split.predicate(1);
+      Assert.assertEquals("ts >= {ts '1970-01-01 01:00:00.0'} AND ts < {ts '1970-01-01 02:00:00.0'}", predicate);
+      // a node in another time zone, the bounds come from the driver
+      TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+      Assert.assertEquals(predicate, split.predicate(1));
+    } finally {
+      TimeZone.setDefault(tz);
+    }
+  }
+
+  @Test
+  public void testRangePartitioningSplitIntegers() {
+    SQLManager.RangePartitioning ranges = new SQLManager.RangePartitioning("id", SQLManager.RangePartitioning.INTEGER, 10, 12);
+    // there are only 3 distinct values
+    Assert.assertEquals(3, ranges.split(100)._n);
+    Assert.assertEquals(1, ranges.split(0)._n);
+  }
+}
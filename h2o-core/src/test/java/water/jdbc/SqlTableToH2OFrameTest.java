@@ -0,0 +1,114 @@
+package water.jdbc;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.Key;
+import water.Scope;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.parser.BufferedString;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Retrieval of a table by ranges of a partition column, one range per chunk, from an embedded Derby database.
+ */
+public class SqlTableToH2OFrameTest extends TestUtil {
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  private static final String URL = "jdbc:derby:memory:sqlTableToH2OFrameTest;create=true";
+  private static final int ROWS = 1000;
+
+  private static String name(int id) { return id % 2 == 0 ? "name-" + id + "-\u00e9" : "n" + id; }
+  private static boolean nameIsNA(int id) { return id % 7 == 3; }
+
+  private static void createTable(String table) throws SQLException {
+    Connection conn = DriverManager.getConnection(URL);
+    try {
+      Statement stmt = conn.createStatement();
+      stmt.executeUpdate("CREATE TABLE " + table + " (ID INTEGER, NAME VARCHAR(50), X DOUBLE)");
+      stmt.close();
+      PreparedStatement insert = conn.prepareStatement("INSERT INTO " + table + " VALUES (?, ?, ?)");
+      for (int id = 0; id < ROWS; id++) {
+        insert.setInt(1, id);
+        if (nameIsNA(id)) insert.setNull(2, Types.VARCHAR); else insert.setString(2, name(id));
+        insert.setDouble(3, id / 4.0);
+        insert.addBatch();
+      }
+      insert.executeBatch();
+      insert.close();
+    } finally {
+      conn.close();
+    }
+  }
+
+  @Test
+  public void testStringColumnByRanges() throws Exception {
+    Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+    final String table = "RANGES_STR";
+    createTable(table);
+    Scope.enter();
+    try {
+      SQLManager.RangePartitioning ranges;
+      Connection conn = DriverManager.getConnection(URL);
+      try {
+        Statement stmt = conn.createStatement();
+        ranges = SQLManager.RangePartitioning.fetchMinMax(stmt, table, "ID").split(4);
+        stmt.close();
+      } finally {
+        conn.close();
+      }
+      assertEquals(4, ranges._n);
+      Vec vec = Scope.track(Vec.makeConN(ranges._n, ranges._n));
+      String[] names = new String[]{"ID", "NAME", "X"};
+      SQLManager.ConnectionPoolProvider provider = new SQLManager.ConnectionPoolProvider(URL, "", "", vec.nChunks());
+      // fetch size smaller than a range, so that every range takes several round-trips
+      SQLManager.SqlTableToH2OFrame task = new SQLManager.SqlTableToH2OFrame(table, "derby", "*", names, names.length,
+              null, provider, ranges, 7, 0)
+              .doAll(new byte[]{Vec.T_NUM, Vec.T_STR, Vec.T_NUM}, vec);
+      Frame fr = Scope.track(task.outputFrame(Key.<Frame>make(), names, null));
+
+      assertEquals(ROWS, task._rows);
+      assertEquals(ROWS, fr.numRows());
+      assertTrue(fr.vec("NAME").isString());
+      BufferedString tmp = new BufferedString();
+      boolean[] seen = new boolean[ROWS];
+      for (long row = 0; row < fr.numRows(); row++) {
+        int id = (int) fr.vec("ID").at8(row);
+        seen[id] = true;
+        assertEquals(id / 4.0, fr.vec("X").at(row), 0);
+        if (nameIsNA(id)) {
+          assertTrue(fr.vec("NAME").isNA(row));
+          assertNull(fr.vec("NAME").atStr(tmp, row));
+        } else
+          assertEquals(name(id), fr.vec("NAME").atStr(tmp, row).toString());
+      }
+      for (int id = 0; id < ROWS; id++)
+        assertTrue("missing row " + id, seen[id]);
+    } finally {
+      Scope.exit();
+      dropTable(table);
+    }
+  }
+
+  private static void dropTable(String table) throws SQLException {
+    Connection conn = DriverManager.getConnection(URL);
+    try {
+      Statement stmt = conn.createStatement();
+      stmt.executeUpdate("DROP TABLE " + table);
+      stmt.close();
+    } finally {
+      conn.close();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package water.parser;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.H2O;
+import water.TestUtil;
+import water.fvec.Vec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkReadAheadTest extends TestUtil {
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  // 10 chunks of 1024 rows
+  private static Vec makeVec() {
+    Vec vec = Vec.makeCon(0, 10 * 1024, 10, false);
+    assertEquals(10, vec.nChunks());
+    return vec;
+  }
+
+  @Test
+  public void testPrefetchWindow() {
+    Vec vec = makeVec();
+    try {
+      ChunkReadAhead ra = new ChunkReadAhead(vec, 3, H2O.MIN_PRIORITY);
+      assertFalse(ra.startParse(0));
+      assertEquals(3, ra.ahead()); // chunks 1, 2, 3
+      assertTrue(ra.startParse(1));
+      assertEquals(3, ra.ahead()); // chunks 2, 3, 4
+      assertFalse(ra.startParse(7)); // not loaded ahead, the window is full
+      assertEquals(3, ra.ahead());
+      assertTrue(ra.startParse(2));
+      assertTrue(ra.startParse(3));
+      assertTrue(ra.startParse(4));
+      assertEquals(3, ra.ahead()); // chunks 5, 6, 8 - chunk 7 is being parsed already
+      assertTrue(ra.startParse(8));
+      assertEquals(5, ra.hits());
+    } finally {
+      vec.remove();
+    }
+  }
+
+  @Test
+  public void testEndOfVec() {
+    Vec vec = makeVec();
+    try {
+      ChunkReadAhead ra = new ChunkReadAhead(vec, 5, H2O.MIN_PRIORITY);
+      assertFalse(ra.startParse(7));
+      assertEquals(2, ra.ahead()); // chunks 8 and 9 only
+      assertTrue(ra.startParse(8));
+      assertEquals(1, ra.ahead());
+      assertTrue(ra.startParse(9));
+      assertEquals(0, ra.ahead());
+      assertEquals(2, ra.hits());
+    } finally {
+      vec.remove();
+    }
+  }
+
+  @Test
+  public void testCancel() {
+    Vec vec = makeVec();
+    try {
+      ChunkReadAhead ra = new ChunkReadAhead(vec, 3, H2O.MIN_PRIORITY);
+      ra.startParse(0);
+      assertEquals(3, ra.ahead());
+      ra.cancel();
+      ra.startParse(1); // may or may not have been loaded before the cancel
+      for (int c = 4; c < 10; c++)
+        assertFalse(ra.startParse(c)); // nothing new is loaded
+      assertTrue(ra.ahead() <= 2);
+    } finally {
+      vec.remove();
+    }
+  }
+
+  @Test
+  public void testProgressBatched() {
+    Vec vec = makeVec();
+    try {
+      ChunkReadAhead ra = new ChunkReadAhead(vec, 0, H2O.MIN_PRIORITY);
+      assertEquals(0, ra.progress(10)); // within a second of the start
+      assertEquals(0, ra.progress(5));
+      assertEquals(15, ra.unreported());
+      assertEquals(0, ra.unreported());
+    } finally {
+      vec.remove();
+    }
+  }
+
+  @Test
+  public void testNoReadAheadOfLocalData() {
+    Vec vec = makeVec();
+    try {
+      ChunkReadAhead ra = new ChunkReadAhead(vec, 0, H2O.MIN_PRIORITY);
+      assertFalse(ra.startParse(0));
+      assertEquals(0, ra.ahead());
+      assertEquals(0, ra.depth());
+    } finally {
+      vec.remove();
+    }
+  }
+}
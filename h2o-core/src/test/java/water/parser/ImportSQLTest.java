@@ -58,6 +58,20 @@ public class ImportSQLTest extends TestUtil{
     sql_f.delete();
   }
 
+  @Ignore @Test
+  public void citibike20kPartitioned() {
+    String table = "citibike20k";
+    Frame sql_f = SQLManager.importSqlTable(conUrl, table, select_query, user, password, columns, optimize,
+            "bikeid", 5000, 2).get();
+    assertTrue(sql_f.numRows() == 2e4);
+    assertTrue(sql_f.numCols() == 15);
+    sql_f.delete();
+    sql_f = SQLManager.importSqlTable(conUrl, table, select_query, user, password, columns, optimize,
+            "starttime", 0, 0).get();
+    assertTrue(sql_f.numRows() == 2e4);
+    sql_f.delete();
+  }
+
   @Ignore @Test
   public void select_query() {
     Frame sql_f = SQLManager.importSqlTable(conUrl, "", "SELECT bikeid from citibike20k", user, password, columns, optimize).get();
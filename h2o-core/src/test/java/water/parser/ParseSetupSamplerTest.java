@@ -0,0 +1,90 @@
+package water.parser;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.DKV;
+import water.Key;
+import water.TestUtil;
+import water.fvec.Vec;
+import water.rapids.Session;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class ParseSetupSamplerTest extends TestUtil {
+
+  @BeforeClass static public void setup() { stall_till_cloudsize(1); }
+
+  @Test
+  public void testSampleFiles() {
+    Key[] fkeys = new Key[10];
+    for (int i = 0; i < fkeys.length; i++)
+      fkeys[i] = Key.make("file_" + i);
+
+    Key[] sampled = ParseSetupSampler.sampleFiles(fkeys, 4, 0xCAFE);
+    assertEquals(4, sampled.length);
+    assertEquals("first file is always sampled", fkeys[0], sampled[0]);
+    assertEquals(4, new HashSet<>(Arrays.asList(sampled)).size());
+    int last = -1;
+    for (Key k : sampled) { // original order is kept
+      int idx = Arrays.asList(fkeys).indexOf(k);
+      assertTrue(idx > last);
+      last = idx;
+    }
+    assertSame(fkeys, ParseSetupSampler.sampleFiles(fkeys, 0, 0xCAFE));
+    assertSame(fkeys, ParseSetupSampler.sampleFiles(fkeys, 10, 0xCAFE));
+  }
+
+  @Test
+  public void testSampleOffsetsMergesTypeEvidence() {
+    // strings in column b only appear in the second chunk of the file
+    Key k = ParserTest.makeByteVec("a,b\n1,2\n3,4\n", "5,6\n7,x\n8,y\n9,z\n");
+    try {
+      ParseSetup guidance = new ParseSetup(DefaultParserProviders.GUESS_INFO, ParseSetup.GUESS_SEP, false,
+              ParseSetup.GUESS_HEADER, ParseSetup.GUESS_COL_CNT, null, new ParseWriter.ParseErr[0]);
+      ParseSetup firstBytes = ParseSetup.guessSetup(new Key[]{k}, new ParseSetup(guidance));
+      assertEquals(Vec.T_NUM, firstBytes._column_types[1]);
+
+      ParseSetup sampled = ParseSetupSampler.guessSetup(new Key[]{k}, new ParseSetup(guidance), 0, 1, 42, null);
+      assertArrayEquals(new String[]{"a", "b"}, sampled._column_names);
+      assertEquals(Vec.T_NUM, sampled._column_types[0]);
+      assertNotEquals(Vec.T_NUM, sampled._column_types[1]);
+    } finally {
+      ((Vec) DKV.getGet(k)).remove();
+    }
+  }
+
+  @Test
+  public void testCachedSetup() {
+    Key k1 = ParserTest.makeByteVec("a,b\n1,2\n3,4\n");
+    Key k2 = ParserTest.makeByteVec("a,b\n5,6\n7,8\n");
+    Key[] fkeys = new Key[]{k1, k2};
+    ParseSetup guidance = new ParseSetup(DefaultParserProviders.GUESS_INFO, ParseSetup.GUESS_SEP, false,
+            ParseSetup.GUESS_HEADER, ParseSetup.GUESS_COL_CNT, null, new ParseWriter.ParseErr[0]);
+    Session session = new Session();
+    Key cacheKey = ParseSetupSampler.cacheKey(session, ParseSetupSampler.fingerprint(fkeys, guidance, 1, 0, 42));
+    try {
+      assertNull(DKV.get(cacheKey));
+      ParseSetup ps1 = ParseSetupSampler.guessSetup(fkeys, new ParseSetup(guidance), 1, 0, 42, session);
+      assertNotNull("setup should be cached", DKV.get(cacheKey));
+      ParseSetup ps2 = ParseSetupSampler.guessSetup(fkeys, new ParseSetup(guidance), 1, 0, 42, session);
+      assertNotSame(ps1, ps2);
+      assertArrayEquals(ps1._column_names, ps2._column_names);
+      assertArrayEquals(ps1._column_types, ps2._column_types);
+      assertEquals(ps1._chunk_size, ps2._chunk_size);
+      // different guidance => different fingerprint
+      assertNotEquals(ParseSetupSampler.fingerprint(fkeys, guidance, 1, 0, 42),
+              ParseSetupSampler.fingerprint(new Key[]{k1}, guidance, 1, 0, 42));
+      // the cached setup doesn't outlive the session
+      session.end(null);
+      assertNull("cached setup should be removed with the session", DKV.get(cacheKey));
+    } finally {
+      DKV.remove(cacheKey);
+      ((Vec) DKV.getGet(k1)).remove();
+      ((Vec) DKV.getGet(k2)).remove();
+    }
+  }
+
+}
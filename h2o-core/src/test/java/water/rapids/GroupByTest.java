@@ -137,6 +137,66 @@ public class GroupByTest extends TestUtil {
     }
   }
 
+  @Test public void testSortedGroupsFallback() {
+    Frame fr = null, fr2 = null;
+    String tree = "(GB hex [1] nrow 0 \"all\" mean 2 \"rm\" sum 2 \"all\" var 3 \"all\" sdev 3 \"all\" min 0 \"all\" max 0 \"all\")";
+    String prop = water.rapids.ast.prims.mungers.AstGroup.MAX_HASH_GROUPS_KEY;
+    try {
+      fr = chkTree(tree,"smalldata/iris/iris_wheader.csv"); // 23 groups, hash tables
+      chkDim(fr,8,23);
+      System.setProperty(prop, "5");                        // Too many groups, sort the frame
+      fr2 = Rapids.exec(tree).getFrame();
+      chkDim(fr2,8,23);
+      for (int c = 0; c < fr.numCols(); c++)
+        assertVecEquals(fr.vec(c), fr2.vec(c), 1e-10);
+    } finally {
+      System.clearProperty(prop);
+      if( fr != null ) fr.delete();
+      if( fr2 != null ) fr2.delete();
+      Keyed.remove(Key.make("hex"));
+    }
+  }
+
+  @Test public void testEstimateGroups() {
+    Frame fr = null, grps = null;
+    String prop = water.rapids.ast.prims.mungers.AstGroup.MAX_HASH_GROUPS_KEY;
+    try {
+      fr = parse_test_file(Key.make("hex"), "smalldata/iris/iris_wheader.csv");
+      Assert.assertEquals(3, water.rapids.ast.prims.mungers.AstGroup.estimateGroups(fr, new int[]{4}), 0);
+      grps = Rapids.exec("(GB hex [0 1 2] nrow 0 \"all\")").getFrame();
+      // the product of the distinct counts of the columns is an upper bound
+      Assert.assertTrue(water.rapids.ast.prims.mungers.AstGroup.estimateGroups(fr, new int[]{0, 1, 2}) > 10 * grps.numRows());
+      System.setProperty(prop, "10");                       // bound too large, sketch the group keys
+      double est = water.rapids.ast.prims.mungers.AstGroup.estimateGroups(fr, new int[]{0, 1, 2});
+      Assert.assertEquals(grps.numRows(), est, 0.05 * grps.numRows());
+    } finally {
+      System.clearProperty(prop);
+      if( fr != null ) fr.delete();
+      if( grps != null ) grps.delete();
+    }
+  }
+
+  @Test public void testShuffledGroupBy() {
+    Frame fr = null, fr2 = null;
+    String tree = "(GB hex [1 4] nrow 0 \"all\" mean 2 \"rm\" sdev 3 \"all\" max 0 \"all\")";
+    String prop = water.rapids.ast.prims.mungers.AstGroup.SHUFFLE_KEY;
+    try {
+      fr = chkTree(tree,"smalldata/iris/iris_wheader.csv"); // groups collected on a single node
+      System.setProperty(prop, "true");                     // groups partitioned across the cloud
+      fr2 = Rapids.exec(tree).getFrame();
+      chkDim(fr2,6,fr.numRows());
+      Assert.assertArrayEquals(fr.names(), fr2.names());
+      Assert.assertArrayEquals(fr.vec(1).domain(), fr2.vec(1).domain());
+      for (int c = 0; c < fr.numCols(); c++)
+        assertVecEquals(fr.vec(c), fr2.vec(c), 1e-10);
+    } finally {
+      System.clearProperty(prop);
+      if( fr != null ) fr.delete();
+      if( fr2 != null ) fr2.delete();
+      Keyed.remove(Key.make("hex"));
+    }
+  }
+
   @Test public void testImpute() {
     Frame fr = null;
     Frame fr2 =null;
@@ -192,6 +252,44 @@ public class GroupByTest extends TestUtil {
     }
   }
 
+  // Streamed ddply (reducers and element-wise operators) must match the per-group Frames, which
+  // as.numeric forces
+  @Test public void testStreamedDdply() {
+    Frame streamed = null, framed = null;
+    String[][] funs = {
+        {"{x . (sum (* (cols x 2) (cols x 3)))}", "{x . (sum (* (as.numeric (cols x 2)) (cols x 3)))}"},
+        {"{x . (mean (- (cols x [2 3]) 1) TRUE)}", "{x . (mean (- (as.numeric (cols x [2 3])) 1) TRUE)}"},
+        {"{x . (sd (cols x [0 3]) FALSE)}", "{x . (sd (as.numeric (cols x [0 3])) FALSE)}"},
+        {"{x . (/ (max (cols x 0)) (nrow x))}", "{x . (/ (max (as.numeric (cols x 0))) (nrow x))}"},
+        // column 5 is NA for every row of the setosa groups
+        {"{x . (sumNA (cols x 5))}", "{x . (sumNA (as.numeric (cols x 5)))}"},
+        {"{x . (sumNA (cols x [0 5]))}", "{x . (sumNA (as.numeric (cols x [0 5])))}"},
+        {"{x . (naCnt (cols x 5))}", "{x . (naCnt (as.numeric (cols x 5)))}"},
+    };
+    try {
+      parse_test_file(Key.make("hex"),"smalldata/iris/iris_wheader.csv");
+      Rapids.exec("(assign hexna (append hex (ifelse (< (cols hex 2) 2) NaN (cols hex 3)) \"pw\"))");
+      for (String[] fun : funs) {
+        streamed = Rapids.exec("(ddply hexna [1 4] " + fun[0] + ")").getFrame();
+        framed = Rapids.exec("(ddply hexna [1 4] " + fun[1] + ")").getFrame();
+        Assert.assertArrayEquals(framed.names(), streamed.names());
+        Assert.assertEquals(framed.numRows(), streamed.numRows());
+        for (int c = 0; c < framed.numCols(); c++)
+          for (long r = 0; r < framed.numRows(); r++)
+            Assert.assertEquals(fun[0] + " row " + r, framed.vec(c).at(r), streamed.vec(c).at(r), 1e-10);
+        Assert.assertArrayEquals(framed.vec(1).domain(), streamed.vec(1).domain());
+        streamed.delete();
+        framed.delete();
+        streamed = framed = null;
+      }
+    } finally {
+      if( streamed != null ) streamed.delete();
+      if( framed != null ) framed.delete();
+      Keyed.remove(Key.make("hex"));
+      Keyed.remove(Key.make("hexna"));
+    }
+  }
+
 
   // covtype.altered response column has this distribution:
   //      -1  20510
@@ -7,17 +7,22 @@ import water.*;
 import water.fvec.Frame;
 import water.fvec.NFSFileVec;
 import water.fvec.Vec;
+import water.parser.BufferedString;
 import water.parser.ParseDataset;
 import water.parser.ParseSetup;
+import water.parser.ParseTime;
+import water.rapids.ast.AstFunction;
 import water.rapids.ast.AstRoot;
 import water.rapids.ast.params.AstNumList;
 import water.rapids.ast.params.AstStr;
 import water.rapids.vals.ValFrame;
+import water.rapids.vals.ValFun;
 import water.util.ArrayUtils;
 import water.util.FileUtils;
 import water.util.Log;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -368,6 +373,203 @@ public class RapidsTest extends TestUtil {
     }
   }
 
+  @Test public void testMergeBroadcast() {
+    Frame l=null,r=null,f=null;
+    try {
+      l = ArrayUtils.frame("name" ,vec(ar("Cliff","Arno","Tomas","Spencer"),ari(0,1,2,3)));
+      l.    add("age"  ,vec(ar(">dirt" ,"middle","middle","young'n"),ari(0,1,2,3)));
+      l = new Frame(l);
+      DKV.put(l);
+      // Arno is in the right frame twice, Spencer is not there at all
+      r = ArrayUtils.frame("name" ,vec(ar("Arno","Tomas","Michael","Cliff"),ari(0,1,2,3,0)));
+      r.    add("skill",vec(ar("science","linearmath","sparkling","hacker","physics"),ari(0,1,2,3,4)));
+      r = new Frame(r);
+      DKV.put(r);
+      String x = String.format("(merge %s %s 1 0 [] [] \"broadcast\")",l._key,r._key);
+      f = Rapids.exec(x).getFrame();
+      Assert.assertEquals(5, f.numRows());
+      String[] names  = new String[]{"Cliff" ,"Arno"   ,"Arno"   ,"Tomas"     ,"Spencer"};
+      String[] skills = new String[]{"hacker","science","physics","linearmath",null     };
+      for (int i = 0; i < names.length; i++) { // left frame order, duplicated right keys expanded
+        Assert.assertEquals(names[i], f.vec(0).factor(f.vec(0).at8(i)));
+        if (skills[i] == null) Assert.assertTrue(f.vec(2).isNA(i));
+        else Assert.assertEquals(skills[i], f.vec(2).factor(f.vec(2).at8(i)));
+      }
+    } finally {
+      if( f != null ) f.delete();
+      if( r != null ) r.delete();
+      if( l != null ) l.delete();
+    }
+  }
+
+  @Test public void testMergeBroadcastStrings() {
+    Frame l=null,r=null,f=null,g=null;
+    try {
+      l = new Frame(Key.<Frame>make(), new String[]{"name", "age"},
+              new Vec[]{svec("Tomas", "Arno", null, "Cliff", "Spencer"), svec("middle", "middle", "none", ">dirt", "young'n")});
+      DKV.put(l);
+      // Arno is in the right frame twice, NA joins to NA, Spencer is not there at all
+      r = new Frame(Key.<Frame>make(), new String[]{"name", "skill"},
+              new Vec[]{svec("Arno", "Tomas", null, "Michael", "Cliff", "Arno"), svec("science", "linearmath", "nothing", "sparkling", "hacker", "physics")});
+      DKV.put(r);
+      f = Rapids.exec(String.format("(merge %s %s 1 0 [] [] \"broadcast\")", l._key, r._key)).getFrame();
+      Assert.assertEquals(6, f.numRows());
+      Assert.assertTrue(f.vec(0).isString() && f.vec(2).isString());
+      String[] names  = new String[]{"Tomas"     ,"Arno"   ,"Arno"   ,null     ,"Cliff" ,"Spencer"};
+      String[] skills = new String[]{"linearmath","science","physics","nothing","hacker",null     };
+      BufferedString tmp = new BufferedString();
+      for (int i = 0; i < names.length; i++) { // left frame order, duplicated right keys expanded
+        if (names[i] == null) Assert.assertTrue(f.vec(0).isNA(i));
+        else Assert.assertEquals(names[i], f.vec(0).atStr(tmp, i).toString());
+        if (skills[i] == null) Assert.assertTrue(f.vec(2).isNA(i));
+        else Assert.assertEquals(skills[i], f.vec(2).atStr(tmp, i).toString());
+      }
+      // auto does not broadcast a right frame larger than the left one: the inner join is sorted by the join column
+      g = Rapids.exec(String.format("(merge %s %s 0 0 [] [] \"auto\")", l._key, r._key)).getFrame();
+      String prev = null;
+      for (long i = 0; i < g.numRows(); i++) {
+        if (g.vec(0).isNA(i)) continue;
+        String name = g.vec(0).atStr(tmp, i).toString();
+        Assert.assertTrue(prev == null || prev.compareTo(name) <= 0);
+        prev = name;
+      }
+    } finally {
+      if( g != null ) g.delete();
+      if( f != null ) f.delete();
+      if( r != null ) r.delete();
+      if( l != null ) l.delete();
+    }
+  }
+
+  @Test public void testMergeAutoBroadcast() {
+    Frame l=null,r=null,f=null,g=null;
+    String maxRows = System.getProperty(H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.merge.broadcast_max_rows");
+    try {
+      l = new Frame(Key.<Frame>make(), new String[]{"name", "age"},
+              new Vec[]{svec("Tomas", "Cliff", "Arno", "Spencer"), svec("middle", ">dirt", "middle", "young'n")});
+      DKV.put(l);
+      r = new Frame(Key.<Frame>make(), new String[]{"name", "skill"},
+              new Vec[]{svec("Cliff", "Tomas"), svec("hacker", "linearmath")});
+      DKV.put(r);
+      String x = String.format("(merge %s %s 1 0 [] [] \"auto\")", l._key, r._key);
+      // small right frame: auto broadcasts it, the rows keep the order of the left frame
+      f = Rapids.exec(x).getFrame();
+      BufferedString tmp = new BufferedString();
+      String[] names = new String[]{"Tomas", "Cliff", "Arno", "Spencer"};
+      Assert.assertEquals(names.length, f.numRows());
+      for (int i = 0; i < names.length; i++)
+        Assert.assertEquals(names[i], f.vec(0).atStr(tmp, i).toString());
+      // broadcast disabled: auto falls back to the radix merge, sorted by the join column
+      System.setProperty(H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.merge.broadcast_max_rows", "0");
+      g = Rapids.exec(x).getFrame();
+      String[] sorted = new String[]{"Arno", "Cliff", "Spencer", "Tomas"};
+      Assert.assertEquals(sorted.length, g.numRows());
+      for (int i = 0; i < sorted.length; i++)
+        Assert.assertEquals(sorted[i], g.vec(0).atStr(tmp, i).toString());
+    } finally {
+      if (maxRows == null) System.clearProperty(H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.merge.broadcast_max_rows");
+      else System.setProperty(H2O.OptArgs.SYSTEM_PROP_PREFIX + "rapids.merge.broadcast_max_rows", maxRows);
+      if( g != null ) g.delete();
+      if( f != null ) f.delete();
+      if( r != null ) r.delete();
+      if( l != null ) l.delete();
+    }
+  }
+
+  @Test public void testFusedExpressions() {
+    Frame fr = parse_test_file(Key.make("a.hex"),"smalldata/iris/iris_wheader.csv");
+    fr.remove(4).remove();
+    DKV.put(fr);
+    String[] trees = new String[]{
+        "(+ (* a.hex 2) 1)",
+        "(ifelse (> (log a.hex) 1) (* a.hex a.hex) 0)",
+        "(- (cols a.hex [0]) (/ a.hex (cols a.hex [1])))",
+        "(sqrt (abs (- a.hex (max a.hex))))",   // max is not element-wise: a leaf of the fused expression
+        "(ifelse (> 2 1) (* a.hex 2) (- a.hex 1))" // scalar test: not fused
+    };
+    try {
+      for (String tree : trees) {
+        Frame expected = null, actual = null;
+        try {
+          expected = Rapids.exec(tree).getFrame();
+          System.setProperty(Fusion.ENABLED_KEY, "true");
+          actual = Rapids.exec(tree).getFrame();
+          Assert.assertArrayEquals(tree, expected.names(), actual.names());
+          Assert.assertTrue(tree, isBitIdentical(expected, actual));
+        } finally {
+          System.clearProperty(Fusion.ENABLED_KEY);
+          if (expected != null) expected.delete();
+          if (actual != null) actual.delete();
+        }
+      }
+    } finally {
+      fr.delete();
+    }
+  }
+
+  @Test public void testResultCache() {
+    Frame fr = parse_test_file(Key.make("a.hex"),"smalldata/iris/iris_wheader.csv");
+    String tree = "(GB a.hex [4] mean 0 \"all\" nrow 0 \"all\")";
+    Frame first = null, second = null, third = null;
+    String zone = ParseTime.getTimezone().getID();
+    String other = zone.equals("Asia/Tokyo") ? "Europe/Paris" : "Asia/Tokyo";
+    try {
+      System.setProperty(RapidsCache.ENABLED_KEY, "true");
+      RapidsCache.clear();
+      first = Rapids.exec(tree).getFrame();
+      Assert.assertEquals(1, RapidsCache.size());
+      second = Rapids.exec(tree).getFrame();   // A fresh copy of the cached result
+      Assert.assertEquals(1, RapidsCache.size());
+      Assert.assertNotEquals(first.vec(1)._key, second.vec(1)._key);
+      Assert.assertTrue(isBitIdentical(first, second));
+      // Side effects and randomness are not cached
+      Rapids.exec("(h2o.runif a.hex -1)").getFrame().delete();
+      Assert.assertEquals(1, RapidsCache.size());
+      // Modified data is a new version of the frame
+      fr.vec(0).set(0, 100);
+      third = Rapids.exec(tree).getFrame();
+      Assert.assertEquals(2, RapidsCache.size());
+      Assert.assertNotEquals(first.vec(1).at(0), third.vec(1).at(0), 1e-10);
+      // The time zone is not cached, and is part of the key of the time primitives
+      Rapids.exec("(hour (cols a.hex [0]))").getFrame().delete();
+      Assert.assertEquals(3, RapidsCache.size());
+      Rapids.exec("(getTimeZone)");
+      Rapids.exec("(setTimeZone \"" + other + "\")");
+      Assert.assertEquals(other, ParseTime.getTimezone().getID());
+      Assert.assertEquals(3, RapidsCache.size());
+      Rapids.exec("(hour (cols a.hex [0]))").getFrame().delete();
+      Assert.assertEquals(4, RapidsCache.size());
+    } finally {
+      ParseTime.setTimezone(zone);
+      System.clearProperty(RapidsCache.ENABLED_KEY);
+      RapidsCache.clear();
+      if (first != null) first.delete();
+      if (second != null) second.delete();
+      if (third != null) third.delete();
+      fr.delete();
+    }
+  }
+
+  @Test public void testResultCacheKeysScopedFunctions() {
+    Frame fr = parse_test_file(Key.make("a.hex"),"smalldata/iris/iris_wheader.csv");
+    try {
+      // The same expression, with the name f bound to different functions
+      AstFunction scope = (AstFunction) Rapids.parse("{f . f}");
+      AstRoot ast = Rapids.parse("(apply (cols a.hex [0 1]) 2 f)");
+      String[] funs = new String[]{"{x . (sum x)}", "{x . (max x)}"};
+      String[] keys = new String[funs.length];
+      for (int i = 0; i < funs.length; i++) {
+        Env env = new Env(new Session());
+        env._scope = new AstFunction(scope, new Val[]{null, new ValFun((AstFunction) Rapids.parse(funs[i]))}, null);
+        keys[i] = RapidsCache.key(env, ast, new ArrayList<Key>());
+        Assert.assertNotNull(keys[i]);
+      }
+      Assert.assertNotEquals(keys[0], keys[1]);
+    } finally {
+      fr.delete();
+    }
+  }
+
   // test merge with strings with various settings.  Note, both frames contain String columns.
   // Some columns contains NA entries in the String columns.  There are any cases I considered here.
   // However, due to test timing, I choose one test to run randomly each time.
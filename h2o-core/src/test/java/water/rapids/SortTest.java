@@ -11,7 +11,7 @@ import water.util.ArrayUtils;
 import java.io.IOException;
 import java.util.Random;
 
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class SortTest extends TestUtil {
   @BeforeClass public static void setup() { stall_till_cloudsize(1); }
@@ -69,6 +69,130 @@ public class SortTest extends TestUtil {
     }
   }
 
+  @Test public void testSortOrderIsRecorded() {
+    Scope.enter();
+    try {
+      Frame fr = Scope.track(buildFrame(100,10));
+      Frame res = Scope.track(Merge.sort(fr,new int[]{0,1}));
+      assertNull(fr.sortOrder());
+      SortOrder so = res.sortOrder();
+      assertNotNull(so);
+      assertTrue(so.sortedBy(res, new int[]{0}, null));
+      assertTrue(so.sortedBy(res, new int[]{0,1}, new int[]{1,1}));
+      assertFalse(so.sortedBy(res, new int[]{1}, null));
+      assertTrue(so.groups(res, new int[]{1,0}));
+      assertFalse(so.groups(res, new int[]{1,2}));
+      int last = res.anyVec().nChunks()-1;
+      assertEquals(res.vec(0).at(0), so.firstKeys(0)[0], 0);
+      assertEquals(res.vec(1).at(res.numRows()-1), so.lastKeys(last)[1], 0);
+
+      // The order is a local hint, it does not travel with the Frame
+      Frame shipped = new AutoBuffer().put(res).flipForReading().get();
+      assertNull(shipped.sortOrder());
+
+      // The order follows the key Vecs, not the column positions
+      Frame moved = new Frame(res);
+      moved.swap(0, 2);
+      assertTrue(moved.sortOrder().sortedBy(moved, new int[]{2,1}, null));
+      moved.remove(1);
+      assertNull(moved.sortOrder());
+
+      Frame sorted = new Frame(Key.<Frame>make("sorted_hex"), res.names(), res.vecs());
+      sorted.setSortOrder(so);
+      DKV.put(sorted);
+
+      // Sorting again shares the sorted Vecs
+      Frame again = Rapids.exec("(sort sorted_hex [0 1] [1 1])").getFrame();
+      assertArrayEquals(res.keys(), again.keys());
+      DKV.remove(sorted._key);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test public void testMergeOfSortedFrames() {
+    Scope.enter();
+    try {
+      Frame l = Scope.track(new TestFrameBuilder()
+              .withColNames("k", "a")
+              .withVecTypes(Vec.T_NUM, Vec.T_NUM)
+              .withDataForCol(0, ard(3, 1, 2, 2, 5))
+              .withDataForCol(1, ard(30, 10, 20, 21, 50))
+              .withChunkLayout(2, 3)
+              .build());
+      Frame r = Scope.track(new TestFrameBuilder()
+              .withColNames("k", "b")
+              .withVecTypes(Vec.T_NUM, Vec.T_NUM)
+              .withDataForCol(0, ard(2, 1, 1, 4))
+              .withDataForCol(1, ard(200, 100, 101, 400))
+              .withChunkLayout(1, 3)
+              .build());
+      Frame ls = Scope.track(Merge.sort(l, new int[]{0}));
+      Frame rs = Scope.track(Merge.sort(r, new int[]{0}));
+      Frame left = new Frame(Key.<Frame>make("left_sorted"), ls.names(), ls.vecs());
+      left.setSortOrder(ls.sortOrder());
+      Frame rite = new Frame(Key.<Frame>make("rite_sorted"), rs.names(), rs.vecs());
+      rite.setSortOrder(rs.sortOrder());
+      DKV.put(left);
+      DKV.put(rite);
+      Frame res = Scope.track(Rapids.exec("(merge left_sorted rite_sorted 1 0 [] [] \"auto\")").getFrame());
+      DKV.remove(left._key);
+      DKV.remove(rite._key);
+      double[][] expected = new double[][]{
+              {1, 10, 100}, {1, 10, 101}, {2, 20, 200}, {2, 21, 200}, {3, 30, Double.NaN}, {5, 50, Double.NaN}};
+      assertEquals(expected.length, res.numRows());
+      for (int i = 0; i < expected.length; i++)
+        for (int c = 0; c < 3; c++)
+          assertEquals(expected[i][c], res.vec(c).at(i), 0);
+      assertNotNull(res.sortOrder()); // The result is sorted by the join column
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test public void testSortOrderLapsesOnWrite() {
+    Scope.enter();
+    try {
+      Frame fr = Scope.track(new TestFrameBuilder()
+              .withName("unsorted_hex")
+              .withColNames("k", "a")
+              .withVecTypes(Vec.T_NUM, Vec.T_NUM)
+              .withDataForCol(0, ard(3, 1, 2, 2, 5, 1))
+              .withDataForCol(1, ard(30, 10, 20, 21, 50, 11))
+              .withChunkLayout(2, 4)
+              .build());
+      Rapids.exec("(assign sorted_hex (sort unsorted_hex [0] [1]))");
+      Frame sorted = DKV.getGet("sorted_hex");
+      Scope.track(sorted);
+      assertNotNull(sorted.sortOrder());
+
+      // Written in place through Rapids: the order is gone, sort and group-by work on the new content
+      Rapids.exec("(:= sorted_hex 9 [0] [0])");
+      sorted = DKV.getGet("sorted_hex");
+      Scope.track(sorted);
+      assertNull(sorted.sortOrder());
+      Frame res = Scope.track(Rapids.exec("(sort sorted_hex [0] [1])").getFrame());
+      double[] expected = ard(1, 2, 2, 3, 5, 9);
+      for (int i = 0; i < expected.length; i++)
+        assertEquals(expected[i], res.vec(0).at(i), 0);
+      Frame grps = Scope.track(Rapids.exec("(GB sorted_hex [0] nrow 0 \"all\")").getFrame());
+      assertEquals(5, grps.numRows());
+      assertEquals(9, grps.vec(0).at(4), 0);
+      assertEquals(1, grps.vec(1).at(4), 0);
+
+      // Written in place through another header of the same Vecs
+      Frame again = Scope.track(Merge.sort(fr, new int[]{0}));
+      Frame header = new Frame(again);
+      assertNotNull(header.sortOrder());
+      header.vec(0).set(0, 100);
+      assertNull(again.sortOrder());
+      assertNull(header.sortOrder());
+    } finally {
+      DKV.remove(Key.make("sorted_hex"));
+      Scope.exit();
+    }
+  }
+
   // test our sorting with string columns implementation.  The string columns may have NAs.
   // Our sort results are compared with sorting done by R.
   @Test public void testSortWithStringsColumns() {
@@ -0,0 +1,89 @@
+package water.rapids.ast.prims.operators;
+
+import org.junit.Test;
+import water.TestUtil;
+import water.fvec.Chunk;
+import water.fvec.NewChunk;
+
+import static org.junit.Assert.*;
+
+public class BinOpKernelsTest extends TestUtil {
+
+  private static final AstBinOp[] OPS = new AstBinOp[]{
+      new AstPlus(), new AstSub(), new AstMul(), new AstDiv(), new AstLt(), new AstLe(),
+      new AstGt(), new AstGe(), new AstEq(), new AstNe(), new AstPow(), new AstMod()
+  };
+
+  private static Chunk chunk(double... ds) {
+    return new NewChunk(ds).compress();
+  }
+
+  // Chunks of every numeric encoding, with NAs
+  private static Chunk[] chunks(int len) {
+    double[] cons = new double[len], ints = new double[len], scaled = new double[len],
+        dbls = new double[len], sparse = new double[len], nas = new double[len];
+    for (int i = 0; i < len; i++) {
+      cons[i] = 3;
+      ints[i] = i % 7 == 0 ? Double.NaN : i % 100;
+      scaled[i] = 0.5 + i % 1000;
+      dbls[i] = Math.PI * i;
+      sparse[i] = i % 50 == 1 ? i : i == 77 ? Double.NaN : 0;
+      nas[i] = Double.NaN;
+    }
+    return new Chunk[]{chunk(cons), chunk(ints), chunk(scaled), chunk(dbls), chunk(sparse), chunk(nas), chunk(new double[len])};
+  }
+
+  private static void assertSame(String msg, double[] expected, Chunk actual) {
+    assertEquals(msg, expected.length, actual._len);
+    for (int i = 0; i < expected.length; i++)
+      assertEquals(msg + " row " + i, expected[i], actual.atd(i), 0);
+  }
+
+  @Test
+  public void testKernelsMatchOp() {
+    int len = 1000;
+    Chunk[] chunks = chunks(len);
+    double[] scalars = new double[]{0, 2, -1.5, Double.NaN};
+    for (AstBinOp op : OPS) {
+      for (Chunk l : chunks) {
+        for (double d : scalars) {
+          double[] lexp = new double[len], rexp = new double[len];
+          for (int i = 0; i < len; i++) {
+            lexp[i] = op.op(l.atd(i), d);
+            rexp[i] = op.op(d, l.atd(i));
+          }
+          NewChunk nc = new NewChunk(null, 0);
+          BinOpKernels.apply(op, l, d, nc);
+          assertSame(op.str() + " " + l.getClass().getSimpleName() + " " + d, lexp, nc.compress());
+          nc = new NewChunk(null, 0);
+          BinOpKernels.apply(op, d, l, nc);
+          assertSame(d + " " + op.str() + " " + l.getClass().getSimpleName(), rexp, nc.compress());
+        }
+        for (Chunk r : chunks) {
+          double[] exp = new double[len];
+          for (int i = 0; i < len; i++)
+            exp[i] = op.op(l.atd(i), r.atd(i));
+          NewChunk nc = new NewChunk(null, 0);
+          BinOpKernels.apply(op, l, r, nc);
+          assertSame(l.getClass().getSimpleName() + " " + op.str() + " " + r.getClass().getSimpleName(), exp, nc.compress());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSparseStaysSparse() {
+    double[] ds = new double[1000];
+    ds[10] = 4;
+    ds[500] = -2;
+    Chunk c = chunk(ds);
+    assertTrue(c.isSparseZero());
+    NewChunk nc = new NewChunk(null, 0);
+    BinOpKernels.apply(new AstMul(), c, 2.5, nc);
+    Chunk res = nc.compress();
+    assertTrue(res.isSparseZero());
+    assertEquals(10, res.atd(10), 0);
+    assertEquals(-5, res.atd(500), 0);
+    assertEquals(0, res.atd(11), 0);
+  }
+}
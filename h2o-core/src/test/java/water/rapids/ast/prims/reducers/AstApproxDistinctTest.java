@@ -0,0 +1,68 @@
+package water.rapids.ast.prims.reducers;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.Scope;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+import water.rapids.Rapids;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the approx_distinct and approx_quantile reducers
+ */
+public class AstApproxDistinctTest extends TestUtil {
+
+  @BeforeClass
+  static public void setup() { stall_till_cloudsize(1); }
+
+  private static Frame frame() {
+    double[] nums = new double[1000];
+    String[] strs = new String[1000];
+    for (int i = 0; i < nums.length; i++) {
+      nums[i] = i % 10 == 9 ? Double.NaN : i % 250;
+      strs[i] = "s" + (i % 40);
+    }
+    return new TestFrameBuilder()
+        .withName("sketch.hex")
+        .withColNames("num", "str", "con")
+        .withVecTypes(Vec.T_NUM, Vec.T_STR, Vec.T_NUM)
+        .withDataForCol(0, nums)
+        .withDataForCol(1, strs)
+        .withDataForCol(2, new double[1000])
+        .withChunkLayout(300, 300, 400)
+        .build();
+  }
+
+  @Test public void testApproxDistinct() {
+    Scope.enter();
+    try {
+      frame();
+      double[] counts = Rapids.exec("(approx_distinct sketch.hex)").getNums();
+      assertEquals(225, counts[0], 5);  // 250 values, but for those ending with 9
+      assertEquals(40, counts[1], 1);
+      assertEquals(1, counts[2], 0);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test public void testApproxQuantile() {
+    Scope.enter();
+    try {
+      frame();
+      Frame qs = Scope.track(Rapids.exec("(approx_quantile sketch.hex [0 0.5 1])").getFrame());
+      assertArrayEquals(new String[]{"Probs", "numQuantiles", "strQuantiles", "conQuantiles"}, qs.names());
+      assertEquals(0, qs.vec(1).at(0), 0);
+      assertEquals(124, qs.vec(1).at(1), 3);
+      assertEquals(248, qs.vec(1).at(2), 0);
+      assertTrue(qs.vec(2).isNA(1));
+      assertEquals(0, qs.vec(3).at(1), 0);
+    } finally {
+      Scope.exit();
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package water.rapids.ast.prims.timeseries;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.Scope;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+import water.rapids.Rapids;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WindowFunctionsTest extends TestUtil {
+
+  @BeforeClass
+  public static void setup() { stall_till_cloudsize(1); }
+
+  // Groups of various lengths (some spanning several chunks), increasing times, values with NAs
+  private static double[][] data(int n, long seed) {
+    Random rnd = new Random(seed);
+    double[] group = new double[n], time = new double[n], value = new double[n];
+    int g = 0;
+    double t = 0;
+    for (int i = 0; i < n; i++) {
+      if (i > 0 && rnd.nextInt(6) == 0) { g++; t = 0; }
+      t += rnd.nextInt(3);
+      group[i] = g;
+      time[i] = t;
+      value[i] = rnd.nextInt(10) == 0 ? Double.NaN : rnd.nextInt(100) - 50;
+    }
+    return new double[][]{group, time, value};
+  }
+
+  private static Frame frame(double[][] data) {
+    int n = data[0].length;
+    // Small chunks, so that windows span several chunks
+    long[] layout = new long[(n + 2) / 3];
+    for (int i = 0; i < layout.length; i++) layout[i] = Math.min(3, n - 3 * i);
+    return new TestFrameBuilder()
+        .withName("windows.hex")
+        .withColNames("g", "t", "x")
+        .withVecTypes(Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+        .withDataForCol(0, data[0])
+        .withDataForCol(1, data[1])
+        .withDataForCol(2, data[2])
+        .withChunkLayout(layout)
+        .build();
+  }
+
+  private static void assertColumn(double[] expected, Vec actual) {
+    assertEquals(expected.length, actual.length());
+    for (int i = 0; i < expected.length; i++)
+      assertEquals("row " + i, expected[i], actual.at(i), 1e-9);
+  }
+
+  private static Frame exec(String rapids) {
+    return Scope.track(Rapids.exec(rapids).getFrame());
+  }
+
+  @Test
+  public void testRolling() {
+    Scope.enter();
+    try {
+      double[][] d = data(100, 42);
+      frame(d);
+      double[] g = d[0], t = d[1], x = d[2];
+      // Mean over the 4 last rows of the group, and max over the last 3 time units
+      double[] mean = new double[x.length], max = new double[x.length];
+      for (int i = 0; i < x.length; i++) {
+        double sum = 0, cnt = 0, mx = Double.NaN;
+        for (int j = i; j >= 0 && j > i - 4 && g[j] == g[i]; j--)
+          if (!Double.isNaN(x[j])) { sum += x[j]; cnt++; }
+        mean[i] = cnt == 0 ? Double.NaN : sum / cnt;
+        for (int j = i; j >= 0 && g[j] == g[i] && t[j] > t[i] - 3; j--)
+          if (!Double.isNaN(x[j])) mx = Double.isNaN(mx) ? x[j] : Math.max(mx, x[j]);
+        max[i] = mx;
+      }
+      Frame rows = exec("(rolling (cols windows.hex [0 2]) \"mean\" 4 [0] -1)");
+      assertArrayEquals(new String[]{"x"}, rows.names());
+      assertColumn(mean, rows.vec(0));
+      Frame times = exec("(rolling windows.hex \"max\" 3 [0] 1)");
+      assertArrayEquals(new String[]{"x"}, times.names());
+      assertColumn(max, times.vec(0));
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testLagLead() {
+    Scope.enter();
+    try {
+      double[][] d = data(60, 7);
+      frame(d);
+      double[] g = d[0], x = d[2];
+      double[] lag = new double[x.length], lead = new double[x.length];
+      for (int i = 0; i < x.length; i++) {
+        lag[i] = i >= 4 && g[i - 4] == g[i] ? x[i - 4] : Double.NaN;
+        lead[i] = i + 2 < x.length && g[i + 2] == g[i] ? x[i + 2] : Double.NaN;
+      }
+      Frame lagged = exec("(lag (cols windows.hex [0 2]) 4 [0])");
+      assertColumn(lag, lagged.vec("x"));
+      Frame led = exec("(lead (cols windows.hex [0 2]) 2 [0])");
+      assertColumn(lead, led.vec("x"));
+      // Without groups, the whole frame is one group
+      Frame all = exec("(lag (cols windows.hex [2]) 1 [])");
+      assertTrue(all.vec(0).isNA(0));
+      assertEquals(x[10], all.vec(0).at(11), 0);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testCumulative() {
+    Scope.enter();
+    try {
+      double[][] d = data(80, 3);
+      frame(d);
+      double[] g = d[0], x = d[2];
+      double[] sum = new double[x.length];
+      double acc = 0;
+      for (int i = 0; i < x.length; i++) {
+        if (i > 0 && g[i] != g[i - 1]) acc = 0;
+        if (!Double.isNaN(x[i])) acc += x[i];
+        sum[i] = Double.isNaN(x[i]) ? Double.NaN : acc;
+      }
+      Frame res = exec("(cumulative (cols windows.hex [0 2]) \"sum\" [0])");
+      assertColumn(sum, res.vec("x"));
+    } finally {
+      Scope.exit();
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package water.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class HyperLogLogTest {
+
+  @Test public void testSmallCountsAreNearlyExact() {
+    HyperLogLog hll = new HyperLogLog();
+    for (int rep = 0; rep < 3; rep++)
+      for (int i = 0; i < 100; i++) hll.add((double) i);
+    hll.add(Double.NaN);
+    hll.add(-0.0);              // Same as 0.0
+    Assert.assertEquals(100, hll.estimate(), 2);
+    Assert.assertEquals(0, new HyperLogLog().estimate(), 0);
+  }
+
+  @Test public void testMergedEstimate() {
+    Random rnd = new Random(0xDECAF);
+    HyperLogLog a = new HyperLogLog(), b = new HyperLogLog(), all = new HyperLogLog();
+    int n = 200000;
+    for (int i = 0; i < n; i++) {
+      double d = rnd.nextInt(n / 2) + 0.5; // About 86% of the n/2 values drawn
+      (i % 2 == 0 ? a : b).add(d);
+      all.add(d);
+    }
+    a.merge(b);
+    Assert.assertEquals(all.estimate(), a.estimate(), 0);
+    double exact = n / 2 * (1 - Math.exp(-2));
+    Assert.assertEquals(1, a.estimate() / exact, 0.05);
+  }
+
+  @Test(expected = IllegalArgumentException.class) public void testMergePrecisions() {
+    new HyperLogLog(10).merge(new HyperLogLog(12));
+  }
+}
@@ -0,0 +1,44 @@
+package water.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class QuantileSketchTest {
+
+  private static double exact(double[] sorted, double p) {
+    return sorted[Math.max((int) Math.ceil(p * sorted.length) - 1, 0)];
+  }
+
+  @Test public void testQuantiles() {
+    Random rnd = new Random(42);
+    int n = 100000;
+    double[] data = new double[n];
+    QuantileSketch qs = new QuantileSketch();
+    for (int i = 0; i < n; i++) qs.add(data[i] = rnd.nextGaussian());
+    qs.add(Double.NaN);
+    Arrays.sort(data);
+    Assert.assertEquals(n, qs.count());
+    Assert.assertEquals(data[0], qs.quantile(0), 0);
+    Assert.assertEquals(data[n - 1], qs.quantile(1), 0);
+    for (double p : new double[]{0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99}) {
+      // Within 1% in rank
+      double q = qs.quantile(p);
+      Assert.assertTrue("p=" + p, exact(data, p - 0.01) <= q && q <= exact(data, p + 0.01));
+    }
+  }
+
+  @Test public void testMergeAndCounts() {
+    QuantileSketch a = new QuantileSketch(), b = new QuantileSketch();
+    for (int i = 0; i < 5000; i++) a.add(i);
+    b.add(-1, 5000);            // Many copies at once
+    a.merge(b);
+    Assert.assertEquals(10000, a.count());
+    Assert.assertEquals(-1, a.quantile(0.25), 0);
+    Assert.assertEquals(-1, a.quantile(0.4), 0);
+    Assert.assertEquals(2500, a.quantile(0.75), 100);
+    Assert.assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+  }
+}
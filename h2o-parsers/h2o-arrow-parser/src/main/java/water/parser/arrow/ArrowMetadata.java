@@ -0,0 +1,296 @@
+package water.parser.arrow;
+
+import water.exceptions.H2OUnsupportedDataFileException;
+import water.fvec.ByteVec;
+import water.fvec.Chunk;
+import water.fvec.Vec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reader of Arrow IPC file metadata (footer, schema, record batch and dictionary batch headers).
+ *
+ * File layout: magic "ARROW1", padding, stream of encapsulated messages, footer (FlatBuffers),
+ * int32 footer length, magic "ARROW1". Field indices used below follow the table definitions
+ * in Arrow's File.fbs, Schema.fbs and Message.fbs (a union field occupies two slots: type and value).
+ */
+final class ArrowMetadata {
+
+  static final byte[] MAGIC = "ARROW1".getBytes(Charset.forName("US-ASCII"));
+
+  // Type union (Schema.fbs)
+  static final int TYPE_INT = 2;
+  static final int TYPE_FLOATING_POINT = 3;
+  static final int TYPE_BINARY = 4;
+  static final int TYPE_UTF8 = 5;
+  static final int TYPE_BOOL = 6;
+  static final int TYPE_DATE = 8;
+  static final int TYPE_TIMESTAMP = 10;
+
+  // FloatingPoint precision
+  static final int PRECISION_HALF = 0;
+  static final int PRECISION_SINGLE = 1;
+  static final int PRECISION_DOUBLE = 2;
+
+  // DateUnit
+  static final int DATE_DAY = 0;
+  static final int DATE_MILLISECOND = 1;
+
+  // TimeUnit
+  static final int TIME_SECOND = 0;
+  static final int TIME_MILLISECOND = 1;
+  static final int TIME_MICROSECOND = 2;
+  static final int TIME_NANOSECOND = 3;
+
+  // MessageHeader union (Message.fbs)
+  private static final int HEADER_DICTIONARY_BATCH = 2;
+  private static final int HEADER_RECORD_BATCH = 3;
+
+  private static final int FOOTER_LENGTH_SIZE = 4;
+  private static final int BLOCK_SIZE = 24;        // struct Block { long offset; int metaDataLength; long bodyLength; }
+  private static final int FIELD_NODE_SIZE = 16;   // struct FieldNode { long length; long null_count; }
+  private static final int BUFFER_SIZE = 16;       // struct Buffer { long offset; long length; }
+
+  static class Field {
+    String name;
+    int typeId;
+    int bitWidth;
+    boolean signed;
+    int precision;
+    int unit;
+    long dictionaryId = -1;
+    int indexBitWidth;
+    boolean indexSigned;
+    boolean nested;
+
+    boolean isDictionaryEncoded() { return dictionaryId >= 0; }
+
+    /** Number of buffers the field occupies in a record batch */
+    int bufferCount() {
+      if (isDictionaryEncoded()) return 2; // validity + indices
+      return typeId == TYPE_UTF8 || typeId == TYPE_BINARY ? 3 : 2;
+    }
+  }
+
+  static class Block {
+    final long offset;
+    final int metaDataLength;
+    final long bodyLength;
+
+    Block(long offset, int metaDataLength, long bodyLength) {
+      this.offset = offset;
+      this.metaDataLength = metaDataLength;
+      this.bodyLength = bodyLength;
+    }
+
+    long bodyOffset() { return offset + metaDataLength; }
+  }
+
+  static class Footer {
+    Field[] fields;
+    Block[] dictionaries;
+    Block[] recordBatches;
+  }
+
+  static class RecordBatch {
+    long length;
+    long[] nullCounts;
+    long[] bufferOffsets;
+    long[] bufferLengths;
+    long dictionaryId = -1;
+    byte[] body;
+  }
+
+  static boolean hasMagic(byte[] bits) {
+    return bits != null && bits.length >= MAGIC.length && Arrays.equals(MAGIC, Arrays.copyOf(bits, MAGIC.length));
+  }
+
+  static byte[] readFooterAsBytes(ByteVec vec) {
+    long len = vec.length();
+    if (len < 2 * MAGIC.length + FOOTER_LENGTH_SIZE)
+      throw new IllegalStateException("Vec doesn't represent an Arrow file (too short)");
+    byte[] tail = readBytes(vec, len - MAGIC.length - FOOTER_LENGTH_SIZE, MAGIC.length + FOOTER_LENGTH_SIZE);
+    if (! Arrays.equals(MAGIC, Arrays.copyOfRange(tail, FOOTER_LENGTH_SIZE, tail.length)))
+      throw new IllegalStateException("Vec is not an Arrow file, magic number not found at the end of the file");
+    int footerLength = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN).getInt(0);
+    long footerOffset = len - MAGIC.length - FOOTER_LENGTH_SIZE - footerLength;
+    if (footerLength <= 0 || footerOffset < MAGIC.length)
+      throw new IllegalStateException("Corrupted Arrow file: invalid footer length " + footerLength);
+    return readBytes(vec, footerOffset, footerLength);
+  }
+
+  static Footer parseFooter(byte[] footerBytes) {
+    FbTable footer = FbTable.root(footerBytes, 0);
+    FbTable schema = footer.getTable(1);
+    if (schema == null)
+      throw new IllegalStateException("Corrupted Arrow file: footer doesn't contain a schema");
+    Footer f = new Footer();
+    f.fields = new Field[schema.vectorLength(1)];
+    for (int i = 0; i < f.fields.length; i++)
+      f.fields[i] = parseField(schema.getTableElement(1, i));
+    f.dictionaries = parseBlocks(footer, 2);
+    f.recordBatches = parseBlocks(footer, 3);
+    return f;
+  }
+
+  private static Block[] parseBlocks(FbTable footer, int field) {
+    Block[] blocks = new Block[footer.vectorLength(field)];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = new Block(
+              footer.getStructLong(field, i, BLOCK_SIZE, 0),
+              footer.getStructInt(field, i, BLOCK_SIZE, 8),
+              footer.getStructLong(field, i, BLOCK_SIZE, 16));
+    }
+    return blocks;
+  }
+
+  private static Field parseField(FbTable t) {
+    Field f = new Field();
+    f.name = t.getString(0);
+    f.typeId = t.getByte(2, (byte) 0) & 0xFF;
+    FbTable type = t.getTable(3);
+    if (type != null) {
+      switch (f.typeId) {
+        case TYPE_INT:
+          f.bitWidth = type.getInt(0, 0);
+          f.signed = type.getBool(1, false);
+          break;
+        case TYPE_FLOATING_POINT:
+          f.precision = type.getShort(0, (short) PRECISION_HALF);
+          break;
+        case TYPE_DATE:
+          f.unit = type.getShort(0, (short) DATE_MILLISECOND);
+          break;
+        case TYPE_TIMESTAMP:
+          f.unit = type.getShort(0, (short) TIME_SECOND);
+          break;
+      }
+    }
+    FbTable dictionary = t.getTable(4);
+    if (dictionary != null) {
+      f.dictionaryId = dictionary.getLong(0, 0);
+      FbTable indexType = dictionary.getTable(1);
+      f.indexBitWidth = indexType != null ? indexType.getInt(0, 32) : 32;
+      f.indexSigned = indexType == null || indexType.getBool(1, false); // signed int32 when not given
+    }
+    f.nested = t.vectorLength(5) > 0;
+    return f;
+  }
+
+  /**
+   * Reads a record batch (or a dictionary batch) including its body.
+   */
+  static RecordBatch readRecordBatch(ByteVec vec, Block block) {
+    if (block.bodyLength > Integer.MAX_VALUE)
+      throw new H2OUnsupportedDataFileException("Unsupported Arrow file (technical limitation).",
+              "Record batches larger than " + Integer.MAX_VALUE + " bytes are not supported.");
+    byte[] metadata = readBytes(vec, block.offset, block.metaDataLength);
+    // since Arrow 0.15 messages are prefixed with a continuation marker (0xFFFFFFFF) followed by the length
+    int start = ByteBuffer.wrap(metadata).order(ByteOrder.LITTLE_ENDIAN).getInt(0) == -1 ? 8 : 4;
+    FbTable message = FbTable.root(metadata, start);
+    int headerType = message.getByte(1, (byte) 0) & 0xFF;
+    FbTable header = message.getTable(2);
+    RecordBatch batch = new RecordBatch();
+    if (headerType == HEADER_DICTIONARY_BATCH) {
+      if (header.getBool(2, false))
+        throw new H2OUnsupportedDataFileException("Unsupported Arrow file.", "Delta dictionary batches are not supported.");
+      batch.dictionaryId = header.getLong(0, 0);
+      header = header.getTable(1);
+    } else if (headerType != HEADER_RECORD_BATCH)
+      throw new IllegalStateException("Corrupted Arrow file: unexpected message type " + headerType + " at offset " + block.offset);
+    if (header.has(3))
+      throw new H2OUnsupportedDataFileException("Unsupported Arrow file.", "Compressed record batches are not supported.");
+    batch.length = header.getLong(0, 0);
+    int nNodes = header.vectorLength(1);
+    batch.nullCounts = new long[nNodes];
+    for (int i = 0; i < nNodes; i++)
+      batch.nullCounts[i] = header.getStructLong(1, i, FIELD_NODE_SIZE, 8);
+    int nBuffers = header.vectorLength(2);
+    batch.bufferOffsets = new long[nBuffers];
+    batch.bufferLengths = new long[nBuffers];
+    for (int i = 0; i < nBuffers; i++) {
+      batch.bufferOffsets[i] = header.getStructLong(2, i, BUFFER_SIZE, 0);
+      batch.bufferLengths[i] = header.getStructLong(2, i, BUFFER_SIZE, 8);
+    }
+    batch.body = readBytes(vec, block.bodyOffset(), (int) block.bodyLength);
+    return batch;
+  }
+
+  /**
+   * Reads all dictionaries of the file, only dictionaries of UTF-8 strings are decoded. Columns using
+   * dictionaries of other types are rejected by {@link #toH2OType(Field)}.
+   * @return map of dictionary id to dictionary values
+   */
+  static Map<Long, String[]> readDictionaries(ByteVec vec, Footer footer) {
+    Map<Long, Integer> valueTypes = new HashMap<>();
+    for (Field f : footer.fields)
+      if (f.isDictionaryEncoded())
+        valueTypes.put(f.dictionaryId, f.typeId);
+    Map<Long, String[]> dictionaries = new HashMap<>();
+    for (Block block : footer.dictionaries) {
+      RecordBatch batch = readRecordBatch(vec, block);
+      Integer valueType = valueTypes.get(batch.dictionaryId);
+      if (valueType == null || valueType != TYPE_UTF8)
+        continue;
+      if (batch.bufferOffsets.length < 3)
+        throw new IllegalStateException("Corrupted Arrow file: dictionary " + batch.dictionaryId + " doesn't have the buffers of a UTF-8 vector");
+      ByteBuffer bb = ByteBuffer.wrap(batch.body).order(ByteOrder.LITTLE_ENDIAN);
+      int n = (int) batch.length;
+      int offsets = (int) batch.bufferOffsets[1];
+      int data = (int) batch.bufferOffsets[2];
+      String[] values = new String[n];
+      for (int i = 0; i < n; i++) {
+        int s = bb.getInt(offsets + 4 * i);
+        int e = bb.getInt(offsets + 4 * (i + 1));
+        values[i] = new String(batch.body, data + s, e - s, Charset.forName("UTF-8"));
+      }
+      dictionaries.put(batch.dictionaryId, values);
+    }
+    return dictionaries;
+  }
+
+  /**
+   * Reads a range of bytes from a ByteVec, the range can span multiple chunks.
+   */
+  static byte[] readBytes(ByteVec vec, long offset, int len) {
+    byte[] result = new byte[len];
+    int pos = 0;
+    while (pos < len) {
+      long off = offset + pos;
+      Chunk c = vec.chunkForChunkIdx(vec.elem2ChunkIdx(off));
+      byte[] mem = c.getBytes();
+      int chunkOff = (int) (off - c.start());
+      int cnt = Math.min(len - pos, mem.length - chunkOff);
+      System.arraycopy(mem, chunkOff, result, pos, cnt);
+      pos += cnt;
+    }
+    return result;
+  }
+
+  static byte toH2OType(Field f) {
+    if (f.nested)
+      return Vec.T_BAD;
+    if (f.isDictionaryEncoded())
+      return f.typeId == TYPE_UTF8 ? Vec.T_CAT : Vec.T_BAD;
+    switch (f.typeId) {
+      case TYPE_INT:
+      case TYPE_BOOL:
+        return Vec.T_NUM;
+      case TYPE_FLOATING_POINT:
+        return f.precision == PRECISION_HALF ? Vec.T_BAD : Vec.T_NUM;
+      case TYPE_DATE:
+      case TYPE_TIMESTAMP:
+        return Vec.T_TIME;
+      case TYPE_UTF8:
+        return Vec.T_STR;
+      default:
+        return Vec.T_BAD;
+    }
+  }
+
+}
@@ -0,0 +1,423 @@
+package water.parser.arrow;
+
+import water.Job;
+import water.Key;
+import water.exceptions.H2OUnsupportedDataFileException;
+import water.fvec.ByteVec;
+import water.fvec.Chunk;
+import water.fvec.Vec;
+import water.parser.*;
+import water.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static water.parser.arrow.ArrowMetadata.*;
+
+/**
+ * Arrow IPC (Feather v2) parser for H2O distributed parsing subsystem.
+ *
+ * Record batches are assigned to H2O chunks based on the position of the batch in the file. Each batch
+ * is written column by column directly from the Arrow buffers: numeric values are read from the data
+ * buffers without any text conversion, dictionary-encoded columns are written as categorical ids
+ * (the dictionary is the domain of the column) and validity bitmaps are processed 8 rows at a time.
+ */
+public class ArrowParser extends Parser {
+
+  private static final int MAX_PREVIEW_RECORDS = 10;
+
+  private final byte[] _footer;
+
+  ArrowParser(ParseSetup setup, Key<Job> jobKey) {
+    super(setup, jobKey);
+    _footer = ((ArrowParseSetup) setup).footer;
+  }
+
+  @Override
+  protected final ParseWriter parseChunk(int cidx, ParseReader din, ParseWriter dout) {
+    if (! (din instanceof FVecParseReader)) {
+      throw new IllegalStateException("We only accept parser readers backed by a Vec (no streaming support!).");
+    }
+    Chunk chunk = ((FVecParseReader) din).getChunk();
+    ByteVec vec = (ByteVec) chunk.vec();
+    Footer footer = parseFooter(_footer);
+    ColumnWriter[] writers = null;
+    int nBatches = 0;
+    for (Block block : footer.recordBatches) {
+      // a record batch belongs to the chunk where its message starts
+      if (block.offset < chunk.start() || block.offset >= chunk.start() + chunk._len)
+        continue;
+      if (writers == null)
+        writers = makeWriters(footer, readDictionaries(vec, footer), _setup);
+      writeBatch(readRecordBatch(vec, block), footer.fields, writers, dout);
+      nBatches++;
+    }
+    Log.trace("Arrow: chunk #", cidx, " contained ", nBatches, " record batches.");
+    return dout;
+  }
+
+  private static void writeBatch(RecordBatch batch, Field[] fields, ColumnWriter[] writers, ParseWriter dout) {
+    ByteBuffer bb = ByteBuffer.wrap(batch.body).order(ByteOrder.LITTLE_ENDIAN);
+    final int nrows = (int) batch.length;
+    int buf = 0;
+    for (int col = 0; col < fields.length; col++) {
+      ColumnWriter w = writers[col];
+      if (w == null) { // skipped or unsupported column
+        for (int row = 0; row < nrows; row++)
+          dout.addInvalidCol(col);
+      } else {
+        w.setBuffers(batch, buf);
+        int validity = (int) batch.bufferOffsets[buf];
+        boolean hasNulls = batch.nullCounts[col] > 0 && batch.bufferLengths[buf] > 0;
+        for (int row = 0; row < nrows; ) {
+          final int end = Math.min(row + 8, nrows);
+          final int bits = hasNulls ? bb.get(validity + (row >> 3)) & 0xFF : 0xFF;
+          if (bits == 0xFF) {
+            for (; row < end; row++) w.write(bb, row, dout);
+          } else if (bits == 0) {
+            for (; row < end; row++) dout.addInvalidCol(col);
+          } else {
+            for (int bit = 0; row < end; row++, bit++) {
+              if ((bits & (1 << bit)) != 0) w.write(bb, row, dout);
+              else dout.addInvalidCol(col);
+            }
+          }
+        }
+      }
+      buf += fields[col].bufferCount();
+    }
+  }
+
+  private static ColumnWriter[] makeWriters(Footer footer, Map<Long, String[]> dictionaries, ParseSetup setup) {
+    Field[] fields = footer.fields;
+    ColumnWriter[] writers = new ColumnWriter[fields.length];
+    for (int col = 0; col < fields.length; col++) {
+      if (! setup.isColumnIncluded(col))
+        continue;
+      Field f = fields[col];
+      if (f.isDictionaryEncoded()) {
+        String[] domain = setup.getDomains() != null ? setup.getDomains()[col] : null;
+        writers[col] = new DictionaryWriter(col, f.indexBitWidth, f.indexSigned, domainMapping(dictionaries.get(f.dictionaryId), domain));
+        continue;
+      }
+      switch (f.typeId) {
+        case TYPE_INT: writers[col] = new IntWriter(col, f.bitWidth, f.signed); break;
+        case TYPE_BOOL: writers[col] = new BoolWriter(col); break;
+        case TYPE_FLOATING_POINT:
+          if (f.precision == PRECISION_SINGLE) writers[col] = new FloatWriter(col);
+          else if (f.precision == PRECISION_DOUBLE) writers[col] = new DoubleWriter(col);
+          break;
+        case TYPE_DATE:
+          if (f.unit == DATE_DAY) writers[col] = new TimeWriter(col, true, 24L * 3600 * 1000, 1); // Date32
+          else writers[col] = new TimeWriter(col, false, 1, 1); // Date64
+          break;
+        case TYPE_TIMESTAMP:
+          switch (f.unit) {
+            case TIME_SECOND: writers[col] = new TimeWriter(col, false, 1000, 1); break;
+            case TIME_MILLISECOND: writers[col] = new TimeWriter(col, false, 1, 1); break;
+            case TIME_MICROSECOND: writers[col] = new TimeWriter(col, false, 1, 1000); break;
+            case TIME_NANOSECOND: writers[col] = new TimeWriter(col, false, 1, 1000 * 1000); break;
+          }
+          break;
+        case TYPE_UTF8: writers[col] = new Utf8Writer(col); break;
+      }
+    }
+    return writers;
+  }
+
+  /**
+   * Maps ids of a dictionary of a file to the categorical domain of the column. Files produced by the same
+   * writer share the same dictionaries and the mapping is an identity, we still allow dictionaries to differ.
+   */
+  private static int[] domainMapping(String[] dictionary, String[] domain) {
+    if (dictionary == null)
+      return new int[0];
+    int[] mapping = new int[dictionary.length];
+    if (domain == null) {
+      for (int i = 0; i < mapping.length; i++) mapping[i] = i;
+      return mapping;
+    }
+    Map<String, Integer> domainIdx = new HashMap<>();
+    for (int i = 0; i < domain.length; i++)
+      domainIdx.put(domain[i], i);
+    for (int i = 0; i < dictionary.length; i++) {
+      Integer idx = domainIdx.get(dictionary[i]);
+      mapping[i] = idx != null ? idx : -1;
+    }
+    return mapping;
+  }
+
+  private static abstract class ColumnWriter {
+    final int _col;
+    int _data;
+
+    ColumnWriter(int col) { _col = col; }
+
+    void setBuffers(RecordBatch batch, int firstBuffer) {
+      _data = (int) batch.bufferOffsets[firstBuffer + 1];
+    }
+
+    abstract void write(ByteBuffer bb, int row, ParseWriter dout);
+  }
+
+  private static class IntWriter extends ColumnWriter {
+    private final int _bitWidth;
+    private final boolean _signed;
+
+    IntWriter(int col, int bitWidth, boolean signed) {
+      super(col);
+      _bitWidth = bitWidth;
+      _signed = signed;
+    }
+
+    @Override
+    void write(ByteBuffer bb, int row, ParseWriter dout) {
+      switch (_bitWidth) {
+        case 8:
+          byte b = bb.get(_data + row);
+          dout.addNumCol(_col, _signed ? b : b & 0xFF, 0);
+          break;
+        case 16:
+          short s = bb.getShort(_data + 2 * row);
+          dout.addNumCol(_col, _signed ? s : s & 0xFFFF, 0);
+          break;
+        case 32:
+          int i = bb.getInt(_data + 4 * row);
+          dout.addNumCol(_col, _signed ? i : i & 0xFFFFFFFFL, 0);
+          break;
+        default:
+          long l = bb.getLong(_data + 8 * row);
+          if (_signed || l >= 0) dout.addNumCol(_col, l, 0);
+          else dout.addNumCol(_col, (double) (l >>> 1) * 2 + (l & 1)); // unsigned 64-bit value above Long.MAX_VALUE
+      }
+    }
+  }
+
+  private static class BoolWriter extends ColumnWriter {
+    BoolWriter(int col) { super(col); }
+
+    @Override
+    void write(ByteBuffer bb, int row, ParseWriter dout) {
+      dout.addNumCol(_col, (bb.get(_data + (row >> 3)) >> (row & 7)) & 1, 0);
+    }
+  }
+
+  private static class FloatWriter extends ColumnWriter {
+    FloatWriter(int col) { super(col); }
+
+    @Override
+    void write(ByteBuffer bb, int row, ParseWriter dout) {
+      dout.addNumCol(_col, bb.getFloat(_data + 4 * row));
+    }
+  }
+
+  private static class DoubleWriter extends ColumnWriter {
+    DoubleWriter(int col) { super(col); }
+
+    @Override
+    void write(ByteBuffer bb, int row, ParseWriter dout) {
+      dout.addNumCol(_col, bb.getDouble(_data + 8 * row));
+    }
+  }
+
+  /** Dates & timestamps, converted to milliseconds since epoch */
+  private static class TimeWriter extends ColumnWriter {
+    private final boolean _int32;
+    private final long _mul;
+    private final long _div;
+
+    TimeWriter(int col, boolean int32, long mul, long div) {
+      super(col);
+      _int32 = int32;
+      _mul = mul;
+      _div = div;
+    }
+
+    @Override
+    void write(ByteBuffer bb, int row, ParseWriter dout) {
+      long v = _int32 ? bb.getInt(_data + 4 * row) : bb.getLong(_data + 8 * row);
+      dout.addNumCol(_col, v * _mul / _div, 0);
+    }
+  }
+
+  private static class Utf8Writer extends ColumnWriter {
+    private final BufferedString _bs = new BufferedString();
+    private int _offsets;
+
+    Utf8Writer(int col) { super(col); }
+
+    @Override
+    void setBuffers(RecordBatch batch, int firstBuffer) {
+      _offsets = (int) batch.bufferOffsets[firstBuffer + 1];
+      _data = (int) batch.bufferOffsets[firstBuffer + 2];
+    }
+
+    @Override
+    void write(ByteBuffer bb, int row, ParseWriter dout) {
+      int start = bb.getInt(_offsets + 4 * row);
+      int end = bb.getInt(_offsets + 4 * (row + 1));
+      _bs.set(bb.array(), _data + start, end - start);
+      dout.addStrCol(_col, _bs);
+    }
+  }
+
+  private static class DictionaryWriter extends ColumnWriter {
+    private final int _indexBitWidth;
+    private final boolean _signed;
+    private final int[] _mapping;
+
+    DictionaryWriter(int col, int indexBitWidth, boolean signed, int[] mapping) {
+      super(col);
+      _indexBitWidth = indexBitWidth;
+      _signed = signed;
+      _mapping = mapping;
+    }
+
+    @Override
+    void write(ByteBuffer bb, int row, ParseWriter dout) {
+      int id;
+      switch (_indexBitWidth) {
+        case 8: id = _signed ? bb.get(_data + row) : bb.get(_data + row) & 0xFF; break;
+        case 16: id = _signed ? bb.getShort(_data + 2 * row) : bb.getShort(_data + 2 * row) & 0xFFFF; break;
+        case 64: {
+          long l = bb.getLong(_data + 8 * row);
+          id = l >= 0 && l < _mapping.length ? (int) l : -1; // unsigned above 2^63 is out of range too
+          break;
+        }
+        default: {
+          int i = bb.getInt(_data + 4 * row);
+          id = _signed || i >= 0 ? i : -1; // unsigned above 2^31 cannot be a level
+        }
+      }
+      int level = id >= 0 && id < _mapping.length ? _mapping[id] : -1;
+      if (level >= 0) dout.addNumCol(_col, level, 0);
+      else dout.addInvalidCol(_col);
+    }
+  }
+
+  static ArrowParseSetup guessFormatSetup(ByteVec vec, byte[] bits) {
+    if (! hasMagic(bits))
+      return null;
+    byte[] footerBytes = readFooterAsBytes(vec);
+    Footer footer = parseFooter(footerBytes);
+    String[] names = new String[footer.fields.length];
+    byte[] types = new byte[footer.fields.length];
+    for (int i = 0; i < names.length; i++) {
+      Field f = footer.fields[i];
+      names[i] = f.name;
+      types[i] = toH2OType(f);
+      if (types[i] == Vec.T_BAD && f.isDictionaryEncoded())
+        throw new H2OUnsupportedDataFileException("Unsupported Arrow column type.",
+                "Column '" + f.name + "' is dictionary-encoded with values of type id=" + f.typeId + ", only dictionaries of UTF-8 strings are supported by H2O.");
+      if (types[i] == Vec.T_BAD)
+        throw new H2OUnsupportedDataFileException("Unsupported Arrow column type.",
+                "Column '" + f.name + "' has a type (id=" + f.typeId + ") that is not supported by H2O.");
+    }
+    String[][] domains = readDomains(vec, footer);
+    return new ArrowParseSetup(names, types, domains, null, footerBytes);
+  }
+
+  static String[][] readDomains(ByteVec vec, Footer footer) {
+    Map<Long, String[]> dictionaries = readDictionaries(vec, footer);
+    String[][] domains = new String[footer.fields.length][];
+    for (int i = 0; i < domains.length; i++)
+      if (footer.fields[i].isDictionaryEncoded())
+        domains[i] = dictionaries.get(footer.fields[i].dictionaryId);
+    return domains;
+  }
+
+  static ArrowParseSetup guessDataSetup(ByteVec vec, ArrowParseSetup ps) {
+    Footer footer = parseFooter(ps.footer);
+    String[][] data = new String[1][];
+    data[0] = ps.getColumnNames();
+    if (footer.recordBatches.length > 0) {
+      PreviewWriter pw = new PreviewWriter(footer.fields.length, MAX_PREVIEW_RECORDS);
+      RecordBatch batch = readRecordBatch(vec, footer.recordBatches[0]);
+      batch.length = Math.min(batch.length, MAX_PREVIEW_RECORDS);
+      writeBatch(batch, footer.fields, makeWriters(footer, readDictionaries(vec, footer), ps), pw);
+      data = pw.toData(data[0], ps.getDomains());
+    }
+    return new ArrowParseSetup(ps.getColumnNames(), ps.getColumnTypes(), ps.getDomains(), data, ps.footer);
+  }
+
+  /**
+   * Collects the first few values of each column for the preview shown to the user.
+   */
+  private static class PreviewWriter extends PreviewParseWriter {
+    private String[][] _values;
+    private int[] _cnt;
+
+    public PreviewWriter() {
+      // externalizable class should have a public constructor
+      super();
+    }
+
+    PreviewWriter(int ncols, int nrows) {
+      _values = new String[nrows][ncols];
+      _cnt = new int[ncols];
+    }
+
+    private void add(int colIdx, String value) {
+      if (_cnt[colIdx] < _values.length) _values[_cnt[colIdx]++][colIdx] = value;
+    }
+
+    @Override public void addNumCol(int colIdx, long number, int exp) { add(colIdx, exp == 0 ? String.valueOf(number) : String.valueOf(number * Math.pow(10, exp))); }
+    @Override public void addNumCol(int colIdx, double d) { add(colIdx, String.valueOf(d)); }
+    @Override public void addStrCol(int colIdx, BufferedString str) { add(colIdx, str.toString()); }
+    @Override public void addInvalidCol(int colIdx) { add(colIdx, null); }
+
+    String[][] toData(String[] header, String[][] domains) {
+      int nrows = 0;
+      for (int cnt : _cnt) nrows = Math.max(nrows, cnt);
+      String[][] data = new String[nrows + 1][];
+      data[0] = header;
+      for (int i = 0; i < nrows; i++) {
+        data[i + 1] = _values[i];
+        for (int c = 0; c < data[i + 1].length; c++)
+          if (domains != null && domains[c] != null && data[i + 1][c] != null) // show levels instead of ids
+            data[i + 1][c] = domains[c][Integer.parseInt(data[i + 1][c])];
+      }
+      return data;
+    }
+  }
+
+  public static class ArrowParseSetup extends ParseSetup {
+    transient byte[] footer;
+
+    public ArrowParseSetup() { super(); }
+    public ArrowParseSetup(String[] columnNames, byte[] ctypes, String[][] domains, String[][] data, byte[] footer) {
+      super(ArrowParserProvider.ARROW_INFO, (byte) '|', true, ParseSetup.HAS_HEADER,
+              columnNames.length, columnNames, ctypes, domains, null /* NA strings */, data);
+      this.footer = footer;
+    }
+  }
+
+  static byte[] fileTypes(Footer footer) {
+    byte[] types = new byte[footer.fields.length];
+    for (int i = 0; i < types.length; i++)
+      types[i] = toH2OType(footer.fields[i]);
+    return types;
+  }
+
+  static String[][] mergeDomains(String[][] domainsA, String[][] domainsB) {
+    for (int i = 0; i < domainsA.length; i++) {
+      if (domainsA[i] == null || domainsB[i] == null || Arrays.equals(domainsA[i], domainsB[i]))
+        continue;
+      Map<String, Integer> seen = new HashMap<>();
+      for (String level : domainsA[i]) seen.put(level, seen.size());
+      String[] merged = Arrays.copyOf(domainsA[i], domainsA[i].length + domainsB[i].length);
+      int n = domainsA[i].length;
+      for (String level : domainsB[i])
+        if (! seen.containsKey(level)) {
+          seen.put(level, n);
+          merged[n++] = level;
+        }
+      domainsA[i] = Arrays.copyOf(merged, n);
+    }
+    return domainsA;
+  }
+
+}
@@ -0,0 +1,84 @@
+package water.parser.arrow;
+
+import water.DKV;
+import water.Iced;
+import water.Job;
+import water.Key;
+import water.exceptions.H2OIllegalArgumentException;
+import water.fvec.ByteVec;
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.parser.*;
+
+/**
+ * Arrow IPC file parser provider.
+ */
+public class ArrowParserProvider extends BinaryParserProvider {
+
+  /* Setup for this parser */
+  static ParserInfo ARROW_INFO = new ParserInfo("ARROW", DefaultParserProviders.MAX_CORE_PRIO + 40, true, false, false, true);
+
+  @Override
+  public ParserInfo info() {
+    return ARROW_INFO;
+  }
+
+  @Override
+  public Parser createParser(ParseSetup setup, Key<Job> jobKey) {
+    return new ArrowParser(setup, jobKey);
+  }
+
+  @Override
+  public ParseSetup guessInitSetup(ByteVec v, byte[] bits, ParseSetup userSetup) {
+    return ArrowParser.guessFormatSetup(v, bits);
+  }
+
+  @Override
+  public ParseSetup guessFinalSetup(ByteVec v, byte[] bits, ParseSetup ps) {
+    return ArrowParser.guessDataSetup(v, (ArrowParser.ArrowParseSetup) ps);
+  }
+
+  /**
+   * Types are given by the Arrow schema and cannot be overridden, categorical domains are
+   * built as a union of dictionaries of all input files.
+   */
+  @Override
+  public ParseSetup createParserSetup(Key[] inputs, ParseSetup requestedSetup) {
+    ParseSetup setup = requestedSetup instanceof ArrowParser.ArrowParseSetup ?
+            requestedSetup : requestedSetup.copyTo(new ArrowParser.ArrowParseSetup());
+    byte[] requestedTypes = setup.getColumnTypes();
+    byte[] types = null;
+    String[][] domains = null;
+    for (Key input : inputs) {
+      ByteVec vec = getByteVec(input);
+      ArrowMetadata.Footer footer = ArrowMetadata.parseFooter(ArrowMetadata.readFooterAsBytes(vec));
+      if (types == null) {
+        types = ArrowParser.fileTypes(footer);
+        domains = ArrowParser.readDomains(vec, footer);
+      } else
+        domains = ArrowParser.mergeDomains(domains, ArrowParser.readDomains(vec, footer));
+    }
+    assert types != null;
+    if (requestedTypes != null) {
+      for (int i = 0; i < Math.min(types.length, requestedTypes.length); i++)
+        if (types[i] != requestedTypes[i])
+          setup.addErrs(new ParseWriter.UnsupportedTypeOverride(inputs[0].toString(), Vec.TYPE_STR[types[i]], Vec.TYPE_STR[requestedTypes[i]], setup.getColumnNames()[i]));
+    }
+    setup.setColumnTypes(types);
+    setup.setDomains(domains);
+    return setup;
+  }
+
+  @Override
+  public ParseSetup setupLocal(Vec v, ParseSetup setup) {
+    ((ArrowParser.ArrowParseSetup) setup).footer = ArrowMetadata.readFooterAsBytes((ByteVec) v);
+    return setup;
+  }
+
+  private static ByteVec getByteVec(Key input) {
+    Iced ice = DKV.getGet(input);
+    if (ice == null) throw new H2OIllegalArgumentException("Missing data", "Did not find any data under key " + input);
+    return (ByteVec) (ice instanceof ByteVec ? ice : ((Frame) ice).vecs()[0]);
+  }
+
+}
@@ -0,0 +1,122 @@
+package water.parser.arrow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * Minimal read-only view of a FlatBuffers table.
+ *
+ * Implements just enough of the FlatBuffers binary format to read Arrow IPC metadata:
+ * scalar fields, strings, sub-tables, vectors of tables and vectors of structs.
+ */
+final class FbTable {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final ByteBuffer _bb;
+  private final int _pos;
+  private final int _vtable;
+  private final int _vtableSize;
+
+  private FbTable(ByteBuffer bb, int pos) {
+    _bb = bb;
+    _pos = pos;
+    _vtable = pos - bb.getInt(pos);
+    _vtableSize = bb.getShort(_vtable) & 0xFFFF;
+  }
+
+  /**
+   * @param bytes buffer holding a FlatBuffers message
+   * @param start position of the root offset in the buffer
+   * @return root table of the message
+   */
+  static FbTable root(byte[] bytes, int start) {
+    ByteBuffer bb = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    return new FbTable(bb, start + bb.getInt(start));
+  }
+
+  // position of a field relative to the table start, 0 if the field is not present
+  private int offset(int field) {
+    int vtableOffset = 4 + 2 * field;
+    return vtableOffset < _vtableSize ? _bb.getShort(_vtable + vtableOffset) & 0xFFFF : 0;
+  }
+
+  private int indirect(int p) {
+    return p + _bb.getInt(p);
+  }
+
+  boolean has(int field) {
+    return offset(field) != 0;
+  }
+
+  byte getByte(int field, byte dflt) {
+    int o = offset(field);
+    return o == 0 ? dflt : _bb.get(_pos + o);
+  }
+
+  boolean getBool(int field, boolean dflt) {
+    int o = offset(field);
+    return o == 0 ? dflt : _bb.get(_pos + o) != 0;
+  }
+
+  short getShort(int field, short dflt) {
+    int o = offset(field);
+    return o == 0 ? dflt : _bb.getShort(_pos + o);
+  }
+
+  int getInt(int field, int dflt) {
+    int o = offset(field);
+    return o == 0 ? dflt : _bb.getInt(_pos + o);
+  }
+
+  long getLong(int field, long dflt) {
+    int o = offset(field);
+    return o == 0 ? dflt : _bb.getLong(_pos + o);
+  }
+
+  String getString(int field) {
+    int o = offset(field);
+    if (o == 0) return null;
+    int p = indirect(_pos + o);
+    int len = _bb.getInt(p);
+    return new String(_bb.array(), p + 4, len, UTF8);
+  }
+
+  FbTable getTable(int field) {
+    int o = offset(field);
+    return o == 0 ? null : new FbTable(_bb, indirect(_pos + o));
+  }
+
+  int vectorLength(int field) {
+    int o = offset(field);
+    return o == 0 ? 0 : _bb.getInt(indirect(_pos + o));
+  }
+
+  FbTable getTableElement(int field, int idx) {
+    int p = vectorStart(field) + 4 * idx;
+    return new FbTable(_bb, indirect(p));
+  }
+
+  /**
+   * Reads a long member of a struct stored in a vector of structs.
+   * @param field vector field
+   * @param idx index of the struct in the vector
+   * @param structSize size of the struct in bytes
+   * @param memberOffset offset of the member within the struct
+   */
+  long getStructLong(int field, int idx, int structSize, int memberOffset) {
+    return _bb.getLong(vectorStart(field) + idx * structSize + memberOffset);
+  }
+
+  int getStructInt(int field, int idx, int structSize, int memberOffset) {
+    return _bb.getInt(vectorStart(field) + idx * structSize + memberOffset);
+  }
+
+  private int vectorStart(int field) {
+    int o = offset(field);
+    assert o != 0 : "Vector field " + field + " is not present";
+    return indirect(_pos + o) + 4;
+  }
+
+}
@@ -0,0 +1,179 @@
+package water.parser.arrow;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.UInt1Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes test files with Arrow Java (the reference implementation), unlike {@link ArrowFileGenerator}
+ * which mirrors the parser's own reading of the format. The expected value of every cell is given by
+ * the static methods below.
+ */
+class ArrowJavaFileGenerator {
+
+  static final String[] COLORS = new String[]{"red", "green", "blue"};
+  static final long T0 = 1546300800000L; // 2019-01-01 00:00:00 UTC
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  static boolean nameIsNA(int row) { return row % 7 == 3; }
+  static String name(int row) { return "row-" + row + (row % 2 == 0 ? "-\u00e9\u00e8" : ""); }
+  static boolean flagIsNA(int row) { return row % 5 == 4; }
+  static int flag(int row) { return row % 3 == 0 ? 1 : 0; }
+  static boolean tsIsNA(int row) { return row % 13 == 12; }
+  static long ts(int row) { return T0 + row * 3600L * 1000; }
+  static boolean colorIsNA(int row) { return row % 11 == 10; }
+  static String color(int row) { return COLORS[row % COLORS.length]; }
+
+  private interface RowWriter {
+    void write(int row, int idx);
+  }
+
+  /**
+   * Columns id (int64), name (utf8), flag (bool), ts (timestamp[ms]) and color (utf8 dictionary),
+   * each one with nulls, in record batches of the given sizes.
+   */
+  static File writeAllTypes(File f, int[] batchSizes) throws IOException {
+    BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+    VarCharVector colors = strings("colors", COLORS, allocator);
+    DictionaryEncoding encoding = new DictionaryEncoding(0, false, new ArrowType.Int(32, true));
+    final BigIntVector id = new BigIntVector("id", allocator);
+    final VarCharVector name = new VarCharVector("name", allocator);
+    final BitVector flag = new BitVector("flag", allocator);
+    final TimeStampMilliVector ts = new TimeStampMilliVector("ts", allocator);
+    final IntVector color = new IntVector("color", new FieldType(true, new ArrowType.Int(32, true), encoding), allocator);
+    write(f, Arrays.<FieldVector>asList(id, name, flag, ts, color),
+        new DictionaryProvider.MapDictionaryProvider(new Dictionary(colors, encoding)), batchSizes, new RowWriter() {
+          @Override public void write(int row, int idx) {
+            id.setSafe(idx, row);
+            if (nameIsNA(row)) name.setNull(idx); else name.setSafe(idx, name(row).getBytes(UTF8));
+            if (flagIsNA(row)) flag.setNull(idx); else flag.setSafe(idx, flag(row));
+            if (tsIsNA(row)) ts.setNull(idx); else ts.setSafe(idx, ts(row));
+            if (colorIsNA(row)) color.setNull(idx); else color.setSafe(idx, row % COLORS.length);
+          }
+        });
+    colors.close();
+    allocator.close();
+    return f;
+  }
+
+  /** Columns key (utf8 dictionary of the given values, row i has value i % n) and v (int32, row i has value i) */
+  static File writeCategorical(File f, String[] dictionary, int nrows) throws IOException {
+    BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+    VarCharVector values = strings("keys", dictionary, allocator);
+    DictionaryEncoding encoding = new DictionaryEncoding(0, false, new ArrowType.Int(32, true));
+    final IntVector key = new IntVector("key", new FieldType(true, new ArrowType.Int(32, true), encoding), allocator);
+    final IntVector v = new IntVector("v", allocator);
+    final int n = dictionary.length;
+    write(f, Arrays.<FieldVector>asList(key, v),
+        new DictionaryProvider.MapDictionaryProvider(new Dictionary(values, encoding)), new int[]{nrows}, new RowWriter() {
+          @Override public void write(int row, int idx) {
+            key.setSafe(idx, row % n);
+            v.setSafe(idx, row);
+          }
+        });
+    values.close();
+    allocator.close();
+    return f;
+  }
+
+  /** The same, the indices of the keys are unsigned int8 */
+  static File writeUnsignedCategorical(File f, String[] dictionary, int nrows) throws IOException {
+    BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+    VarCharVector values = strings("keys", dictionary, allocator);
+    DictionaryEncoding encoding = new DictionaryEncoding(0, false, new ArrowType.Int(8, false));
+    final UInt1Vector key = new UInt1Vector("key", new FieldType(true, new ArrowType.Int(8, false), encoding), allocator);
+    final IntVector v = new IntVector("v", allocator);
+    final int n = dictionary.length;
+    write(f, Arrays.<FieldVector>asList(key, v),
+        new DictionaryProvider.MapDictionaryProvider(new Dictionary(values, encoding)), new int[]{nrows}, new RowWriter() {
+          @Override public void write(int row, int idx) {
+            key.setSafe(idx, row % n);
+            v.setSafe(idx, row);
+          }
+        });
+    values.close();
+    allocator.close();
+    return f;
+  }
+
+  /** Column c encoded by a dictionary of int64 values */
+  static File writeInt64Dictionary(File f, int nrows) throws IOException {
+    BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+    BigIntVector values = new BigIntVector("values", allocator);
+    values.allocateNew();
+    for (int i = 0; i < 3; i++) values.setSafe(i, 10L * (i + 1));
+    values.setValueCount(3);
+    DictionaryEncoding encoding = new DictionaryEncoding(0, false, new ArrowType.Int(32, true));
+    final IntVector c = new IntVector("c", new FieldType(true, new ArrowType.Int(32, true), encoding), allocator);
+    write(f, Arrays.<FieldVector>asList(c),
+        new DictionaryProvider.MapDictionaryProvider(new Dictionary(values, encoding)), new int[]{nrows}, new RowWriter() {
+          @Override public void write(int row, int idx) {
+            c.setSafe(idx, row % 3);
+          }
+        });
+    values.close();
+    allocator.close();
+    return f;
+  }
+
+  private static VarCharVector strings(String name, String[] values, BufferAllocator allocator) {
+    VarCharVector v = new VarCharVector(name, allocator);
+    v.allocateNew();
+    for (int i = 0; i < values.length; i++)
+      v.setSafe(i, values[i].getBytes(UTF8));
+    v.setValueCount(values.length);
+    return v;
+  }
+
+  private static void write(File f, List<FieldVector> vectors, DictionaryProvider provider, int[] batchSizes,
+                            RowWriter rowWriter) throws IOException {
+    List<Field> fields = new ArrayList<>();
+    for (FieldVector v : vectors)
+      fields.add(v.getField());
+    VectorSchemaRoot root = new VectorSchemaRoot(fields, vectors, 0);
+    FileOutputStream out = new FileOutputStream(f);
+    try {
+      ArrowFileWriter writer = new ArrowFileWriter(root, provider, out.getChannel());
+      writer.start();
+      int row = 0;
+      for (int n : batchSizes) {
+        for (FieldVector v : vectors)
+          v.allocateNew();
+        for (int i = 0; i < n; i++)
+          rowWriter.write(row + i, i);
+        root.setRowCount(n);
+        writer.writeBatch();
+        row += n;
+      }
+      writer.end();
+      writer.close();
+    } finally {
+      out.close();
+      root.close();
+    }
+  }
+
+}
@@ -0,0 +1,378 @@
+package water.parser.arrow;
+
+import com.google.common.io.Files;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.Key;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.NFSFileVec;
+import water.fvec.Vec;
+import water.parser.BufferedString;
+import water.parser.ParseDataset;
+import water.parser.ParseSetup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for Arrow parser.
+ */
+public class ParseTestArrow extends TestUtil {
+
+  private static double EPSILON = 1e-9;
+
+  @BeforeClass
+  static public void setup() { TestUtil.stall_till_cloudsize(5); }
+
+  @Test public void testParsePrimitiveTypes() {
+    FrameAssertion[] assertions = new FrameAssertion[]{
+        new GenFrameAssertion("primitiveTypes.arrow", TestUtil.ari(4, 100)) {
+
+          @Override protected File prepareFile() throws IOException { return ArrowFileGenerator.generatePrimitiveTypes(file, nrows(), 3); }
+
+          @Override
+          public void check(Frame f) {
+            assertArrayEquals("Column names need to match!", ar("CLong", "CInt", "CDouble", "CCat"), f.names());
+            assertArrayEquals("Column types need to match!", ar(Vec.T_NUM, Vec.T_NUM, Vec.T_NUM, Vec.T_CAT), f.types());
+            assertArrayEquals("Category names need to match!", ArrowFileGenerator.CATEGORIES, f.vec("CCat").domain());
+
+            int nrows = nrows();
+            for (int row = 0; row < nrows; row++) {
+              assertEquals("Value in column CLong", row, f.vec(0).at8(row));
+              assertEquals("Value in column CInt", -row, f.vec(1).at8(row));
+              if (row % 10 == 0) assertTrue("NA should be in row " + row + " and col CDouble", f.vec(2).isNA(row));
+              else assertEquals("Value in column CDouble", row * 0.5, f.vec(2).at(row), EPSILON);
+              assertEquals("Value in column CCat", row % ArrowFileGenerator.CATEGORIES.length, (int) f.vec(3).at(row));
+            }
+          }
+        }
+    };
+
+    for (int i = 0; i < assertions.length; ++i) {
+      assertFrameAssertion(assertions[i]);
+    }
+  }
+
+  private static void assumeArrowJava() { // Arrow Java needs Java 8
+    String version = System.getProperty("java.version", "NA");
+    Assume.assumeTrue("Arrow Java needs Java 8", !version.startsWith("1.6") && !version.startsWith("1.7"));
+  }
+
+  @Test public void testParseArrowJavaFile() throws IOException {
+    assumeArrowJava();
+    final int[] batchSizes = new int[]{40, 35, 1, 24};
+    final int nrows = 100;
+    File f = ArrowJavaFileGenerator.writeAllTypes(new File(Files.createTempDir(), "allTypes.arrow"), batchSizes);
+    Frame fr = null;
+    try {
+      fr = parse_test_file(f.getCanonicalPath());
+      assertArrayEquals(ar("id", "name", "flag", "ts", "color"), fr.names());
+      assertArrayEquals(ar(Vec.T_NUM, Vec.T_STR, Vec.T_NUM, Vec.T_TIME, Vec.T_CAT), fr.types());
+      assertArrayEquals(ArrowJavaFileGenerator.COLORS, fr.vec("color").domain());
+      assertEquals(nrows, fr.numRows());
+      BufferedString bs = new BufferedString();
+      for (int row = 0; row < nrows; row++) {
+        assertEquals(row, fr.vec("id").at8(row));
+        if (ArrowJavaFileGenerator.nameIsNA(row)) assertTrue("NA name in row " + row, fr.vec("name").isNA(row));
+        else assertEquals(ArrowJavaFileGenerator.name(row), fr.vec("name").atStr(bs, row).toString());
+        if (ArrowJavaFileGenerator.flagIsNA(row)) assertTrue("NA flag in row " + row, fr.vec("flag").isNA(row));
+        else assertEquals(ArrowJavaFileGenerator.flag(row), fr.vec("flag").at8(row));
+        if (ArrowJavaFileGenerator.tsIsNA(row)) assertTrue("NA timestamp in row " + row, fr.vec("ts").isNA(row));
+        else assertEquals(ArrowJavaFileGenerator.ts(row), fr.vec("ts").at8(row));
+        if (ArrowJavaFileGenerator.colorIsNA(row)) assertTrue("NA color in row " + row, fr.vec("color").isNA(row));
+        else assertEquals(ArrowJavaFileGenerator.color(row), fr.vec("color").domain()[(int) fr.vec("color").at8(row)]);
+      }
+    } finally {
+      if (fr != null) fr.delete();
+    }
+  }
+
+  @Test public void testParseMultipleArrowJavaFiles() throws IOException {
+    assumeArrowJava();
+    File dir = Files.createTempDir();
+    String[] dictA = new String[]{"a", "b"};
+    String[] dictB = new String[]{"c", "b"};
+    File a = ArrowJavaFileGenerator.writeCategorical(new File(dir, "a.arrow"), dictA, 30);
+    File b = ArrowJavaFileGenerator.writeCategorical(new File(dir, "b.arrow"), dictB, 20);
+    NFSFileVec nfsA = makeNfsFileVec(a.getCanonicalPath());
+    NFSFileVec nfsB = makeNfsFileVec(b.getCanonicalPath());
+    Frame fr = null;
+    try {
+      fr = ParseDataset.parse(Key.make(), nfsA._key, nfsB._key);
+      assertEquals(50, fr.numRows());
+      String[] domain = fr.vec("key").domain();
+      assertEquals(3, domain.length);
+      for (int row = 0; row < 50; row++) {
+        boolean inA = row < 30;
+        int i = inA ? row : row - 30;
+        String expected = inA ? dictA[i % 2] : dictB[i % 2];
+        assertEquals("Value of row " + row, expected, domain[(int) fr.vec("key").at8(row)]);
+        assertEquals(i, fr.vec("v").at8(row));
+      }
+    } finally {
+      if (fr != null) fr.delete();
+    }
+  }
+
+  @Test public void testUnsignedDictionaryIndices() throws IOException {
+    assumeArrowJava();
+    String[] dict = new String[200]; // indices from 128 on are negative as signed bytes
+    for (int i = 0; i < dict.length; i++) dict[i] = "k" + i;
+    File f = ArrowJavaFileGenerator.writeUnsignedCategorical(new File(Files.createTempDir(), "uint8dict.arrow"), dict, 500);
+    NFSFileVec nfs = makeNfsFileVec(f.getCanonicalPath());
+    Frame fr = null;
+    try {
+      fr = ParseDataset.parse(Key.make(), nfs._key);
+      assertEquals(500, fr.numRows());
+      Vec key = fr.vec("key");
+      assertEquals(0, key.naCnt());
+      String[] domain = key.domain();
+      for (int row = 0; row < 500; row++) {
+        assertEquals("Value of row " + row, dict[row % dict.length], domain[(int) key.at8(row)]);
+        assertEquals(row, fr.vec("v").at8(row));
+      }
+    } finally {
+      if (fr != null) fr.delete();
+    }
+  }
+
+  @Test public void testNonStringDictionaryRejected() throws IOException {
+    assumeArrowJava();
+    File f = ArrowJavaFileGenerator.writeInt64Dictionary(new File(Files.createTempDir(), "int64dict.arrow"), 10);
+    NFSFileVec nfs = makeNfsFileVec(f.getCanonicalPath());
+    try {
+      ParseSetup.guessSetup(new Key[]{nfs._key}, false, ParseSetup.GUESS_HEADER);
+      fail("Dictionary of int64 values should be rejected");
+    } catch (Exception e) {
+      boolean found = false;
+      for (Throwable t = e; t != null && ! found; t = t.getCause())
+        found = String.valueOf(t).contains("Unsupported Arrow column type");
+      assertTrue("Unexpected exception " + e, found);
+    } finally {
+      nfs.remove();
+    }
+  }
+
+}
+
+/* A test file generator.
+  Writes a minimal Arrow IPC file (no schema message, the schema is only stored in the footer).
+*/
+class ArrowFileGenerator {
+
+  static final String[] CATEGORIES = new String[]{"a", "b", "c"};
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  public static File generatePrimitiveTypes(String filename, int nrows, int nbatches) throws IOException {
+    File parentDir = Files.createTempDir();
+    File f = new File(parentDir, filename);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(ArrowMetadata.MAGIC);
+    out.write(new byte[2]);
+
+    // dictionary of column CCat
+    List<long[]> dictBlocks = new ArrayList<>();
+    Body dictBody = new Body();
+    dictBody.add(new byte[0]);
+    ByteBuffer offsets = le(4 * (CATEGORIES.length + 1));
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    for (String c : CATEGORIES) {
+      offsets.putInt(data.size());
+      data.write(c.getBytes(UTF8));
+    }
+    offsets.putInt(data.size());
+    dictBody.add(offsets.array());
+    dictBody.add(data.toByteArray());
+    Object[] dictData = recordBatch(CATEGORIES.length, new long[]{CATEGORIES.length, 0}, dictBody);
+    dictBlocks.add(writeMessage(out, (byte) 2, new Object[]{0L, dictData, false}, dictBody.bytes()));
+
+    // record batches
+    List<long[]> batchBlocks = new ArrayList<>();
+    int batchSize = (nrows + nbatches - 1) / nbatches;
+    for (int start = 0; start < nrows; start += batchSize) {
+      int n = Math.min(batchSize, nrows - start);
+      Body body = new Body();
+      ByteBuffer longs = le(8 * n);
+      ByteBuffer ints = le(4 * n);
+      ByteBuffer doubles = le(8 * n);
+      ByteBuffer cats = le(4 * n);
+      byte[] validity = new byte[(n + 7) / 8];
+      int nulls = 0;
+      for (int i = 0; i < n; i++) {
+        int row = start + i;
+        longs.putLong(row);
+        ints.putInt(-row);
+        doubles.putDouble(row * 0.5);
+        cats.putInt(row % CATEGORIES.length);
+        if (row % 10 == 0) nulls++;
+        else validity[i >> 3] |= 1 << (i & 7);
+      }
+      body.add(new byte[0]); body.add(longs.array());
+      body.add(new byte[0]); body.add(ints.array());
+      body.add(validity); body.add(doubles.array());
+      body.add(new byte[0]); body.add(cats.array());
+      Object[] batch = recordBatch(n, new long[]{n, 0, n, 0, n, nulls, n, 0}, body);
+      batchBlocks.add(writeMessage(out, (byte) 3, batch, body.bytes()));
+    }
+
+    // footer
+    Object[] schema = new Object[]{(short) 0, new Object[][]{
+            field("CLong", (byte) ArrowMetadata.TYPE_INT, new Object[]{64, true}, null),
+            field("CInt", (byte) ArrowMetadata.TYPE_INT, new Object[]{32, true}, null),
+            field("CDouble", (byte) ArrowMetadata.TYPE_FLOATING_POINT, new Object[]{(short) ArrowMetadata.PRECISION_DOUBLE}, null),
+            field("CCat", (byte) ArrowMetadata.TYPE_UTF8, new Object[0], new Object[]{0L, new Object[]{32, true}, false})
+    }};
+    byte[] footer = new FbWriter().finish(new Object[]{(short) 4, schema, blocks(dictBlocks), blocks(batchBlocks)});
+    out.write(footer);
+    out.write(le(4).putInt(footer.length).array());
+    out.write(ArrowMetadata.MAGIC);
+
+    FileOutputStream fos = new FileOutputStream(f);
+    try {
+      fos.write(out.toByteArray());
+    } finally {
+      fos.close();
+    }
+    return f;
+  }
+
+  private static long[] writeMessage(ByteArrayOutputStream out, byte headerType, Object[] header, byte[] body) throws IOException {
+    byte[] message = new FbWriter().finish(new Object[]{(short) 4, headerType, header, (long) body.length});
+    int paddedLength = (message.length + 7) & ~7;
+    long offset = out.size();
+    out.write(le(8).putInt(-1).putInt(paddedLength).array());
+    out.write(message);
+    out.write(new byte[paddedLength - message.length]);
+    out.write(body);
+    return new long[]{offset, 8 + paddedLength, body.length};
+  }
+
+  private static Object[] recordBatch(long length, long[] nodes, Body body) {
+    return new Object[]{length, new Struct(nodes, 2), new Struct(body.buffers(), 2)};
+  }
+
+  private static Object[] field(String name, byte typeId, Object[] type, Object[] dictionary) {
+    return new Object[]{name, true, typeId, type, dictionary};
+  }
+
+  private static Struct blocks(List<long[]> blocks) {
+    long[] values = new long[blocks.size() * 3];
+    for (int i = 0; i < blocks.size(); i++)
+      System.arraycopy(blocks.get(i), 0, values, 3 * i, 3); // metaDataLength + padding fits a long
+    return new Struct(values, 3);
+  }
+
+  private static ByteBuffer le(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static class Body {
+    final ByteArrayOutputStream _data = new ByteArrayOutputStream();
+    final List<Long> _buffers = new ArrayList<>();
+
+    void add(byte[] buffer) throws IOException {
+      _buffers.add((long) _data.size());
+      _buffers.add((long) buffer.length);
+      _data.write(buffer);
+      _data.write(new byte[((buffer.length + 7) & ~7) - buffer.length]);
+    }
+
+    long[] buffers() {
+      long[] result = new long[_buffers.size()];
+      for (int i = 0; i < result.length; i++) result[i] = _buffers.get(i);
+      return result;
+    }
+
+    byte[] bytes() { return _data.toByteArray(); }
+  }
+
+  /** Vector of structs composed of longs */
+  private static class Struct {
+    final long[] _values;
+    final int _width;
+    Struct(long[] values, int width) { _values = values; _width = width; }
+  }
+
+  /**
+   * Writes FlatBuffers with all offsets pointing forward: vtable, table, children of the table.
+   * Tables are given as arrays of field values indexed by field id (null means absent field),
+   * Object[] is a sub-table, Object[][] is a vector of tables, String is a string and Struct a vector of structs.
+   */
+  private static class FbWriter {
+    private final ByteBuffer _bb = le(1 << 16);
+
+    byte[] finish(Object[] root) {
+      _bb.position(4);
+      _bb.putInt(0, writeTable(root));
+      byte[] result = new byte[_bb.position()];
+      System.arraycopy(_bb.array(), 0, result, 0, result.length);
+      return result;
+    }
+
+    private int writeTable(Object[] fields) {
+      int vtable = _bb.position();
+      int vtableSize = 4 + 2 * fields.length;
+      int table = vtable + vtableSize;
+      _bb.position(table + 4);
+      _bb.putInt(table, table - vtable);
+      int[] refs = new int[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        Object v = fields[i];
+        int pos = _bb.position();
+        _bb.putShort(vtable + 4 + 2 * i, (short) (v == null ? 0 : pos - table));
+        if (v == null) continue;
+        if (v instanceof Byte) _bb.put((Byte) v);
+        else if (v instanceof Boolean) _bb.put((byte) ((Boolean) v ? 1 : 0));
+        else if (v instanceof Short) _bb.putShort((Short) v);
+        else if (v instanceof Integer) _bb.putInt((Integer) v);
+        else if (v instanceof Long) _bb.putLong((Long) v);
+        else { refs[i] = pos; _bb.putInt(0); }
+      }
+      _bb.putShort(vtable, (short) vtableSize);
+      _bb.putShort(vtable + 2, (short) (_bb.position() - table));
+      for (int i = 0; i < fields.length; i++)
+        if (refs[i] != 0) patch(refs[i], writeObject(fields[i]));
+      return table;
+    }
+
+    private int writeObject(Object v) {
+      int pos = _bb.position();
+      if (v instanceof String) {
+        byte[] bytes = ((String) v).getBytes(UTF8);
+        _bb.putInt(bytes.length).put(bytes).put((byte) 0);
+      } else if (v instanceof Struct) {
+        Struct s = (Struct) v;
+        _bb.putInt(s._values.length / s._width);
+        for (long l : s._values) _bb.putLong(l);
+      } else if (v instanceof Object[][]) {
+        Object[][] elems = (Object[][]) v;
+        _bb.putInt(elems.length);
+        int start = _bb.position();
+        _bb.position(start + 4 * elems.length);
+        for (int i = 0; i < elems.length; i++)
+          patch(start + 4 * i, writeTable(elems[i]));
+      } else {
+        return writeTable((Object[]) v);
+      }
+      return pos;
+    }
+
+    private void patch(int ref, int target) {
+      _bb.putInt(ref, target - ref);
+    }
+  }
+
+}
@@ -2,9 +2,13 @@ package water.parser.orc;
 
 import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.ql.exec.vector.*;
+import org.apache.hadoop.hive.ql.io.orc.ColumnStatistics;
+import org.apache.hadoop.hive.ql.io.orc.DoubleColumnStatistics;
+import org.apache.hadoop.hive.ql.io.orc.IntegerColumnStatistics;
 import org.apache.hadoop.hive.ql.io.orc.Reader;
 import org.apache.hadoop.hive.ql.io.orc.RecordReader;
 import org.apache.hadoop.hive.ql.io.orc.StripeInformation;
+import org.apache.hadoop.hive.ql.io.orc.StripeStatistics;
 import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.*;
 import org.joda.time.DateTime;
@@ -16,6 +20,7 @@ import water.Key;
 import water.fvec.Vec;
 import water.parser.*;
 import water.util.ArrayUtils;
+import water.util.Log;
 import water.util.StringUtils;
 
 import java.io.IOException;
@@ -68,6 +73,8 @@ public class OrcParser extends Parser {
 
   private transient HashMap<Integer,HashMap<Number,byte[]>> _toStringMaps = new HashMap<>();
 
+  private transient List<StripeStatistics> _stripeStats;
+
 
   @Override protected ParseWriter streamParse(final InputStream is, final StreamParseWriter dout) throws IOException {
     List<StripeInformation> stripesInfo = ((OrcParseSetup) this._setup).getStripes();
@@ -117,8 +124,12 @@ public class OrcParser extends Parser {
     String [] orcTypes = setup.getColumnTypesString();
     boolean[] toInclude = setup.getToInclude();
     try {
+      if (! stripeMayMatch(chunkId)) {
+        Log.trace("Stripe #", chunkId, " was filtered out by row filters.");
+        return dout;
+      }
       RecordReader perStripe = orcFileReader.rows(thisStripe.getOffset(), thisStripe.getDataLength(),
-          setup.getToInclude(), null, setup.getColumnNames());
+          toReadColumns(), null, setup.getColumnNames());
       VectorizedRowBatch batch = null;
       long rows = 0;
       long rowCount = thisStripe.getNumberOfRows();
@@ -132,7 +143,9 @@ public class OrcParser extends Parser {
         int colIndex = 0;
         for (int col = 0; col < batch.numCols; ++col) {  // read one column at a time;
           if (toInclude[col + 1]) { // only write a column if we actually want it
-            if(_setup.getColumnTypes()[colIndex] != Vec.T_BAD)
+            if (! _setup.isColumnIncluded(colIndex))
+              dout.addNAs(colIndex, nrows); // skipped column, will be dropped after parse
+            else if(_setup.getColumnTypes()[colIndex] != Vec.T_BAD)
               write1column(dataVectors[col], orcTypes[colIndex], colIndex, nrows, dout);
             else dout.addNAs(col,nrows);
             colIndex++;
@@ -153,6 +166,70 @@ public class OrcParser extends Parser {
   }
 
 
+  /**
+   * Creates a copy of the include flags with the skipped columns left out, this way ORC
+   * will not read the streams of columns the user is not interested in.
+   */
+  private boolean[] toReadColumns() {
+    boolean[] toInclude = ((OrcParseSetup) _setup).getToInclude();
+    if (_setup.getSkippedColumns() == null)
+      return toInclude;
+    boolean[] toRead = toInclude.clone();
+    int colIndex = 0;
+    for (int orcCol = 1; orcCol < toInclude.length; orcCol++) {
+      if (toInclude[orcCol]) {
+        if (! _setup.isColumnIncluded(colIndex))
+          toRead[orcCol] = false;
+        colIndex++;
+      }
+    }
+    return toRead;
+  }
+
+  /**
+   * Uses stripe-level min/max statistics to decide if a stripe can contain rows satisfying
+   * the row filters of the setup.
+   */
+  private boolean stripeMayMatch(int stripeIdx) throws IOException {
+    ParseRowFilter[] filters = _setup.getRowFilters();
+    if (filters == null || filters.length == 0)
+      return true;
+    if (_stripeStats == null)
+      _stripeStats = orcFileReader.getMetadata().getStripeStatistics();
+    if (stripeIdx >= _stripeStats.size())
+      return true;
+    ColumnStatistics[] colStats = _stripeStats.get(stripeIdx).getColumnStatistics();
+    boolean[] toInclude = ((OrcParseSetup) _setup).getToInclude();
+    for (ParseRowFilter filter : filters) {
+      int orcCol = orcColumnId(toInclude, filter.column());
+      if (orcCol < 0 || orcCol >= colStats.length)
+        continue;
+      ColumnStatistics stats = colStats[orcCol];
+      double min, max;
+      if (stats instanceof IntegerColumnStatistics) {
+        min = ((IntegerColumnStatistics) stats).getMinimum();
+        max = ((IntegerColumnStatistics) stats).getMaximum();
+      } else if (stats instanceof DoubleColumnStatistics) {
+        min = ((DoubleColumnStatistics) stats).getMinimum();
+        max = ((DoubleColumnStatistics) stats).getMaximum();
+      } else
+        continue; // no usable statistics
+      if (stats.getNumberOfValues() > 0 && ! filter.mayMatch(min, max))
+        return false;
+    }
+    return true;
+  }
+
+  // maps index of an H2O column to id of the ORC column (0 is the root struct)
+  private static int orcColumnId(boolean[] toInclude, int colIndex) {
+    int cnt = 0;
+    for (int orcCol = 1; orcCol < toInclude.length; orcCol++) {
+      if (toInclude[orcCol] && cnt++ == colIndex)
+        return orcCol;
+    }
+    return -1;
+  }
+
   /**
    * This method writes one column of H2O data frame at a time.
    *
@@ -111,6 +111,72 @@ public class ParseTestOrc extends TestUtil {
         fr.delete();
     }
 
+    private static Frame parseOrc(String fname, int[] skipped, ParseRowFilter[] filters) {
+        NFSFileVec nfs = makeNfsFileVec(fname);
+        ParseSetup pstp = new ParseSetup(new ParseSetupV3());
+        pstp._parse_type = new OrcParserProvider.OrcParserInfo();
+        ParseSetup ps = ParseSetup.guessSetup(new Key[]{nfs._key}, pstp);
+        ps.setSkippedColumns(skipped);
+        ps.setRowFilters(filters);
+        return ParseDataset.forkParseDataset(Key.<Frame>make(), new Key[]{nfs._key}, ps, true)._job.get();
+    }
+
+    @Test public void testSkippedColumnsAndRowFilter() {
+        final String fname = "smalldata/parser/orc/orc_split_elim.orc";
+        Frame full = null, projected = null, filtered = null;
+        try {
+            full = parseOrc(fname, null, null);
+            // duplicates and order of the indices don't matter
+            projected = parseOrc(fname, new int[]{3, 1, 3}, null);
+            int[] kept = new int[full.numCols() - 2];
+            for (int c = 0, k = 0; c < full.numCols(); ++c)
+                if (c != 1 && c != 3) kept[k++] = c;
+            Assert.assertArrayEquals(ArrayUtils.select(full.names(), kept), projected.names());
+            Assert.assertEquals(full.numRows(), projected.numRows());
+            for (int i = 0; i < kept.length; ++i) {
+                Vec expected = full.vec(kept[i]), actual = projected.vec(i);
+                Assert.assertEquals(expected.get_type(), actual.get_type());
+                for (long r = 0; r < full.numRows(); ++r) {
+                    Assert.assertEquals(expected.isNA(r), actual.isNA(r));
+                    if (!expected.isNA(r) && expected.isNumeric())
+                        Assert.assertEquals(expected.at(r), actual.at(r), 0);
+                }
+            }
+            // stripes are dropped or kept whole, every matching row is still there
+            final double threshold = full.vec(0).max();
+            filtered = parseOrc(fname, null, new ParseRowFilter[]{ParseRowFilter.fromString("0 >= " + threshold)});
+            Assert.assertTrue(filtered.numRows() <= full.numRows());
+            Assert.assertEquals(countAtLeast(full.vec(0), threshold), countAtLeast(filtered.vec(0), threshold));
+        } finally {
+            if (full != null) full.delete();
+            if (projected != null) projected.delete();
+            if (filtered != null) filtered.delete();
+        }
+    }
+
+    private static long countAtLeast(Vec v, double threshold) {
+        long n = 0;
+        for (long r = 0; r < v.length(); ++r)
+            if (!v.isNA(r) && v.at(r) >= threshold) n++;
+        return n;
+    }
+
+    @Test public void testSkippedColumnOutOfRange() {
+        NFSFileVec nfs = makeNfsFileVec("smalldata/parser/orc/orc_split_elim.orc");
+        try {
+            ParseSetup pstp = new ParseSetup(new ParseSetupV3());
+            pstp._parse_type = new OrcParserProvider.OrcParserInfo();
+            ParseSetup ps = ParseSetup.guessSetup(new Key[]{nfs._key}, pstp);
+            ps.setSkippedColumns(new int[]{0, 42});
+            ParseDataset.forkParseDataset(Key.<Frame>make(), new Key[]{nfs._key}, ps, true);
+            Assert.fail("Skipped column out of range should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("42"));
+        } finally {
+            nfs.remove();
+        }
+    }
+
     @Test
     public void testParseAllOrcs() {
         Set<String> failedFiles = new TreeSet<>();
@@ -38,13 +38,22 @@ class ChunkConverter extends GroupConverter {
 
   private long _currentRecordIdx = -1;
 
-  ChunkConverter(MessageType parquetSchema, byte[] chunkSchema, WriterDelegate writer) {
+  /**
+   * @param parquetSchema schema of the Parquet file
+   * @param chunkSchema types of H2O columns
+   * @param writer output writer
+   * @param keepColumns columns projected by the read schema (null means all), converters are indexed
+   *                    by position in the projection but write to the original column index
+   */
+  ChunkConverter(MessageType parquetSchema, byte[] chunkSchema, WriterDelegate writer, boolean[] keepColumns) {
     _writer = writer;
     int colIdx = 0;
+    int fieldIdx = 0;
     _converters = new Converter[chunkSchema.length];
     for (Type parquetField : parquetSchema.getFields()) {
       assert parquetField.isPrimitive();
-      _converters[colIdx] = newConverter(colIdx, chunkSchema[colIdx], parquetField.asPrimitiveType());
+      if (keepColumns == null || keepColumns[colIdx])
+        _converters[fieldIdx++] = newConverter(colIdx, chunkSchema[colIdx], parquetField.asPrimitiveType());
       colIdx++;
     }
   }
@@ -5,29 +5,48 @@ import org.apache.parquet.hadoop.api.InitContext;
 import org.apache.parquet.hadoop.api.ReadSupport;
 import org.apache.parquet.io.api.RecordMaterializer;
 import org.apache.parquet.schema.MessageType;
-import water.parser.ParseWriter;
+import org.apache.parquet.schema.Type;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class ChunkReadSupport extends ReadSupport<Long> {
 
   private WriterDelegate _writer;
   private byte[] _chunkSchema;
+  private boolean[] _keepColumns;
 
   public ChunkReadSupport(WriterDelegate writer, byte[] chunkSchema) {
+    this(writer, chunkSchema, null);
+  }
+
+  /**
+   * @param keepColumns columns that should be read (null means all columns), Parquet will not
+   *                    even load the column chunks of the columns that are not requested
+   */
+  public ChunkReadSupport(WriterDelegate writer, byte[] chunkSchema, boolean[] keepColumns) {
     _writer = writer;
     _chunkSchema = chunkSchema;
+    _keepColumns = keepColumns;
   }
 
   @Override
   public ReadContext init(InitContext context) {
-    return new ReadContext(context.getFileSchema());
+    MessageType fileSchema = context.getFileSchema();
+    if (_keepColumns == null)
+      return new ReadContext(fileSchema);
+    List<Type> projectedFields = new ArrayList<>();
+    for (int i = 0; i < fileSchema.getFieldCount(); i++)
+      if (_keepColumns[i])
+        projectedFields.add(fileSchema.getType(i));
+    return new ReadContext(new MessageType(fileSchema.getName(), projectedFields));
   }
 
   @Override
   public RecordMaterializer<Long> prepareForRead(Configuration configuration, Map<String, String> keyValueMetaData,
                                                     MessageType fileSchema, ReadContext readContext) {
-    return new ChunkRecordMaterializer(fileSchema, _chunkSchema, _writer);
+    return new ChunkRecordMaterializer(fileSchema, _chunkSchema, _writer, _keepColumns);
   }
 
 }
@@ -16,8 +16,8 @@ class ChunkRecordMaterializer extends RecordMaterializer<Long> {
 
   private ChunkConverter _converter;
 
-  ChunkRecordMaterializer(MessageType parquetSchema, byte[] chunkSchema, WriterDelegate writer) {
-    _converter = new ChunkConverter(parquetSchema, chunkSchema, writer);
+  ChunkRecordMaterializer(MessageType parquetSchema, byte[] chunkSchema, WriterDelegate writer, boolean[] keepColumns) {
+    _converter = new ChunkConverter(parquetSchema, chunkSchema, writer, keepColumns);
   }
 
   @Override
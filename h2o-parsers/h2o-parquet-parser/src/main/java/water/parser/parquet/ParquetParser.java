@@ -1,7 +1,9 @@
 package water.parser.parquet;
 
+import org.apache.parquet.column.statistics.*;
 import org.apache.parquet.format.converter.ParquetMetadataConverter;
 import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 import org.apache.parquet.hadoop.metadata.ParquetMetadata;
 import org.apache.parquet.schema.MessageType;
 import org.apache.parquet.schema.OriginalType;
@@ -17,6 +19,7 @@ import water.util.IcedHashMapGeneric;
 import water.util.Log;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -31,15 +34,17 @@ public class ParquetParser extends Parser {
   private static final int MAX_PREVIEW_RECORDS = 1000;
 
   private final byte[] _metadata;
+  private final boolean[] _keepColumns;
 
   ParquetParser(ParseSetup setup, Key<Job> jobKey) {
     super(setup, jobKey);
     _metadata = ((ParquetParseSetup) setup).parquetMetadata;
+    _keepColumns = keepColumns(setup);
   }
 
   @Override
   protected final StreamParseWriter sequentialParse(Vec vec, final StreamParseWriter dout) {
-    final ParquetMetadata metadata = VecParquetReader.readFooter(_metadata);
+    final ParquetMetadata metadata = filterRowGroups(VecParquetReader.readFooter(_metadata), _setup);
     final int nChunks = vec.nChunks();
     final long totalRecs = totalRecords(metadata);
     final long nChunkRecs = ((totalRecs / nChunks) + (totalRecs % nChunks > 0 ? 1 : 0));
@@ -48,7 +53,7 @@ public class ParquetParser extends Parser {
     }
 
     final WriterDelegate w = new WriterDelegate(dout, _setup.getColumnTypes().length);
-    final VecParquetReader reader = new VecParquetReader(vec, metadata, w, _setup.getColumnTypes());
+    final VecParquetReader reader = new VecParquetReader(vec, metadata, w, _setup.getColumnTypes(), _keepColumns);
 
     StreamParseWriter nextChunk = dout;
     try {
@@ -74,6 +79,81 @@ public class ParquetParser extends Parser {
     return dout;
   }
 
+  private static boolean[] keepColumns(ParseSetup setup) {
+    if (setup.getSkippedColumns() == null || setup.getSkippedColumns().length == 0)
+      return null;
+    boolean[] keep = new boolean[setup.getColumnTypes().length];
+    for (int i = 0; i < keep.length; i++)
+      keep[i] = setup.isColumnIncluded(i);
+    return keep;
+  }
+
+  /**
+   * Removes row groups that cannot contain any rows satisfying the row filters of the setup.
+   * Decision is based on min/max statistics of the column chunks, row groups without usable
+   * statistics are always kept.
+   */
+  static ParquetMetadata filterRowGroups(ParquetMetadata metadata, ParseSetup setup) {
+    ParseRowFilter[] filters = setup.getRowFilters();
+    if (filters == null || filters.length == 0)
+      return metadata;
+    MessageType schema = metadata.getFileMetaData().getSchema();
+    List<BlockMetaData> blocks = new ArrayList<>(metadata.getBlocks().size());
+    for (BlockMetaData block : metadata.getBlocks()) {
+      if (mayMatch(block, schema, filters))
+        blocks.add(block);
+    }
+    if (blocks.size() == metadata.getBlocks().size())
+      return metadata;
+    return new ParquetMetadata(metadata.getFileMetaData(), blocks);
+  }
+
+  private static boolean mayMatch(BlockMetaData block, MessageType schema, ParseRowFilter[] filters) {
+    for (ParseRowFilter filter : filters) {
+      if (filter.column() < 0 || filter.column() >= schema.getFieldCount())
+        continue;
+      Type type = schema.getType(filter.column());
+      if (OriginalType.DECIMAL.equals(type.getOriginalType()))
+        continue; // statistics are stored unscaled
+      ColumnChunkMetaData column = findColumn(block, type.getName());
+      if (column == null)
+        continue;
+      Statistics stats = column.getStatistics();
+      if (stats == null || stats.isEmpty())
+        continue;
+      double min, max;
+      if (stats instanceof IntStatistics) {
+        min = ((IntStatistics) stats).getMin();
+        max = ((IntStatistics) stats).getMax();
+      } else if (stats instanceof LongStatistics) {
+        min = ((LongStatistics) stats).getMin();
+        max = ((LongStatistics) stats).getMax();
+      } else if (stats instanceof FloatStatistics) {
+        min = ((FloatStatistics) stats).getMin();
+        max = ((FloatStatistics) stats).getMax();
+      } else if (stats instanceof DoubleStatistics) {
+        min = ((DoubleStatistics) stats).getMin();
+        max = ((DoubleStatistics) stats).getMax();
+      } else if (stats instanceof BooleanStatistics) {
+        min = ((BooleanStatistics) stats).getMin() ? 1 : 0;
+        max = ((BooleanStatistics) stats).getMax() ? 1 : 0;
+      } else
+        continue; // not a numeric column
+      if (! filter.mayMatch(min, max))
+        return false;
+    }
+    return true;
+  }
+
+  private static ColumnChunkMetaData findColumn(BlockMetaData block, String name) {
+    for (ColumnChunkMetaData column : block.getColumns()) {
+      String[] path = column.getPath().toArray();
+      if (path.length == 1 && path[0].equals(name))
+        return column;
+    }
+    return null;
+  }
+
   private long totalRecords(ParquetMetadata metadata) {
     long nr = 0;
     for (BlockMetaData meta : metadata.getBlocks()) {
@@ -98,8 +178,14 @@ public class ParquetParser extends Parser {
       Log.trace("Chunk #", cidx, " doesn't contain any Parquet block center.");
       return dout;
     }
+    int nBlocks = metadata.getBlocks().size();
+    metadata = filterRowGroups(metadata, _setup);
+    if (metadata.getBlocks().isEmpty()) {
+      Log.trace("All ", nBlocks, " blocks of chunk #", cidx, " were filtered out by row filters.");
+      return dout;
+    }
     Log.info("Processing ", metadata.getBlocks().size(), " blocks of chunk #", cidx);
-    VecParquetReader reader = new VecParquetReader(vec, metadata, dout, _setup.getColumnTypes());
+    VecParquetReader reader = new VecParquetReader(vec, metadata, dout, _setup.getColumnTypes(), _keepColumns);
     try {
       Long recordNumber;
       do {
@@ -28,6 +28,7 @@ import water.fvec.NFSFileVec;
 import water.fvec.Vec;
 import water.parser.BufferedString;
 import water.parser.ParseDataset;
+import water.parser.ParseRowFilter;
 import water.parser.ParseSetup;
 import water.util.IcedInt;
 import water.util.PrettyPrint;
@@ -375,6 +376,37 @@ public class ParseTestParquet extends TestUtil {
     assertFrameAssertion(assertion);
   }
 
+  @Test
+  public void testParseWithSkippedColumnsAndRowFilter() throws IOException {
+    final int nrows = 1000;
+    Frame actual = null;
+    try {
+      File f = ParquetFileGenerator.generateParquetFile(Files.createTempDir(), "projection.parquet", nrows, new Date());
+      NFSFileVec nfs = makeNfsFileVec(f.getCanonicalPath());
+      Key[] keys = new Key[]{nfs._key};
+      ParseSetup guessedSetup = ParseSetup.guessSetup(keys, false, ParseSetup.GUESS_HEADER);
+      guessedSetup.disableParallelParse = disableParallelParse;
+      guessedSetup.setSkippedColumns(new int[]{1, 2});
+      // int32_field = 32 + row, keep only row groups that can contain the second half of the rows
+      guessedSetup.setRowFilters(new ParseRowFilter[]{ParseRowFilter.fromString("0 >= " + (32 + nrows / 2))});
+
+      ParseDataset pd = ParseDataset.forkParseDataset(Key.<Frame>make(), keys, guessedSetup, true);
+      actual = pd._job.get();
+
+      assertArrayEquals(ar("int32_field", "double_field", "timestamp_field"), actual.names());
+      assertTrue("Some row groups should be skipped", actual.numRows() < nrows);
+      long matching = 0;
+      for (long row = 0; row < actual.numRows(); row++) {
+        long val = actual.vec(0).at8(row);
+        assertEquals(2.0d + val - 32, actual.vec(1).at(row), EPSILON);
+        if (val >= 32 + nrows / 2) matching++;
+      }
+      assertEquals(nrows / 2, matching);
+    } finally {
+      if (actual != null) actual.delete();
+    }
+  }
+
   @Test
   public void testPubdev5673() {
     Frame actual = null;
@@ -321,16 +321,17 @@ class H2OGeneralizedLinearEstimator(H2OEstimator):
         """
         AUTO will set the solver based on given data and the other parameters. IRLSM is fast on on problems with small
         number of predictors and for lambda-search with L1 penalty, L_BFGS scales better for datasets with many columns.
-        Coordinate descent is experimental (beta).
+        Coordinate descent is experimental (beta). SGD (variance reduced mini-batches over the local data, models
+        averaged across the nodes) is for datasets with many rows and a moderate number of columns.
 
         One of: ``"auto"``, ``"irlsm"``, ``"l_bfgs"``, ``"coordinate_descent_naive"``, ``"coordinate_descent"``,
-        ``"gradient_descent_lh"``, ``"gradient_descent_sqerr"``  (default: ``"auto"``).
+        ``"gradient_descent_lh"``, ``"gradient_descent_sqerr"``, ``"sgd"``  (default: ``"auto"``).
         """
         return self._parms.get("solver")
 
     @solver.setter
     def solver(self, solver):
-        assert_is_type(solver, None, Enum("auto", "irlsm", "l_bfgs", "coordinate_descent_naive", "coordinate_descent", "gradient_descent_lh", "gradient_descent_sqerr"))
+        assert_is_type(solver, None, Enum("auto", "irlsm", "l_bfgs", "coordinate_descent_naive", "coordinate_descent", "gradient_descent_lh", "gradient_descent_sqerr", "sgd"))
         self._parms["solver"] = solver
 
 
@@ -1936,8 +1936,11 @@ class H2OFrame(object):
     def merge(self, other, all_x=False, all_y=False, by_x=None, by_y=None, method="auto"):
         """
         Merge two datasets based on common column names.  We do not support all_x=True and all_y=True.
-        Only one can be True or none is True.  The default merge method is auto and it will default to the
-        radix method.  The radix method will return the correct merge result regardless of duplicated rows
+        Only one can be True or none is True.  The default merge method is auto and it will use the broadcast
+        method when the right frame is small (see the sys.ai.h2o.rapids.merge.broadcast_max_rows property) and
+        all_y is False, and the radix method otherwise.  The broadcast method sends an index of the right frame to
+        every node and keeps the rows in the order of the left frame; the radix result is sorted by the merge key.
+        The radix method will return the correct merge result regardless of duplicated rows
          in the right frame.  In addition, the radix method can perform merge even if you have string columns
          in your frames.  If there are duplicated rows in your rite frame, they will not be included if you use
         the hash method.  The hash method cannot perform merge if you have string columns in your left frame.
@@ -1951,7 +1954,7 @@ class H2OFrame(object):
         :param by_x: list of columns in the current frame to use as a merge key.
         :param by_y: list of columns in the ``other`` frame to use as a merge key. Should have the same number of
             columns as in the ``by_x`` list.
-        :param method: string representing the merge method, one of auto(default), radix or hash.
+        :param method: string representing the merge method, one of auto(default), radix, broadcast or hash.
 
         :returns: New H2OFrame with the result of merging the current frame with the ``other`` frame.
         """
@@ -2945,6 +2948,68 @@ class H2OFrame(object):
         return fr
 
 
+    def rolling(self, fun, window, by=None, time_col=None):
+        """
+        Compute a rolling aggregate of every column which is not a ``by`` or ``time_col`` column.
+
+        Every row gets the aggregate of its window: the row and the ``window`` - 1 rows before it or, with a
+        ``time_col``, the rows before it with a time greater than its time minus ``window``.  Windows do not cross
+        the runs of equal values of the ``by`` columns, so sort the frame by the groups (and the time) to get windows
+        within groups.  NAs are skipped.
+
+        :param str fun: one of "sum", "mean", "min", "max", "sd", "count".
+        :param window: the number of rows of the windows, or their time span with a ``time_col``.
+        :param by: the group columns (names or indices).
+        :param time_col: the time column (name or index), for windows over a time span.
+        :returns: an H2OFrame with the rolling aggregates.
+        """
+        assert_is_type(fun, "sum", "mean", "min", "max", "sd", "count")
+        assert_is_type(window, numeric)
+        by = [] if by is None else by if isinstance(by, list) else [by]
+        if time_col is None: time_col = -1
+        elif is_type(time_col, str): time_col = self.names.index(time_col)
+        return H2OFrame._expr(expr=ExprNode("rolling", self, fun, window, by, time_col))
+
+    def lag(self, k=1, by=None):
+        """
+        Lag every column which is not a ``by`` column by ``k`` rows, within the runs of equal values of the ``by``
+        columns (NA where the row ``k`` rows before is in another group).
+
+        :param int k: the number of rows.
+        :param by: the group columns (names or indices).
+        :returns: an H2OFrame with the lagged columns.
+        """
+        assert_is_type(k, int)
+        by = [] if by is None else by if isinstance(by, list) else [by]
+        return H2OFrame._expr(expr=ExprNode("lag", self, k, by))
+
+    def lead(self, k=1, by=None):
+        """
+        Lead every column which is not a ``by`` column by ``k`` rows, within the runs of equal values of the ``by``
+        columns (NA where the row ``k`` rows after is in another group).
+
+        :param int k: the number of rows.
+        :param by: the group columns (names or indices).
+        :returns: an H2OFrame with the led columns.
+        """
+        assert_is_type(k, int)
+        by = [] if by is None else by if isinstance(by, list) else [by]
+        return H2OFrame._expr(expr=ExprNode("lead", self, k, by))
+
+    def cumulative(self, fun, by=None):
+        """
+        Compute a cumulative aggregate of every column which is not a ``by`` column, restarting at every run of equal
+        values of the ``by`` columns.  NAs are skipped, and stay NA.
+
+        :param str fun: one of "sum", "prod", "min", "max", "mean", "count".
+        :param by: the group columns (names or indices).
+        :returns: an H2OFrame with the cumulative aggregates.
+        """
+        assert_is_type(fun, "sum", "prod", "min", "max", "mean", "count")
+        by = [] if by is None else by if isinstance(by, list) else [by]
+        return H2OFrame._expr(expr=ExprNode("cumulative", self, fun, by))
+
+
     def isna(self):
         """
         For each element in an H2OFrame, determine if it is NA or not.
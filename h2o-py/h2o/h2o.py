@@ -412,7 +412,8 @@ def import_file(path=None, destination_frame=None, parse=True, header=0, sep=Non
         return H2OFrame()._import_parse(path, pattern, destination_frame, header, sep, col_names, col_types, na_strings)
 
 
-def import_sql_table(connection_url, table, username, password, columns=None, optimize=True):
+def import_sql_table(connection_url, table, username, password, columns=None, optimize=True, partition_column=None,
+                     fetch_size=None, max_retries=None):
     """
     Import SQL table to H2OFrame in memory.
 
@@ -433,6 +434,11 @@ def import_sql_table(connection_url, table, username, password, columns=None, op
     :param username: username for SQL server
     :param password: password for SQL server
     :param optimize: optimize import of SQL table for faster imports. Experimental.
+    :param partition_column: name of a numeric or date/time column; if specified, the table is split into ranges of
+        values of this column (between its minimum and maximum) and the ranges are retrieved concurrently instead of
+        paging through the table with LIMIT/OFFSET queries.
+    :param fetch_size: number of rows fetched from the database in a single round-trip.
+    :param max_retries: number of times a failed query for a chunk of data is retried.
 
     :returns: an :class:`H2OFrame` containing data of the specified SQL table.
 
@@ -449,9 +455,18 @@ def import_sql_table(connection_url, table, username, password, columns=None, op
     assert_is_type(password, str)
     assert_is_type(columns, [str], None)
     assert_is_type(optimize, bool)
+    assert_is_type(partition_column, str, None)
+    assert_is_type(fetch_size, int, None)
+    assert_is_type(max_retries, int, None)
     p = {"connection_url": connection_url, "table": table, "username": username, "password": password, "optimize": optimize}
     if columns:
         p["columns"] = ", ".join(columns)
+    if partition_column:
+        p["partition_column"] = partition_column
+    if fetch_size is not None:
+        p["fetch_size"] = fetch_size
+    if max_retries is not None:
+        p["max_retries"] = max_retries
     j = H2OJob(api("POST /99/ImportSQLTable", data=p), "Import SQL Table").poll()
     return get_frame(j.dest_key)
 